@@ -0,0 +1,74 @@
+package tvs.example.serviceprototype;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Round trips from latitude and longitude to UTM and back through the String
+ * forms of CoordinateConversion against the UTMPosition forms. Times are per
+ * point
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@OperationsPerInvocation( CoordinateConversionBenchmark.COUNT )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class CoordinateConversionBenchmark
+{
+	static final int COUNT = 100000;
+
+	private final CoordinateConversion conversion = new CoordinateConversion();
+
+	private final CoordinateConversion.UTMPosition utm = new CoordinateConversion.UTMPosition();
+
+	private final double[] latlon = new double[ 2 ];
+
+	private final double[] latitude = new double[ COUNT ];
+
+	private final double[] longitude = new double[ COUNT ];
+
+	@Setup
+	public void createPoints()
+	{
+		Random random = new Random( 1 );
+		for( int i = 0; i < COUNT; i++ )
+		{
+			latitude[ i ] = -80 + random.nextDouble() * 164;
+			longitude[ i ] = -180 + random.nextDouble() * 359.999;
+		}
+	}
+
+	@Benchmark
+	public void roundTripString( Blackhole blackhole )
+	{
+		for( int i = 0; i < COUNT; i++ )
+		{
+			blackhole.consume( conversion.utm2LatLon( conversion.latLon2UTM( latitude[ i ], longitude[ i ] ) ) );
+		}
+	}
+
+	@Benchmark
+	public void roundTripUTMPosition( Blackhole blackhole )
+	{
+		for( int i = 0; i < COUNT; i++ )
+		{
+			conversion.latLon2UTM( latitude[ i ], longitude[ i ], utm );
+			blackhole.consume( conversion.utm2LatLon( utm, latlon )[ 0 ] );
+		}
+	}
+}
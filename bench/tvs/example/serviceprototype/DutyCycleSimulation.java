@@ -0,0 +1,297 @@
+package tvs.example.serviceprototype;
+
+/**
+ * Simulates the GpsLockController and its DutyCycleScheduler turning a SyntheticLocationSource on and off, to show the trade-off
+ * between the time the GPS is on and the error of the position reported to clients.
+ * Every simulated second the last position reported is compared with where the source's trajectory really is. Runs on a plain
+ * JVM, on simulated time.
+ */
+public class DutyCycleSimulation
+{
+	//
+	// Public methods
+	//
+
+	/**
+	 * @param sourceConfig - the simulated user and GPS
+	 * @param schedulerConfig - the scheduler settings
+	 */
+	public DutyCycleSimulation( SyntheticLocationSource.Config sourceConfig, DutyCycleScheduler.Config schedulerConfig )
+	{
+		source = new SyntheticLocationSource( sourceConfig );
+		lockController = new GpsLockController( gpsControl, clock.createTimer(), clock.createTimer(), clock.createTimer(),
+				new DutyCycleScheduler( schedulerConfig ) );
+	}
+
+	/**
+	 * Start logging and run the simulation
+	 * @param duration - the simulated time to run for in milliseconds
+	 */
+	public void run( long duration )
+	{
+		lockController.startLogging();
+
+		long endTime = source.getTime() + duration;
+		while ( source.getTime() < endTime )
+		{
+			long time = source.getTime();
+			clock.advance( time );
+			source.step();
+
+			if ( haveFix == true )
+			{
+				source.getTruePosition( time, truePosition );
+				double error = SyntheticLocationSource.distanceBetween( truePosition, reportedFix );
+
+				errorTotal += error;
+				errorMax = Math.max( errorMax, error );
+				errorHistogram[ ( int )Math.min( error, errorHistogram.length - 1 ) ]++;
+				sampleCount++;
+			}
+		}
+
+		clock.advance( endTime );
+		lockController.stopLogging();
+	}
+
+	/**
+	 * @return the fraction of the time the GPS was on
+	 */
+	public double getOnFraction()
+	{
+		return ( clock.getTime() == 0 ) ? 0 : ( double )gpsOnTime / clock.getTime();
+	}
+
+	/**
+	 * @return the number of times the GPS was turned on
+	 */
+	public int getGpsOnCount()
+	{
+		return gpsOnCount;
+	}
+
+	/**
+	 * @return the mean error of the reported position in metres, from the first fix on
+	 */
+	public double getMeanError()
+	{
+		return ( sampleCount == 0 ) ? 0 : errorTotal / sampleCount;
+	}
+
+	/**
+	 * @return the largest error of the reported position in metres
+	 */
+	public double getMaxError()
+	{
+		return errorMax;
+	}
+
+	/**
+	 * @param fraction - e.g. 0.95
+	 * @return the error in whole metres not exceeded for the fraction of the time
+	 */
+	public int getErrorPercentile( double fraction )
+	{
+		long wanted = ( long )Math.ceil( sampleCount * fraction );
+		long count = 0;
+		for ( int metres = 0; metres < errorHistogram.length; metres++ )
+		{
+			count += errorHistogram[ metres ];
+			if ( count >= wanted )
+			{
+				return metres + 1;
+			}
+		}
+
+		return errorHistogram.length;
+	}
+
+	/**
+	 * Run an hour of each scenario with the fixed times and with adaptive scheduling at several error targets, and print the
+	 * results
+	 * @param args - not used
+	 */
+	public static void main( String[] args )
+	{
+		String[] names = { "Stationary", "Walking", "Cycling", "Driving", "Driving, tunnels" };
+		double[] speeds = { 0, 1.4, 5, 15, 15 };
+		float[] targets = { 25, 50, 100 };
+		long duration = 3600000;
+
+		System.out.println( String.format( "%-18s %-14s %6s %6s %9s %9s %9s", "Scenario", "Schedule", "On %", "Ons", "Mean m",
+				"95% m", "Max m" ) );
+
+		for ( int scenario = 0; scenario < names.length; scenario++ )
+		{
+			for ( int target = -1; target < targets.length; target++ )
+			{
+				SyntheticLocationSource.Config sourceConfig = new SyntheticLocationSource.Config();
+				sourceConfig.trajectory = ( speeds[ scenario ] == 0 ) ? SyntheticLocationSource.Trajectory.Stationary :
+						SyntheticLocationSource.Trajectory.Line;
+				sourceConfig.speed = speeds[ scenario ];
+				sourceConfig.convergenceTime = 5000;
+				if ( scenario == 4 )
+				{
+					sourceConfig.dropoutInterval = 300000;
+					sourceConfig.dropoutDuration = 30000;
+				}
+
+				DutyCycleScheduler.Config schedulerConfig = new DutyCycleScheduler.Config();
+				schedulerConfig.adaptive = ( target >= 0 );
+				if ( target >= 0 )
+				{
+					schedulerConfig.errorTarget = targets[ target ];
+				}
+
+				DutyCycleSimulation simulation = new DutyCycleSimulation( sourceConfig, schedulerConfig );
+				simulation.run( duration );
+
+				System.out.println( String.format( "%-18s %-14s %6.1f %6d %9.1f %9d %9.1f", names[ scenario ],
+						( target < 0 ) ? "Fixed" : String.format( "Target %.0fm", targets[ target ] ), simulation.getOnFraction() * 100,
+						simulation.getGpsOnCount(), simulation.getMeanError(), simulation.getErrorPercentile( 0.95 ),
+						simulation.getMaxError() ) );
+			}
+		}
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Turns the simulated GPS on and off for the controller
+	 */
+	private GpsLockController.IGpsControl gpsControl = new GpsLockController.IGpsControl()
+	{
+		@Override
+		public void startUpdates()
+		{
+			if ( updatesOn == false )
+			{
+				updatesOn = true;
+				updatesOnSince = clock.getTime();
+				gpsOnCount++;
+			}
+
+			source.startUpdates( updateReceiver );
+		}
+
+		@Override
+		public void stopUpdates()
+		{
+			source.stopUpdates();
+
+			if ( updatesOn == true )
+			{
+				updatesOn = false;
+				gpsOnTime += clock.getTime() - updatesOnSince;
+			}
+		}
+
+		@Override
+		public boolean isProviderEnabled()
+		{
+			return true;
+		}
+
+		/**
+		 * The simulation is single threaded so turn the GPS on straight away
+		 */
+		@Override
+		public void requestTurnOn()
+		{
+			lockController.turnOn();
+		}
+
+		@Override
+		public void requestTurnOff()
+		{
+			lockController.turnOff();
+		}
+
+		@Override
+		public void requestLockLost()
+		{
+			lockController.lockLost();
+		}
+
+		@Override
+		public void onStatusChanged( GpsLockController controller )
+		{
+		}
+
+		@Override
+		public long getTime()
+		{
+			return clock.getTime();
+		}
+	};
+
+	/**
+	 * Passes the updates to the controller, keeping the last fix as the position reported to clients
+	 */
+	private ILocationSource.IUpdateReceiver updateReceiver = new ILocationSource.IUpdateReceiver()
+	{
+		@Override
+		public void onFixReceived( GpsFix fix )
+		{
+			reportedFix.set( fix );
+			haveFix = true;
+
+			lockController.locationChanged( fix.accuracy, fix.speed );
+		}
+
+		@Override
+		public void onSatelliteStatusReceived( int satellitesInView, int satellitesInFix )
+		{
+			lockController.satelliteStatus( satellitesInView, satellitesInFix );
+		}
+
+		@Override
+		public void onSatelliteChanged( SatelliteTable table, int prn, int changes )
+		{
+		}
+
+		@Override
+		public void onNmeaReceived( long timeStamp, CharSequence sentence )
+		{
+		}
+
+		@Override
+		public void onProviderEnabled()
+		{
+			lockController.providerEnabled();
+		}
+
+		@Override
+		public void onProviderDisabled()
+		{
+			lockController.providerDisabled();
+		}
+	};
+
+	//
+	// Private data
+	//
+
+	private final SimulatedClock clock = new SimulatedClock();
+	private final SyntheticLocationSource source;
+	private final GpsLockController lockController;
+
+	/** The last position reported, and where the user really was */
+	private final GpsFix reportedFix = new GpsFix();
+	private final GpsFix truePosition = new GpsFix();
+	private boolean haveFix = false;
+
+	/** Simulated GPS state */
+	private boolean updatesOn = false;
+	private long updatesOnSince = 0;
+	private int gpsOnCount = 0;
+	private long gpsOnTime = 0;
+
+	/** Error statistics, with a histogram in 1 metre steps */
+	private final long[] errorHistogram = new long[ 10000 ];
+	private double errorTotal = 0;
+	private double errorMax = 0;
+	private long sampleCount = 0;
+}
@@ -0,0 +1,517 @@
+package tvs.example.serviceprototype;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import tvs.example.serviceprototype.GPSInterfaceService.ProviderState;
+
+/**
+ * Replays recorded NMEA sentences through an NmeaLocationSource into the GpsLockController used by the GPSInterfaceService,
+ * so that the lock handling can be tested and benchmarked on a plain JVM without a device.
+ *
+ * Time is taken from the recorded timestamps. The controller's timers run on a simulated clock driven by those timestamps, so a
+ * replay gives the same result whatever speed it is run at. The replay can be paced at real time, accelerated, or run as fast
+ * as possible. Sentences recorded while the controller has the GPS turned off are skipped, as the GPS would not have
+ * produced them.
+ *
+ * Sentences are read from NmeaRecorder ring files or from logs containing lines of the form "Time 12345 : [$GPGGA,...]", as
+ * written by earlier versions of the service.
+ */
+public class NmeaReplay
+{
+	//
+	// Public methods
+	//
+
+	/**
+	 * Construct a replay
+	 * @param speed - 1 for real time, greater than 1 to accelerate, or 0 to run as fast as possible
+	 */
+	public NmeaReplay( double speed )
+	{
+		this.speed = speed;
+		lockController = new GpsLockController( gpsControl, clock.createTimer(), clock.createTimer(), clock.createTimer() );
+	}
+
+	/**
+	 * Replay all the sentences in a ring file. Logging is started if it is not already running.
+	 * @param recorder - the ring file
+	 * @return the number of sentences replayed
+	 */
+	public int replay( NmeaRecorder recorder )
+	{
+		int startCount = sentenceCount;
+		startLogging();
+
+		recorder.read(
+				new NmeaRecorder.IRecordReceiver()
+				{
+					@Override
+					public void onRecordReceived( long timeStamp, byte[] data, int length )
+					{
+						for ( int index = 0; index < length; index++ )
+						{
+							sentenceBuffer[ index ] = ( char )data[ index ];
+						}
+
+						replaySentence( timeStamp, length );
+					}
+				}
+		);
+
+		finish();
+		return sentenceCount - startCount;
+	}
+
+	/**
+	 * Replay all the sentences in a log. Lines not containing a timestamped sentence are ignored.
+	 * Logging is started if it is not already running.
+	 * @param reader - the log
+	 * @return the number of sentences replayed
+	 * @throws IOException
+	 */
+	public int replay( BufferedReader reader ) throws IOException
+	{
+		int startCount = sentenceCount;
+		startLogging();
+
+		String line;
+		while ( ( line = reader.readLine() ) != null )
+		{
+			// Look for "Time <timestamp> : [<sentence>]". The logged sentences kept their carriage return, so the closing bracket
+			// may have been split onto the following line
+			int timeIndex = line.indexOf( LOG_TIME_PREFIX );
+			int sentenceStart = line.indexOf( '[', timeIndex + 1 ) + 1;
+			int sentenceEnd = line.lastIndexOf( ']' );
+			if ( sentenceEnd < sentenceStart )
+			{
+				sentenceEnd = line.length();
+			}
+
+			if ( ( timeIndex < 0 ) || ( sentenceStart <= 0 ) || ( sentenceEnd - sentenceStart > sentenceBuffer.length ) )
+			{
+				ignoredLineCount++;
+				continue;
+			}
+
+			long timeStamp = 0;
+			int index = timeIndex + LOG_TIME_PREFIX.length();
+			while ( ( index < sentenceStart ) && ( Character.isDigit( line.charAt( index ) ) == true ) )
+			{
+				timeStamp = ( timeStamp * 10 ) + ( line.charAt( index++ ) - '0' );
+			}
+
+			if ( index == timeIndex + LOG_TIME_PREFIX.length() )
+			{
+				ignoredLineCount++;
+				continue;
+			}
+
+			line.getChars( sentenceStart, sentenceEnd, sentenceBuffer, 0 );
+			replaySentence( timeStamp, sentenceEnd - sentenceStart );
+		}
+
+		finish();
+		return sentenceCount - startCount;
+	}
+
+	/**
+	 * Set whether the simulated GPS is enabled. It is enabled by default.
+	 */
+	public void setProviderEnabled( boolean enabled )
+	{
+		locationSource.setProviderEnabled( enabled );
+	}
+
+	/**
+	 * @return the lock controller driven by the replay
+	 */
+	public GpsLockController getController()
+	{
+		return lockController;
+	}
+
+	/**
+	 * @return the number of sentences passed to the parser
+	 */
+	public int getSentenceCount()
+	{
+		return sentenceCount;
+	}
+
+	/**
+	 * @return the number of sentences skipped because the controller had turned the GPS off
+	 */
+	public int getSkippedCount()
+	{
+		return skippedCount;
+	}
+
+	/**
+	 * @return the number of log lines that did not contain a timestamped sentence
+	 */
+	public int getIgnoredLineCount()
+	{
+		return ignoredLineCount;
+	}
+
+	/**
+	 * @return the number of epochs assembled
+	 */
+	public int getEpochCount()
+	{
+		return locationSource.getEpochCount();
+	}
+
+	/**
+	 * @return the number of locations passed to the controller
+	 */
+	public int getLocationCount()
+	{
+		return locationSource.getFixCount();
+	}
+
+	/**
+	 * @return the number of status changes reported by the controller
+	 */
+	public int getStatusChangeCount()
+	{
+		return statusChangeCount;
+	}
+
+	/**
+	 * @return the number of times the reported status changed to Locked
+	 */
+	public int getLockCount()
+	{
+		return lockCount;
+	}
+
+	/**
+	 * @return the number of times the reported status changed from Locked to NoLock
+	 */
+	public int getLockLostCount()
+	{
+		return lockLostCount;
+	}
+
+	/**
+	 * @return the number of times the controller turned the GPS on
+	 */
+	public int getGpsOnCount()
+	{
+		return gpsOnCount;
+	}
+
+	/**
+	 * @return the simulated time in milliseconds that the GPS was turned on
+	 */
+	public long getGpsOnTime()
+	{
+		return gpsOnTime + ( ( updatesOn == true ) ? clock.getTime() - updatesOnSince : 0 );
+	}
+
+	/**
+	 * @return the simulated time in milliseconds covered by the replay
+	 */
+	public long getElapsedTime()
+	{
+		return ( firstTimeStamp < 0 ) ? 0 : clock.getTime() - firstTimeStamp;
+	}
+
+	/**
+	 * Replay a ring file or log from the command line and print a summary
+	 * @param args - the file to replay ( ring files must have a .ring extension ), and optionally the speed
+	 * @throws IOException
+	 */
+	public static void main( String[] args ) throws IOException
+	{
+		if ( args.length < 1 )
+		{
+			System.err.println( "Usage: NmeaReplay <file.ring | log file> [speed, 0 = as fast as possible]" );
+			return;
+		}
+
+		File replayFile = new File( args[ 0 ] );
+		NmeaReplay replay = new NmeaReplay( ( args.length > 1 ) ? Double.parseDouble( args[ 1 ] ) : 0 );
+
+		long startTime = System.nanoTime();
+		if ( replayFile.getName().endsWith( ".ring" ) == true )
+		{
+			NmeaRecorder recorder = NmeaRecorder.open( replayFile );
+			replay.replay( recorder );
+			recorder.close();
+		}
+		else
+		{
+			BufferedReader reader = new BufferedReader( new FileReader( replayFile ) );
+			try
+			{
+				replay.replay( reader );
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+		double seconds = ( System.nanoTime() - startTime ) / 1e9;
+
+		System.out.println( String.format( "Sentences %d ( %d skipped with GPS off, %d lines ignored ), epochs %d, locations %d",
+				replay.getSentenceCount(), replay.getSkippedCount(), replay.getIgnoredLineCount(), replay.getEpochCount(),
+				replay.getLocationCount() ) );
+		System.out.println( String.format( "Status changes %d, locks %d, locks lost %d, GPS turned on %d times for %.1f of %.1f seconds",
+				replay.getStatusChangeCount(), replay.getLockCount(), replay.getLockLostCount(), replay.getGpsOnCount(),
+				replay.getGpsOnTime() / 1000.0, replay.getElapsedTime() / 1000.0 ) );
+		System.out.println( String.format( "Replayed in %.3f seconds, %.0f sentences per second", seconds,
+				replay.getSentenceCount() / seconds ) );
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Start logging, as if the STARTLOGGING message had been received, if not already logging
+	 */
+	private void startLogging()
+	{
+		if ( lockController.getState() != GPSInterfaceService.TrackingState.Logging )
+		{
+			lockController.startLogging();
+		}
+	}
+
+	/**
+	 * Replay the sentence held in the sentence buffer
+	 * @param timeStamp - the time the sentence was recorded
+	 * @param length - the number of characters in the buffer
+	 */
+	private void replaySentence( long timeStamp, int length )
+	{
+		if ( firstTimeStamp < 0 )
+		{
+			firstTimeStamp = timeStamp;
+			clock.advance( timeStamp );
+			updatesOnSince = timeStamp;
+			wallStartTime = System.nanoTime();
+		}
+
+		// Deliver the previous epoch before moving the clock on
+		if ( timeStamp != epochTimeStamp )
+		{
+			locationSource.flush();
+			epochTimeStamp = timeStamp;
+		}
+
+		pace( timeStamp );
+		clock.advance( timeStamp );
+
+		if ( locationSource.parse( timeStamp, sentenceBuffer, 0, length ) == true )
+		{
+			sentenceCount++;
+		}
+		else
+		{
+			skippedCount++;
+		}
+	}
+
+	/**
+	 * Complete the current epoch
+	 */
+	private void finish()
+	{
+		locationSource.flush();
+	}
+
+	/**
+	 * Wait until it is time to replay a sentence
+	 * @param timeStamp - the time the sentence was recorded
+	 */
+	private void pace( long timeStamp )
+	{
+		if ( speed > 0 )
+		{
+			long waitNanos = wallStartTime + ( long )( ( timeStamp - firstTimeStamp ) * 1e6 / speed ) - System.nanoTime();
+			if ( waitNanos > 0 )
+			{
+				try
+				{
+					Thread.sleep( waitNanos / 1000000, ( int )( waitNanos % 1000000 ) );
+				}
+				catch ( InterruptedException exception )
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Simulates the GPS for the controller
+	 */
+	private GpsLockController.IGpsControl gpsControl = new GpsLockController.IGpsControl()
+	{
+		@Override
+		public void startUpdates()
+		{
+			if ( updatesOn == false )
+			{
+				updatesOn = true;
+				updatesOnSince = clock.getTime();
+				gpsOnCount++;
+			}
+
+			locationSource.startUpdates( updateReceiver );
+		}
+
+		@Override
+		public void stopUpdates()
+		{
+			locationSource.stopUpdates();
+
+			if ( updatesOn == true )
+			{
+				updatesOn = false;
+				gpsOnTime += clock.getTime() - updatesOnSince;
+			}
+		}
+
+		@Override
+		public boolean isProviderEnabled()
+		{
+			return locationSource.isProviderEnabled();
+		}
+
+		/**
+		 * The replay is single threaded so turn the GPS on straight away
+		 */
+		@Override
+		public void requestTurnOn()
+		{
+			lockController.turnOn();
+		}
+
+		@Override
+		public void requestTurnOff()
+		{
+			lockController.turnOff();
+		}
+
+		@Override
+		public void requestLockLost()
+		{
+			lockController.lockLost();
+		}
+
+		@Override
+		public void onStatusChanged( GpsLockController controller )
+		{
+			statusChangeCount++;
+
+			ProviderState providerStatus = controller.getProviderStatus();
+			if ( providerStatus != lastProviderStatus )
+			{
+				if ( providerStatus == ProviderState.Locked )
+				{
+					lockCount++;
+				}
+				else if ( lastProviderStatus == ProviderState.Locked )
+				{
+					lockLostCount++;
+				}
+
+				lastProviderStatus = providerStatus;
+			}
+		}
+
+		@Override
+		public long getTime()
+		{
+			return clock.getTime();
+		}
+	};
+
+	/**
+	 * Passes the updates from the location source to the controller
+	 */
+	private ILocationSource.IUpdateReceiver updateReceiver = new ILocationSource.IUpdateReceiver()
+	{
+		@Override
+		public void onFixReceived( GpsFix fix )
+		{
+			lockController.locationChanged( fix.accuracy, fix.speed );
+		}
+
+		@Override
+		public void onSatelliteStatusReceived( int satellitesInView, int satellitesInFix )
+		{
+			lockController.satelliteStatus( satellitesInView, satellitesInFix );
+		}
+
+		@Override
+		public void onSatelliteChanged( SatelliteTable table, int prn, int changes )
+		{
+		}
+
+		@Override
+		public void onNmeaReceived( long timeStamp, CharSequence sentence )
+		{
+		}
+
+		@Override
+		public void onProviderEnabled()
+		{
+			lockController.providerEnabled();
+		}
+
+		@Override
+		public void onProviderDisabled()
+		{
+			lockController.providerDisabled();
+		}
+	};
+
+	//
+	// Private data
+	//
+
+	/** Prefix of the timestamp in log lines */
+	private static final String LOG_TIME_PREFIX = "Time ";
+
+	/** Replay speed relative to real time, or 0 for as fast as possible */
+	private final double speed;
+
+	/** The simulated clock running the controller's timers */
+	private final SimulatedClock clock = new SimulatedClock();
+
+	private final NmeaLocationSource locationSource = new NmeaLocationSource();
+	private final GpsLockController lockController;
+
+	/** Holds the sentence being replayed */
+	private final char[] sentenceBuffer = new char[ 4096 ];
+
+	/** The timestamp of the first sentence replayed */
+	private long firstTimeStamp = -1;
+	private long epochTimeStamp = -1;
+
+	/** System.nanoTime when the first sentence was replayed */
+	private long wallStartTime = 0;
+
+	/** Simulated GPS state */
+	private boolean updatesOn = false;
+	private long updatesOnSince = 0;
+
+	private ProviderState lastProviderStatus = ProviderState.Disabled;
+
+	private int sentenceCount = 0;
+	private int skippedCount = 0;
+	private int ignoredLineCount = 0;
+	private int statusChangeCount = 0;
+	private int lockCount = 0;
+	private int lockLostCount = 0;
+	private int gpsOnCount = 0;
+	private long gpsOnTime = 0;
+}
@@ -0,0 +1,118 @@
+package tvs.example.serviceprototype;
+
+import java.util.ArrayList;
+
+/**
+ * A clock and timers running on simulated time, used to drive the GpsLockController on a plain JVM (see NmeaReplay and
+ * DutyCycleSimulation). Time only moves when advance is called, and any timers that fall due are expired in order on the
+ * calling thread, so a simulation gives the same result however fast it is run.
+ * Not thread safe.
+ */
+public class SimulatedClock
+{
+	//
+	// Public methods
+	//
+
+	public SimulatedClock()
+	{
+	}
+
+	/**
+	 * @return the simulated time in milliseconds
+	 */
+	public long getTime()
+	{
+		return now;
+	}
+
+	/**
+	 * @return a new timer running on this clock
+	 */
+	public ITimer createTimer()
+	{
+		SimulatedTimer timer = new SimulatedTimer();
+		timers.add( timer );
+		return timer;
+	}
+
+	/**
+	 * Move the clock on, expiring any timers that are due in order. The clock never goes backwards.
+	 * @param time - the new time
+	 */
+	public void advance( long time )
+	{
+		SimulatedTimer dueTimer;
+		do
+		{
+			dueTimer = null;
+			for ( int index = 0; index < timers.size(); index++ )
+			{
+				SimulatedTimer timer = timers.get( index );
+				if ( ( timer.running == true ) && ( timer.dueTime <= time ) && ( ( dueTimer == null ) || ( timer.dueTime < dueTimer.dueTime ) ) )
+				{
+					dueTimer = timer;
+				}
+			}
+
+			if ( dueTimer != null )
+			{
+				now = Math.max( now, dueTimer.dueTime );
+				dueTimer.running = false;
+				dueTimer.delegate.OnTimerExpired();
+			}
+		}
+		while ( dueTimer != null );
+
+		now = Math.max( now, time );
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Timer running on the simulated clock
+	 */
+	private class SimulatedTimer implements ITimer
+	{
+		@Override
+		public void registerDelegate( ITimerExpiry expiryDelegate )
+		{
+			delegate = expiryDelegate;
+		}
+
+		@Override
+		public void startTimer( long timePeriod )
+		{
+			dueTime = now + timePeriod;
+			running = true;
+		}
+
+		@Override
+		public void stopTimer()
+		{
+			running = false;
+		}
+
+		@Override
+		public Boolean isTimerRunning()
+		{
+			return running;
+		}
+
+		private ITimerExpiry delegate = null;
+		private long dueTime = 0;
+		private boolean running = false;
+	}
+
+	//
+	// Private data
+	//
+
+	/** The timers created, in order */
+	private final ArrayList<SimulatedTimer> timers = new ArrayList<SimulatedTimer>();
+
+	/** The simulated time */
+	private long now = 0;
+}
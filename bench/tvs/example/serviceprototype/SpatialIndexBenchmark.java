@@ -0,0 +1,151 @@
+package tvs.example.serviceprototype;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Queries on a large synthetic set of tracks across Great Britain: one
+ * kilometre boxes and the ten nearest points, using a SpatialIndex against
+ * looking at every point, and projecting and indexing the points. Times are
+ * per query or per build
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class SpatialIndexBenchmark
+{
+	static final int POINT_TOTAL = 2000000;
+
+	static final int QUERIES = 1024;
+
+	static final int WANTED = 10;
+
+	private final int[] centres = new int[ QUERIES ];
+
+	private final int[] results = new int[ POINT_TOTAL ];
+
+	private final double[] distances = new double[ WANTED ];
+
+	private final double[] nearestSquared = new double[ WANTED ];
+
+	private double[] latitudes;
+
+	private double[] longitudes;
+
+	private double[] x;
+
+	private double[] y;
+
+	private SpatialIndex index;
+
+	private int query = 0;
+
+	@Setup
+	public void createPoints()
+	{
+		double[][] tracks = SpatialIndexTest.createTracks( POINT_TOTAL );
+		latitudes = tracks[ 0 ];
+		longitudes = tracks[ 1 ];
+
+		// Query on the National Grid, keeping the projected points for the linear searches
+		index = SpatialIndex.build( latitudes, longitudes, SpatialIndex.Grid.OSGB );
+		x = new double[ POINT_TOTAL ];
+		y = new double[ POINT_TOTAL ];
+		double[] position = new double[ 2 ];
+		for( int i = 0; i < POINT_TOTAL; i++ )
+		{
+			index.project( latitudes[ i ], longitudes[ i ], position );
+			x[ i ] = position[ 0 ];
+			y[ i ] = position[ 1 ];
+		}
+
+		Random random = new Random( 1 );
+		for( int i = 0; i < QUERIES; i++ )
+		{
+			centres[ i ] = random.nextInt( POINT_TOTAL );
+		}
+	}
+
+	@Benchmark
+	public SpatialIndex buildOSGB()
+	{
+		return SpatialIndex.build( latitudes, longitudes, SpatialIndex.Grid.OSGB );
+	}
+
+	@Benchmark
+	public SpatialIndex buildUTM()
+	{
+		return SpatialIndex.build( latitudes, longitudes, SpatialIndex.Grid.UTM );
+	}
+
+	@Benchmark
+	public int search()
+	{
+		int centre = centres[ query++ & ( QUERIES - 1 ) ];
+		return index.search( x[ centre ] - 500, y[ centre ] - 500, x[ centre ] + 500, y[ centre ] + 500, results );
+	}
+
+	@Benchmark
+	public int searchLinear()
+	{
+		int centre = centres[ query++ & ( QUERIES - 1 ) ];
+		int found = 0;
+		for( int point = 0; point < POINT_TOTAL; point++ )
+		{
+			if( Math.abs( x[ point ] - x[ centre ] ) <= 500 && Math.abs( y[ point ] - y[ centre ] ) <= 500 )
+			{
+				found++;
+			}
+		}
+		return found;
+	}
+
+	@Benchmark
+	public double nearest()
+	{
+		int centre = centres[ query++ & ( QUERIES - 1 ) ];
+		index.nearest( x[ centre ] + 200, y[ centre ] + 200, WANTED, results, distances );
+		return distances[ WANTED - 1 ];
+	}
+
+	@Benchmark
+	public double nearestLinear()
+	{
+		int centre = centres[ query++ & ( QUERIES - 1 ) ];
+
+		// Keep the nearest squared distances found so far in order
+		Arrays.fill( nearestSquared, Double.POSITIVE_INFINITY );
+		for( int point = 0; point < POINT_TOTAL; point++ )
+		{
+			double dx = x[ point ] - x[ centre ] - 200;
+			double dy = y[ point ] - y[ centre ] - 200;
+			double squared = ( dx * dx ) + ( dy * dy );
+			if( squared < nearestSquared[ WANTED - 1 ] )
+			{
+				int position = WANTED - 1;
+				while( position > 0 && nearestSquared[ position - 1 ] > squared )
+				{
+					nearestSquared[ position ] = nearestSquared[ position - 1 ];
+					position--;
+				}
+				nearestSquared[ position ] = squared;
+			}
+		}
+		return nearestSquared[ WANTED - 1 ];
+	}
+}
@@ -0,0 +1,225 @@
+package tvs.example.serviceprototype;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import tvs.example.serviceprototype.SyntheticLocationSource.Config;
+
+/**
+ * Load test of the service's handling of the updates from a SyntheticLocationSource, on a plain JVM without a device.
+ * The BenchmarkReceiver does what the GPSInterfaceService does with each update, except for the Android broadcasts.
+ * The source is first stepped as fast as possible on simulated time, then run on its own thread at each of the given rates,
+ * recording the delivery latency and backlog. This measures a running system rather than a single method, so it is a plain
+ * tool rather than a JMH benchmark.
+ */
+public class SyntheticLoadTest
+{
+	//
+	// Public methods
+	//
+
+	/**
+	 * Run the load test and print the results
+	 * @param args - optionally the rates in Hz to run for 10 seconds each. Defaults to 1, 10 and 50 Hz
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	public static void main( String[] args ) throws InterruptedException, IOException
+	{
+		double[] rates = { 1, 10, 50 };
+		long seconds = 10;
+		if ( args.length > 0 )
+		{
+			rates = new double[ args.length ];
+			for ( int index = 0; index < args.length; index++ )
+			{
+				rates[ index ] = Double.parseDouble( args[ index ] );
+			}
+		}
+
+		// As fast as possible, with simulated time
+		Config config = new Config();
+		config.dropoutInterval = 60000;
+		SyntheticLocationSource source = new SyntheticLocationSource( config );
+		BenchmarkReceiver benchmarkReceiver = new BenchmarkReceiver();
+		source.startUpdates( benchmarkReceiver );
+
+		int steps = 2000000;
+		long startTime = System.nanoTime();
+		for ( int step = 0; step < steps; step++ )
+		{
+			source.step();
+		}
+		double elapsed = ( System.nanoTime() - startTime ) / 1e9;
+		benchmarkReceiver.close();
+		System.out.println( String.format( "Unpaced: %d epochs, %d fixes in %.3f seconds, %.0f epochs per second. %s", source.getEpochCount(),
+				source.getFixCount(), elapsed, steps / elapsed, benchmarkReceiver ) );
+
+		// At each rate, delivered on a separate thread
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		for ( double rate : rates )
+		{
+			config = new Config();
+			config.rate = rate;
+			config.dropoutInterval = 60000;
+			source = new SyntheticLocationSource( config, executor );
+			benchmarkReceiver = new BenchmarkReceiver();
+			source.startUpdates( benchmarkReceiver );
+			Thread.sleep( seconds * 1000 );
+			source.stopUpdates();
+			benchmarkReceiver.close();
+
+			System.out.println( String.format( "%.0f Hz: %d epochs in %d seconds, latency mean %.1f us max %.1f us, max backlog %d. %s",
+					rate, source.getEpochCount(), seconds, source.getMeanLatency() / 1000.0, source.getMaxLatency() / 1000.0,
+					source.getMaxBacklog(), benchmarkReceiver ) );
+		}
+
+		// The timer thread used by GenericTimer would keep the JVM running
+		executor.shutdown();
+		System.exit( 0 );
+	}
+
+	//
+	// Private types and interfaces
+	//
+
+	/**
+	 * Stands in for the service. Each update is passed to the lock controller, the satellite history and,
+	 * while logging, a track writer on a temporary file, and the status is read as if for a broadcast whenever it changes
+	 */
+	private static class BenchmarkReceiver implements ILocationSource.IUpdateReceiver
+	{
+		public BenchmarkReceiver() throws IOException
+		{
+			trackFile = File.createTempFile( "synthetic", ".track" );
+			trackFile.deleteOnExit();
+			trackWriter = new TrackWriter( new TrackStore( trackFile ) );
+
+			lockController = new GpsLockController( gpsControl, new GenericTimer(), new GenericTimer(), new GenericTimer() );
+			lockController.startLogging();
+		}
+
+		/**
+		 * Close and delete the track
+		 */
+		public void close() throws IOException
+		{
+			trackWriter.close();
+			trackFile.delete();
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format( "%d status changes, %d fixes written, %d dropped", statusCount, trackWriter.getWrittenCount(),
+					trackWriter.getDroppedCount() );
+		}
+
+		@Override
+		public void onFixReceived( GpsFix fix )
+		{
+			lockController.locationChanged( fix.accuracy, fix.speed );
+
+			if ( lockController.getState() == GPSInterfaceService.TrackingState.Logging )
+			{
+				trackWriter.offer( fix );
+			}
+		}
+
+		@Override
+		public void onSatelliteStatusReceived( int satellitesInView, int satellitesInFix )
+		{
+			lockController.satelliteStatus( satellitesInView, satellitesInFix );
+		}
+
+		@Override
+		public void onSatelliteChanged( SatelliteTable table, int prn, int changes )
+		{
+			satelliteHistory.onSatelliteChanged( table, prn, changes );
+		}
+
+		@Override
+		public void onNmeaReceived( long timeStamp, CharSequence sentence )
+		{
+		}
+
+		@Override
+		public void onProviderEnabled()
+		{
+			lockController.providerEnabled();
+		}
+
+		@Override
+		public void onProviderDisabled()
+		{
+			lockController.providerDisabled();
+		}
+
+		/** The GPS is left on so that the whole run is measured */
+		private final GpsLockController.IGpsControl gpsControl = new GpsLockController.IGpsControl()
+		{
+			@Override
+			public void startUpdates()
+			{
+			}
+
+			@Override
+			public void stopUpdates()
+			{
+			}
+
+			@Override
+			public boolean isProviderEnabled()
+			{
+				return true;
+			}
+
+			@Override
+			public void requestTurnOn()
+			{
+			}
+
+			@Override
+			public void requestTurnOff()
+			{
+			}
+
+			@Override
+			public void requestLockLost()
+			{
+			}
+
+			/**
+			 * Read the status as GPSInterfaceService.BroadcastStatusChange does
+			 */
+			@Override
+			public void onStatusChanged( GpsLockController controller )
+			{
+				statusCount++;
+				status.state = controller.getState();
+				status.providerStatus = controller.getProviderStatus();
+				status.satellitesInView = controller.getSatellitesInView();
+				status.satellitesInFix = controller.getSatellitesInFix();
+				status.meanSnr = satelliteHistory.getMeanUsedSnr();
+				status.geometrySpread = satelliteHistory.getGeometrySpread();
+			}
+
+			@Override
+			public long getTime()
+			{
+				return System.currentTimeMillis();
+			}
+		};
+
+		private final GpsLockController lockController;
+		private final SatelliteHistory satelliteHistory = new SatelliteHistory();
+		private final TrackingStatus status = new TrackingStatus( GPSInterfaceService.TrackingState.Stopped,
+				GPSInterfaceService.ProviderState.Disabled, 0, 0, 0, 0 );
+		private int statusCount = 0;
+
+		private final File trackFile;
+		private final TrackWriter trackWriter;
+	}
+}
@@ -0,0 +1,73 @@
+package tvs.example.serviceprototype;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Encoding and decoding a synthetic track with TrackCodec. Times are per fix
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@OperationsPerInvocation( TrackCodecBenchmark.COUNT )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class TrackCodecBenchmark
+{
+	static final int COUNT = 100000;
+
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream( COUNT * TrackCodec.MAX_FIX_SIZE );
+
+	private final GpsFix fix = new GpsFix();
+
+	private GpsFix[] track;
+
+	private byte[] encoded;
+
+	@Setup
+	public void createTrack() throws IOException
+	{
+		track = RandomWalk.createTrack( 1, COUNT );
+		encode();
+		encoded = output.toByteArray();
+	}
+
+	@Benchmark
+	public int encode() throws IOException
+	{
+		output.reset();
+		TrackCodec.Encoder encoder = new TrackCodec.Encoder( output );
+		for( int i = 0; i < COUNT; i++ )
+		{
+			encoder.encode( track[ i ] );
+		}
+		encoder.flush();
+		return output.size();
+	}
+
+	@Benchmark
+	public void decode( Blackhole blackhole ) throws IOException
+	{
+		TrackCodec.Decoder decoder = new TrackCodec.Decoder( new ByteArrayInputStream( encoded ) );
+		while( decoder.decode( fix ) == true )
+		{
+			blackhole.consume( fix.latitude );
+		}
+	}
+}
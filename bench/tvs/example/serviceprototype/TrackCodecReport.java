@@ -0,0 +1,189 @@
+package tvs.example.serviceprototype;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Reports how well TrackCodec compresses a recorded track: the encoded size against the fixes held as a time and six doubles,
+ * and the largest position error after a round trip. This measures sizes rather than time, so it is a plain tool; the encode
+ * and decode times are measured by TrackCodecBenchmark.
+ */
+public class TrackCodecReport
+{
+	//
+	// Public methods
+	//
+
+	/**
+	 * Encode a recorded track and print the compression ratio and round trip error
+	 * @param args - an NMEA ring file (.ring), a log of NMEA sentences, or a track file (.dat)
+	 * @throws IOException
+	 */
+	public static void main( String[] args ) throws IOException
+	{
+		if ( args.length < 1 )
+		{
+			System.err.println( "Usage: TrackCodecReport <file.ring | file.dat | log file>" );
+			return;
+		}
+
+		// Load the fixes
+		final ArrayList<GpsFix> fixes = new ArrayList<GpsFix>();
+		File trackFile = new File( args[ 0 ] );
+
+		if ( trackFile.getName().endsWith( ".dat" ) == true )
+		{
+			TrackStore store = new TrackStore( trackFile );
+			store.read(
+					new TrackStore.IFixReceiver()
+					{
+						@Override
+						public void onFixReceived( GpsFix fix )
+						{
+							GpsFix copy = new GpsFix();
+							copy.set( fix );
+							fixes.add( copy );
+						}
+					}
+			);
+			store.close();
+		}
+		else
+		{
+			NmeaLocationSource source = new NmeaLocationSource();
+			source.startUpdates(
+					new ILocationSource.IUpdateReceiver()
+					{
+						@Override
+						public void onFixReceived( GpsFix fix )
+						{
+							GpsFix copy = new GpsFix();
+							copy.set( fix );
+							fixes.add( copy );
+						}
+
+						@Override
+						public void onSatelliteStatusReceived( int satellitesInView, int satellitesInFix )
+						{
+						}
+
+						@Override
+						public void onSatelliteChanged( SatelliteTable table, int prn, int changes )
+						{
+						}
+
+						@Override
+						public void onNmeaReceived( long timeStamp, CharSequence sentence )
+						{
+						}
+
+						@Override
+						public void onProviderEnabled()
+						{
+						}
+
+						@Override
+						public void onProviderDisabled()
+						{
+						}
+					}
+			);
+
+			if ( trackFile.getName().endsWith( ".ring" ) == true )
+			{
+				final NmeaLocationSource ringSource = source;
+				final char[] sentence = new char[ 256 ];
+				NmeaRecorder recorder = NmeaRecorder.open( trackFile );
+				recorder.read(
+						new NmeaRecorder.IRecordReceiver()
+						{
+							@Override
+							public void onRecordReceived( long timeStamp, byte[] data, int length )
+							{
+								length = Math.min( length, sentence.length );
+								for ( int index = 0; index < length; index++ )
+								{
+									sentence[ index ] = ( char )data[ index ];
+								}
+
+								ringSource.parse( timeStamp, sentence, 0, length );
+							}
+						}
+				);
+				recorder.close();
+			}
+			else
+			{
+				// Log lines of the form "Time <timestamp> : [<sentence>]"
+				BufferedReader reader = new BufferedReader( new FileReader( trackFile ) );
+				try
+				{
+					String line;
+					while ( ( line = reader.readLine() ) != null )
+					{
+						int timeIndex = line.indexOf( "Time " );
+						int sentenceStart = line.indexOf( "[$" );
+						if ( ( timeIndex >= 0 ) && ( sentenceStart > timeIndex ) )
+						{
+							int timeEnd = line.indexOf( ' ', timeIndex + 5 );
+							int sentenceEnd = line.indexOf( ']', sentenceStart );
+							source.parse( Long.parseLong( line.substring( timeIndex + 5, timeEnd ) ),
+									line.substring( sentenceStart + 1, ( sentenceEnd < 0 ) ? line.length() : sentenceEnd ) );
+						}
+					}
+				}
+				finally
+				{
+					reader.close();
+				}
+			}
+
+			source.flush();
+			source.stopUpdates();
+		}
+
+		if ( fixes.isEmpty() == true )
+		{
+			System.err.println( "No fixes in " + trackFile );
+			return;
+		}
+
+		// Encode the track, then decode it and compare
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		TrackCodec.Encoder encoder = new TrackCodec.Encoder( encoded );
+		for ( int index = 0; index < fixes.size(); index++ )
+		{
+			encoder.encode( fixes.get( index ) );
+		}
+		encoder.flush();
+
+		byte[] data = encoded.toByteArray();
+		TrackCodec.Decoder decoder = new TrackCodec.Decoder( new ByteArrayInputStream( data ) );
+		GpsFix fix = new GpsFix();
+		double maxError = 0;
+		int index = 0;
+		while ( decoder.decode( fix ) == true )
+		{
+			GpsFix original = fixes.get( index++ );
+			maxError = Math.max( maxError, Math.max( Math.abs( original.latitude - fix.latitude ),
+					Math.abs( original.longitude - fix.longitude ) ) );
+		}
+
+		int rawSize = fixes.size() * RAW_FIX_SIZE;
+		System.out.println( String.format( "%d fixes: %d bytes raw, %d bytes encoded, %.2f bytes per fix, ratio %.1f : 1", fixes.size(),
+				rawSize, data.length, ( double )data.length / fixes.size(), ( double )rawSize / data.length ) );
+		System.out.println( String.format( "Max position error %.1e degrees", maxError ) );
+	}
+
+	//
+	// Private data
+	//
+
+	/** Size of a fix held as a time and six doubles */
+	private static final int RAW_FIX_SIZE = 7 * 8;
+}
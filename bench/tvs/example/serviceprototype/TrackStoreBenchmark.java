@@ -0,0 +1,157 @@
+package tvs.example.serviceprototype;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads from a long synthetic track in a TrackStore: ten minute time ranges
+ * using the index against reading the whole track and filtering it, one
+ * kilometre boxes around points on the track, and opening, indexing and
+ * closing the file. Times are per query or per open
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class TrackStoreBenchmark
+{
+	static final int FIX_TOTAL = 1000000;
+
+	static final int QUERIES = 1024;
+
+	static final long RANGE = 600000;
+
+	private final long[] rangeStarts = new long[ QUERIES ];
+
+	private final GpsFix[] centres = new GpsFix[ QUERIES ];
+
+	private final Counter counter = new Counter();
+
+	private File trackFile;
+
+	private TrackStore store;
+
+	private int query = 0;
+
+	@Setup
+	public void createTrack() throws IOException
+	{
+		trackFile = File.createTempFile( "track", ".dat" );
+		TrackStore writer = new TrackStore( trackFile, TrackStore.SyncPolicy.None, 0, TrackStore.DEFAULT_BLOCK_CAPACITY,
+				TrackStore.DEFAULT_COMMIT_AGE );
+		RandomWalk walk = new RandomWalk( 1 );
+		GpsFix fix = new GpsFix();
+		walk.start( fix );
+		for( int i = 0; i < FIX_TOTAL; i++ )
+		{
+			walk.next( fix );
+			writer.append( fix );
+		}
+		writer.close();
+
+		store = new TrackStore( trackFile );
+		long trackStart = store.getStartTime();
+		long trackLength = store.getEndTime() - trackStart;
+		Random random = new Random( 1 );
+		for( int i = 0; i < QUERIES; i++ )
+		{
+			rangeStarts[ i ] = trackStart + ( long )( random.nextDouble() * trackLength );
+		}
+
+		// The first fix after a random time on the track
+		for( int i = 0; i < QUERIES; i++ )
+		{
+			final GpsFix centre = new GpsFix();
+			centres[ i ] = centre;
+			store.read( rangeStarts[ i ], Long.MAX_VALUE,
+					new TrackStore.IFixReceiver()
+					{
+						@Override
+						public void onFixReceived( GpsFix fix )
+						{
+							if( Double.isNaN( centre.latitude ) == true )
+							{
+								centre.set( fix );
+							}
+						}
+					}
+			);
+		}
+	}
+
+	@TearDown
+	public void deleteTrack() throws IOException
+	{
+		store.close();
+		trackFile.delete();
+	}
+
+	@Benchmark
+	public int readTimeRange() throws IOException
+	{
+		long rangeStart = rangeStarts[ query++ & ( QUERIES - 1 ) ];
+		return store.read( rangeStart, rangeStart + RANGE, counter );
+	}
+
+	@Benchmark
+	public int readTimeRangeByScan() throws IOException
+	{
+		counter.rangeStart = rangeStarts[ query++ & ( QUERIES - 1 ) ];
+		counter.count = 0;
+		store.read( counter );
+		return counter.count;
+	}
+
+	@Benchmark
+	public int readBox() throws IOException
+	{
+		GpsFix centre = centres[ query++ & ( QUERIES - 1 ) ];
+		double halfSize = 500 / RandomWalk.METRES_PER_DEGREE;
+		return store.read( Long.MIN_VALUE, Long.MAX_VALUE, centre.latitude - halfSize, centre.longitude - halfSize,
+				centre.latitude + halfSize, centre.longitude + halfSize, counter );
+	}
+
+	@Benchmark
+	public int openAndIndex() throws IOException
+	{
+		TrackStore opened = new TrackStore( trackFile );
+		int blockCount = opened.getBlockCount();
+		opened.close();
+		return blockCount;
+	}
+
+	/**
+	 * Counts the fixes in the time range, for reads without the index
+	 */
+	private static final class Counter implements TrackStore.IFixReceiver
+	{
+		long rangeStart;
+
+		int count;
+
+		@Override
+		public void onFixReceived( GpsFix fix )
+		{
+			if( fix.time >= rangeStart && fix.time <= rangeStart + RANGE )
+			{
+				count++;
+			}
+		}
+	}
+}
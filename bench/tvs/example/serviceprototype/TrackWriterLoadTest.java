@@ -0,0 +1,83 @@
+package tvs.example.serviceprototype;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compares the time the producer spends writing a track directly to a TrackStore with the time it spends offering it to a
+ * TrackWriter, while the writer thread commits and syncs the file. The producer is paced, and the distribution of the call times
+ * matters as much as the mean, so this is a plain tool rather than a JMH benchmark.
+ */
+public class TrackWriterLoadTest
+{
+	//
+	// Public methods
+	//
+
+	/**
+	 * Run the comparison and print the results
+	 * @param args - the number of fixes to write, default 20000
+	 * @throws IOException
+	 */
+	public static void main( String[] args ) throws IOException
+	{
+		int fixCount = ( args.length > 0 ) ? Integer.parseInt( args[ 0 ] ) : 20000;
+		GpsFix[] fixes = RandomWalk.createTrack( 1, fixCount );
+
+		// Small blocks, synced on every commit, so the cost of the file is visible
+		int blockSize = 60;
+		System.out.println( String.format( "%-8s %12s %12s %12s %8s %8s %10s %10s", "Writer", "Mean us", "99.9% us", "Max us", "Dropped",
+				"Batches", "Mean ms", "Max ms" ) );
+
+		for ( int pass = 0; pass < 2; pass++ )
+		{
+			File file = File.createTempFile( "track", ".dat" );
+			TrackStore store = new TrackStore( file, TrackStore.SyncPolicy.EveryCommit, 0, blockSize, Long.MAX_VALUE );
+			TrackWriter writer = ( pass == 0 ) ? null : new TrackWriter( store, TrackWriter.DEFAULT_QUEUE_CAPACITY, blockSize, 1000 );
+
+			long[] callTimes = new long[ fixCount ];
+			for ( int index = 0; index < fixCount; index++ )
+			{
+				long startTime = System.nanoTime();
+				if ( writer == null )
+				{
+					store.append( fixes[ index ] );
+				}
+				else
+				{
+					writer.offer( fixes[ index ] );
+				}
+				callTimes[ index ] = System.nanoTime() - startTime;
+
+				// Pace the producer at about 10000 fixes a second, so the writer is not permanently behind
+				long waitUntil = startTime + 100000;
+				while ( System.nanoTime() < waitUntil )
+				{
+				}
+			}
+
+			if ( writer == null )
+			{
+				store.close();
+			}
+			else
+			{
+				writer.close();
+			}
+			file.delete();
+
+			long total = 0;
+			for ( int index = 0; index < fixCount; index++ )
+			{
+				total += callTimes[ index ];
+			}
+			Arrays.sort( callTimes );
+
+			System.out.println( String.format( "%-8s %12.2f %12.2f %12.2f %8d %8d %10.2f %10.2f", ( writer == null ) ? "Direct" : "Queued",
+					total / 1e3 / fixCount, callTimes[ ( int )( fixCount * 0.999 ) ] / 1e3, callTimes[ fixCount - 1 ] / 1e3,
+					( writer == null ) ? 0 : writer.getDroppedCount(), ( writer == null ) ? store.getCommitCount() : writer.getBatchCount(),
+					( writer == null ) ? 0 : writer.getMeanLatency(), ( writer == null ) ? 0 : writer.getMaxLatency() ) );
+		}
+	}
+}
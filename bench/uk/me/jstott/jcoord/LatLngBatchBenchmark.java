@@ -0,0 +1,144 @@
+package uk.me.jstott.jcoord;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The batch conversions of {@link LatLngBatch} against converting the same
+ * points one at a time with the Jcoord 1.1 code in {@link BaselineConversions}
+ * and with the current {@link LatLng} methods. Times are per point; run with
+ * -prof gc to see the allocation per point, which is zero for the batch
+ * conversions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(LatLngBatchBenchmark.COUNT)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatLngBatchBenchmark {
+
+  static final int COUNT = 100000;
+
+  private final double[] latitude = new double[COUNT];
+
+  private final double[] longitude = new double[COUNT];
+
+  private final double[] first = new double[COUNT];
+
+  private final double[] second = new double[COUNT];
+
+  private final int[] lngZone = new int[COUNT];
+
+  private final char[] latZone = new char[COUNT];
+
+
+  @Setup
+  public void createPoints() {
+    Random random = new Random(1);
+    for (int i = 0; i < COUNT; i++) {
+      latitude[i] = 50 + random.nextDouble() * 8;
+      longitude[i] = -6 + random.nextDouble() * 8;
+    }
+  }
+
+
+  @Benchmark
+  public double[] toOSRefBatch() {
+    LatLngBatch.toOSRef(latitude, longitude, first, second);
+    return first;
+  }
+
+
+  @Benchmark
+  public void toOSRefBaseline(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(BaselineConversions.toOSRef(latitude[i], longitude[i]));
+    }
+  }
+
+
+  @Benchmark
+  public void toOSRefLatLng(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(new LatLng(latitude[i], longitude[i]).toOSRef());
+    }
+  }
+
+
+  @Benchmark
+  public double[] toUTMRefBatch() {
+    LatLngBatch.toUTMRef(latitude, longitude, lngZone, latZone, first, second);
+    return first;
+  }
+
+
+  @Benchmark
+  public void toUTMRefBaseline(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(BaselineConversions.toUTMRef(latitude[i], longitude[i]));
+    }
+  }
+
+
+  @Benchmark
+  public void toUTMRefLatLng(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(new LatLng(latitude[i], longitude[i]).toUTMRef());
+    }
+  }
+
+
+  @Benchmark
+  public double[] toOSGB36Batch() {
+    LatLngBatch.toOSGB36(latitude, longitude, null, first, second);
+    return first;
+  }
+
+
+  @Benchmark
+  public void toOSGB36Baseline(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(BaselineConversions.toOSGB36(latitude[i], longitude[i]));
+    }
+  }
+
+
+  @Benchmark
+  public void toOSGB36LatLng(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      LatLng ll = new LatLng(latitude[i], longitude[i]);
+      ll.toOSGB36();
+      blackhole.consume(ll);
+    }
+  }
+
+
+  @Benchmark
+  public double[] toWGS84Batch() {
+    LatLngBatch.toWGS84(latitude, longitude, null, first, second);
+    return first;
+  }
+
+
+  @Benchmark
+  public void toWGS84Baseline(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(BaselineConversions.toWGS84(latitude[i], longitude[i]));
+    }
+  }
+}
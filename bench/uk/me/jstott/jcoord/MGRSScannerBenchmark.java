@@ -0,0 +1,80 @@
+package uk.me.jstott.jcoord;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reading a list of MGRS references of mixed precision: the Jcoord 1.1
+ * MGRSRef(String), which compiled a Pattern and took substrings for each
+ * reference, against the current MGRSRef(String) and a reused
+ * {@link MGRSScanner}, with and without creating an MGRSRef. Times are per
+ * reference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(MGRSScannerBenchmark.COUNT)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MGRSScannerBenchmark {
+
+  static final int COUNT = 10000;
+
+  private final MGRSScanner scanner = new MGRSScanner();
+
+  private String[] refs;
+
+
+  @Setup
+  public void createReferences() {
+    refs = MGRSScannerTest.createReferences(COUNT);
+  }
+
+
+  @Benchmark
+  public void parseBaseline(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(BaselineConversions.toMGRSRef(refs[i]));
+    }
+  }
+
+
+  @Benchmark
+  public void parseMGRSRef(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(new MGRSRef(refs[i]));
+    }
+  }
+
+
+  @Benchmark
+  public void scan(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      scanner.scan(refs[i]);
+      blackhole.consume(scanner.getEasting());
+      blackhole.consume(scanner.getNorthing());
+    }
+  }
+
+
+  @Benchmark
+  public void scanToMGRSRef(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      scanner.scan(refs[i]);
+      blackhole.consume(scanner.toMGRSRef(false));
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package uk.me.jstott.jcoord;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The British National Grid projection in both directions: the Jcoord 1.1
+ * code in {@link BaselineConversions}, the LatLng and OSRef methods built on
+ * {@link OSGBProjection}, and the projection's array methods. Times are per
+ * point over a track of random points covering Great Britain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(OSGBProjectionBenchmark.COUNT)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OSGBProjectionBenchmark {
+
+  static final int COUNT = 100000;
+
+  private final OSGBProjection projection = OSGBProjection.getInstance();
+
+  private final double[] latitude = new double[COUNT];
+
+  private final double[] longitude = new double[COUNT];
+
+  private final double[] easting = new double[COUNT];
+
+  private final double[] northing = new double[COUNT];
+
+  private final double[] first = new double[COUNT];
+
+  private final double[] second = new double[COUNT];
+
+
+  @Setup
+  public void createPoints() {
+    Random random = new Random(1);
+    for (int i = 0; i < COUNT; i++) {
+      latitude[i] = 50 + random.nextDouble() * 8;
+      longitude[i] = -6 + random.nextDouble() * 8;
+    }
+    projection.toGrid(latitude, longitude, easting, northing, COUNT);
+  }
+
+
+  @Benchmark
+  public void toGridBaseline(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(BaselineConversions.toOSRef(latitude[i], longitude[i]));
+    }
+  }
+
+
+  @Benchmark
+  public void toGridLatLng(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(new LatLng(latitude[i], longitude[i]).toOSRef());
+    }
+  }
+
+
+  @Benchmark
+  public double[] toGridArrays() {
+    projection.toGrid(latitude, longitude, first, second, COUNT);
+    return first;
+  }
+
+
+  @Benchmark
+  public void toLatLngBaseline(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(BaselineConversions.toLatLng(easting[i], northing[i]));
+    }
+  }
+
+
+  @Benchmark
+  public void toLatLngOSRef(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(new OSRef(easting[i], northing[i]).toLatLng());
+    }
+  }
+
+
+  @Benchmark
+  public double[] toLatLngArrays() {
+    projection.toLatLng(easting, northing, first, second, COUNT);
+    return first;
+  }
+}
@@ -0,0 +1,102 @@
+package uk.me.jstott.jcoord;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The UTM projection in both directions against the Jcoord 1.1 code in
+ * {@link BaselineConversions}. Times are per point over random points
+ * anywhere on the UTM grid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(UTMProjectionBenchmark.COUNT)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UTMProjectionBenchmark {
+
+  static final int COUNT = 100000;
+
+  private final UTMProjection projection = UTMProjection.getInstance();
+
+  private final double[] latitude = new double[COUNT];
+
+  private final double[] longitude = new double[COUNT];
+
+  private final int[] lngZone = new int[COUNT];
+
+  private final char[] latZone = new char[COUNT];
+
+  private final double[] easting = new double[COUNT];
+
+  private final double[] northing = new double[COUNT];
+
+  private final UTMRef[] refs = new UTMRef[COUNT];
+
+  private final double[] first = new double[COUNT];
+
+  private final double[] second = new double[COUNT];
+
+
+  @Setup
+  public void createPoints() {
+    Random random = new Random(1);
+    for (int i = 0; i < COUNT; i++) {
+      latitude[i] = -80 + random.nextDouble() * 164;
+      longitude[i] = -180 + random.nextDouble() * 360;
+    }
+    projection.toGrid(latitude, longitude, lngZone, latZone, easting,
+        northing, COUNT);
+    for (int i = 0; i < COUNT; i++) {
+      refs[i] = new UTMRef(lngZone[i], latZone[i], easting[i], northing[i]);
+    }
+  }
+
+
+  @Benchmark
+  public void toGridBaseline(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(BaselineConversions.toUTMRef(latitude[i],
+          longitude[i]));
+    }
+  }
+
+
+  @Benchmark
+  public double[] toGridArrays() {
+    projection.toGrid(latitude, longitude, lngZone, latZone, first, second,
+        COUNT);
+    return first;
+  }
+
+
+  @Benchmark
+  public void toLatLngBaseline(Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(BaselineConversions.toLatLng(refs[i]));
+    }
+  }
+
+
+  @Benchmark
+  public double[] toLatLngArrays() {
+    projection.toLatLng(lngZone, latZone, easting, northing, first, second,
+        COUNT);
+    return first;
+  }
+}
@@ -0,0 +1,83 @@
+package uk.me.jstott.jcoord.ellipsoid;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The cost per position of each {@link GeodeticInversion} strategy on the
+ * WGS84 ellipsoid, for random latitudes and heights between -1000m and 10000m.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(GeodeticInversionBenchmark.COUNT)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeodeticInversionBenchmark {
+
+  static final int COUNT = 100000;
+
+  private final double[] p = new double[COUNT];
+
+  private final double[] z = new double[COUNT];
+
+  private double a;
+
+  private double eSquared;
+
+
+  @Setup
+  public void createPositions() {
+    Ellipsoid ellipsoid = WGS84Ellipsoid.getInstance();
+    a = ellipsoid.getSemiMajorAxis();
+    eSquared = ellipsoid.getEccentricitySquared();
+    Random random = new Random(1);
+    for (int i = 0; i < COUNT; i++) {
+      double latitude = (random.nextDouble() - 0.5) * Math.PI;
+      double height = -1000 + random.nextDouble() * 11000;
+      double sinPhi = Math.sin(latitude);
+      double v = a / Math.sqrt(1 - eSquared * sinPhi * sinPhi);
+      p[i] = (v + height) * Math.cos(latitude);
+      z[i] = ((1 - eSquared) * v + height) * sinPhi;
+    }
+  }
+
+
+  @Benchmark
+  public void iterative(Blackhole blackhole) {
+    run(GeodeticInversion.ITERATIVE, blackhole);
+  }
+
+
+  @Benchmark
+  public void convergent(Blackhole blackhole) {
+    run(GeodeticInversion.CONVERGENT, blackhole);
+  }
+
+
+  @Benchmark
+  public void bowring(Blackhole blackhole) {
+    run(GeodeticInversion.BOWRING, blackhole);
+  }
+
+
+  private void run(GeodeticInversion inversion, Blackhole blackhole) {
+    for (int i = 0; i < COUNT; i++) {
+      blackhole.consume(inversion.latitude(p[i], z[i], a, eSquared));
+    }
+  }
+}
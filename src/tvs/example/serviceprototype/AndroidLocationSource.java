@@ -0,0 +1,293 @@
+package tvs.example.serviceprototype;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import android.location.GpsSatellite;
+import android.location.GpsStatus;
+import android.location.GpsStatus.Listener;
+import android.location.GpsStatus.NmeaListener;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.Bundle;
+
+/**
+ * ILocationSource using the Android GPS provider.
+ * Updates are delivered on the thread that called startUpdates, which must have a Looper.
+ * In motion aware mode the location updates are requested again with time and distance filters chosen by a LocationThrottle
+ * whenever the device starts or stops moving, so fewer fixes are delivered while stationary or slow. The filters only save
+ * anything while the GPS is left on for a while, so the mode is switched on with setMotionAware when the duty cycling leaves
+ * the GPS on, and switched off again whenever the updates are stopped.
+ */
+public class AndroidLocationSource implements ILocationSource, LocationListener
+{
+	//
+	// Public methods
+	//
+
+	/**
+	 * @param locationManager - the LocationManager to get the updates from
+	 */
+	public AndroidLocationSource( LocationManager locationManager )
+	{
+		this( locationManager, false );
+	}
+
+	/**
+	 * @param locationManager - the LocationManager to get the updates from
+	 * @param motionAware - true to allow the location updates to be filtered according to how fast the device is moving
+	 */
+	public AndroidLocationSource( LocationManager locationManager, boolean motionAware )
+	{
+		gpsLocationManager = locationManager;
+		throttle = ( motionAware == true ) ? new LocationThrottle() : null;
+	}
+
+	/**
+	 * Ask for status, location and NMEA updates
+	 * @param updateReceiver - the receiver
+	 */
+	@Override
+	public void startUpdates( IUpdateReceiver updateReceiver )
+	{
+		receiver = updateReceiver;
+
+		// Start with unfiltered updates so that a new lock is not held back
+		if ( throttle != null )
+		{
+			throttle.reset();
+		}
+
+		gpsLocationManager.requestLocationUpdates( LocationManager.GPS_PROVIDER, GPS_INTERVAL, GPS_DISTANCE, this );
+		gpsLocationManager.addGpsStatusListener( statusListener );
+		gpsLocationManager.addNmeaListener( nmeaListener );
+	}
+
+	/**
+	 * Turn the motion aware filtering on or off while the updates are running. Ignored if it was not allowed when the source
+	 * was created.
+	 * @param enabled - true to filter the location updates according to how fast the device is moving
+	 */
+	public void setMotionAware( boolean enabled )
+	{
+		if ( ( throttle == null ) || ( enabled == motionAware ) )
+		{
+			return;
+		}
+
+		motionAware = enabled;
+
+		// Go back to unfiltered updates if the filters had been tightened
+		if ( ( enabled == false ) && ( throttle.getMotion() != LocationThrottle.Motion.Moving ) )
+		{
+			gpsLocationManager.requestLocationUpdates( LocationManager.GPS_PROVIDER, GPS_INTERVAL, GPS_DISTANCE, this );
+		}
+
+		throttle.reset();
+	}
+
+	/**
+	 * Remove all the listeners from the location manager
+	 */
+	@Override
+	public void stopUpdates()
+	{
+		motionAware = false;
+
+		gpsLocationManager.removeUpdates( this );
+		gpsLocationManager.removeGpsStatusListener( statusListener );
+		gpsLocationManager.removeNmeaListener( nmeaListener );
+
+		// Start afresh next time, so that all the satellites are reported
+		synchronized ( statusListener )
+		{
+			satelliteTable.clear();
+			satellitesInView = -1;
+			satellitesInFix = -1;
+		}
+	}
+
+	@Override
+	public boolean isProviderEnabled()
+	{
+		return gpsLocationManager.isProviderEnabled( LocationManager.GPS_PROVIDER );
+	}
+
+	/**
+	 * Called when the location has changed.
+	 * Copy the location into the fix and pass it on
+	 */
+	@Override
+	public void onLocationChanged( Location location )
+	{
+		fix.time = location.getTime();
+		fix.latitude = location.getLatitude();
+		fix.longitude = location.getLongitude();
+		fix.altitude = location.hasAltitude() ? location.getAltitude() : Double.NaN;
+		fix.accuracy = location.hasAccuracy() ? location.getAccuracy() : Float.NaN;
+		fix.speed = location.hasSpeed() ? location.getSpeed() : Float.NaN;
+		fix.bearing = location.hasBearing() ? location.getBearing() : Float.NaN;
+
+		// Requesting the updates again with the same listener replaces the filters
+		if ( ( motionAware == true ) && ( throttle.locationChanged( fix.time, fix.accuracy, fix.speed ) == true ) )
+		{
+			log.info( "Motion {} : updates every {} ms / {} m", new Object[] { throttle.getMotion(), throttle.getInterval(),
+					throttle.getDistance() } );
+
+			gpsLocationManager.requestLocationUpdates( LocationManager.GPS_PROVIDER, throttle.getInterval(), throttle.getDistance(), this );
+		}
+
+		receiver.onFixReceived( fix );
+	}
+
+	/**
+	 * Called when the provider is disabled by the user
+	 * @param provider - name of the provider that has been disabled
+	 */
+	@Override
+	public void onProviderDisabled( String provider )
+	{
+		receiver.onProviderDisabled();
+	}
+
+	/**
+	 * Called when the provider is enabled by the user
+	 * @param provider - name of the provider that has been enabled
+	 */
+	@Override
+	public void onProviderEnabled( String provider )
+	{
+		receiver.onProviderEnabled();
+	}
+
+	/**
+	 * Called when the provider status changes. This method is called when a provider is unable to fetch a location or if the provider has
+	 *  recently become available after a period of unavailability.
+	 *  No action
+	 */
+	@Override
+	public void onStatusChanged( String provide, int status, Bundle extras )
+	{
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Listener instance used for receiving notifications when GPS status has changed
+	 */
+	private Listener statusListener = new GpsStatus.Listener()
+	{
+		/**
+		 * Called to report changes in the GPS status
+		 * @param event - one of
+		 * GPS_EVENT_STARTED
+		 * GPS_EVENT_STOPPED
+		 * GPS_EVENT_FIRST_FIX
+		 * GPS_EVENT_SATELLITE_STATUS
+		 */
+		@Override
+		public synchronized void onGpsStatusChanged( int event )
+		{
+			switch ( event )
+			{
+				case GpsStatus.GPS_EVENT_SATELLITE_STATUS:
+				case GpsStatus.GPS_EVENT_FIRST_FIX:
+				{
+					// Update the satellite table in place, reusing the status, and report the satellites that have changed
+					gpsStatus = gpsLocationManager.getGpsStatus( gpsStatus );
+
+					satelliteTable.beginUpdate();
+					for ( GpsSatellite satellite : gpsStatus.getSatellites() )
+					{
+						satelliteTable.update( satellite.getPrn(), satellite.getSnr(), satellite.getElevation(), satellite.getAzimuth(),
+								satellite.usedInFix() );
+					}
+					satelliteTable.endUpdate();
+
+					// Only report the counts if they have changed
+					int newNumberOfSatellites = satelliteTable.getInViewCount();
+					int newSatellitesInFix = satelliteTable.getInFixCount();
+					if ( ( newNumberOfSatellites != satellitesInView ) || ( newSatellitesInFix != satellitesInFix ) )
+					{
+						satellitesInView = newNumberOfSatellites;
+						satellitesInFix = newSatellitesInFix;
+
+						receiver.onSatelliteStatusReceived( newNumberOfSatellites, newSatellitesInFix );
+					}
+
+					break;
+				}
+
+				case GpsStatus.GPS_EVENT_STOPPED:
+	            case GpsStatus.GPS_EVENT_STARTED:
+	            {
+	            	break;
+	            }
+	            default:
+	            {
+	               break;
+	            }
+			}
+		}
+	};
+
+	/**
+	 * Passes the satellites that have changed to the receiver
+	 */
+	private SatelliteTable.IChangeReceiver changeReceiver = new SatelliteTable.IChangeReceiver()
+	{
+		@Override
+		public void onSatelliteChanged( SatelliteTable table, int prn, int changes )
+		{
+			receiver.onSatelliteChanged( table, prn, changes );
+		}
+	};
+
+	/**
+	 * Listener used to receive the NMEA strings.
+	 */
+	private NmeaListener nmeaListener = new GpsStatus.NmeaListener()
+	{
+		@Override
+		public void onNmeaReceived( long timeStamp, String nmeaBuffer )
+		{
+			receiver.onNmeaReceived( timeStamp, nmeaBuffer );
+		}
+	};
+
+	//
+	// Private data
+	//
+
+	/** Logger for this class */
+	private static final Logger log = LoggerFactory.getLogger( AndroidLocationSource.class );
+
+	/** Specify that all GPS changes are required - no filtering on distance moved or time interval*/
+	private static final float GPS_DISTANCE = 0F;
+	private static final long  GPS_INTERVAL = 0l;
+
+	private final LocationManager gpsLocationManager;
+
+	/** Chooses the filters in motion aware mode, otherwise null */
+	private final LocationThrottle throttle;
+
+	/** Set while the throttle's filters are in use */
+	private boolean motionAware = false;
+
+	/** Where to send the updates */
+	private IUpdateReceiver receiver = null;
+
+	/** Reused for every status event */
+	private GpsStatus gpsStatus = null;
+
+	/** State of each satellite, and the counts last reported */
+	private final SatelliteTable satelliteTable = new SatelliteTable( changeReceiver );
+	private int satellitesInView = -1;
+	private int satellitesInFix = -1;
+
+	/** Reused for every location */
+	private final GpsFix fix = new GpsFix();
+}
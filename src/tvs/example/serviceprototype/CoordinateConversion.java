@@ -5,8 +5,7 @@
  */
 package tvs.example.serviceprototype;
 
-import java.util.Hashtable;
-import java.util.Map;
+import java.util.Arrays;
 
 public class CoordinateConversion
 {
@@ -16,19 +15,77 @@ public class CoordinateConversion
 
   }
 
+  /**
+   * A UTM position held as numbers, for converting without building and
+   * parsing strings
+   */
+  public static class UTMPosition
+  {
+    public int zone;
+
+    public char band;
+
+    public double easting;
+
+    public double northing;
+
+    /**
+     * Append this position in the form used by latLon2UTM(double, double),
+     * e.g. "30 U 599436 5662180"
+     */
+    public StringBuilder appendTo(StringBuilder builder)
+    {
+      if (zone < 10)
+      {
+        builder.append('0');
+      }
+      return builder.append(zone).append(' ').append(band).append(' ')
+          .append((int) easting).append(' ').append((int) northing);
+    }
+
+    @Override
+    public String toString()
+    {
+      return appendTo(new StringBuilder(24)).toString();
+    }
+  }
+
   public double[] utm2LatLon(String UTM)
   {
-    UTM2LatLon c = new UTM2LatLon();
-    return c.convertUTMToLatLong(UTM);
+    return utm2LatLon.convertUTMToLatLong(UTM);
+  }
+
+  /**
+   * Convert a UTM position to latitude and longitude
+   * @param utm - the position to convert
+   * @param latlon - receives the latitude in element 0 and longitude in element 1
+   * @return latlon
+   */
+  public double[] utm2LatLon(UTMPosition utm, double[] latlon)
+  {
+    return utm2LatLon.convertUTMToLatLong(utm.zone, utm.band, utm.easting,
+        utm.northing, latlon);
   }
 
   public String latLon2UTM(double latitude, double longitude)
   {
-    LatLon2UTM c = new LatLon2UTM();
-    return c.convertLatLonToUTM(latitude, longitude);
+    return latLon2UTM.convertLatLonToUTM(latitude, longitude);
 
   }
 
+  /**
+   * Convert a latitude and longitude to a UTM position
+   * @param latitude - the latitude in degrees
+   * @param longitude - the longitude in degrees
+   * @param utm - receives the UTM position
+   * @return utm
+   */
+  public UTMPosition latLon2UTM(double latitude, double longitude,
+      UTMPosition utm)
+  {
+    return latLon2UTM.convertLatLonToUTM(latitude, longitude, utm);
+  }
+
   private void validate(double latitude, double longitude)
   {
     if (latitude < -90.0 || latitude > 90.0 || longitude < -180.0
@@ -42,15 +99,13 @@ public class CoordinateConversion
 
   public String latLon2MGRUTM(double latitude, double longitude)
   {
-    LatLon2MGRUTM c = new LatLon2MGRUTM();
-    return c.convertLatLonToMGRUTM(latitude, longitude);
+    return latLon2MGRUTM.convertLatLonToMGRUTM(latitude, longitude);
 
   }
 
   public double[] mgrutm2LatLon(String MGRUTM)
   {
-    MGRUTM2LatLon c = new MGRUTM2LatLon();
-    return c.convertMGRUTMToLatLong(MGRUTM);
+    return mgrutm2LatLon.convertMGRUTMToLatLong(MGRUTM);
   }
 
   public double degreeToRadian(double degree)
@@ -87,24 +142,26 @@ public class CoordinateConversion
   {
     public String convertLatLonToUTM(double latitude, double longitude)
     {
-      validate(latitude, longitude);
-      String UTM = "";
+      convertLatLonToUTM(latitude, longitude, position);
 
-      setVariables(latitude, longitude);
+      builder.setLength(0);
+      return position.appendTo(builder).toString();
 
-      String longZone = getLongZone(longitude);
-      LatZones latZones = new LatZones();
-      String latZone = latZones.getLatZone(latitude);
+    }
 
-      double _easting = getEasting();
-      double _northing = getNorthing(latitude);
+    public UTMPosition convertLatLonToUTM(double latitude, double longitude,
+        UTMPosition utm)
+    {
+      validate(latitude, longitude);
+
+      setVariables(latitude, longitude);
 
-      UTM = longZone + " " + latZone + " " + ((int) _easting) + " "
-          + ((int) _northing);
-      // UTM = longZone + " " + latZone + " " + decimalFormat.format(_easting) +
-      // " "+ decimalFormat.format(_northing);
+      utm.zone = getLongZone(longitude);
+      utm.band = LatZones.getLatZone(latitude);
+      utm.easting = getEasting();
+      utm.northing = getNorthing(latitude);
 
-      return UTM;
+      return utm;
 
     }
 
@@ -154,7 +211,7 @@ public class CoordinateConversion
 
     }
 
-    protected String getLongZone(double longitude)
+    protected int getLongZone(double longitude)
     {
       double longZone = 0;
       if (longitude < 0.0)
@@ -165,12 +222,25 @@ public class CoordinateConversion
       {
         longZone = (longitude / 6) + 31;
       }
-      String val = String.valueOf((int) longZone);
-      if (val.length() == 1)
+      return (int) longZone;
+    }
+
+    protected void appendLongZone(int longZone)
+    {
+      if (longZone < 10)
+      {
+        builder.append('0');
+      }
+      builder.append(longZone);
+    }
+
+    protected void appendFiveDigits(int value)
+    {
+      value %= 100000;
+      for (int divisor = 10000; divisor > 0; divisor /= 10)
       {
-        val = "0" + val;
+        builder.append((char) ('0' + (value / divisor) % 10));
       }
-      return val;
     }
 
     protected double getNorthing(double latitude)
@@ -188,6 +258,11 @@ public class CoordinateConversion
       return 500000 + (K4 * p + K5 * POW(p, 3));
     }
 
+    // Reused to build each result
+    final StringBuilder builder = new StringBuilder(32);
+
+    final UTMPosition position = new UTMPosition();
+
     // Lat Lon to UTM variables
 
     // equatorial radius
@@ -262,39 +337,22 @@ public class CoordinateConversion
     public String convertLatLonToMGRUTM(double latitude, double longitude)
     {
       validate(latitude, longitude);
-      String mgrUTM = "";
 
       setVariables(latitude, longitude);
 
-      String longZone = getLongZone(longitude);
-      LatZones latZones = new LatZones();
-      String latZone = latZones.getLatZone(latitude);
-
+      int longZone = getLongZone(longitude);
       double _easting = getEasting();
       double _northing = getNorthing(latitude);
-      Digraphs digraphs = new Digraphs();
-      String digraph1 = digraphs.getDigraph1(Integer.parseInt(longZone),
-          _easting);
-      String digraph2 = digraphs.getDigraph2(Integer.parseInt(longZone),
-          _northing);
-
-      String easting = String.valueOf((int) _easting);
-      if (easting.length() < 5)
-      {
-        easting = "00000" + easting;
-      }
-      easting = easting.substring(easting.length() - 5);
 
-      String northing;
-      northing = String.valueOf((int) _northing);
-      if (northing.length() < 5)
-      {
-        northing = "0000" + northing;
-      }
-      northing = northing.substring(northing.length() - 5);
+      builder.setLength(0);
+      appendLongZone(longZone);
+      builder.append(LatZones.getLatZone(latitude))
+          .append(Digraphs.getDigraph1(longZone, _easting))
+          .append(Digraphs.getDigraph2(longZone, _northing));
+      appendFiveDigits((int) _easting);
+      appendFiveDigits((int) _northing);
 
-      mgrUTM = longZone + latZone + digraph1 + digraph2 + easting + northing;
-      return mgrUTM;
+      return builder.toString();
     }
   }
 
@@ -305,22 +363,19 @@ public class CoordinateConversion
       double[] latlon = { 0.0, 0.0 };
       // 02CNR0634657742
       int zone = Integer.parseInt(mgrutm.substring(0, 2));
-      String latZone = mgrutm.substring(2, 3);
+      char latZone = mgrutm.charAt(2);
 
-      String digraph1 = mgrutm.substring(3, 4);
-      String digraph2 = mgrutm.substring(4, 5);
+      char digraph1 = mgrutm.charAt(3);
+      char digraph2 = mgrutm.charAt(4);
       easting = Double.parseDouble(mgrutm.substring(5, 10));
       northing = Double.parseDouble(mgrutm.substring(10, 15));
 
-      LatZones lz = new LatZones();
-      double latZoneDegree = lz.getLatZoneDegree(latZone);
+      double latZoneDegree = LatZones.getLatZoneDegree(latZone);
 
       double a1 = latZoneDegree * 40000000 / 360.0;
       double a2 = 2000000 * Math.floor(a1 / 2000000.0);
 
-      Digraphs digraphs = new Digraphs();
-
-      double digraph2Index = digraphs.getDigraph2Index(digraph2);
+      double digraph2Index = Digraphs.getDigraph2Index(digraph2);
 
       double startindexEquator = 1;
       if ((1 + zone % 2) == 1)
@@ -336,7 +391,7 @@ public class CoordinateConversion
       northing = a3 + northing;
 
       zoneCM = -183 + 6 * zone;
-      double digraph1Index = digraphs.getDigraph1Index(digraph1);
+      double digraph1Index = Digraphs.getDigraph1Index(digraph1);
       int a5 = 1 + zone % 3;
       double[] a6 = { 16, 0, 8 };
       double a7 = 100000 * (digraph1Index - a6[a5 - 1]);
@@ -355,7 +410,7 @@ public class CoordinateConversion
       double d = _a2 * 180 / Math.PI;
       double longitude = zoneCM - d;
 
-      if (getHemisphere(latZone).equals("S"))
+      if (isSouthern(latZone))
       {
         latitude = -latitude;
       }
@@ -386,21 +441,53 @@ public class CoordinateConversion
       return hemisphere;
     }
 
+    protected boolean isSouthern(char latZone)
+    {
+      return southernHemisphere.indexOf(latZone) > -1;
+    }
+
     public double[] convertUTMToLatLong(String UTM)
     {
-      double[] latlon = { 0.0, 0.0 };
-      String[] utm = UTM.split(" ");
-      zone = Integer.parseInt(utm[0]);
-      String latZone = utm[1];
-      easting = Double.parseDouble(utm[2]);
-      northing = Double.parseDouble(utm[3]);
-      String hemisphere = getHemisphere(latZone);
+      // Fields are separated by single spaces, e.g. "30 U 599436 5662180"
+      int end1 = UTM.indexOf(' ');
+      int end2 = UTM.indexOf(' ', end1 + 1);
+      int end3 = UTM.indexOf(' ', end2 + 1);
+      if (end1 < 0 || end2 < 0 || end3 < 0)
+      {
+        throw new IllegalArgumentException("Invalid UTM string (" + UTM + ")");
+      }
+      int end4 = UTM.indexOf(' ', end3 + 1);
+      if (end4 < 0)
+      {
+        end4 = UTM.length();
+      }
+      String latZone = UTM.substring(end1 + 1, end2);
+
+      return convertUTMToLatLong(Integer.parseInt(UTM.substring(0, end1)),
+          getHemisphere(latZone).equals("S"),
+          Double.parseDouble(UTM.substring(end2 + 1, end3)),
+          Double.parseDouble(UTM.substring(end3 + 1, end4)), new double[2]);
+    }
+
+    public double[] convertUTMToLatLong(int zone, char latZone,
+        double easting, double northing, double[] latlon)
+    {
+      return convertUTMToLatLong(zone, isSouthern(latZone), easting, northing,
+          latlon);
+    }
+
+    private double[] convertUTMToLatLong(int zone, boolean southern,
+        double easting, double northing, double[] latlon)
+    {
+      this.zone = zone;
+      this.easting = easting;
+      this.northing = northing;
       double latitude = 0.0;
       double longitude = 0.0;
 
-      if (hemisphere.equals("S"))
+      if (southern)
       {
-        northing = 10000000 - northing;
+        this.northing = 10000000 - northing;
       }
       setVariables();
       latitude = 180 * (phi1 - fact1 * (fact2 + fact3 + fact4)) / Math.PI;
@@ -416,7 +503,7 @@ public class CoordinateConversion
       }
 
       longitude = zoneCM - _a3;
-      if (hemisphere.equals("S"))
+      if (southern)
       {
         latitude = -latitude;
       }
@@ -532,237 +619,151 @@ public class CoordinateConversion
 
   }
 
-  private class Digraphs
+  private static class Digraphs
   {
-    private Map digraph1 = new Hashtable();
+    private static final char[] digraph1Array = "ABCDEFGHJKLMNPQRSTUVWXYZ"
+        .toCharArray();
 
-    private Map digraph2 = new Hashtable();
+    private static final char[] digraph2Array = "VABCDEFGHJKLMNPQRSTUV"
+        .toCharArray();
 
-    private String[] digraph1Array = { "A", "B", "C", "D", "E", "F", "G", "H",
-        "J", "K", "L", "M", "N", "P", "Q", "R", "S", "T", "U", "V", "W", "X",
-        "Y", "Z" };
+    // Index of each letter in digraph1Array + 1 and digraph2Array, by letter
+    // - 'A', or -1
+    private static final int[] digraph1Index = new int[26];
 
-    private String[] digraph2Array = { "V", "A", "B", "C", "D", "E", "F", "G",
-        "H", "J", "K", "L", "M", "N", "P", "Q", "R", "S", "T", "U", "V" };
+    private static final int[] digraph2Index = new int[26];
 
-    public Digraphs()
+    static
     {
-      digraph1.put(new Integer(1), "A");
-      digraph1.put(new Integer(2), "B");
-      digraph1.put(new Integer(3), "C");
-      digraph1.put(new Integer(4), "D");
-      digraph1.put(new Integer(5), "E");
-      digraph1.put(new Integer(6), "F");
-      digraph1.put(new Integer(7), "G");
-      digraph1.put(new Integer(8), "H");
-      digraph1.put(new Integer(9), "J");
-      digraph1.put(new Integer(10), "K");
-      digraph1.put(new Integer(11), "L");
-      digraph1.put(new Integer(12), "M");
-      digraph1.put(new Integer(13), "N");
-      digraph1.put(new Integer(14), "P");
-      digraph1.put(new Integer(15), "Q");
-      digraph1.put(new Integer(16), "R");
-      digraph1.put(new Integer(17), "S");
-      digraph1.put(new Integer(18), "T");
-      digraph1.put(new Integer(19), "U");
-      digraph1.put(new Integer(20), "V");
-      digraph1.put(new Integer(21), "W");
-      digraph1.put(new Integer(22), "X");
-      digraph1.put(new Integer(23), "Y");
-      digraph1.put(new Integer(24), "Z");
-
-      digraph2.put(new Integer(0), "V");
-      digraph2.put(new Integer(1), "A");
-      digraph2.put(new Integer(2), "B");
-      digraph2.put(new Integer(3), "C");
-      digraph2.put(new Integer(4), "D");
-      digraph2.put(new Integer(5), "E");
-      digraph2.put(new Integer(6), "F");
-      digraph2.put(new Integer(7), "G");
-      digraph2.put(new Integer(8), "H");
-      digraph2.put(new Integer(9), "J");
-      digraph2.put(new Integer(10), "K");
-      digraph2.put(new Integer(11), "L");
-      digraph2.put(new Integer(12), "M");
-      digraph2.put(new Integer(13), "N");
-      digraph2.put(new Integer(14), "P");
-      digraph2.put(new Integer(15), "Q");
-      digraph2.put(new Integer(16), "R");
-      digraph2.put(new Integer(17), "S");
-      digraph2.put(new Integer(18), "T");
-      digraph2.put(new Integer(19), "U");
-      digraph2.put(new Integer(20), "V");
-
+      Arrays.fill(digraph1Index, -1);
+      Arrays.fill(digraph2Index, -1);
+      for (int i = 0; i < digraph1Array.length; i++)
+      {
+        digraph1Index[digraph1Array[i] - 'A'] = i + 1;
+      }
+      for (int i = digraph2Array.length - 1; i >= 0; i--)
+      {
+        digraph2Index[digraph2Array[i] - 'A'] = i;
+      }
     }
 
-    public int getDigraph1Index(String letter)
+    public static int getDigraph1Index(char letter)
     {
-      for (int i = 0; i < digraph1Array.length; i++)
+      if (letter < 'A' || letter > 'Z')
       {
-        if (digraph1Array[i].equals(letter))
-        {
-          return i + 1;
-        }
+        return -1;
       }
-
-      return -1;
+      return digraph1Index[letter - 'A'];
     }
 
-    public int getDigraph2Index(String letter)
+    public static int getDigraph2Index(char letter)
     {
-      for (int i = 0; i < digraph2Array.length; i++)
+      if (letter < 'A' || letter > 'Z')
       {
-        if (digraph2Array[i].equals(letter))
-        {
-          return i;
-        }
+        return -1;
       }
-
-      return -1;
+      return digraph2Index[letter - 'A'];
     }
 
-    public String getDigraph1(int longZone, double easting)
+    // Each zone uses a set of eight column letters, one per 100km from
+    // 100000m to 899999m easting
+    public static char getDigraph1(int longZone, double easting)
     {
-      int a1 = longZone;
-      double a2 = 8 * ((a1 - 1) % 3) + 1;
-
-      double a3 = easting;
-      double a4 = a2 + ((int) (a3 / 100000)) - 1;
-      return (String) digraph1.get(new Integer((int) Math.floor(a4)));
+      int column = (int) (easting / 100000);
+      if (easting < 0 || column < 1 || column > 8)
+      {
+        throw new IllegalArgumentException("Easting (" + easting
+            + ") is outside the MGRS columns of zone " + longZone);
+      }
+      return digraph1Array[8 * ((longZone - 1) % 3) + column - 1];
     }
 
-    public String getDigraph2(int longZone, double northing)
+    public static char getDigraph2(int longZone, double northing)
     {
-      int a1 = longZone;
-      double a2 = 1 + 5 * ((a1 - 1) % 2);
-      double a3 = northing;
-      double a4 = (a2 + ((int) (a3 / 100000)));
-      a4 = (a2 + ((int) (a3 / 100000.0))) % 20;
-      a4 = Math.floor(a4);
+      int a2 = 1 + 5 * ((longZone - 1) % 2);
+      int a4 = (a2 + ((int) (northing / 100000.0))) % 20;
       if (a4 < 0)
       {
         a4 = a4 + 19;
       }
-      return (String) digraph2.get(new Integer((int) Math.floor(a4)));
+      return digraph2Array[a4];
 
     }
 
   }
 
-  private class LatZones
+  private static class LatZones
   {
-    private char[] letters = { 'A', 'C', 'D', 'E', 'F', 'G', 'H', 'J', 'K',
-        'L', 'M', 'N', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Z' };
-
-    private int[] degrees = { -90, -84, -72, -64, -56, -48, -40, -32, -24, -16,
-        -8, 0, 8, 16, 24, 32, 40, 48, 56, 64, 72, 84 };
+    private static final char[] letters = { 'A', 'C', 'D', 'E', 'F', 'G', 'H',
+        'J', 'K', 'L', 'M', 'N', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X',
+        'Z' };
 
-    private char[] negLetters = { 'A', 'C', 'D', 'E', 'F', 'G', 'H', 'J', 'K',
-        'L', 'M' };
+    private static final int[] degrees = { -90, -84, -72, -64, -56, -48, -40,
+        -32, -24, -16, -8, 0, 8, 16, 24, 32, 40, 48, 56, 64, 72, 84 };
 
-    private int[] negDegrees = { -90, -84, -72, -64, -56, -48, -40, -32, -24,
-        -16, -8 };
+    // Latitude zone for each whole degree from -90 to 84, i.e. the letter of
+    // the last entry in degrees not above it
+    private static final char[] zoneByDegree = new char[84 + 90 + 1];
 
-    private char[] posLetters = { 'N', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W',
-        'X', 'Z' };
+    // Southern edge of each latitude zone by letter - 'A', or -100
+    private static final int[] degreeByLetter = new int[26];
 
-    private int[] posDegrees = { 0, 8, 16, 24, 32, 40, 48, 56, 64, 72, 84 };
-
-    private int arrayLength = 22;
-
-    public LatZones()
+    static
     {
-    }
-
-    public int getLatZoneDegree(String letter)
-    {
-      char ltr = letter.charAt(0);
-      for (int i = 0; i < arrayLength; i++)
+      int i = 0;
+      for (int lat = -90; lat <= 84; lat++)
       {
-        if (letters[i] == ltr)
+        while (i + 1 < letters.length && degrees[i + 1] <= lat)
         {
-          return degrees[i];
+          i++;
         }
+        zoneByDegree[lat + 90] = letters[i];
       }
-      return -100;
-    }
-
-    public String getLatZone(double latitude)
-    {
-      int latIndex = -2;
-      int lat = (int) latitude;
 
-      if (lat >= 0)
-      {
-        int len = posLetters.length;
-        for (int i = 0; i < len; i++)
-        {
-          if (lat == posDegrees[i])
-          {
-            latIndex = i;
-            break;
-          }
-
-          if (lat > posDegrees[i])
-          {
-            continue;
-          }
-          else
-          {
-            latIndex = i - 1;
-            break;
-          }
-        }
-      }
-      else
+      Arrays.fill(degreeByLetter, -100);
+      for (i = 0; i < letters.length; i++)
       {
-        int len = negLetters.length;
-        for (int i = 0; i < len; i++)
-        {
-          if (lat == negDegrees[i])
-          {
-            latIndex = i;
-            break;
-          }
-
-          if (lat < negDegrees[i])
-          {
-            latIndex = i - 1;
-            break;
-          }
-          else
-          {
-            continue;
-          }
-
-        }
-
+        degreeByLetter[letters[i] - 'A'] = degrees[i];
       }
+    }
 
-      if (latIndex == -1)
+    public static int getLatZoneDegree(char letter)
+    {
+      if (letter < 'A' || letter > 'Z')
       {
-        latIndex = 0;
+        return -100;
       }
-      if (lat >= 0)
+      return degreeByLetter[letter - 'A'];
+    }
+
+    public static char getLatZone(double latitude)
+    {
+      int lat = (int) latitude;
+      if (lat < -90)
       {
-        if (latIndex == -2)
-        {
-          latIndex = posLetters.length - 1;
-        }
-        return String.valueOf(posLetters[latIndex]);
+        lat = -90;
       }
-      else
+      else if (lat > 84)
       {
-        if (latIndex == -2)
-        {
-          latIndex = negLetters.length - 1;
-        }
-        return String.valueOf(negLetters[latIndex]);
-
+        lat = 84;
       }
+      return zoneByDegree[lat + 90];
     }
 
   }
 
+  //
+  // Private data
+  //
+
+  // Converters reused by each call, so a CoordinateConversion must not be
+  // shared between threads
+  private final LatLon2UTM latLon2UTM = new LatLon2UTM();
+
+  private final UTM2LatLon utm2LatLon = new UTM2LatLon();
+
+  private final LatLon2MGRUTM latLon2MGRUTM = new LatLon2MGRUTM();
+
+  private final MGRUTM2LatLon mgrutm2LatLon = new MGRUTM2LatLon();
+
 }
@@ -0,0 +1,214 @@
+package tvs.example.serviceprototype;
+
+/**
+ * Chooses how long the GpsLockController keeps the GPS on and how long it turns it off for, so as to keep the GPS on for as
+ * little time as possible while keeping the last reported position within a target error of where the user actually is.
+ *
+ * The expected error of the last position grows from its accuracy at the speed the user is moving, so the GPS is turned off
+ * for long enough for the error to reach the target, less the time it is expected to take to get a fix again. If that is too
+ * short to be worth turning the GPS off it is left on. The other times are adapted from what the GPS has done:
+ * - the time to get an accurate fix after turning the GPS on is tracked, and the lock lost filter time allows for it
+ * - the time the GPS is left on after an accurate fix is lengthened while waiting improves the accuracy, and shortened when it
+ *   does not
+ * With adaptive set to false the fixed times used by earlier versions of the service are returned.
+ * Not thread safe.
+ */
+public class DutyCycleScheduler
+{
+	//
+	// Public types and interfaces
+	//
+
+	/**
+	 * Scheduler settings. Times are in milliseconds and distances in metres.
+	 */
+	public static final class Config
+	{
+		/** False to use the fixed times */
+		public boolean adaptive = true;
+
+		/** Accuracy needed before the GPS can be turned off */
+		public float requiredAccuracy = 20F;
+
+		/** The position freshness target - the expected error of the last position that is acceptable */
+		public float errorTarget = 50F;
+
+		/** Shortest time worth turning the GPS off for, and the longest time to leave it off */
+		public long minPollTime = 5000;
+		public long maxPollTime = 300000;
+
+		/** Limits on the time the GPS is left on after an accurate fix */
+		public long minExtraTime = 1000;
+		public long maxExtraTime = 10000;
+
+		/** Limits on the time to wait for a lock to be regained before reporting it lost */
+		public long minLockLostFilterTime = 5000;
+		public long maxLockLostFilterTime = 30000;
+
+		/** Speed in metres per second below which the user is treated as stationary */
+		public float stationarySpeed = 0.2F;
+	}
+
+	/** The fixed times used when not adaptive */
+	public static final long LOCKED_POLL_TIME = 15000;
+	public static final long LOCK_LOST_FILTER_TIME = 10000;
+	public static final long EXTRA_TIME_AFTER_LOCK = 2000;
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * @param config - the scheduler settings
+	 */
+	public DutyCycleScheduler( Config config )
+	{
+		this.config = config;
+	}
+
+	/**
+	 * Called when the GPS is turned on
+	 * @param time - the current time in milliseconds
+	 */
+	public void gpsTurnedOn( long time )
+	{
+		turnedOnTime = time;
+		awaitingAccurateFix = true;
+	}
+
+	/**
+	 * Called for each location received
+	 * @param time - the current time in milliseconds
+	 * @param accuracy - accuracy of the location in metres
+	 * @param speed - speed in metres per second, or NaN if not known
+	 */
+	public void locationChanged( long time, float accuracy, float speed )
+	{
+		if ( Float.isNaN( speed ) == false )
+		{
+			speedEstimate += ( speed - speedEstimate ) * SMOOTHING;
+		}
+
+		if ( Float.isNaN( accuracy ) == false )
+		{
+			latestAccuracy = accuracy;
+
+			if ( ( awaitingAccurateFix == true ) && ( accuracy <= config.requiredAccuracy ) )
+			{
+				awaitingAccurateFix = false;
+				accurateFixAccuracy = accuracy;
+
+				long timeToFix = time - turnedOnTime;
+				timeToFixEstimate += ( timeToFix - timeToFixEstimate ) * SMOOTHING;
+			}
+		}
+	}
+
+	/**
+	 * Called at the end of the time the GPS is left on after an accurate fix, to see whether waiting improved the accuracy
+	 */
+	public void extraTimeEnded()
+	{
+		if ( accurateFixAccuracy > 0 )
+		{
+			double improvement = ( accurateFixAccuracy - latestAccuracy ) / accurateFixAccuracy;
+			extraTime = ( improvement < WORTHWHILE_IMPROVEMENT ) ? extraTime / 2 : extraTime * 2;
+			extraTime = Math.max( config.minExtraTime, Math.min( config.maxExtraTime, extraTime ) );
+		}
+
+		// The next window is measured from the latest accuracy if the GPS stays on
+		accurateFixAccuracy = latestAccuracy;
+	}
+
+	/**
+	 * @return the accuracy in metres needed before the GPS can be turned off
+	 */
+	public float getRequiredAccuracy()
+	{
+		return config.requiredAccuracy;
+	}
+
+	/**
+	 * @return how long to leave the GPS on after an accurate fix, in the hope of a better one
+	 */
+	public long getExtraTime()
+	{
+		return ( config.adaptive == true ) ? extraTime : EXTRA_TIME_AFTER_LOCK;
+	}
+
+	/**
+	 * @return how long to turn the GPS off for, or 0 to leave it on
+	 */
+	public long getPollTime()
+	{
+		if ( config.adaptive == false )
+		{
+			return LOCKED_POLL_TIME;
+		}
+
+		// Time for the error to grow to the target, less the time to get a fix once the GPS is back on
+		double errorBudget = Math.max( 0, config.errorTarget - latestAccuracy );
+		double pollTime = config.maxPollTime;
+		if ( speedEstimate > config.stationarySpeed )
+		{
+			pollTime = Math.min( pollTime, ( errorBudget * 1000 / speedEstimate ) - timeToFixEstimate );
+		}
+
+		return ( pollTime < config.minPollTime ) ? 0 : ( long )pollTime;
+	}
+
+	/**
+	 * @return how long to wait for a lock to be regained before reporting it lost
+	 */
+	public long getLockLostFilterTime()
+	{
+		if ( config.adaptive == false )
+		{
+			return LOCK_LOST_FILTER_TIME;
+		}
+
+		long filterTime = ( long )( timeToFixEstimate * 2 ) + 1000;
+		return Math.max( config.minLockLostFilterTime, Math.min( config.maxLockLostFilterTime, filterTime ) );
+	}
+
+	/**
+	 * @return the smoothed speed in metres per second
+	 */
+	public float getSpeedEstimate()
+	{
+		return ( float )speedEstimate;
+	}
+
+	/**
+	 * @return the smoothed time in milliseconds from turning the GPS on to an accurate fix
+	 */
+	public long getTimeToFixEstimate()
+	{
+		return ( long )timeToFixEstimate;
+	}
+
+	//
+	// Private data
+	//
+
+	/** Weight given to each new speed and time to fix */
+	private static final double SMOOTHING = 0.3;
+
+	/** Fractional improvement in accuracy that makes waiting for it worthwhile */
+	private static final double WORTHWHILE_IMPROVEMENT = 0.1;
+
+	private final Config config;
+
+	/** What has been learnt about the GPS and the user */
+	private double speedEstimate = 0;
+	private double timeToFixEstimate = 5000;
+	private long extraTime = EXTRA_TIME_AFTER_LOCK;
+
+	/** The latest accuracy, and the accuracy when the extra time started */
+	private float latestAccuracy = Float.MAX_VALUE;
+	private float accurateFixAccuracy = 0;
+
+	/** When the GPS was last turned on, and whether an accurate fix has been received since */
+	private long turnedOnTime = 0;
+	private boolean awaitingAccurateFix = false;
+}
@@ -1,6 +1,9 @@
 package tvs.example.serviceprototype;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,14 +13,8 @@ import tvs.example.serviceprototype.TrackerServiceManager.TrackingLocation;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
-import android.location.GpsSatellite;
-import android.location.GpsStatus;
-import android.location.GpsStatus.NmeaListener;
 import android.location.Location;
-import android.location.LocationListener;
 import android.location.LocationManager;
-import android.location.GpsStatus.Listener;
-import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
@@ -26,11 +23,12 @@ import android.os.Message;
 import android.os.Messenger;
 import android.os.Process;
 import android.os.RemoteException;
+import android.os.SystemClock;
 
 /**
- * Service class used to interface to the GPS via the LocationListener
+ * Service class used to interface to the GPS via an ILocationSource
 */
-public class GPSInterfaceService extends Service implements LocationListener
+public class GPSInterfaceService extends Service
 {
 	//
 	// Public types & enums
@@ -74,54 +72,31 @@ public class GPSInterfaceService extends Service implements LocationListener
 		serviceLooper = thread.getLooper();    
 		serviceHandler = new ServiceHandler( serviceLooper, this );
 		
-		// Cache the LocationManager
-		gpsLocationManager = ( LocationManager )getSystemService( Context.LOCATION_SERVICE );
-		
-		// Initialise the timers with their delegates
-		lockAquiredTimerInstance.registerDelegate( 
-				new ITimerExpiry() 
+		// Use the Android GPS as the location source, unless generating a synthetic load
+		if ( SYNTHETIC_RATE > 0 )
+		{
+			SyntheticLocationSource.Config config = new SyntheticLocationSource.Config();
+			config.rate = SYNTHETIC_RATE;
+			locationSource = new SyntheticLocationSource( config, new Executor()
+			{
+				@Override
+				public void execute( Runnable task )
 				{
-					@Override
-					public void OnTimerExpired() 
-					{
-						log.info( "lockAquiredTimerInstance OnTimerExpired : Starting polling ");
-						
-						Message.obtain( serviceHandler, TURNONGPS ).sendToTarget();
-					}
+					serviceHandler.post( task );
 				}
-		);
+			} );
+		}
+		else
+		{
+			locationSource = new AndroidLocationSource( ( LocationManager )getSystemService( Context.LOCATION_SERVICE ), MOTION_AWARE_UPDATES );
+		}
 		
-		lockLostTimerInstance.registerDelegate( 
-				new ITimerExpiry() 
-				{
-					@Override
-					public void OnTimerExpired() 
-					{
-						log.info( "lockLostTimerInstance OnTimerExpired : Updating status ");
-						
-						if ( gpsStatus.providerStatus == ProviderState.Locked )
-						{
-							gpsStatus.providerStatus = ProviderState.NoLock;
-							
-							BroadcastStatusChange();
-						}
-					}
-				}
-		);
+		// Create the lock handling state machine, which registers itself with the timers
+		lockController = new GpsLockController( gpsControl, lockAquiredTimerInstance, lockLostTimerInstance, improveAccuracyTimer );
 		
-		improveAccuracyTimer.registerDelegate(	
-				new ITimerExpiry() 
-				{
-					@Override
-					public void OnTimerExpired() 
-					{
-						log.info( "improveAccuracyTimer OnTimerExpired : Stopping GPS ");
-
-						StopStatusAndLocationUpdates();
-						lockAquiredTimerInstance.startTimer( LOCKED_POLL_TIME );
-					}
-				}
-		);
+		// Opening the track scans the whole file, so open the files on the service thread rather than this one. This is
+		// the first message queued, so it is handled before any request from a client
+		Message.obtain( serviceHandler, OPENFILES ).sendToTarget();
 	}
 	
 	/**
@@ -164,88 +139,6 @@ public class GPSInterfaceService extends Service implements LocationListener
 		GenericTimer.stopAll();
 	}
 
-	/**
-	 * Called when the location has changed. 
-	 * Load the details into an Intent and broadcast it
-	 */
-	@Override
-	public void onLocationChanged( Location location ) 
-	{
-		log.info( "onLocationChanged : Lat {}, Lon {}, Accuracy {}", new Object[]{ location.getLatitude(), location.getLongitude(), 
-				location.getAccuracy() } );
-		
-		// If the GPS is locked on and the accuracy is OK then turn off the GPS and start the GPS poll timer
-		if ( gpsStatus.providerStatus == ProviderState.Locked )
-		{
-			if ( lockLostTimerInstance.isTimerRunning() == false )
-			{
-				if ( location.getAccuracy() <= REQUIRED_ACCURACY )
-				{
-					// If this is the first time this accuracy has been achieved then start the improveAccuracyTimer timer
-					if ( improveAccuracyTimer.isTimerRunning() == false )
-					{
-						improveAccuracyTimer.startTimer( EXTRA_TIME_AFTER_LOCK );
-					}
-				}
-			}
-		}
-		
-		Intent intent = new Intent( TrackerServiceManager.BROADCAST_LOCATION );
-		
-		TrackingLocation.LoadIntentWithLocation( intent, location );
-		
-	    sendBroadcast( intent );
-	}
-
-	/**
-	 * Called when the provider is disabled by the user
-	 * Update the provider status and broadcast it
-	 * @param provider - name of the provider that has been disabled
-	 */
-	@Override
-	public void onProviderDisabled( String provider ) 
-	{
-		log.info( "onProviderDisabled : Provider {}", provider );
-		
-		// Only report this if the provider is enabled - or if this is the first time
-		if ( ( gpsStatus.providerStatus != ProviderState.Disabled ) || ( firstReport == true ) )
-		{
-			gpsStatus.providerStatus = ProviderState.Disabled;
-			firstReport = false;
-			
-			BroadcastStatusChange();
-		}
-	}
-
-	/**
-	 * Called when the provider is enabled by the user
-	 * Update the provider status and broadcast it
-	 * @param provider - name of the provider that has been disabled
-	 */
-	@Override
-	public void onProviderEnabled( String provider ) 
-	{
-		log.info( "onProviderEnabled : Provider {}", provider );
-		
-		if ( gpsStatus.providerStatus == ProviderState.Disabled )
-		{
-			gpsStatus.providerStatus = ProviderState.NoLock;
-			firstReport = false;
-			
-			BroadcastStatusChange();
-		}
-	}
-
-	/**
-	 * Called when the provider status changes. This method is called when a provider is unable to fetch a location or if the provider has
-	 *  recently become available after a period of unavailability.
-	 *  No action
-	 */
-	@Override
-	public void onStatusChanged( String provide, int status, Bundle extras ) 
-	{
-	}
-
 	//
 	// Private methods
 	// 
@@ -296,18 +189,58 @@ public class GPSInterfaceService extends Service implements LocationListener
 		   
 		switch ( msg.what )
 		{
-			case STOPSERVICE:
+			case OPENFILES:
 			{
-				// Perform the same operations as STOPLOGGING and then quit the looper
-				
-				// Stop asking for status and location updates
-				StopStatusAndLocationUpdates();
+				OpenFiles();
 				
-				// Record new state
-				gpsStatus.state = TrackingState.Stopped;
+				break;
+			}
+			
+			case STOPSERVICE:
+			{
+				// Stop asking for status and location updates and then quit the looper
+				lockController.stop();
 
-				// Broadcast state
-				BroadcastStatusChange();
+				// Report how quickly the synthetic updates were delivered to this thread
+				if ( locationSource instanceof SyntheticLocationSource )
+				{
+					SyntheticLocationSource syntheticSource = ( SyntheticLocationSource )locationSource;
+					log.info( "Synthetic source: {} epochs, latency mean {} us max {} us, max backlog {}", new Object[]{
+							syntheticSource.getEpochCount(), syntheticSource.getMeanLatency() / 1000.0,
+							syntheticSource.getMaxLatency() / 1000.0, syntheticSource.getMaxBacklog() } );
+				}
+
+				// Close the NMEA recording
+				if ( nmeaRecorder != null )
+				{
+					try
+					{
+						nmeaRecorder.close();
+					}
+					catch ( IOException exception )
+					{
+						log.error( "Unable to close NMEA recording", exception );
+					}
+					nmeaRecorder = null;
+				}
+	
+				// Close the track, waiting for the fixes not yet committed to be written
+				if ( trackWriter != null )
+				{
+					log.info( "Track writer: {} fixes written in {} batches, {} dropped, queue max {}", new Object[]{
+							trackWriter.getWrittenCount(), trackWriter.getBatchCount(), trackWriter.getDroppedCount(),
+							trackWriter.getMaxQueueSize() } );
+
+					try
+					{
+						trackWriter.close();
+					}
+					catch ( IOException exception )
+					{
+						log.error( "Unable to close track", exception );
+					}
+					trackWriter = null;
+				}
 	
 				// Quit the thread
 			    serviceLooper.quit();
@@ -316,42 +249,45 @@ public class GPSInterfaceService extends Service implements LocationListener
 			
 			case STARTLOGGING:
 			{
-				if ( gpsStatus.state == TrackingState.Stopped )
-				{
-					// Stop and start updates
-					StopStatusAndLocationUpdates();
-					StartStatusAndLocationUpdates();
-					
-					// Record new state
-					gpsStatus.state = TrackingState.Logging;
-
-					// Broadcast state
-					BroadcastStatusChange();
-				}
+				lockController.startLogging();
 				
 				break;
 			}
 			
 			case STOPLOGGING:
 			{
-				gpsStatus.state = TrackingState.Stopped;
-				
-				// Stop asking for status and location updates
-				StopStatusAndLocationUpdates();
-
-				lockAquiredTimerInstance.stopTimer();
-				lockLostTimerInstance.stopTimer();
-				improveAccuracyTimer.stopTimer();
-				
-				// Broadcast state
-				BroadcastStatusChange();
+				lockController.stopLogging();
+				if ( trackWriter != null )
+				{
+					trackWriter.flush();
+				}
 				
 			    break;
 			}
 		
 			case TURNONGPS:
 			{
-				StartStatusAndLocationUpdates();
+				lockController.turnOn();
+
+				break;
+			}
+
+			case TURNOFFGPS:
+			{
+				lockController.turnOff();
+
+				// Filtering the updates by speed only saves anything while the GPS is being left on
+				if ( locationSource instanceof AndroidLocationSource )
+				{
+					( ( AndroidLocationSource )locationSource ).setMotionAware( lockController.isGpsLeftOn() );
+				}
+
+				break;
+			}
+
+			case LOCKLOST:
+			{
+				lockController.lockLost();
 
 				break;
 			}
@@ -367,158 +303,346 @@ public class GPSInterfaceService extends Service implements LocationListener
 	}
 
 	/**
-	 * Remove all the listeners from the location manager
+	 * Open the NMEA recording and the track, and start the thread that writes to the track.
+	 * Carry on without either if it can't be opened
+	 */
+	private void OpenFiles()
+	{
+		try
+		{
+			nmeaRecorder = new NmeaRecorder( new File( getFilesDir(), NMEA_RECORDING_NAME ), NMEA_RECORDING_SIZE );
+		}
+		catch ( IOException exception )
+		{
+			log.error( "Unable to open NMEA recording", exception );
+		}
+		
+		try
+		{
+			trackWriter = new TrackWriter( new TrackStore( new File( getFilesDir(), TRACK_NAME ) ) );
+		}
+		catch ( IOException exception )
+		{
+			log.error( "Unable to open track", exception );
+		}
+	}
+	
+	/**
+	 * Stop the updates from the location source, then flush the part epoch and force the recording to disk.
+	 * Only called on the service thread, which is also the thread the sentences are parsed and recorded on.
 	 */
 	private void StopStatusAndLocationUpdates()
 	{
-		gpsLocationManager.removeUpdates( this );
-		gpsLocationManager.removeGpsStatusListener( statusListener );
-		gpsLocationManager.removeNmeaListener( nmeaListener );
+		locationSource.stopUpdates();
+		epochAssembler.flush();
+		epochBroadcasts = false;
+		BroadcastPendingUpdates();
+		satelliteHistory.clear();
+		
+		if ( nmeaRecorder != null )
+		{
+			nmeaRecorder.force();
+		}
 	}
 	
 	/**
-	 * Add the required location listeners
-	 * Update the provider state and start the lock lost timer if locked.
+	 * Start the updates from the location source
 	 */
 	private void StartStatusAndLocationUpdates()
 	{
-		// Ask for status and location updates
-		gpsLocationManager.requestLocationUpdates( LocationManager.GPS_PROVIDER, GPS_INTERVAL, GPS_DISTANCE, this );
-		gpsLocationManager.addGpsStatusListener( statusListener );
-		gpsLocationManager.addNmeaListener( nmeaListener );
-		
-		// Get the current status from the statusListener in case it has changed whilst we weren't listening
-		if ( gpsLocationManager.isProviderEnabled( LocationManager.GPS_PROVIDER ) == true )
+		nmeaParser.reset();
+		locationSource.startUpdates( updateReceiver );
+	}
+	
+	/**
+	 * Receives the updates from the location source
+	 */
+	private ILocationSource.IUpdateReceiver updateReceiver = new ILocationSource.IUpdateReceiver()
+	{
+		/**
+		 * Called when the location has changed. 
+		 * While NMEA is being received the fix completes its epoch, so it is broadcast with the epoch; otherwise broadcast it now
+		 */
+		@Override
+		public void onFixReceived( GpsFix fix ) 
 		{
-			if ( gpsStatus.providerStatus ==  ProviderState.Locked )
+			log.info( "onFixReceived : Lat {}, Lon {}, Accuracy {}", new Object[]{ fix.latitude, fix.longitude, fix.accuracy } );
+			
+			// If the GPS is locked on and the accuracy is OK then turn off the GPS and start the GPS poll timer
+			lockController.locationChanged( fix.accuracy, fix.speed );
+			
+			// Queue the fix to be added to the track while logging. The file is written on the track writer's thread
+			if ( ( trackWriter != null ) && ( lockController.getState() == TrackingState.Logging ) )
 			{
-				if ( lockLostTimerInstance.isTimerRunning() == false )
+				if ( trackWriter.offer( fix ) == false )
 				{
-					lockLostTimerInstance.startTimer( LOCK_LOST_FILTER_TIME );
+					log.warn( "Track writer queue full, fix dropped" );
 				}
 			}
+			
+			if ( epochBroadcasts == true )
+			{
+				pendingFix.set( fix );
+				fixPending = true;
+
+				// The location is reported after the sentences of its epoch
+				epochAssembler.flush();
+				BroadcastPendingUpdates();
+			}
 			else
 			{
-				gpsStatus.providerStatus = ProviderState.NoLock;
+				BroadcastLocation( fix );
 			}
 		}
-		else
+
+		/**
+		 * Called when the satellite status has been reported
+		 * Update the provider state if either of the counts have changed
+		 */
+		@Override
+		public void onSatelliteStatusReceived( int satellitesInView, int satellitesInFix )
 		{
-			gpsStatus.providerStatus = ProviderState.Disabled;
+			lockController.satelliteStatus( satellitesInView, satellitesInFix );
 		}
-	}
+
+		/**
+		 * Called when a satellite's state has changed
+		 */
+		@Override
+		public void onSatelliteChanged( SatelliteTable table, int prn, int changes )
+		{
+			satelliteHistory.onSatelliteChanged( table, prn, changes );
+
+			if ( log.isDebugEnabled() == true )
+			{
+				log.debug( "Sat {} Changes {} Snr {} Fix {}", new Object[] { prn, changes, table.getSnr( prn ), table.isUsedInFix( prn ) } );
+			}
+		}
+
+		/**
+		 * Called when an NMEA string has been received
+		 * Record it and pass it to the parser. Only format it for the log if debug logging is enabled.
+		 */
+		@Override
+		public void onNmeaReceived( long timeStamp, CharSequence nmeaBuffer ) 
+		{
+			if ( log.isDebugEnabled() == true )
+			{
+				log.debug( "Time {} : [{}]", timeStamp, nmeaBuffer.toString().trim() );
+			}
+
+			if ( nmeaRecorder != null )
+			{
+				nmeaRecorder.record( timeStamp, nmeaBuffer );
+			}
+
+			epochBroadcasts = true;
+			epochAssembler.startSentence( timeStamp );
+			nmeaParser.parse( nmeaBuffer );
+		}
+
+		/**
+		 * Called when the provider is disabled by the user
+		 * Update the provider status and broadcast it
+		 */
+		@Override
+		public void onProviderDisabled() 
+		{
+			log.info( "onProviderDisabled" );
+			
+			lockController.providerDisabled();
+		}
+
+		/**
+		 * Called when the provider is enabled by the user
+		 * Update the provider status and broadcast it
+		 */
+		@Override
+		public void onProviderEnabled() 
+		{
+			log.info( "onProviderEnabled" );
+			
+			lockController.providerEnabled();
+		}
+	};
 	
 	/**
-	 * Listener instance used for receiving notifications when GPS status has changed
+	 * Receiver for the NMEA data assembled into epochs. Called once per epoch rather than once per sentence, and makes the
+	 * location and status broadcasts held back during the epoch
 	 */
-	private Listener statusListener = new GpsStatus.Listener()
+	private NmeaEpochAssembler.IEpochReceiver epochReceiver = new NmeaEpochAssembler.IEpochReceiver()
 	{
 		/**
-		 * Called to report changes in the GPS status
-		 * @param event - one of 
-		 * GPS_EVENT_STARTED 
-		 * GPS_EVENT_STOPPED 
-		 * GPS_EVENT_FIRST_FIX 
-		 * GPS_EVENT_SATELLITE_STATUS 
+		 * Called when all the sentences for an epoch have been decoded
 		 */
 		@Override
-		public synchronized void onGpsStatusChanged( int event )
+		public void onEpochReceived( NmeaEpochAssembler.Epoch epoch )
 		{
-			GpsStatus status = gpsLocationManager.getGpsStatus( null );
-
-			switch ( event )
+			if ( log.isDebugEnabled() == true )
 			{
-				case GpsStatus.GPS_EVENT_SATELLITE_STATUS:
-				case GpsStatus.GPS_EVENT_FIRST_FIX:
-				{
-					// Count number of satellites in the fix
-					int newSatellitesInFix = 0;
-					int newNumberOfSatellites = 0;
+				NmeaParser.Fix fix = epoch.fix;
+				log.debug( "Epoch {} : {} sentences Fix mode {} Satellites used {} PDOP {} HDOP {} VDOP {}", new Object[] { epoch.timeStamp,
+						epoch.sentenceCount, fix.fixMode, fix.usedPrnCount, fix.pdop, fix.hdop, fix.vdop } );
 
-					Iterable<GpsSatellite> satellites = status.getSatellites();
-					 
-					for ( GpsSatellite satellite : satellites )
-					{
-						log.info( "Sat {} Id {} Noise {} Fix {}", new Object[]  { newNumberOfSatellites, satellite.getPrn(), satellite.getSnr(),
-								satellite.usedInFix() } );
-						newNumberOfSatellites++;
-						if ( satellite.usedInFix() == true )
-						{
-							newSatellitesInFix++;
-						}
-					}
-					
-					// Check if either of these counts have changed
-					if ( ( newNumberOfSatellites != gpsStatus.satellitesInView ) || ( newSatellitesInFix != gpsStatus.satellitesInFix ) )
-					{
-						gpsStatus.satellitesInView = newNumberOfSatellites;
-						gpsStatus.satellitesInFix = newSatellitesInFix;
-						
-						// If there's a fix then stop the locked lost timer and update the state
-						if ( newSatellitesInFix > 0 )
-						{
-							lockLostTimerInstance.stopTimer();
-							gpsStatus.providerStatus = ProviderState.Locked;
-						}
-						else
-						{
-							// The lock has been lost, but don't notify the user straight away.
-							improveAccuracyTimer.stopTimer();
-							
-							if ( gpsStatus.providerStatus ==  ProviderState.Locked )
-							{
-								if ( lockLostTimerInstance.isTimerRunning() == false )
-								{
-									lockLostTimerInstance.startTimer( LOCK_LOST_FILTER_TIME);
-								}
-							}
-							else
-							{
-								gpsStatus.providerStatus = ProviderState.NoLock;
-							}
-						}
-						
-						BroadcastStatusChange();
-					}
-					
-					break;
+				if ( epoch.satellitesUpdated == true )
+				{
+					log.debug( "Satellites in view {}", epoch.satellites.count );
 				}
-				
-				case GpsStatus.GPS_EVENT_STOPPED:
-	            case GpsStatus.GPS_EVENT_STARTED:
-	            {
-	            	break;
-	            }
-	            default:
-	            {
-	               break;
-	            }
 			}
+
+			BroadcastPendingUpdates();
 		}
 	};
-
+	
 	/**
-	 * Listener used to receive the NMEA strings.
+	 * Create a Location to broadcast to clients from a fix
+	 * @param fix - the fix
+	 * @return the Location
 	 */
-	private NmeaListener nmeaListener = new GpsStatus.NmeaListener() 
+	private static Location LocationFromFix( GpsFix fix )
 	{
+		Location location = new Location( LocationManager.GPS_PROVIDER );
+		location.setTime( fix.time );
+		location.setLatitude( fix.latitude );
+		location.setLongitude( fix.longitude );
+		
+		if ( Double.isNaN( fix.altitude ) == false )
+		{
+			location.setAltitude( fix.altitude );
+		}
+		if ( Float.isNaN( fix.accuracy ) == false )
+		{
+			location.setAccuracy( fix.accuracy );
+		}
+		if ( Float.isNaN( fix.speed ) == false )
+		{
+			location.setSpeed( fix.speed );
+		}
+		if ( Float.isNaN( fix.bearing ) == false )
+		{
+			location.setBearing( fix.bearing );
+		}
+		
+		return location;
+	}
+	
+	/**
+	 * Gives the lock controller access to the GPS
+	 */
+	private GpsLockController.IGpsControl gpsControl = new GpsLockController.IGpsControl()
+	{
+		@Override
+		public void startUpdates()
+		{
+			StartStatusAndLocationUpdates();
+		}
+
+		@Override
+		public void stopUpdates()
+		{
+			StopStatusAndLocationUpdates();
+		}
+
+		@Override
+		public boolean isProviderEnabled()
+		{
+			return locationSource.isProviderEnabled();
+		}
+
 		/**
-		 * Called when an NMEA string has been received
-		 * Log the string
+		 * Called on the timer thread, so pass the request to the service thread
 		 */
 		@Override
-		public void onNmeaReceived( long timeStamp, String nmeaBuffer ) 
+		public void requestTurnOn()
 		{
-			String removeLinefeed = nmeaBuffer.replace( '\n', ' ' );
-			log.info( String .format( "Time %d : [%s]", timeStamp, removeLinefeed ) );
+			Message.obtain( serviceHandler, TURNONGPS ).sendToTarget();
+		}
+
+		/**
+		 * Called on the timer thread, so pass the request to the service thread
+		 */
+		@Override
+		public void requestTurnOff()
+		{
+			Message.obtain( serviceHandler, TURNOFFGPS ).sendToTarget();
+		}
+
+		/**
+		 * Called on the timer thread, so pass the request to the service thread
+		 */
+		@Override
+		public void requestLockLost()
+		{
+			Message.obtain( serviceHandler, LOCKLOST ).sendToTarget();
+		}
+
+		/**
+		 * While NMEA is being received the status is broadcast once at the end of the epoch, however often it changes
+		 */
+		@Override
+		public void onStatusChanged( GpsLockController controller )
+		{
+			if ( epochBroadcasts == true )
+			{
+				statusPending = true;
+			}
+			else
+			{
+				BroadcastStatusChange();
+			}
+		}
+
+		@Override
+		public long getTime()
+		{
+			return SystemClock.elapsedRealtime();
 		}
 	};
 	
 	/**
-	 * Load an Intent with the current status and broadcast it
+	 * Broadcast the location and status if they have been held back during the current epoch
+	 */
+	private void BroadcastPendingUpdates()
+	{
+		if ( fixPending == true )
+		{
+			fixPending = false;
+			BroadcastLocation( pendingFix );
+		}
+
+		if ( statusPending == true )
+		{
+			BroadcastStatusChange();
+		}
+	}
+
+	/**
+	 * Load an Intent with a fix and broadcast it
+	 * @param fix - the fix
+	 */
+	private void BroadcastLocation( GpsFix fix )
+	{
+		Intent intent = new Intent( TrackerServiceManager.BROADCAST_LOCATION );
+		
+		TrackingLocation.LoadIntentWithLocation( intent, LocationFromFix( fix ) );
+		
+	    sendBroadcast( intent );
+	}
+
+	/**
+	 * Load an Intent with the current status and broadcast it. Only called on the service thread, which owns the history
 	 */
 	private void BroadcastStatusChange()
 	{
+		statusPending = false;
+		
+		gpsStatus.state = lockController.getState();
+		gpsStatus.providerStatus = lockController.getProviderStatus();
+		gpsStatus.satellitesInView = lockController.getSatellitesInView();
+		gpsStatus.satellitesInFix = lockController.getSatellitesInFix();
+		gpsStatus.meanSnr = satelliteHistory.getMeanUsedSnr();
+		gpsStatus.geometrySpread = satelliteHistory.getGeometrySpread();
+		
 		Intent intent = new Intent( TrackerServiceManager.BROADCAST_STATUS );
 		gpsStatus.LoadIntentWithStatus( intent );
 	    sendBroadcast( intent );
@@ -529,7 +653,10 @@ public class GPSInterfaceService extends Service implements LocationListener
 	//
 	
 	/** Use a TrackingStatus instance to hold all the status data */
-	private TrackingStatus gpsStatus = new TrackingStatus( TrackingState.Stopped, ProviderState.Disabled, 0, 0 );
+	private TrackingStatus gpsStatus = new TrackingStatus( TrackingState.Stopped, ProviderState.Disabled, 0, 0, 0, 0 );
+
+	/** Recent signal readings of each satellite. Only used on the service thread */
+	private SatelliteHistory satelliteHistory = new SatelliteHistory();
 	
 	/** Logger for this class */
 	private static final Logger log = LoggerFactory.getLogger( GPSInterfaceService.class );
@@ -540,11 +667,33 @@ public class GPSInterfaceService extends Service implements LocationListener
 	/** The thread's message handler */
 	private ServiceHandler serviceHandler = null;
 	  
-	/** Cached LocationManager */
-	private LocationManager gpsLocationManager = null;
+	/** Where the locations come from */
+	private ILocationSource locationSource = null;
 	
-	/** Used to force reporting of provider status */
-	private boolean firstReport = true;
+	/** Groups the decoded NMEA sentences into epochs. Only used on the service thread */
+	private NmeaEpochAssembler epochAssembler = new NmeaEpochAssembler( epochReceiver );
+
+	/** Decodes the NMEA sentences received from the GPS. Only used on the service thread */
+	private NmeaParser nmeaParser = new NmeaParser( epochAssembler );
+
+	/** True while the location source is reporting NMEA, so broadcasts are made once per epoch. Only used on the service thread */
+	private boolean epochBroadcasts = false;
+
+	/** The last fix, held until the end of its epoch. Only used on the service thread */
+	private GpsFix pendingFix = new GpsFix();
+	private boolean fixPending = false;
+
+	/** True if the status has changed during the current epoch. Only used on the service thread */
+	private boolean statusPending = false;
+
+	/** Ring file holding the raw NMEA sentences. Null if it could not be opened. Only used on the service thread */
+	private NmeaRecorder nmeaRecorder = null;
+
+	/** The fixes logged. Null if it could not be opened. Only used on the service thread */
+	private TrackWriter trackWriter = null;
+
+	/** The logging and lock handling state machine */
+	private GpsLockController lockController = null;
 
 	/** Timer used to control how often the GPS is turned on once a lock is acquired */
 	private GenericTimer lockAquiredTimerInstance = new GenericTimer();
@@ -555,6 +704,19 @@ public class GPSInterfaceService extends Service implements LocationListener
 	/** Timer used to control how long after an initial lock has been obtained to wait for a better lock. */
 	private GenericTimer improveAccuracyTimer = new GenericTimer();
 	
+	/** Name and size of the NMEA recording. At around 500 bytes per second this holds over 9 hours of sentences */
+	private static final String NMEA_RECORDING_NAME = "nmea.ring";
+	private static final int NMEA_RECORDING_SIZE = 16 * 1024 * 1024;
+	
+	/** Name of the track file */
+	private static final String TRACK_NAME = "track.dat";
+	
+	/** Filter the location updates according to how fast the device is moving while the GPS is left on, see LocationThrottle */
+	private static final boolean MOTION_AWARE_UPDATES = true;
+	
+	/** Rate in Hz of the synthetic fixes used instead of the GPS for load testing, see SyntheticLocationSource. 0 to use the GPS */
+	private static final double SYNTHETIC_RATE = 0;
+	
 	/** Name given to the thread that actually interfaces to the GPS */
 	private static final String ServiceThreadName = "GPSInterfaceThread";
 	
@@ -564,21 +726,8 @@ public class GPSInterfaceService extends Service implements LocationListener
 	public static final int STOPLOGGING = 3;
 	public static final int TURNONGPS = 4;
 	public static final int REQUESTSTATUS = 5;
-	
-	/** Specify that all GPS changes are required - no filtering on distance moved or time interval*/
-	private static final float GPS_DISTANCE = 0F;
-	private static final long  GPS_INTERVAL = 0l;
-	
-	/** Minimum accuracy in metres */
-	private static final float REQUIRED_ACCURACY = 20F;
-	
-	/** How often to ask the GPS for a new lock once a lock has been obtained */
-	private static final long LOCKED_POLL_TIME = 15000;
-	
-	/** How long to wait for a subsequent lock after a lock has been acquired */
-	private static final long LOCK_LOST_FILTER_TIME = 10000;
-	
-	/** How long to extend the time the GPS is turned on in hope of getting a more accurate fix */
-	private static final long EXTRA_TIME_AFTER_LOCK = 2000;
+	public static final int TURNOFFGPS = 6;
+	public static final int LOCKLOST = 7;
+	public static final int OPENFILES = 8;
 }
 
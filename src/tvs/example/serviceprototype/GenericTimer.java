@@ -6,7 +6,7 @@ import java.util.TimerTask;
 /**
  * Generic TimerTask used to notify client that lock has not been acquired within a reasonable period
  */
-public class GenericTimer
+public class GenericTimer implements ITimer
 {
 	public GenericTimer()
 	{
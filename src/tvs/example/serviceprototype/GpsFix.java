@@ -0,0 +1,53 @@
+package tvs.example.serviceprototype;
+
+/**
+ * A position reported by an ILocationSource.
+ * A plain Java equivalent of android.location.Location, so that location sources and their clients can run without Android.
+ * Values that were not reported are NaN.
+ */
+public final class GpsFix
+{
+	/** UTC time of the fix in milliseconds since January 1, 1970 */
+	public long time = 0;
+
+	/** Position in degrees, WGS84 */
+	public double latitude = Double.NaN;
+	public double longitude = Double.NaN;
+
+	/** Altitude in metres above the WGS84 ellipsoid */
+	public double altitude = Double.NaN;
+
+	/** Estimated horizontal accuracy in metres */
+	public float accuracy = Float.NaN;
+
+	/** Speed over the ground in metres per second */
+	public float speed = Float.NaN;
+
+	/** Direction of travel in degrees east of true north */
+	public float bearing = Float.NaN;
+
+	/**
+	 * Copy another fix into this one
+	 * @param other - the fix to copy
+	 */
+	public void set( GpsFix other )
+	{
+		time = other.time;
+		latitude = other.latitude;
+		longitude = other.longitude;
+		altitude = other.altitude;
+		accuracy = other.accuracy;
+		speed = other.speed;
+		bearing = other.bearing;
+	}
+
+	/**
+	 * Return the fix to its initial state
+	 */
+	public void clear()
+	{
+		time = 0;
+		latitude = longitude = altitude = Double.NaN;
+		accuracy = speed = bearing = Float.NaN;
+	}
+}
@@ -0,0 +1,479 @@
+package tvs.example.serviceprototype;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tvs.example.serviceprototype.GPSInterfaceService.ProviderState;
+import tvs.example.serviceprototype.GPSInterfaceService.TrackingState;
+
+/**
+ * The logging and lock handling state machine used by the GPSInterfaceService.
+ * Once a lock of the required accuracy has been held for a short time the GPS is turned off, and it is turned back on
+ * periodically to get a new lock. Loss of lock is only reported if it is not regained within a filter period. These times are
+ * chosen by a DutyCycleScheduler.
+ * The timers only ask the IGpsControl to pass their work to the thread driving the controller, so the controller, the
+ * scheduler and the GPS are only used from that thread.
+ * The controller has no Android dependencies. The GPS and the timers are accessed through interfaces so that it can be
+ * driven by recorded data (see NmeaReplay in the bench tree) as well as by the real GPS.
+ */
+public class GpsLockController
+{
+	//
+	// Public types and interfaces
+	//
+
+	/**
+	 * Interface used by the controller to control the GPS and report status changes
+	 */
+	public interface IGpsControl
+	{
+		/**
+		 * Start receiving location, status and NMEA updates from the GPS
+		 */
+		public void startUpdates();
+
+		/**
+		 * Stop receiving updates from the GPS
+		 */
+		public void stopUpdates();
+
+		/**
+		 * @return true if the GPS is enabled
+		 */
+		public boolean isProviderEnabled();
+
+		/**
+		 * Called from the lock acquired timer when it is time to turn the GPS on again. Implementations should call turnOn
+		 * from the thread that normally drives the controller.
+		 */
+		public void requestTurnOn();
+
+		/**
+		 * Called from the improve accuracy timer when it is time to turn the GPS off. Implementations should call turnOff
+		 * from the thread that normally drives the controller.
+		 */
+		public void requestTurnOff();
+
+		/**
+		 * Called from the lock lost timer when it has expired. Implementations should call lockLost from the thread that
+		 * normally drives the controller.
+		 */
+		public void requestLockLost();
+
+		/**
+		 * Called when the status should be reported to clients
+		 * @param controller - the controller holding the status
+		 */
+		public void onStatusChanged( GpsLockController controller );
+
+		/**
+		 * @return the current time in milliseconds, used to measure how long the GPS takes to get a fix
+		 */
+		public long getTime();
+	}
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * Construct the controller with the default adaptive scheduler
+	 * @param control - used to control the GPS
+	 * @param lockAquiredTimer - times how long the GPS is off once a lock has been acquired
+	 * @param lockLostTimer - times how long after a lock is lost before notifying clients
+	 * @param improveAccuracyTimer - times how long after an accurate lock has been obtained to wait for a better one
+	 */
+	public GpsLockController( IGpsControl control, ITimer lockAquiredTimer, ITimer lockLostTimer, ITimer improveAccuracyTimer )
+	{
+		this( control, lockAquiredTimer, lockLostTimer, improveAccuracyTimer, new DutyCycleScheduler( new DutyCycleScheduler.Config() ) );
+	}
+
+	/**
+	 * Construct the controller and register itself with the timers
+	 * @param control - used to control the GPS
+	 * @param lockAquiredTimer - times how long the GPS is off once a lock has been acquired
+	 * @param lockLostTimer - times how long after a lock is lost before notifying clients
+	 * @param improveAccuracyTimer - times how long after an accurate lock has been obtained to wait for a better one
+	 * @param scheduler - chooses the times
+	 */
+	public GpsLockController( IGpsControl control, ITimer lockAquiredTimer, ITimer lockLostTimer, ITimer improveAccuracyTimer,
+			DutyCycleScheduler scheduler )
+	{
+		this.control = control;
+		this.scheduler = scheduler;
+		this.lockAquiredTimer = lockAquiredTimer;
+		this.lockLostTimer = lockLostTimer;
+		this.improveAccuracyTimer = improveAccuracyTimer;
+
+		lockAquiredTimer.registerDelegate(
+				new ITimerExpiry()
+				{
+					@Override
+					public void OnTimerExpired()
+					{
+						log.info( "lockAquiredTimer OnTimerExpired : Starting polling ");
+
+						GpsLockController.this.control.requestTurnOn();
+					}
+				}
+		);
+
+		lockLostTimer.registerDelegate(
+				new ITimerExpiry()
+				{
+					@Override
+					public void OnTimerExpired()
+					{
+						log.info( "lockLostTimer OnTimerExpired : Requesting status update ");
+
+						GpsLockController.this.control.requestLockLost();
+					}
+				}
+		);
+
+		improveAccuracyTimer.registerDelegate(
+				new ITimerExpiry()
+				{
+					@Override
+					public void OnTimerExpired()
+					{
+						log.info( "improveAccuracyTimer OnTimerExpired : Requesting GPS off" );
+
+						GpsLockController.this.control.requestTurnOff();
+					}
+				}
+		);
+	}
+
+	/**
+	 * Start logging if currently stopped
+	 */
+	public void startLogging()
+	{
+		if ( state == TrackingState.Stopped )
+		{
+			// Stop and start updates
+			control.stopUpdates();
+			StartUpdates();
+
+			// Record new state
+			state = TrackingState.Logging;
+
+			// Broadcast state
+			control.onStatusChanged( this );
+		}
+	}
+
+	/**
+	 * Stop logging and all the timers
+	 */
+	public void stopLogging()
+	{
+		state = TrackingState.Stopped;
+
+		// Stop asking for status and location updates
+		control.stopUpdates();
+		gpsLeftOn = false;
+
+		lockAquiredTimer.stopTimer();
+		StopLockLostTimer();
+		improveAccuracyTimer.stopTimer();
+
+		// Broadcast state
+		control.onStatusChanged( this );
+	}
+
+	/**
+	 * Stop updates prior to the service stopping
+	 */
+	public void stop()
+	{
+		// Stop asking for status and location updates
+		control.stopUpdates();
+		gpsLeftOn = false;
+
+		// Record new state
+		state = TrackingState.Stopped;
+
+		// Broadcast state
+		control.onStatusChanged( this );
+	}
+
+	/**
+	 * Turn the GPS back on after the lock acquired timer has expired
+	 */
+	public void turnOn()
+	{
+		StartUpdates();
+	}
+
+	/**
+	 * Turn the GPS off after the improve accuracy timer has expired, unless it would not be off for long enough to be
+	 * worthwhile. Ignored if logging has stopped or the lock has been lost since the timer expired.
+	 */
+	public void turnOff()
+	{
+		if ( ( state != TrackingState.Logging ) || ( satellitesInFix == 0 ) )
+		{
+			return;
+		}
+
+		scheduler.extraTimeEnded();
+
+		long pollTime = scheduler.getPollTime();
+		if ( pollTime > 0 )
+		{
+			log.info( "turnOff : Stopping GPS for {} ms", pollTime );
+
+			control.stopUpdates();
+			gpsLeftOn = false;
+			lockAquiredTimer.startTimer( pollTime );
+		}
+		else
+		{
+			log.info( "turnOff : Leaving GPS on" );
+
+			gpsLeftOn = true;
+		}
+	}
+
+	/**
+	 * Report that the lock has been lost after the lock lost timer has expired. Ignored if the lock has been regained or
+	 * logging has stopped since the timer expired.
+	 */
+	public void lockLost()
+	{
+		if ( lockLostPending == false )
+		{
+			return;
+		}
+
+		lockLostPending = false;
+
+		if ( providerStatus == ProviderState.Locked )
+		{
+			providerStatus = ProviderState.NoLock;
+
+			control.onStatusChanged( this );
+		}
+	}
+
+	/**
+	 * Called when the location has changed.
+	 * If the GPS is locked on and the accuracy is OK then start the timer that will turn off the GPS.
+	 * A locked fix without an accuracy is accepted, as it was when a missing accuracy was reported as 0.
+	 * @param accuracy - accuracy of the location in metres, or NaN if not known
+	 * @param speed - speed in metres per second, or NaN if not known
+	 */
+	public void locationChanged( float accuracy, float speed )
+	{
+		scheduler.locationChanged( control.getTime(), accuracy, speed );
+
+		if ( providerStatus == ProviderState.Locked )
+		{
+			if ( lockLostTimer.isTimerRunning() == false )
+			{
+				if ( ( Float.isNaN( accuracy ) == true ) || ( accuracy <= scheduler.getRequiredAccuracy() ) )
+				{
+					// If this is the first time this accuracy has been achieved then start the improveAccuracyTimer timer
+					if ( improveAccuracyTimer.isTimerRunning() == false )
+					{
+						improveAccuracyTimer.startTimer( scheduler.getExtraTime() );
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called when the satellite status has been reported.
+	 * Update the provider state if the counts have changed
+	 * @param newNumberOfSatellites - number of satellites in view
+	 * @param newSatellitesInFix - number of satellites used in the fix
+	 */
+	public void satelliteStatus( int newNumberOfSatellites, int newSatellitesInFix )
+	{
+		// Check if either of these counts have changed
+		if ( ( newNumberOfSatellites != satellitesInView ) || ( newSatellitesInFix != satellitesInFix ) )
+		{
+			satellitesInView = newNumberOfSatellites;
+			satellitesInFix = newSatellitesInFix;
+
+			// If there's a fix then stop the locked lost timer and update the state
+			if ( newSatellitesInFix > 0 )
+			{
+				StopLockLostTimer();
+				providerStatus = ProviderState.Locked;
+			}
+			else
+			{
+				// The lock has been lost, but don't notify the user straight away.
+				improveAccuracyTimer.stopTimer();
+
+				if ( providerStatus ==  ProviderState.Locked )
+				{
+					StartLockLostTimer();
+				}
+				else
+				{
+					providerStatus = ProviderState.NoLock;
+				}
+			}
+
+			control.onStatusChanged( this );
+		}
+	}
+
+	/**
+	 * Called when the provider is disabled by the user
+	 */
+	public void providerDisabled()
+	{
+		// Only report this if the provider is enabled - or if this is the first time
+		if ( ( providerStatus != ProviderState.Disabled ) || ( firstReport == true ) )
+		{
+			providerStatus = ProviderState.Disabled;
+			firstReport = false;
+
+			control.onStatusChanged( this );
+		}
+	}
+
+	/**
+	 * Called when the provider is enabled by the user
+	 */
+	public void providerEnabled()
+	{
+		if ( providerStatus == ProviderState.Disabled )
+		{
+			providerStatus = ProviderState.NoLock;
+			firstReport = false;
+
+			control.onStatusChanged( this );
+		}
+	}
+
+	public TrackingState getState()
+	{
+		return state;
+	}
+
+	public ProviderState getProviderStatus()
+	{
+		return providerStatus;
+	}
+
+	public int getSatellitesInView()
+	{
+		return satellitesInView;
+	}
+
+	public int getSatellitesInFix()
+	{
+		return satellitesInFix;
+	}
+
+	public DutyCycleScheduler getScheduler()
+	{
+		return scheduler;
+	}
+
+	/**
+	 * @return true if the scheduler chose to leave the GPS on the last time it was due to be turned off, and it has not
+	 * been turned off or on since
+	 */
+	public boolean isGpsLeftOn()
+	{
+		return gpsLeftOn;
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Start the GPS updates
+	 * Update the provider state and start the lock lost timer if locked.
+	 */
+	private void StartUpdates()
+	{
+		control.startUpdates();
+		gpsLeftOn = false;
+		scheduler.gpsTurnedOn( control.getTime() );
+
+		// Get the current status in case it has changed whilst we weren't listening
+		if ( control.isProviderEnabled() == true )
+		{
+			if ( providerStatus ==  ProviderState.Locked )
+			{
+				StartLockLostTimer();
+			}
+			else
+			{
+				providerStatus = ProviderState.NoLock;
+			}
+		}
+		else
+		{
+			providerStatus = ProviderState.Disabled;
+		}
+	}
+
+	/**
+	 * Start the lock lost timer unless it is already running or its expiry has not been handled yet
+	 */
+	private void StartLockLostTimer()
+	{
+		if ( ( lockLostTimer.isTimerRunning() == false ) && ( lockLostPending == false ) )
+		{
+			lockLostPending = true;
+			lockLostTimer.startTimer( scheduler.getLockLostFilterTime() );
+		}
+	}
+
+	/**
+	 * Stop the lock lost timer and ignore any expiry that has not been handled yet
+	 */
+	private void StopLockLostTimer()
+	{
+		lockLostTimer.stopTimer();
+		lockLostPending = false;
+	}
+
+	//
+	// Private data
+	//
+
+	/** Logger for this class */
+	private static final Logger log = LoggerFactory.getLogger( GpsLockController.class );
+
+	/** Used to control the GPS */
+	private final IGpsControl control;
+
+	/** Timer used to control how often the GPS is turned on once a lock is acquired */
+	private final ITimer lockAquiredTimer;
+
+	/** Timer used to control how long after lock is lost before notifying clients */
+	private final ITimer lockLostTimer;
+
+	/** Timer used to control how long after an initial lock has been obtained to wait for a better lock. */
+	private final ITimer improveAccuracyTimer;
+
+	/** Chooses the times */
+	private final DutyCycleScheduler scheduler;
+
+	/** The status reported to clients */
+	private TrackingState state = TrackingState.Stopped;
+	private ProviderState providerStatus = ProviderState.Disabled;
+	private int satellitesInView = 0;
+	private int satellitesInFix = 0;
+
+	/** Set when turnOff leaves the GPS on */
+	private boolean gpsLeftOn = false;
+
+	/** Set when the lock lost timer is started and cleared when it is stopped or its expiry is handled */
+	private boolean lockLostPending = false;
+
+	/** Used to force reporting of provider status */
+	private boolean firstReport = true;
+}
@@ -0,0 +1,69 @@
+package tvs.example.serviceprototype;
+
+/**
+ * A source of positions and satellite status, such as the Android GPS or a stream of NMEA sentences.
+ * Allows the GPSInterfaceService logic to be driven by something other than android.location.LocationManager.
+ */
+public interface ILocationSource 
+{
+	/**
+	 * Interface used by a source to pass updates to its client
+	 */
+	public interface IUpdateReceiver
+	{
+		/**
+		 * Called when a new position is available
+		 * @param fix - the position. May be reused by the source, so must be copied if kept
+		 */
+		public void onFixReceived( GpsFix fix );
+
+		/**
+		 * Called when the satellite status has been reported
+		 * @param satellitesInView - number of satellites in view
+		 * @param satellitesInFix - number of satellites used in the fix
+		 */
+		public void onSatelliteStatusReceived( int satellitesInView, int satellitesInFix );
+
+		/**
+		 * Called for each satellite whose state has changed, if the source reports individual satellites.
+		 * Called before onSatelliteStatusReceived for the same report.
+		 * @param table - the table holding the satellite's state
+		 * @param prn - the satellite's PRN
+		 * @param changes - the SatelliteTable.CHANGED_ flags
+		 */
+		public void onSatelliteChanged( SatelliteTable table, int prn, int changes );
+
+		/**
+		 * Called for each raw NMEA sentence, if the source has them
+		 * @param timeStamp - timestamp of the sentence in milliseconds
+		 * @param sentence - the sentence
+		 */
+		public void onNmeaReceived( long timeStamp, CharSequence sentence );
+
+		/**
+		 * Called when the source is enabled
+		 */
+		public void onProviderEnabled();
+
+		/**
+		 * Called when the source is disabled
+		 */
+		public void onProviderDisabled();
+	}
+
+	/**
+	 * Start passing updates to a receiver
+	 * @param receiver - the receiver
+	 */
+	public void startUpdates( IUpdateReceiver receiver );
+
+	/**
+	 * Stop passing updates
+	 */
+	public void stopUpdates();
+
+	/**
+	 * @return true if the source is enabled
+	 */
+	public boolean isProviderEnabled();
+}
@@ -0,0 +1,15 @@
+package tvs.example.serviceprototype;
+
+/**
+ * One shot timer used by the GpsLockController, allowing real and simulated timers to be used
+ */
+public interface ITimer 
+{
+		public void registerDelegate( ITimerExpiry expiryDelegate );
+		
+		public void startTimer( long timePeriod );
+		
+		public void stopTimer();
+		
+		public Boolean isTimerRunning();
+}
@@ -0,0 +1,178 @@
+package tvs.example.serviceprototype;
+
+/**
+ * Chooses the minimum time and distance between location updates from how fast the device is moving, so that a stationary or
+ * slow device is not sent, and does not broadcast, a fix every second.
+ * Updates are unfiltered until an accurate fix has been received, so the accuracy of a new lock is not held back. After that
+ * the filters are tightened as soon as the speed rises, but only relaxed once the speed has stayed low for HOLD_TIME, so that a
+ * short pause does not cause the updates to be re-requested back and forth.
+ * The errors this allows in the reported position are bounded by the distance filter, plus the speed times the time filter.
+ * Duty cycling already turns the GPS off while the device is still, so the throttle is only used while the GpsLockController
+ * is leaving the GPS on.
+ * Not thread safe.
+ */
+public class LocationThrottle
+{
+	//
+	// Public types and interfaces
+	//
+
+	/**
+	 * How the device is moving, with the filters used for each
+	 */
+	public enum Motion
+	{
+		Stationary( 20000, 10F ),
+		Slow( 2000, 5F ),
+		Moving( 0, 0F );
+
+		/** Minimum time between updates in milliseconds, and minimum distance in metres */
+		public final long interval;
+		public final float distance;
+
+		private Motion( long interval, float distance )
+		{
+			this.interval = interval;
+			this.distance = distance;
+		}
+	};
+
+	/** Speeds in metres per second below which the device is stationary, or slow */
+	public static final float STATIONARY_SPEED = 0.5F;
+	public static final float SLOW_SPEED = 3.0F;
+
+	/** Accuracy in metres needed before the updates are filtered */
+	public static final float REQUIRED_ACCURACY = 20F;
+
+	/** How long in milliseconds a lower speed must last before the filters are relaxed */
+	public static final long HOLD_TIME = 10000;
+
+	//
+	// Public methods
+	//
+
+	public LocationThrottle()
+	{
+	}
+
+	/**
+	 * Go back to unfiltered updates, e.g. when the GPS is turned on
+	 */
+	public void reset()
+	{
+		motion = Motion.Moving;
+		candidate = Motion.Moving;
+		speedEstimate = 0;
+		accurate = false;
+	}
+
+	/**
+	 * Called for each location received
+	 * @param time - time of the location in milliseconds
+	 * @param accuracy - accuracy in metres, or NaN if not known
+	 * @param speed - speed in metres per second, or NaN if not known
+	 * @return true if the motion has changed, so the updates should be requested again with the new filters
+	 */
+	public boolean locationChanged( long time, float accuracy, float speed )
+	{
+		if ( ( Float.isNaN( accuracy ) == false ) && ( accuracy <= REQUIRED_ACCURACY ) )
+		{
+			accurate = true;
+		}
+
+		if ( ( Float.isNaN( speed ) == true ) || ( accurate == false ) )
+		{
+			return false;
+		}
+
+		speedEstimate += ( speed - speedEstimate ) * SMOOTHING;
+
+		Motion newMotion = Motion.Moving;
+		if ( speedEstimate < STATIONARY_SPEED )
+		{
+			newMotion = Motion.Stationary;
+		}
+		else if ( speedEstimate < SLOW_SPEED )
+		{
+			newMotion = Motion.Slow;
+		}
+
+		if ( newMotion.ordinal() > motion.ordinal() )
+		{
+			// Speeding up - tighten the filters straight away
+			candidate = newMotion;
+		}
+		else if ( newMotion.ordinal() < motion.ordinal() )
+		{
+			// Slowing down - wait to see that it lasts
+			if ( newMotion != candidate )
+			{
+				candidate = newMotion;
+				candidateSince = time;
+				return false;
+			}
+
+			if ( time - candidateSince < HOLD_TIME )
+			{
+				return false;
+			}
+		}
+		else
+		{
+			candidate = newMotion;
+			return false;
+		}
+
+		motion = candidate;
+		changeCount++;
+		return true;
+	}
+
+	/**
+	 * @return how the device is moving
+	 */
+	public Motion getMotion()
+	{
+		return motion;
+	}
+
+	/**
+	 * @return the minimum time between updates in milliseconds
+	 */
+	public long getInterval()
+	{
+		return motion.interval;
+	}
+
+	/**
+	 * @return the minimum distance between updates in metres
+	 */
+	public float getDistance()
+	{
+		return motion.distance;
+	}
+
+	/**
+	 * @return the number of times the motion has changed
+	 */
+	public int getChangeCount()
+	{
+		return changeCount;
+	}
+
+	//
+	// Private data
+	//
+
+	/** Weight given to each new speed */
+	private static final double SMOOTHING = 0.3;
+
+	/** The motion the filters are set for, and a slower motion waiting for HOLD_TIME */
+	private Motion motion = Motion.Moving;
+	private Motion candidate = Motion.Moving;
+	private long candidateSince = 0;
+
+	private double speedEstimate = 0;
+	private boolean accurate = false;
+	private int changeCount = 0;
+}
@@ -0,0 +1,153 @@
+package tvs.example.serviceprototype;
+
+/**
+ * Groups the NMEA sentences reported for a single GPS epoch into one record.
+ * A receiver emits a burst of GGA, GSA, GSV, RMC etc. sentences each second, all reported with the same timestamp. The assembler
+ * receives the decoded sentences from an NmeaParser and passes the combined data to its IEpochReceiver once per epoch, when the
+ * first sentence of the next epoch arrives or when flush is called.
+ * Not thread safe - use from the thread feeding the parser.
+ */
+public class NmeaEpochAssembler implements NmeaParser.INmeaReceiver
+{
+	//
+	// Public types and interfaces
+	//
+
+	/**
+	 * Interface to allow clients to receive the assembled epochs
+	 */
+	public interface IEpochReceiver
+	{
+		/**
+		 * Called once for each epoch
+		 * @param epoch - the epoch. Reused for every epoch, so must be copied if kept
+		 */
+		public void onEpochReceived( Epoch epoch );
+	}
+
+	/**
+	 * All the data reported for one epoch
+	 */
+	public static final class Epoch
+	{
+		/** The timestamp shared by the sentences of the epoch */
+		public long timeStamp = 0;
+
+		/** Number of fix sentences and complete GSV sequences decoded */
+		public int sentenceCount = 0;
+
+		/** Bit mask of the sentence types decoded, indexed by NmeaParser.SentenceType ordinal */
+		public int sentenceTypes = 0;
+
+		/** The fix data as it stood at the end of the epoch */
+		public NmeaParser.Fix fix = null;
+
+		/** The most recent complete set of satellites in view, or null if none has been received */
+		public NmeaParser.Satellites satellites = null;
+
+		/** True if a complete GSV sequence was received during this epoch */
+		public boolean satellitesUpdated = false;
+
+		/**
+		 * @param type - a sentence type
+		 * @return true if a sentence of this type was decoded during the epoch
+		 */
+		public boolean hasSentence( NmeaParser.SentenceType type )
+		{
+			return ( sentenceTypes & ( 1 << type.ordinal() ) ) != 0;
+		}
+	}
+
+	//
+	// Public methods
+	//
+
+	public NmeaEpochAssembler( IEpochReceiver receiver )
+	{
+		this.receiver = receiver;
+	}
+
+	/**
+	 * Called before passing a sentence to the parser. If the timestamp differs from the current epoch's then the current
+	 * epoch is complete and is dispatched.
+	 * @param timeStamp - the timestamp reported with the sentence
+	 */
+	public void startSentence( long timeStamp )
+	{
+		if ( timeStamp != epoch.timeStamp )
+		{
+			flush();
+			epoch.timeStamp = timeStamp;
+		}
+	}
+
+	/**
+	 * Dispatch the current epoch, if any sentences have been decoded for it, and start a new one
+	 */
+	public void flush()
+	{
+		if ( epoch.sentenceCount > 0 )
+		{
+			epochCount++;
+			receiver.onEpochReceived( epoch );
+		}
+
+		epoch.sentenceCount = 0;
+		epoch.sentenceTypes = 0;
+		epoch.satellitesUpdated = false;
+	}
+
+	/**
+	 * @return the number of epochs dispatched
+	 */
+	public int getEpochCount()
+	{
+		return epochCount;
+	}
+
+	/**
+	 * Called by the parser when a fix sentence has been decoded
+	 */
+	@Override
+	public void onFixReceived( NmeaParser.SentenceType type, NmeaParser.Fix fix )
+	{
+		epoch.fix = fix;
+		addSentence( type );
+	}
+
+	/**
+	 * Called by the parser when a GSV sequence has been decoded
+	 */
+	@Override
+	public void onSatellitesReceived( NmeaParser.Satellites satellites )
+	{
+		epoch.satellites = satellites;
+		epoch.satellitesUpdated = true;
+		addSentence( NmeaParser.SentenceType.GSV );
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Record a decoded sentence in the current epoch
+	 */
+	private void addSentence( NmeaParser.SentenceType type )
+	{
+		epoch.sentenceCount++;
+		epoch.sentenceTypes |= ( 1 << type.ordinal() );
+	}
+
+	//
+	// Private data
+	//
+
+	/** Where to send the assembled epochs */
+	private final IEpochReceiver receiver;
+
+	/** The epoch being assembled */
+	private final Epoch epoch = new Epoch();
+
+	private int epochCount = 0;
+}
@@ -0,0 +1,229 @@
+package tvs.example.serviceprototype;
+
+import java.nio.CharBuffer;
+
+/**
+ * ILocationSource driven by a stream of NMEA sentences, e.g. from a recording (see NmeaReplay in the bench tree) or from an
+ * external receiver connected over a serial or Bluetooth link.
+ * The owner of the stream passes each sentence to parse. The sentences are decoded and assembled into epochs, and each epoch
+ * is reported as the events Android would have produced: a satellite status with the satellites in view (GSV) and used in the
+ * fix (GSA, or GGA if there is no GSA), followed by a fix if the receiver has one. The accuracy of the fix is estimated as
+ * HDOP x UERE_ESTIMATE.
+ * Not thread safe - updates are delivered on the thread calling parse.
+ */
+public class NmeaLocationSource implements ILocationSource
+{
+	//
+	// Public methods
+	//
+
+	public NmeaLocationSource()
+	{
+	}
+
+	/**
+	 * Start passing updates to a receiver
+	 * @param updateReceiver - the receiver
+	 */
+	@Override
+	public void startUpdates( IUpdateReceiver updateReceiver )
+	{
+		receiver = updateReceiver;
+		running = true;
+		nmeaParser.reset();
+	}
+
+	/**
+	 * Complete the current epoch and stop passing updates
+	 */
+	@Override
+	public void stopUpdates()
+	{
+		epochAssembler.flush();
+		running = false;
+	}
+
+	@Override
+	public boolean isProviderEnabled()
+	{
+		return providerEnabled;
+	}
+
+	/**
+	 * Enable or disable the source, e.g. when the external receiver is connected or disconnected.
+	 * The receiver is notified of any change.
+	 * @param enabled - true if the source is enabled
+	 */
+	public void setProviderEnabled( boolean enabled )
+	{
+		if ( enabled != providerEnabled )
+		{
+			providerEnabled = enabled;
+			if ( running == true )
+			{
+				if ( enabled == true )
+				{
+					receiver.onProviderEnabled();
+				}
+				else
+				{
+					receiver.onProviderDisabled();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pass a sentence to the source. Ignored if updates have not been started.
+	 * @param timeStamp - the time the sentence was received in milliseconds. Sentences of the same epoch share a timestamp
+	 * @param sentence - the sentence, with or without its line ending
+	 * @return true if the sentence was used
+	 */
+	public boolean parse( long timeStamp, CharSequence sentence )
+	{
+		int length = Math.min( sentence.length(), sentenceBuffer.length );
+		for ( int index = 0; index < length; index++ )
+		{
+			sentenceBuffer[ index ] = sentence.charAt( index );
+		}
+
+		return parseBuffer( timeStamp, length );
+	}
+
+	/**
+	 * Pass a sentence held in part of a character buffer to the source. Ignored if updates have not been started.
+	 * @param timeStamp - the time the sentence was received in milliseconds. Sentences of the same epoch share a timestamp
+	 * @param buffer - the buffer holding the sentence, with or without its line ending
+	 * @param start - index of the first character
+	 * @param end - index after the last character
+	 * @return true if the sentence was used
+	 */
+	public boolean parse( long timeStamp, char[] buffer, int start, int end )
+	{
+		int length = Math.min( end - start, sentenceBuffer.length );
+		System.arraycopy( buffer, start, sentenceBuffer, 0, length );
+
+		return parseBuffer( timeStamp, length );
+	}
+
+	/**
+	 * Report the current epoch now rather than when the first sentence of the next epoch arrives
+	 */
+	public void flush()
+	{
+		epochAssembler.flush();
+	}
+
+	/**
+	 * @return the number of epochs reported
+	 */
+	public int getEpochCount()
+	{
+		return epochAssembler.getEpochCount();
+	}
+
+	/**
+	 * @return the number of fixes reported
+	 */
+	public int getFixCount()
+	{
+		return fixCount;
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Pass the sentence held in the sentence buffer to the receiver and the parser
+	 * @param timeStamp - the time the sentence was received
+	 * @param length - the number of characters in the buffer
+	 * @return true if the sentence was used
+	 */
+	private boolean parseBuffer( long timeStamp, int length )
+	{
+		if ( running == false )
+		{
+			return false;
+		}
+
+		sentenceView.clear();
+		sentenceView.limit( length );
+		receiver.onNmeaReceived( timeStamp, sentenceView );
+
+		epochAssembler.startSentence( timeStamp );
+		nmeaParser.parse( sentenceBuffer, 0, length );
+
+		// Make sure the sentence is terminated, in case the line ending has been stripped
+		nmeaParser.parse( '\n' );
+
+		return true;
+	}
+
+	/**
+	 * Turns each epoch into the satellite status and fix events
+	 */
+	private NmeaEpochAssembler.IEpochReceiver epochReceiver = new NmeaEpochAssembler.IEpochReceiver()
+	{
+		@Override
+		public void onEpochReceived( NmeaEpochAssembler.Epoch epoch )
+		{
+			NmeaParser.Fix nmeaFix = epoch.fix;
+			if ( ( nmeaFix == null ) || ( running == false ) )
+			{
+				return;
+			}
+
+			int inView = ( epoch.satellites != null ) ? epoch.satellites.count : 0;
+			int inFix = epoch.hasSentence( NmeaParser.SentenceType.GSA ) ? nmeaFix.usedPrnCount : nmeaFix.satellitesUsed;
+			if ( nmeaFix.quality == 0 )
+			{
+				inFix = 0;
+			}
+
+			receiver.onSatelliteStatusReceived( inView, inFix );
+
+			if ( ( nmeaFix.quality > 0 ) && ( Double.isNaN( nmeaFix.latitude ) == false ) && ( Double.isNaN( nmeaFix.longitude ) == false ) )
+			{
+				fix.time = epoch.timeStamp;
+				fix.latitude = nmeaFix.latitude;
+				fix.longitude = nmeaFix.longitude;
+				fix.altitude = Double.isNaN( nmeaFix.geoidSeparation ) ? nmeaFix.altitude : nmeaFix.altitude + nmeaFix.geoidSeparation;
+				fix.accuracy = ( float )( nmeaFix.hdop * UERE_ESTIMATE );
+				fix.speed = ( float )nmeaFix.speed;
+				fix.bearing = ( float )nmeaFix.course;
+
+				fixCount++;
+				receiver.onFixReceived( fix );
+			}
+		}
+	};
+
+	//
+	// Private data
+	//
+
+	/** Assumed user equivalent range error in metres, used to estimate the accuracy from the HDOP */
+	private static final double UERE_ESTIMATE = 5.0;
+
+	/** Longest sentence accepted */
+	private static final int MAX_SENTENCE = 4096;
+
+	private final NmeaEpochAssembler epochAssembler = new NmeaEpochAssembler( epochReceiver );
+	private final NmeaParser nmeaParser = new NmeaParser( epochAssembler );
+
+	/** Holds the sentence being parsed, and a view of it passed to the receiver */
+	private final char[] sentenceBuffer = new char[ MAX_SENTENCE ];
+	private final CharBuffer sentenceView = CharBuffer.wrap( sentenceBuffer );
+
+	/** Where to send the updates */
+	private IUpdateReceiver receiver = null;
+
+	private boolean running = false;
+	private boolean providerEnabled = true;
+
+	/** Reused for every fix */
+	private final GpsFix fix = new GpsFix();
+
+	private int fixCount = 0;
+}
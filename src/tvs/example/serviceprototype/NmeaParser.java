@@ -0,0 +1,840 @@
+package tvs.example.serviceprototype;
+
+import java.util.Arrays;
+
+/**
+ * Streaming parser for the NMEA 0183 sentences reported by the GPS (GGA, RMC, GSA, GSV, VTG and GLL from any talker).
+ * Characters are copied into a fixed line buffer and the fields are tokenised in place, so no objects are created per sentence.
+ * The decoded data is accumulated into a single Fix and a single Satellites instance which are passed to the INmeaReceiver
+ * after each sentence; receivers must copy anything they want to keep.
+ * Sentences with a bad checksum are discarded. Sentences without a checksum are accepted.
+ * A sentence is decoded in full before any of it is stored, so a malformed sentence leaves the fix unchanged.
+ * Not thread safe - feed a parser from one thread only.
+ */
+public class NmeaParser
+{
+	//
+	// Public types and interfaces
+	//
+
+	/**
+	 * The sentences that are decoded
+	 */
+	public enum SentenceType
+	{
+		GGA,
+		RMC,
+		GSA,
+		GSV,
+		VTG,
+		GLL
+	};
+
+	/**
+	 * Interface to allow clients to receive the decoded data
+	 */
+	public interface INmeaReceiver
+	{
+		/**
+		 * Called after a GGA, RMC, GSA, VTG or GLL sentence has been decoded into the fix
+		 * @param type - the type of sentence decoded
+		 * @param fix - the accumulated fix data. Reused for every sentence
+		 */
+		public void onFixReceived( SentenceType type, Fix fix );
+
+		/**
+		 * Called when the last GSV sentence of a sequence has been decoded
+		 * @param satellites - the satellites in view reported by the sequence. Reused for every sequence
+		 */
+		public void onSatellitesReceived( Satellites satellites );
+	}
+
+	/**
+	 * The most recent fix data. Each sentence only updates the fields it carries; fields that have never been reported
+	 * are NaN or 0. Angles are in degrees, distances in metres and speeds in metres per second.
+	 */
+	public static final class Fix
+	{
+		/** UTC time of the fix in milliseconds since midnight, or -1 */
+		public int utcTime = -1;
+
+		/** UTC date as ddmmyy, or -1 */
+		public int utcDate = -1;
+
+		public double latitude = Double.NaN;
+		public double longitude = Double.NaN;
+
+		/** Altitude above mean sea level */
+		public double altitude = Double.NaN;
+
+		/** Height of the geoid above the WGS84 ellipsoid */
+		public double geoidSeparation = Double.NaN;
+
+		public double speed = Double.NaN;
+		public double course = Double.NaN;
+
+		/** GGA fix quality: 0 invalid, 1 GPS, 2 DGPS, ... */
+		public int quality = 0;
+
+		/** GSA fix mode: 1 no fix, 2 2D, 3 3D */
+		public int fixMode = 1;
+
+		/** RMC and GLL status - true if the receiver reports the data as valid */
+		public boolean valid = false;
+
+		/** Number of satellites used, from GGA */
+		public int satellitesUsed = 0;
+
+		public double pdop = Double.NaN;
+		public double hdop = Double.NaN;
+		public double vdop = Double.NaN;
+
+		/** PRNs of the satellites used in the fix, from GSA. Only the first usedPrnCount entries are set */
+		public final int[] usedPrns = new int[ MAX_USED_PRNS ];
+		public int usedPrnCount = 0;
+
+		/**
+		 * Return the fix to its initial state
+		 */
+		public void clear()
+		{
+			utcTime = -1;
+			utcDate = -1;
+			latitude = longitude = altitude = geoidSeparation = speed = course = Double.NaN;
+			pdop = hdop = vdop = Double.NaN;
+			quality = 0;
+			fixMode = 1;
+			valid = false;
+			satellitesUsed = 0;
+			usedPrnCount = 0;
+		}
+	}
+
+	/**
+	 * The satellites in view reported by one complete GSV sequence. Only the first count entries of the arrays are set.
+	 * Elevation, azimuth and SNR are -1 when not reported.
+	 */
+	public static final class Satellites
+	{
+		/** The two character talker identifier of the sequence, e.g. GP for GPS or GL for GLONASS */
+		public char talker1;
+		public char talker2;
+
+		/** Number of satellites in view according to the receiver */
+		public int inView = 0;
+
+		public int count = 0;
+		public final int[] prn = new int[ MAX_SATELLITES ];
+		public final int[] elevation = new int[ MAX_SATELLITES ];
+		public final int[] azimuth = new int[ MAX_SATELLITES ];
+		public final int[] snr = new int[ MAX_SATELLITES ];
+	}
+
+	//
+	// Public methods
+	//
+
+	public NmeaParser( INmeaReceiver receiver )
+	{
+		this.receiver = receiver;
+	}
+
+	/**
+	 * Parse some received characters. Sentences may be split across calls and a call may contain several sentences.
+	 * Each sentence is decoded when its terminating CR or LF is received.
+	 * @param data - the received characters
+	 */
+	public void parse( CharSequence data )
+	{
+		int length = data.length();
+		for ( int index = 0; index < length; index++ )
+		{
+			parse( data.charAt( index ) );
+		}
+	}
+
+	/**
+	 * Parse part of a character buffer
+	 * @param data - the buffer holding the received characters
+	 * @param start - index of the first character
+	 * @param end - index after the last character
+	 */
+	public void parse( char[] data, int start, int end )
+	{
+		for ( int index = start; index < end; index++ )
+		{
+			parse( data[ index ] );
+		}
+	}
+
+	/**
+	 * Parse a single received character
+	 * @param received - the character
+	 */
+	public void parse( char received )
+	{
+		if ( received == '$' )
+		{
+			// Start of a new sentence, abandoning any incomplete one
+			lineLength = 0;
+			inSentence = true;
+		}
+		else if ( ( received == '\r' ) || ( received == '\n' ) )
+		{
+			if ( inSentence == true )
+			{
+				inSentence = false;
+				decodeLine();
+			}
+		}
+		else if ( inSentence == true )
+		{
+			if ( lineLength < line.length )
+			{
+				line[ lineLength++ ] = received;
+			}
+			else
+			{
+				// Too long to be a valid sentence
+				inSentence = false;
+				invalidCount++;
+			}
+		}
+	}
+
+	/**
+	 * Discard any partial sentence and clear the accumulated fix and satellite data
+	 */
+	public void reset()
+	{
+		inSentence = false;
+		lineLength = 0;
+		fix.clear();
+		satellites.count = 0;
+		satellites.inView = 0;
+	}
+
+	/**
+	 * @return the accumulated fix data
+	 */
+	public Fix getFix()
+	{
+		return fix;
+	}
+
+	/**
+	 * @return the number of sentences decoded
+	 */
+	public int getDecodedCount()
+	{
+		return decodedCount;
+	}
+
+	/**
+	 * @return the number of sentences discarded because of a bad checksum or a malformed field
+	 */
+	public int getInvalidCount()
+	{
+		return invalidCount;
+	}
+
+	/**
+	 * @return the number of well formed sentences ignored because their type is not decoded
+	 */
+	public int getIgnoredCount()
+	{
+		return ignoredCount;
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Check and decode the sentence held in the line buffer, which starts after the '$'
+	 */
+	private void decodeLine()
+	{
+		// Validate the checksum if there is one
+		int dataEnd = lineLength;
+		int checksum = 0;
+		for ( int index = 0; index < lineLength; index++ )
+		{
+			char c = line[ index ];
+			if ( c == '*' )
+			{
+				dataEnd = index;
+				break;
+			}
+
+			checksum ^= c;
+		}
+
+		if ( dataEnd < lineLength )
+		{
+			int high = ( dataEnd + 1 < lineLength ) ? hexValue( line[ dataEnd + 1 ] ) : -1;
+			int low = ( dataEnd + 2 < lineLength ) ? hexValue( line[ dataEnd + 2 ] ) : -1;
+			if ( ( high < 0 ) || ( low < 0 ) || ( ( ( high << 4 ) | low ) != checksum ) )
+			{
+				invalidCount++;
+				return;
+			}
+		}
+
+		// Tokenise the fields in place. Field 0 is the address, e.g. GPGGA
+		fieldCount = 0;
+		int fieldStart = 0;
+		for ( int index = 0; index <= dataEnd; index++ )
+		{
+			if ( ( index == dataEnd ) || ( line[ index ] == ',' ) )
+			{
+				if ( fieldCount == MAX_FIELDS )
+				{
+					invalidCount++;
+					return;
+				}
+
+				fieldStarts[ fieldCount ] = fieldStart;
+				fieldEnds[ fieldCount ] = index;
+				fieldCount++;
+				fieldStart = index + 1;
+			}
+		}
+
+		// Only standard talker sentences (5 character addresses) are decoded
+		if ( ( fieldEnds[ 0 ] != 5 ) || ( line[ 0 ] == 'P' ) )
+		{
+			ignoredCount++;
+			return;
+		}
+
+		SentenceType type = sentenceType( line[ 2 ], line[ 3 ], line[ 4 ] );
+		if ( type == null )
+		{
+			ignoredCount++;
+			return;
+		}
+
+		malformed = false;
+		switch ( type )
+		{
+			case GGA:
+			{
+				decodeGGA();
+				break;
+			}
+
+			case RMC:
+			{
+				decodeRMC();
+				break;
+			}
+
+			case GSA:
+			{
+				decodeGSA();
+				break;
+			}
+
+			case GSV:
+			{
+				decodeGSV();
+				break;
+			}
+
+			case VTG:
+			{
+				decodeVTG();
+				break;
+			}
+
+			case GLL:
+			{
+				decodeGLL();
+				break;
+			}
+		}
+
+		if ( malformed == true )
+		{
+			invalidCount++;
+			return;
+		}
+
+		decodedCount++;
+
+		if ( type == SentenceType.GSV )
+		{
+			if ( gsvComplete == true )
+			{
+				receiver.onSatellitesReceived( satellites );
+			}
+		}
+		else
+		{
+			receiver.onFixReceived( type, fix );
+		}
+	}
+
+	/**
+	 * $--GGA,time,lat,N/S,lon,E/W,quality,satellites,hdop,altitude,M,separation,M,age,station
+	 */
+	private void decodeGGA()
+	{
+		if ( fieldCount < 12 )
+		{
+			malformed = true;
+			return;
+		}
+
+		int utcTime = timeField( 1 );
+		double latitude = angleField( 2, 2, 'S' );
+		double longitude = angleField( 4, 3, 'W' );
+		int quality = intField( 6, 0 );
+		int satellitesUsed = intField( 7, 0 );
+		double hdop = doubleField( 8 );
+		double altitude = doubleField( 9 );
+		double geoidSeparation = doubleField( 11 );
+		if ( malformed == true )
+		{
+			return;
+		}
+
+		fix.utcTime = utcTime;
+		fix.latitude = latitude;
+		fix.longitude = longitude;
+		fix.quality = quality;
+		fix.satellitesUsed = satellitesUsed;
+		fix.hdop = hdop;
+		fix.altitude = altitude;
+		fix.geoidSeparation = geoidSeparation;
+	}
+
+	/**
+	 * $--RMC,time,status,lat,N/S,lon,E/W,speed knots,course,date,variation,E/W[,mode]
+	 */
+	private void decodeRMC()
+	{
+		if ( fieldCount < 10 )
+		{
+			malformed = true;
+			return;
+		}
+
+		int utcTime = timeField( 1 );
+		double latitude = angleField( 3, 2, 'S' );
+		double longitude = angleField( 5, 3, 'W' );
+		double speed = doubleField( 7 ) * KNOTS_TO_METRES_PER_SECOND;
+		double course = doubleField( 8 );
+		int utcDate = intField( 9, -1 );
+		if ( malformed == true )
+		{
+			return;
+		}
+
+		fix.utcTime = utcTime;
+		fix.valid = ( charField( 2 ) == 'A' );
+		fix.latitude = latitude;
+		fix.longitude = longitude;
+		fix.speed = speed;
+		fix.course = course;
+		fix.utcDate = utcDate;
+	}
+
+	/**
+	 * $--GSA,mode,fix type,prn1,...,prn12,pdop,hdop,vdop
+	 */
+	private void decodeGSA()
+	{
+		if ( fieldCount < 18 )
+		{
+			malformed = true;
+			return;
+		}
+
+		int fixMode = intField( 2, 1 );
+
+		int usedPrnCount = 0;
+		for ( int field = 3; field < 15; field++ )
+		{
+			int prn = intField( field, 0 );
+			if ( prn > 0 )
+			{
+				usedPrns[ usedPrnCount++ ] = prn;
+			}
+		}
+
+		double pdop = doubleField( 15 );
+		double hdop = doubleField( 16 );
+		double vdop = doubleField( 17 );
+		if ( malformed == true )
+		{
+			return;
+		}
+
+		fix.fixMode = fixMode;
+		System.arraycopy( usedPrns, 0, fix.usedPrns, 0, usedPrnCount );
+		fix.usedPrnCount = usedPrnCount;
+		fix.pdop = pdop;
+		fix.hdop = hdop;
+		fix.vdop = vdop;
+	}
+
+	/**
+	 * $--GSV,total messages,message number,satellites in view,{prn,elevation,azimuth,snr} x 1 to 4
+	 */
+	private void decodeGSV()
+	{
+		if ( fieldCount < 4 )
+		{
+			malformed = true;
+			return;
+		}
+
+		int total = intField( 1, 0 );
+		int number = intField( 2, 0 );
+		int inView = intField( 3, 0 );
+		if ( malformed == true )
+		{
+			return;
+		}
+
+		// The first message of a sequence starts a new list
+		if ( ( number == 1 ) || ( line[ 0 ] != satellites.talker1 ) || ( line[ 1 ] != satellites.talker2 ) )
+		{
+			satellites.talker1 = line[ 0 ];
+			satellites.talker2 = line[ 1 ];
+			satellites.count = 0;
+		}
+
+		// Satellites are only added once the whole message has been decoded
+		int count = satellites.count;
+		for ( int field = 4; field < fieldCount; field += 4 )
+		{
+			int prn = intField( field, 0 );
+			int elevation = ( field + 1 < fieldCount ) ? intField( field + 1, -1 ) : -1;
+			int azimuth = ( field + 2 < fieldCount ) ? intField( field + 2, -1 ) : -1;
+			int snr = ( field + 3 < fieldCount ) ? intField( field + 3, -1 ) : -1;
+			if ( malformed == true )
+			{
+				return;
+			}
+
+			if ( ( prn > 0 ) && ( count < MAX_SATELLITES ) )
+			{
+				satellites.prn[ count ] = prn;
+				satellites.elevation[ count ] = elevation;
+				satellites.azimuth[ count ] = azimuth;
+				satellites.snr[ count ] = snr;
+				count++;
+			}
+		}
+
+		satellites.count = count;
+		satellites.inView = inView;
+		gsvComplete = ( number == total );
+	}
+
+	/**
+	 * $--VTG,course true,T,course magnetic,M,speed knots,N,speed km/h,K[,mode]
+	 */
+	private void decodeVTG()
+	{
+		if ( fieldCount < 9 )
+		{
+			malformed = true;
+			return;
+		}
+
+		double course = doubleField( 1 );
+		double speed = doubleField( 7 ) / 3.6;
+		if ( malformed == true )
+		{
+			return;
+		}
+
+		fix.course = course;
+		fix.speed = speed;
+	}
+
+	/**
+	 * $--GLL,lat,N/S,lon,E/W,time,status[,mode]
+	 */
+	private void decodeGLL()
+	{
+		if ( fieldCount < 7 )
+		{
+			malformed = true;
+			return;
+		}
+
+		double latitude = angleField( 1, 2, 'S' );
+		double longitude = angleField( 3, 3, 'W' );
+		int utcTime = timeField( 5 );
+		if ( malformed == true )
+		{
+			return;
+		}
+
+		fix.latitude = latitude;
+		fix.longitude = longitude;
+		fix.utcTime = utcTime;
+		fix.valid = ( charField( 6 ) == 'A' );
+	}
+
+	/**
+	 * Identify a sentence from the three characters following the talker identifier
+	 * @return the sentence type, or null if it is not decoded
+	 */
+	private static SentenceType sentenceType( char c1, char c2, char c3 )
+	{
+		if ( ( c1 == 'G' ) && ( c2 == 'G' ) && ( c3 == 'A' ) ) return SentenceType.GGA;
+		if ( ( c1 == 'R' ) && ( c2 == 'M' ) && ( c3 == 'C' ) ) return SentenceType.RMC;
+		if ( ( c1 == 'G' ) && ( c2 == 'S' ) && ( c3 == 'A' ) ) return SentenceType.GSA;
+		if ( ( c1 == 'G' ) && ( c2 == 'S' ) && ( c3 == 'V' ) ) return SentenceType.GSV;
+		if ( ( c1 == 'V' ) && ( c2 == 'T' ) && ( c3 == 'G' ) ) return SentenceType.VTG;
+		if ( ( c1 == 'G' ) && ( c2 == 'L' ) && ( c3 == 'L' ) ) return SentenceType.GLL;
+		return null;
+	}
+
+	/**
+	 * @return the first character of a field, or 0 if the field is empty
+	 */
+	private char charField( int field )
+	{
+		return ( fieldEnds[ field ] > fieldStarts[ field ] ) ? line[ fieldStarts[ field ] ] : 0;
+	}
+
+	/**
+	 * Decode an unsigned integer field
+	 * @param field - index of the field
+	 * @param empty - value to return if the field is empty
+	 * @return the value of the field
+	 */
+	private int intField( int field, int empty )
+	{
+		int start = fieldStarts[ field ];
+		int end = fieldEnds[ field ];
+		if ( start == end )
+		{
+			return empty;
+		}
+
+		int value = 0;
+		for ( int index = start; index < end; index++ )
+		{
+			int digit = line[ index ] - '0';
+			if ( ( digit < 0 ) || ( digit > 9 ) )
+			{
+				malformed = true;
+				return empty;
+			}
+			value = ( value * 10 ) + digit;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Decode a signed decimal field, e.g. -12.345
+	 * @param field - index of the field
+	 * @return the value of the field, or NaN if it is empty
+	 */
+	private double doubleField( int field )
+	{
+		return decimal( fieldStarts[ field ], fieldEnds[ field ] );
+	}
+
+	/**
+	 * Decode a signed decimal number from part of the line buffer.
+	 * Fraction digits beyond the precision of the mantissa are ignored; too many integer digits make the field malformed.
+	 * @return the value, or NaN if there are no characters
+	 */
+	private double decimal( int start, int end )
+	{
+		if ( start == end )
+		{
+			return Double.NaN;
+		}
+
+		boolean negative = false;
+		if ( ( line[ start ] == '-' ) || ( line[ start ] == '+' ) )
+		{
+			negative = ( line[ start ] == '-' );
+			start++;
+		}
+
+		long mantissa = 0;
+		int fractionDigits = -1;
+		for ( int index = start; index < end; index++ )
+		{
+			char c = line[ index ];
+			if ( ( c == '.' ) && ( fractionDigits < 0 ) )
+			{
+				fractionDigits = 0;
+			}
+			else if ( ( c >= '0' ) && ( c <= '9' ) )
+			{
+				if ( ( mantissa < MAX_MANTISSA ) && ( fractionDigits < MAX_FRACTION_DIGITS ) )
+				{
+					mantissa = ( mantissa * 10 ) + ( c - '0' );
+					if ( fractionDigits >= 0 )
+					{
+						fractionDigits++;
+					}
+				}
+				else if ( fractionDigits < 0 )
+				{
+					malformed = true;
+					return Double.NaN;
+				}
+			}
+			else
+			{
+				malformed = true;
+				return Double.NaN;
+			}
+		}
+
+		double value = ( fractionDigits > 0 ) ? mantissa / POWERS_OF_TEN[ fractionDigits ] : mantissa;
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Decode a latitude or longitude field in the form (d)ddmm.mmmm and its hemisphere field
+	 * @param field - index of the angle field. The hemisphere is the following field
+	 * @param degreeDigits - 2 for latitude, 3 for longitude
+	 * @param negativeHemisphere - 'S' or 'W'
+	 * @return the angle in degrees, or NaN if it is empty
+	 */
+	private double angleField( int field, int degreeDigits, char negativeHemisphere )
+	{
+		int start = fieldStarts[ field ];
+		int end = fieldEnds[ field ];
+		if ( start == end )
+		{
+			return Double.NaN;
+		}
+
+		if ( end - start < degreeDigits + 2 )
+		{
+			malformed = true;
+			return Double.NaN;
+		}
+
+		int degreesEnd = start + degreeDigits;
+		double angle = decimal( start, degreesEnd ) + ( decimal( degreesEnd, end ) / 60.0 );
+
+		return ( charField( field + 1 ) == negativeHemisphere ) ? -angle : angle;
+	}
+
+	/**
+	 * Decode a time field in the form hhmmss(.sss)
+	 * @return milliseconds since midnight, or -1 if it is empty
+	 */
+	private int timeField( int field )
+	{
+		int start = fieldStarts[ field ];
+		int end = fieldEnds[ field ];
+		if ( start == end )
+		{
+			return -1;
+		}
+
+		if ( end - start < 6 )
+		{
+			malformed = true;
+			return -1;
+		}
+
+		int hours = ( int )decimal( start, start + 2 );
+		int minutes = ( int )decimal( start + 2, start + 4 );
+		double seconds = decimal( start + 4, end );
+
+		return ( ( ( hours * 60 ) + minutes ) * 60000 ) + ( int )Math.round( seconds * 1000 );
+	}
+
+	/**
+	 * @return the value of a hexadecimal digit, or -1
+	 */
+	private static int hexValue( char c )
+	{
+		if ( ( c >= '0' ) && ( c <= '9' ) )
+		{
+			return c - '0';
+		}
+		if ( ( c >= 'A' ) && ( c <= 'F' ) )
+		{
+			return c - 'A' + 10;
+		}
+		if ( ( c >= 'a' ) && ( c <= 'f' ) )
+		{
+			return c - 'a' + 10;
+		}
+		return -1;
+	}
+
+	//
+	// Private data
+	//
+
+	/** Longest sentence accepted, allowing for receivers that exceed the 82 characters of the standard */
+	private static final int MAX_LINE = 128;
+
+	/** Most fields accepted in a sentence */
+	private static final int MAX_FIELDS = 40;
+
+	/** Most satellites recorded from a GSV sequence */
+	private static final int MAX_SATELLITES = 64;
+
+	/** Number of PRN fields in a GSA sentence */
+	private static final int MAX_USED_PRNS = 12;
+
+	/** Digits beyond this are too many to be held exactly in a double */
+	private static final long MAX_MANTISSA = 100000000000000L;
+
+	private static final double KNOTS_TO_METRES_PER_SECOND = 1852.0 / 3600.0;
+
+	private static final double[] POWERS_OF_TEN = new double[ 19 ];
+
+	/** Fraction digits after this many are ignored, so that they can be scaled by POWERS_OF_TEN */
+	private static final int MAX_FRACTION_DIGITS = POWERS_OF_TEN.length - 1;
+
+	static
+	{
+		POWERS_OF_TEN[ 0 ] = 1;
+		for ( int power = 1; power < POWERS_OF_TEN.length; power++ )
+		{
+			POWERS_OF_TEN[ power ] = POWERS_OF_TEN[ power - 1 ] * 10;
+		}
+	}
+
+	/** Where to send the decoded data */
+	private final INmeaReceiver receiver;
+
+	/** The sentence being received, excluding the leading '$' */
+	private final char[] line = new char[ MAX_LINE ];
+	private int lineLength = 0;
+	private boolean inSentence = false;
+
+	/** Start and end (exclusive) of each field of the current sentence within line */
+	private final int[] fieldStarts = new int[ MAX_FIELDS ];
+	private final int[] fieldEnds = new int[ MAX_FIELDS ];
+	private int fieldCount = 0;
+
+	/** Set when a field of the current sentence cannot be decoded */
+	private boolean malformed = false;
+
+	/** Set when the last GSV sentence decoded completed its sequence */
+	private boolean gsvComplete = false;
+
+	private final Fix fix = new Fix();
+
+	/** PRNs of a GSA sentence, held until the whole sentence has been decoded */
+	private final int[] usedPrns = new int[ MAX_USED_PRNS ];
+	private final Satellites satellites = new Satellites();
+
+	private int decodedCount = 0;
+	private int invalidCount = 0;
+	private int ignoredCount = 0;
+}
@@ -0,0 +1,465 @@
+package tvs.example.serviceprototype;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records raw NMEA sentences and their timestamps in a fixed size, memory mapped ring file.
+ * When the file is full the oldest records are overwritten, so a long history can be kept without the file growing.
+ *
+ * The file consists of a 64 byte header followed by the ring of records. Each record is a 4 byte length, an 8 byte timestamp
+ * and the sentence as ASCII bytes. A length of -1, or fewer than 4 bytes left before the end of the ring, marks the point
+ * where the records wrap back to the start.
+ *
+ * The header holds two copies of the ring position (oldest record, next free byte and bytes used), each with a sequence number
+ * and a check value, which are written alternately. Space for a new record is released in the header before the old records
+ * are overwritten, and the record is only added to the header once it has been written. If the process dies part way through
+ * an update the copy with the highest sequence number and a valid check value still describes a consistent ring.
+ *
+ * Not thread safe - record from one thread only.
+ */
+public class NmeaRecorder
+{
+	//
+	// Public types and interfaces
+	//
+
+	/**
+	 * Interface used to pass recorded sentences back to clients
+	 */
+	public interface IRecordReceiver
+	{
+		/**
+		 * Called for each record read from the ring
+		 * @param timeStamp - the timestamp recorded with the sentence
+		 * @param data - the sentence as ASCII bytes. Reused for every record
+		 * @param length - the number of bytes in data
+		 */
+		public void onRecordReceived( long timeStamp, byte[] data, int length );
+	}
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * Open a ring file, creating or reinitialising it if it does not exist or does not have the required capacity.
+	 * The existing records are kept if the file is valid.
+	 * @param ringFile - the file
+	 * @param capacity - the number of bytes available for records
+	 * @throws IOException
+	 */
+	public NmeaRecorder( File ringFile, int capacity ) throws IOException
+	{
+		this( ringFile, capacity, true );
+	}
+
+	/**
+	 * Open an existing ring file, e.g. to replay it. The file is not modified unless sentences are recorded.
+	 * @param ringFile - the file
+	 * @return the recorder
+	 * @throws IOException if the file does not exist or is not a valid ring file
+	 */
+	public static NmeaRecorder open( File ringFile ) throws IOException
+	{
+		long length = ringFile.length();
+		if ( ( length < DATA_START + MIN_CAPACITY ) || ( length > Integer.MAX_VALUE ) )
+		{
+			throw new IOException( ringFile + " is not an NMEA ring file" );
+		}
+
+		return new NmeaRecorder( ringFile, ( int )( length - DATA_START ), false );
+	}
+
+	/**
+	 * Record a sentence. Characters outside the ASCII range are recorded as '?'.
+	 * Sentences longer than the maximum record size are not recorded.
+	 * @param timeStamp - the timestamp reported with the sentence
+	 * @param sentence - the sentence
+	 */
+	public void record( long timeStamp, CharSequence sentence )
+	{
+		int length = sentence.length();
+		if ( length > maxSentenceLength )
+		{
+			droppedCount++;
+			return;
+		}
+
+		int recordSize = RECORD_HEADER + length;
+
+		// Release the space needed for the record, including any wasted at the end of the ring, before it is overwritten
+		int writePosition = tail;
+		int padding = 0;
+		if ( used == 0 )
+		{
+			head = 0;
+			writePosition = 0;
+		}
+		else if ( capacity - writePosition < recordSize )
+		{
+			padding = capacity - writePosition;
+		}
+
+		int originalHead = head;
+		releaseSpace( padding + recordSize );
+		if ( head != originalHead )
+		{
+			writeHeader();
+		}
+
+		// Write the wrap marker if required and then the record
+		if ( padding > 0 )
+		{
+			if ( padding >= WRAP_MARKER_SIZE )
+			{
+				ring.putInt( DATA_START + writePosition, WRAP_MARKER );
+			}
+			writePosition = 0;
+		}
+
+		int position = DATA_START + writePosition;
+		ring.putInt( position, length );
+		ring.putLong( position + 4, timeStamp );
+		position += RECORD_HEADER;
+		for ( int index = 0; index < length; index++ )
+		{
+			char c = sentence.charAt( index );
+			ring.put( position + index, ( byte )( ( c < 128 ) ? c : '?' ) );
+		}
+
+		// Now add the record to the ring
+		tail = writePosition + recordSize;
+		if ( tail == capacity )
+		{
+			tail = 0;
+		}
+		used += padding + recordSize;
+		writeHeader();
+
+		recordCount++;
+	}
+
+	/**
+	 * Read all the records in the ring, oldest first
+	 * @param receiver - receives each record
+	 * @return the number of records read
+	 */
+	public int read( IRecordReceiver receiver )
+	{
+		int position = head;
+		int remaining = used;
+		int count = 0;
+
+		while ( remaining > 0 )
+		{
+			int length = ( capacity - position < WRAP_MARKER_SIZE ) ? WRAP_MARKER : ring.getInt( DATA_START + position );
+			if ( length == WRAP_MARKER )
+			{
+				remaining -= capacity - position;
+				position = 0;
+			}
+			else if ( ( length < 0 ) || ( length > maxSentenceLength ) || ( RECORD_HEADER + length > remaining ) )
+			{
+				log.error( "Corrupt record at {} in NMEA ring file", position );
+				break;
+			}
+			else
+			{
+				long timeStamp = ring.getLong( DATA_START + position + 4 );
+				for ( int index = 0; index < length; index++ )
+				{
+					readBuffer[ index ] = ring.get( DATA_START + position + RECORD_HEADER + index );
+				}
+
+				receiver.onRecordReceived( timeStamp, readBuffer, length );
+				count++;
+
+				remaining -= RECORD_HEADER + length;
+				position += RECORD_HEADER + length;
+				if ( position == capacity )
+				{
+					position = 0;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Discard all the records
+	 */
+	public void clear()
+	{
+		head = 0;
+		tail = 0;
+		used = 0;
+		writeHeader();
+	}
+
+	/**
+	 * Write any changes through to the storage device. Only needed to protect against losing power; the records survive
+	 * the process being killed without it.
+	 */
+	public void force()
+	{
+		ring.force();
+	}
+
+	/**
+	 * Write any changes through to the storage device and close the file
+	 * @throws IOException
+	 */
+	public void close() throws IOException
+	{
+		ring.force();
+		channel.close();
+		file.close();
+	}
+
+	/**
+	 * @return the number of bytes available for records
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * @return the number of bytes holding records
+	 */
+	public int getUsed()
+	{
+		return used;
+	}
+
+	/**
+	 * @return the number of sentences recorded since the file was opened
+	 */
+	public int getRecordCount()
+	{
+		return recordCount;
+	}
+
+	/**
+	 * @return the number of sentences not recorded because they were too long
+	 */
+	public int getDroppedCount()
+	{
+		return droppedCount;
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Open a ring file
+	 * @param ringFile - the file
+	 * @param capacity - the number of bytes available for records
+	 * @param create - true to create or reinitialise the file if it is not a valid ring file of this capacity
+	 * @throws IOException
+	 */
+	private NmeaRecorder( File ringFile, int capacity, boolean create ) throws IOException
+	{
+		if ( capacity < MIN_CAPACITY )
+		{
+			throw new IllegalArgumentException( "Ring capacity must be at least " + MIN_CAPACITY + " bytes" );
+		}
+
+		this.capacity = capacity;
+		maxSentenceLength = Math.min( capacity / 4, MAX_SENTENCE_LENGTH );
+		readBuffer = new byte[ maxSentenceLength ];
+
+		file = new RandomAccessFile( ringFile, "rw" );
+		boolean existingFile = ( file.length() == DATA_START + capacity );
+		if ( existingFile == false )
+		{
+			file.setLength( DATA_START + capacity );
+		}
+
+		channel = file.getChannel();
+		ring = channel.map( FileChannel.MapMode.READ_WRITE, 0, DATA_START + capacity );
+
+		if ( ( existingFile == false ) || ( recoverHeader() == false ) )
+		{
+			if ( create == false )
+			{
+				channel.close();
+				file.close();
+				throw new IOException( ringFile + " is not an NMEA ring file" );
+			}
+
+			initialiseHeader();
+		}
+	}
+
+	/**
+	 * Discard the oldest records until there are at least the specified number of free bytes
+	 * @param required - the number of bytes required
+	 */
+	private void releaseSpace( int required )
+	{
+		while ( capacity - used < required )
+		{
+			int length = ( capacity - head < WRAP_MARKER_SIZE ) ? WRAP_MARKER : ring.getInt( DATA_START + head );
+			int released = ( length == WRAP_MARKER ) ? capacity - head : RECORD_HEADER + length;
+
+			head += released;
+			if ( head == capacity )
+			{
+				head = 0;
+			}
+			used -= released;
+		}
+	}
+
+	/**
+	 * Write the ring position to the next header slot
+	 */
+	private void writeHeader()
+	{
+		sequence++;
+		int slot = ( ( sequence & 1 ) == 0 ) ? SLOT_0 : SLOT_1;
+
+		ring.putLong( slot, sequence );
+		ring.putInt( slot + 8, head );
+		ring.putInt( slot + 12, tail );
+		ring.putInt( slot + 16, used );
+		ring.putInt( slot + 20, checkValue( sequence, head, tail, used ) );
+	}
+
+	/**
+	 * Initialise the header of a new file with an empty ring
+	 */
+	private void initialiseHeader()
+	{
+		log.info( "Initialising NMEA ring file with capacity {}", capacity );
+
+		ring.putInt( 0, MAGIC );
+		ring.putInt( 4, VERSION );
+		ring.putInt( 8, capacity );
+		ring.putInt( 12, 0 );
+		ring.putLong( SLOT_0, 0 );
+		ring.putInt( SLOT_0 + 20, 0 );
+		ring.putLong( SLOT_1, 0 );
+		ring.putInt( SLOT_1 + 20, 0 );
+
+		sequence = 0;
+		head = 0;
+		tail = 0;
+		used = 0;
+		writeHeader();
+	}
+
+	/**
+	 * Read the ring position from the header of an existing file
+	 * @return true if the header is valid
+	 */
+	private boolean recoverHeader()
+	{
+		if ( ( ring.getInt( 0 ) != MAGIC ) || ( ring.getInt( 4 ) != VERSION ) || ( ring.getInt( 8 ) != capacity ) )
+		{
+			return false;
+		}
+
+		// Use the valid slot with the highest sequence number
+		boolean recovered = false;
+		for ( int slot = SLOT_0; slot <= SLOT_1; slot += SLOT_SIZE )
+		{
+			long slotSequence = ring.getLong( slot );
+			int slotHead = ring.getInt( slot + 8 );
+			int slotTail = ring.getInt( slot + 12 );
+			int slotUsed = ring.getInt( slot + 16 );
+
+			if ( ( ring.getInt( slot + 20 ) == checkValue( slotSequence, slotHead, slotTail, slotUsed ) ) &&
+				 ( slotHead >= 0 ) && ( slotHead < capacity ) && ( slotTail >= 0 ) && ( slotTail < capacity ) &&
+				 ( slotUsed >= 0 ) && ( slotUsed <= capacity ) && ( ( recovered == false ) || ( slotSequence > sequence ) ) )
+			{
+				sequence = slotSequence;
+				head = slotHead;
+				tail = slotTail;
+				used = slotUsed;
+				recovered = true;
+			}
+		}
+
+		if ( recovered == true )
+		{
+			log.info( "Recovered NMEA ring file with {} bytes of records", used );
+		}
+
+		return recovered;
+	}
+
+	/**
+	 * Calculate the value used to detect a partially written header slot
+	 */
+	private static int checkValue( long slotSequence, int slotHead, int slotTail, int slotUsed )
+	{
+		int check = ( int )( slotSequence ^ ( slotSequence >>> 32 ) ) ^ CHECK_SEED;
+		check = ( check * 31 ) + slotHead;
+		check = ( check * 31 ) + slotTail;
+		check = ( check * 31 ) + slotUsed;
+		return check;
+	}
+
+	//
+	// Private data
+	//
+
+	/** Logger for this class */
+	private static final Logger log = LoggerFactory.getLogger( NmeaRecorder.class );
+
+	/** Identifies a ring file - "NMRR" */
+	private static final int MAGIC = 0x4E4D5252;
+	private static final int VERSION = 1;
+
+	/** Offsets of the two header slots and the start of the ring */
+	private static final int SLOT_0 = 16;
+	private static final int SLOT_SIZE = 24;
+	private static final int SLOT_1 = SLOT_0 + SLOT_SIZE;
+	private static final int DATA_START = 64;
+
+	private static final int CHECK_SEED = 0x5A17C0DE;
+
+	/** Record length and timestamp */
+	private static final int RECORD_HEADER = 12;
+
+	/** Length value marking the end of the records before the ring wraps */
+	private static final int WRAP_MARKER = -1;
+	private static final int WRAP_MARKER_SIZE = 4;
+
+	/** Longest sentence recorded. The NMEA standard allows 82 characters but the GPS may pass several sentences at once */
+	private static final int MAX_SENTENCE_LENGTH = 4096;
+
+	private static final int MIN_CAPACITY = 1024;
+
+	private final int capacity;
+	private final int maxSentenceLength;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final MappedByteBuffer ring;
+
+	/** Buffer passed to the IRecordReceiver */
+	private final byte[] readBuffer;
+
+	/** Offset of the oldest record, the offset of the next record to be written, and the number of bytes in use */
+	private int head = 0;
+	private int tail = 0;
+	private int used = 0;
+
+	/** Sequence number of the last header slot written */
+	private long sequence = 0;
+
+	private int recordCount = 0;
+	private int droppedCount = 0;
+}
@@ -0,0 +1,233 @@
+package tvs.example.serviceprototype;
+
+/**
+ * Recent SNR and elevation readings of each satellite, with rolling aggregates describing the quality of the signals used in
+ * the fix.
+ * The history is fed with the change events of a SatelliteTable, so a reading is kept each time a satellite's SNR or position
+ * changes by more than the table's threshold rather than on every status report. Each satellite has a ring of HISTORY_LENGTH
+ * readings, held as bytes in one array. The aggregates are updated as each event arrives, so reading them is cheap:
+ * - the mean SNR of the satellites used in the fix, taking the mean of each satellite's history
+ * - the spread of the satellites used in the fix around the sky, from 0 when they are all in the same direction to 1 when they
+ *   are evenly spread
+ * Not thread safe.
+ */
+public class SatelliteHistory implements SatelliteTable.IChangeReceiver
+{
+	/** Number of readings kept for each satellite */
+	public static final int HISTORY_LENGTH = 32;
+
+	//
+	// Public methods
+	//
+
+	public SatelliteHistory()
+	{
+	}
+
+	/**
+	 * Update the history of a satellite that has changed
+	 * @param table - the table holding the satellite's state
+	 * @param prn - the satellite's PRN
+	 * @param changes - the SatelliteTable.CHANGED_ flags
+	 */
+	@Override
+	public void onSatelliteChanged( SatelliteTable table, int prn, int changes )
+	{
+		removeContribution( prn );
+
+		if ( ( changes & ( SatelliteTable.CHANGED_REMOVED | SatelliteTable.CHANGED_ADDED ) ) != 0 )
+		{
+			// Start a new history if the satellite has gone, or reappeared
+			clearHistory( prn );
+		}
+
+		if ( ( changes & SatelliteTable.CHANGED_REMOVED ) == 0 )
+		{
+			if ( ( changes & ( SatelliteTable.CHANGED_SNR | SatelliteTable.CHANGED_POSITION ) ) != 0 )
+			{
+				addReading( prn, table.getSnr( prn ), table.getElevation( prn ) );
+			}
+
+			if ( table.isUsedInFix( prn ) == true )
+			{
+				addContribution( prn, table.getAzimuth( prn ) );
+			}
+		}
+	}
+
+	/**
+	 * Forget all the satellites, e.g. when the GPS is turned off
+	 */
+	public void clear()
+	{
+		for ( int prn = 0; prn < TABLE_SIZE; prn++ )
+		{
+			readingCount[ prn ] = 0;
+			snrTotal[ prn ] = 0;
+			contributing[ prn ] = false;
+		}
+
+		usedCount = 0;
+		usedSnrTotal = 0;
+		usedSinTotal = 0;
+		usedCosTotal = 0;
+	}
+
+	/**
+	 * @return the number of satellites used in the fix
+	 */
+	public int getUsedCount()
+	{
+		return usedCount;
+	}
+
+	/**
+	 * @return the mean SNR in dB of the satellites used in the fix, or 0 if there are none
+	 */
+	public float getMeanUsedSnr()
+	{
+		return ( usedCount == 0 ) ? 0 : ( float )( usedSnrTotal / usedCount );
+	}
+
+	/**
+	 * @return the spread of the satellites used in the fix around the sky, from 0 if they are all in the same direction (or there
+	 *  are fewer than two) to 1 if they are evenly spread
+	 */
+	public float getGeometrySpread()
+	{
+		if ( usedCount < 2 )
+		{
+			return 0;
+		}
+
+		double resultant = Math.sqrt( ( usedSinTotal * usedSinTotal ) + ( usedCosTotal * usedCosTotal ) ) / usedCount;
+		return ( float )Math.max( 0, 1 - resultant );
+	}
+
+	/**
+	 * @param prn - the satellite's PRN
+	 * @return the mean SNR in dB over the satellite's history, or 0 if there is none
+	 */
+	public float getMeanSnr( int prn )
+	{
+		return ( readingCount[ prn ] == 0 ) ? 0 : ( float )snrTotal[ prn ] / readingCount[ prn ];
+	}
+
+	/**
+	 * Copy a satellite's SNR history, oldest first
+	 * @param prn - the satellite's PRN
+	 * @param snrs - receives the SNRs in dB. Must hold HISTORY_LENGTH readings
+	 * @param elevations - receives the elevations in degrees, or null. Must hold HISTORY_LENGTH readings
+	 * @return the number of readings copied
+	 */
+	public int getHistory( int prn, int[] snrs, int[] elevations )
+	{
+		int count = readingCount[ prn ];
+		int base = prn * HISTORY_LENGTH;
+		int first = nextReading[ prn ] - count;
+
+		for ( int index = 0; index < count; index++ )
+		{
+			int slot = base + ( ( first + index + HISTORY_LENGTH ) % HISTORY_LENGTH );
+			snrs[ index ] = snrReadings[ slot ];
+			if ( elevations != null )
+			{
+				elevations[ index ] = elevationReadings[ slot ];
+			}
+		}
+
+		return count;
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Add a reading to a satellite's ring, dropping the oldest if it is full
+	 */
+	private void addReading( int prn, float snr, float elevation )
+	{
+		int slot = ( prn * HISTORY_LENGTH ) + nextReading[ prn ];
+
+		if ( readingCount[ prn ] == HISTORY_LENGTH )
+		{
+			snrTotal[ prn ] -= snrReadings[ slot ];
+		}
+		else
+		{
+			readingCount[ prn ]++;
+		}
+
+		byte newSnr = ( byte )Math.max( 0, Math.min( Byte.MAX_VALUE, Math.round( snr ) ) );
+		snrReadings[ slot ] = newSnr;
+		elevationReadings[ slot ] = ( byte )Math.max( -90, Math.min( 90, Math.round( elevation ) ) );
+		snrTotal[ prn ] += newSnr;
+
+		nextReading[ prn ] = ( nextReading[ prn ] + 1 ) % HISTORY_LENGTH;
+	}
+
+	private void clearHistory( int prn )
+	{
+		readingCount[ prn ] = 0;
+		snrTotal[ prn ] = 0;
+	}
+
+	/**
+	 * Add a satellite used in the fix to the aggregates, remembering what was added so that it can be removed again
+	 */
+	private void addContribution( int prn, float azimuth )
+	{
+		double radians = Math.toRadians( azimuth );
+
+		contributing[ prn ] = true;
+		contributedSnr[ prn ] = getMeanSnr( prn );
+		contributedSin[ prn ] = Math.sin( radians );
+		contributedCos[ prn ] = Math.cos( radians );
+
+		usedCount++;
+		usedSnrTotal += contributedSnr[ prn ];
+		usedSinTotal += contributedSin[ prn ];
+		usedCosTotal += contributedCos[ prn ];
+	}
+
+	private void removeContribution( int prn )
+	{
+		if ( contributing[ prn ] == true )
+		{
+			contributing[ prn ] = false;
+
+			usedCount--;
+			usedSnrTotal -= contributedSnr[ prn ];
+			usedSinTotal -= contributedSin[ prn ];
+			usedCosTotal -= contributedCos[ prn ];
+		}
+	}
+
+	//
+	// Private data
+	//
+
+	private static final int TABLE_SIZE = SatelliteTable.MAX_PRN + 1;
+
+	/** The rings of readings, HISTORY_LENGTH per PRN. SNR in whole dB and elevation in whole degrees */
+	private final byte[] snrReadings = new byte[ TABLE_SIZE * HISTORY_LENGTH ];
+	private final byte[] elevationReadings = new byte[ TABLE_SIZE * HISTORY_LENGTH ];
+
+	/** Position of the next reading in each ring, the number of readings, and their total SNR */
+	private final int[] nextReading = new int[ TABLE_SIZE ];
+	private final int[] readingCount = new int[ TABLE_SIZE ];
+	private final int[] snrTotal = new int[ TABLE_SIZE ];
+
+	/** What each satellite used in the fix has added to the aggregates */
+	private final boolean[] contributing = new boolean[ TABLE_SIZE ];
+	private final double[] contributedSnr = new double[ TABLE_SIZE ];
+	private final double[] contributedSin = new double[ TABLE_SIZE ];
+	private final double[] contributedCos = new double[ TABLE_SIZE ];
+
+	/** The aggregates over the satellites used in the fix */
+	private int usedCount = 0;
+	private double usedSnrTotal = 0;
+	private double usedSinTotal = 0;
+	private double usedCosTotal = 0;
+}
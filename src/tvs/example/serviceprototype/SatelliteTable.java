@@ -0,0 +1,317 @@
+package tvs.example.serviceprototype;
+
+/**
+ * Table of the satellites in view, keyed by PRN and held in primitive arrays so that it can be updated in place on every
+ * satellite status report without allocating.
+ * Each report is applied between beginUpdate and endUpdate. endUpdate removes the satellites that were not reported and
+ * passes a change event to the receiver for each satellite whose state has changed. Small changes in SNR, elevation and azimuth
+ * are accumulated rather than reported, so a satellite whose signal is steady produces no events.
+ * Not thread safe.
+ */
+public class SatelliteTable
+{
+	//
+	// Public types and interfaces
+	//
+
+	/**
+	 * Interface used to report the satellites that have changed
+	 */
+	public interface IChangeReceiver
+	{
+		/**
+		 * Called from endUpdate for each satellite that has changed
+		 * @param table - the table holding the satellite's state
+		 * @param prn - the satellite's PRN
+		 * @param changes - the CHANGED_ flags
+		 */
+		public void onSatelliteChanged( SatelliteTable table, int prn, int changes );
+	}
+
+	/** Flags passed to onSatelliteChanged */
+	public static final int CHANGED_ADDED = 1;
+	public static final int CHANGED_REMOVED = 2;
+	public static final int CHANGED_SNR = 4;
+	public static final int CHANGED_USED_IN_FIX = 8;
+	public static final int CHANGED_POSITION = 16;
+
+	/** Highest PRN held. Android reports GPS, SBAS, GLONASS, QZSS and BeiDou satellites with PRNs below this */
+	public static final int MAX_PRN = 255;
+
+	/** SNR change in dB, and elevation or azimuth change in degrees, that are reported */
+	public static final float SNR_THRESHOLD = 1.0F;
+	public static final float POSITION_THRESHOLD = 1.0F;
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * @param changeReceiver - where to report the changes, or null
+	 */
+	public SatelliteTable( IChangeReceiver changeReceiver )
+	{
+		this.changeReceiver = changeReceiver;
+	}
+
+	/**
+	 * Start applying a new satellite status report
+	 */
+	public void beginUpdate()
+	{
+		// 0 marks a satellite that is not in view
+		if ( ++generation == 0 )
+		{
+			generation = 1;
+		}
+	}
+
+	/**
+	 * Apply a satellite's state from the current report. Satellites with a PRN outside 1 to MAX_PRN are ignored.
+	 * @param prn - the satellite's PRN
+	 * @param snr - signal to noise ratio in dB
+	 * @param elevation - elevation in degrees
+	 * @param azimuth - azimuth in degrees
+	 * @param usedInFix - true if the satellite was used in the last fix
+	 */
+	public void update( int prn, float snr, float elevation, float azimuth, boolean usedInFix )
+	{
+		if ( ( prn < 1 ) || ( prn > MAX_PRN ) )
+		{
+			return;
+		}
+
+		int changes = 0;
+
+		if ( seenGeneration[ prn ] == 0 )
+		{
+			// A new satellite - add it to the list
+			prns[ count++ ] = prn;
+
+			changes = CHANGED_ADDED | CHANGED_SNR | CHANGED_POSITION;
+			reportedSnr[ prn ] = snr;
+			reportedElevation[ prn ] = elevation;
+			reportedAzimuth[ prn ] = azimuth;
+			usedFlags[ prn ] = usedInFix;
+
+			if ( usedInFix == true )
+			{
+				inFixCount++;
+				changes |= CHANGED_USED_IN_FIX;
+			}
+		}
+		else
+		{
+			if ( Math.abs( snr - reportedSnr[ prn ] ) >= SNR_THRESHOLD )
+			{
+				changes |= CHANGED_SNR;
+				snrDelta[ prn ] = snr - reportedSnr[ prn ];
+				reportedSnr[ prn ] = snr;
+			}
+
+			if ( ( Math.abs( elevation - reportedElevation[ prn ] ) >= POSITION_THRESHOLD ) ||
+					( Math.abs( azimuth - reportedAzimuth[ prn ] ) >= POSITION_THRESHOLD ) )
+			{
+				changes |= CHANGED_POSITION;
+				reportedElevation[ prn ] = elevation;
+				reportedAzimuth[ prn ] = azimuth;
+			}
+
+			if ( usedInFix != usedFlags[ prn ] )
+			{
+				changes |= CHANGED_USED_IN_FIX;
+				usedFlags[ prn ] = usedInFix;
+				inFixCount += ( usedInFix == true ) ? 1 : -1;
+			}
+		}
+
+		seenGeneration[ prn ] = generation;
+		this.snr[ prn ] = snr;
+		this.elevation[ prn ] = elevation;
+		this.azimuth[ prn ] = azimuth;
+		changeFlags[ prn ] |= changes;
+	}
+
+	/**
+	 * Finish applying the current report. Satellites that were not reported are removed, then the changes are reported
+	 * @return the number of satellites that changed
+	 */
+	public int endUpdate()
+	{
+		int changed = 0;
+
+		for ( int index = 0; index < count; )
+		{
+			int prn = prns[ index ];
+
+			if ( seenGeneration[ prn ] != generation )
+			{
+				// Not in this report - remove it by moving the last satellite into its place
+				if ( usedFlags[ prn ] == true )
+				{
+					inFixCount--;
+				}
+
+				seenGeneration[ prn ] = 0;
+				usedFlags[ prn ] = false;
+				snrDelta[ prn ] = 0;
+				changeFlags[ prn ] = 0;
+
+				prns[ index ] = prns[ --count ];
+
+				changed++;
+				if ( changeReceiver != null )
+				{
+					changeReceiver.onSatelliteChanged( this, prn, CHANGED_REMOVED );
+				}
+			}
+			else
+			{
+				int changes = changeFlags[ prn ];
+				if ( changes != 0 )
+				{
+					changeFlags[ prn ] = 0;
+
+					changed++;
+					if ( changeReceiver != null )
+					{
+						changeReceiver.onSatelliteChanged( this, prn, changes );
+					}
+				}
+
+				index++;
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Remove all the satellites without reporting them
+	 */
+	public void clear()
+	{
+		for ( int index = 0; index < count; index++ )
+		{
+			int prn = prns[ index ];
+			seenGeneration[ prn ] = 0;
+			usedFlags[ prn ] = false;
+			snrDelta[ prn ] = 0;
+			changeFlags[ prn ] = 0;
+		}
+
+		count = 0;
+		inFixCount = 0;
+	}
+
+	/**
+	 * @return the number of satellites in view
+	 */
+	public int getInViewCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return the number of satellites used in the fix
+	 */
+	public int getInFixCount()
+	{
+		return inFixCount;
+	}
+
+	/**
+	 * @param index - 0 to getInViewCount() - 1
+	 * @return the PRN of the satellite at the index. The order changes as satellites are removed
+	 */
+	public int getPrn( int index )
+	{
+		return prns[ index ];
+	}
+
+	/**
+	 * @param prn - the satellite's PRN
+	 * @return true if the satellite is in view
+	 */
+	public boolean isInView( int prn )
+	{
+		return ( prn >= 1 ) && ( prn <= MAX_PRN ) && ( seenGeneration[ prn ] != 0 );
+	}
+
+	/**
+	 * @param prn - the PRN of a satellite in view
+	 * @return true if the satellite was used in the last fix
+	 */
+	public boolean isUsedInFix( int prn )
+	{
+		return usedFlags[ prn ];
+	}
+
+	/**
+	 * @param prn - the PRN of a satellite in view
+	 * @return the latest SNR in dB
+	 */
+	public float getSnr( int prn )
+	{
+		return snr[ prn ];
+	}
+
+	/**
+	 * @param prn - the PRN of a satellite in view
+	 * @return the SNR change in dB last reported with CHANGED_SNR
+	 */
+	public float getSnrDelta( int prn )
+	{
+		return snrDelta[ prn ];
+	}
+
+	/**
+	 * @param prn - the PRN of a satellite in view
+	 * @return the latest elevation in degrees
+	 */
+	public float getElevation( int prn )
+	{
+		return elevation[ prn ];
+	}
+
+	/**
+	 * @param prn - the PRN of a satellite in view
+	 * @return the latest azimuth in degrees
+	 */
+	public float getAzimuth( int prn )
+	{
+		return azimuth[ prn ];
+	}
+
+	//
+	// Private data
+	//
+
+	private static final int TABLE_SIZE = MAX_PRN + 1;
+
+	private final IChangeReceiver changeReceiver;
+
+	/** PRNs of the satellites in view */
+	private final int[] prns = new int[ TABLE_SIZE ];
+	private int count = 0;
+	private int inFixCount = 0;
+
+	/** Report in which each satellite was last seen. 0 if not in view */
+	private final int[] seenGeneration = new int[ TABLE_SIZE ];
+	private int generation = 0;
+
+	/** Latest state of each satellite */
+	private final float[] snr = new float[ TABLE_SIZE ];
+	private final float[] elevation = new float[ TABLE_SIZE ];
+	private final float[] azimuth = new float[ TABLE_SIZE ];
+	private final boolean[] usedFlags = new boolean[ TABLE_SIZE ];
+
+	/** State when the last change was reported, used to filter out small changes */
+	private final float[] reportedSnr = new float[ TABLE_SIZE ];
+	private final float[] reportedElevation = new float[ TABLE_SIZE ];
+	private final float[] reportedAzimuth = new float[ TABLE_SIZE ];
+	private final float[] snrDelta = new float[ TABLE_SIZE ];
+
+	/** Changes not yet reported */
+	private final int[] changeFlags = new int[ TABLE_SIZE ];
+}
@@ -0,0 +1,547 @@
+package tvs.example.serviceprototype;
+
+import java.util.Arrays;
+
+import uk.me.jstott.jcoord.LatLng;
+import uk.me.jstott.jcoord.LatLngBatch;
+import uk.me.jstott.jcoord.MutableLatLng;
+import uk.me.jstott.jcoord.OSGBProjection;
+import uk.me.jstott.jcoord.UTMProjection;
+
+/**
+ * In-memory spatial index of points, such as the fixes of a track or a set of waypoints, for finding the points in a box or the
+ * points nearest a position without looking at every point.
+ *
+ * The index is a packed Hilbert R-tree, built once from all the points (bulk loading) and not changed afterwards. The points are
+ * sorted along a Hilbert curve over their bounding box, so points next to each other in the sorted order are close together in
+ * space, and are then grouped nodeSize at a time into the leaf nodes. The leaves are grouped the same way into the next level up,
+ * and so on to a single root. Every node is full apart from the last of each level, and the whole tree is held in a few primitive
+ * arrays, with no objects per point or per node.
+ *
+ * Positions are in metres on a flat grid, so distances are simple to work out. build projects latitudes and longitudes onto the
+ * British National Grid, or onto a single UTM zone, using jcoord.
+ *
+ * Queries and project reuse working storage, so an index must only be used from one thread at a time.
+ */
+public class SpatialIndex
+{
+	//
+	// Public types and interfaces
+	//
+
+	/**
+	 * Grids that latitudes and longitudes can be projected onto
+	 */
+	public enum Grid
+	{
+		/** The British National Grid, for positions in Great Britain */
+		OSGB,
+
+		/**
+		 * The UTM zone of the first point, used for all the points so that they share one grid. Points must all be on the same side
+		 * of the equator, as the northings of southern points include the false northing
+		 */
+		UTM
+	};
+
+	/** Default number of children of each node */
+	public static final int DEFAULT_NODE_SIZE = 16;
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * Build an index of points on a grid
+	 * @param x - the eastings in metres. Not kept by the index
+	 * @param y - the northings in metres. Not kept by the index
+	 * @param count - the number of points, which are the first count elements of the arrays
+	 * @param nodeSize - the number of children of each node
+	 */
+	public SpatialIndex( double[] x, double[] y, int count, int nodeSize )
+	{
+		this.count = count;
+		this.nodeSize = Math.max( 2, nodeSize );
+
+		pointX = new double[ count ];
+		pointY = new double[ count ];
+		pointIndexes = new int[ count ];
+
+		// Work out the size of each level, from the leaves up
+		int levels = 0;
+		int nodeTotal = 0;
+		int[] levelSizes = new int[ 32 ];
+		int levelSize = count;
+		do
+		{
+			levelSize = ( levelSize + this.nodeSize - 1 ) / this.nodeSize;
+			levelSizes[ levels++ ] = levelSize;
+			nodeTotal += levelSize;
+		}
+		while ( levelSize > 1 );
+
+		levelStarts = new int[ levels + 1 ];
+		for ( int level = 0; level < levels; level++ )
+		{
+			levelStarts[ level + 1 ] = levelStarts[ level ] + levelSizes[ level ];
+		}
+
+		nodeMinX = new double[ nodeTotal ];
+		nodeMinY = new double[ nodeTotal ];
+		nodeMaxX = new double[ nodeTotal ];
+		nodeMaxY = new double[ nodeTotal ];
+		stack = new int[ levels * this.nodeSize + 1 ];
+
+		if ( count == 0 )
+		{
+			return;
+		}
+
+		// Sort the points by their position along the curve, as keys holding the curve distance above the point index
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for ( int index = 0; index < count; index++ )
+		{
+			minX = Math.min( minX, x[ index ] );
+			minY = Math.min( minY, y[ index ] );
+			maxX = Math.max( maxX, x[ index ] );
+			maxY = Math.max( maxY, y[ index ] );
+		}
+
+		double scaleX = ( maxX > minX ) ? HILBERT_MAX / ( maxX - minX ) : 0;
+		double scaleY = ( maxY > minY ) ? HILBERT_MAX / ( maxY - minY ) : 0;
+		long[] keys = new long[ count ];
+		for ( int index = 0; index < count; index++ )
+		{
+			long distance = hilbertDistance( ( int )( ( x[ index ] - minX ) * scaleX ), ( int )( ( y[ index ] - minY ) * scaleY ) );
+			keys[ index ] = ( distance << 31 ) | index;
+		}
+		Arrays.sort( keys );
+
+		for ( int sorted = 0; sorted < count; sorted++ )
+		{
+			int index = ( int )( keys[ sorted ] & Integer.MAX_VALUE );
+			pointIndexes[ sorted ] = index;
+			pointX[ sorted ] = x[ index ];
+			pointY[ sorted ] = y[ index ];
+		}
+
+		// Leaf boxes from the points
+		for ( int node = 0; node < levelSizes[ 0 ]; node++ )
+		{
+			int first = node * this.nodeSize;
+			int end = Math.min( first + this.nodeSize, count );
+			double boxMinX = pointX[ first ];
+			double boxMinY = pointY[ first ];
+			double boxMaxX = boxMinX;
+			double boxMaxY = boxMinY;
+			for ( int point = first + 1; point < end; point++ )
+			{
+				boxMinX = Math.min( boxMinX, pointX[ point ] );
+				boxMinY = Math.min( boxMinY, pointY[ point ] );
+				boxMaxX = Math.max( boxMaxX, pointX[ point ] );
+				boxMaxY = Math.max( boxMaxY, pointY[ point ] );
+			}
+
+			nodeMinX[ node ] = boxMinX;
+			nodeMinY[ node ] = boxMinY;
+			nodeMaxX[ node ] = boxMaxX;
+			nodeMaxY[ node ] = boxMaxY;
+		}
+
+		// Each higher level's boxes from the level below
+		for ( int level = 1; level < levels; level++ )
+		{
+			for ( int node = levelStarts[ level ]; node < levelStarts[ level + 1 ]; node++ )
+			{
+				int first = levelStarts[ level - 1 ] + ( ( node - levelStarts[ level ] ) * this.nodeSize );
+				int end = Math.min( first + this.nodeSize, levelStarts[ level ] );
+				double boxMinX = nodeMinX[ first ];
+				double boxMinY = nodeMinY[ first ];
+				double boxMaxX = nodeMaxX[ first ];
+				double boxMaxY = nodeMaxY[ first ];
+				for ( int child = first + 1; child < end; child++ )
+				{
+					boxMinX = Math.min( boxMinX, nodeMinX[ child ] );
+					boxMinY = Math.min( boxMinY, nodeMinY[ child ] );
+					boxMaxX = Math.max( boxMaxX, nodeMaxX[ child ] );
+					boxMaxY = Math.max( boxMaxY, nodeMaxY[ child ] );
+				}
+
+				nodeMinX[ node ] = boxMinX;
+				nodeMinY[ node ] = boxMinY;
+				nodeMaxX[ node ] = boxMaxX;
+				nodeMaxY[ node ] = boxMaxY;
+			}
+		}
+	}
+
+	/**
+	 * Project latitudes and longitudes on the WGS84 datum onto a grid, and build an index of them with DEFAULT_NODE_SIZE
+	 * @param latitudes - the latitudes in degrees
+	 * @param longitudes - the longitudes in degrees. Must be the same length as the latitudes
+	 * @param grid - the grid to use
+	 * @return the index. The point indexes it returns are indexes into the arrays
+	 */
+	public static SpatialIndex build( double[] latitudes, double[] longitudes, Grid grid )
+	{
+		int count = latitudes.length;
+		double[] x = new double[ count ];
+		double[] y = new double[ count ];
+		int zone = 0;
+
+		if ( grid == Grid.OSGB )
+		{
+			// The National Grid is on the OSGB36 datum
+			double[] osgbLatitudes = new double[ count ];
+			double[] osgbLongitudes = new double[ count ];
+			LatLngBatch.toOSGB36( latitudes, longitudes, null, osgbLatitudes, osgbLongitudes );
+			LatLngBatch.toOSRef( osgbLatitudes, osgbLongitudes, x, y );
+		}
+		else if ( count > 0 )
+		{
+			zone = UTMProjection.getLongitudeZone( latitudes[ 0 ], longitudes[ 0 ] );
+			UTMProjection projection = UTMProjection.getInstance();
+			double[] position = new double[ 2 ];
+			for ( int index = 0; index < count; index++ )
+			{
+				projection.toGrid( latitudes[ index ], longitudes[ index ], zone, position );
+				x[ index ] = position[ 0 ];
+				y[ index ] = position[ 1 ];
+			}
+		}
+
+		SpatialIndex index = new SpatialIndex( x, y, count, DEFAULT_NODE_SIZE );
+		index.grid = grid;
+		index.zone = zone;
+		return index;
+	}
+
+	/**
+	 * Project a position onto the grid of an index made by build, e.g. to find the points near it
+	 * @param latitude - latitude in degrees on the WGS84 datum
+	 * @param longitude - longitude in degrees on the WGS84 datum
+	 * @param result - receives the easting in element 0 and the northing in element 1
+	 * @return result
+	 * @throws IllegalStateException if the index was not made by build
+	 */
+	public double[] project( double latitude, double longitude, double[] result )
+	{
+		if ( grid == Grid.OSGB )
+		{
+			LatLng.toOSGB36( latitude, longitude, 0, osgbPosition );
+			return OSGBProjection.getInstance().toGrid( osgbPosition.getLatitude(), osgbPosition.getLongitude(), result );
+		}
+
+		if ( grid == Grid.UTM )
+		{
+			return UTMProjection.getInstance().toGrid( latitude, longitude, zone, result );
+		}
+
+		throw new IllegalStateException( "Index has no grid" );
+	}
+
+	/**
+	 * Find the points in a box, edges included
+	 * @param minX - west edge of the box in metres
+	 * @param minY - south edge of the box in metres
+	 * @param maxX - east edge of the box in metres
+	 * @param maxY - north edge of the box in metres
+	 * @param results - receives the indexes of the points found, in no particular order, as far as there is room
+	 * @return the number of points in the box, which may be more than the length of results
+	 */
+	public int search( double minX, double minY, double maxX, double maxY, int[] results )
+	{
+		if ( count == 0 )
+		{
+			return 0;
+		}
+
+		int found = 0;
+		int stackSize = 0;
+		stack[ stackSize++ ] = nodeMinX.length - 1;
+
+		while ( stackSize > 0 )
+		{
+			int node = stack[ --stackSize ];
+			if ( ( nodeMinX[ node ] > maxX ) || ( nodeMaxX[ node ] < minX ) || ( nodeMinY[ node ] > maxY ) || ( nodeMaxY[ node ] < minY ) )
+			{
+				continue;
+			}
+
+			if ( node < levelStarts[ 1 ] )
+			{
+				// A leaf - test its points
+				int end = Math.min( ( node + 1 ) * nodeSize, count );
+				for ( int point = node * nodeSize; point < end; point++ )
+				{
+					if ( ( pointX[ point ] >= minX ) && ( pointX[ point ] <= maxX ) && ( pointY[ point ] >= minY ) && ( pointY[ point ] <= maxY ) )
+					{
+						if ( found < results.length )
+						{
+							results[ found ] = pointIndexes[ point ];
+						}
+						found++;
+					}
+				}
+			}
+			else
+			{
+				int level = levelOf( node );
+				int first = levelStarts[ level - 1 ] + ( ( node - levelStarts[ level ] ) * nodeSize );
+				int end = Math.min( first + nodeSize, levelStarts[ level ] );
+				for ( int child = first; child < end; child++ )
+				{
+					stack[ stackSize++ ] = child;
+				}
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Find the points nearest a position, nearest first. Nodes and points are visited in order of their distance from the position,
+	 * so only the parts of the tree that could hold one of the nearest points are looked at.
+	 * @param x - easting of the position in metres
+	 * @param y - northing of the position in metres
+	 * @param wanted - the number of points wanted
+	 * @param results - receives the indexes of the points. Must have room for the points wanted
+	 * @param distances - receives the distances of the points in metres, or null if not needed
+	 * @return the number of points found, which is less than the number wanted only if the index holds fewer points
+	 */
+	public int nearest( double x, double y, int wanted, int[] results, double[] distances )
+	{
+		if ( count == 0 )
+		{
+			return 0;
+		}
+
+		// A heap of squared distances, holding the nodes as negative numbers and the points as their sorted positions
+		heapSize = 0;
+		int found = 0;
+		int root = nodeMinX.length - 1;
+		push( boxDistance( root, x, y ), -1 - root );
+
+		while ( ( heapSize > 0 ) && ( found < wanted ) )
+		{
+			double distance = heapKeys[ 0 ];
+			int item = pop();
+
+			if ( item >= 0 )
+			{
+				results[ found ] = pointIndexes[ item ];
+				if ( distances != null )
+				{
+					distances[ found ] = Math.sqrt( distance );
+				}
+				found++;
+			}
+			else if ( -1 - item < levelStarts[ 1 ] )
+			{
+				int node = -1 - item;
+				int end = Math.min( ( node + 1 ) * nodeSize, count );
+				for ( int point = node * nodeSize; point < end; point++ )
+				{
+					double dx = pointX[ point ] - x;
+					double dy = pointY[ point ] - y;
+					push( ( dx * dx ) + ( dy * dy ), point );
+				}
+			}
+			else
+			{
+				int node = -1 - item;
+				int level = levelOf( node );
+				int first = levelStarts[ level - 1 ] + ( ( node - levelStarts[ level ] ) * nodeSize );
+				int end = Math.min( first + nodeSize, levelStarts[ level ] );
+				for ( int child = first; child < end; child++ )
+				{
+					push( boxDistance( child, x, y ), -1 - child );
+				}
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * @return the number of points in the index
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return the number of levels of nodes, from the leaves to the root
+	 */
+	public int getLevelCount()
+	{
+		return levelStarts.length - 1;
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * @return the level of a node above the leaves
+	 */
+	private int levelOf( int node )
+	{
+		int level = 1;
+		while ( node >= levelStarts[ level + 1 ] )
+		{
+			level++;
+		}
+
+		return level;
+	}
+
+	/**
+	 * @return the squared distance from a position to the nearest point of a node's box
+	 */
+	private double boxDistance( int node, double x, double y )
+	{
+		double dx = Math.max( 0, Math.max( nodeMinX[ node ] - x, x - nodeMaxX[ node ] ) );
+		double dy = Math.max( 0, Math.max( nodeMinY[ node ] - y, y - nodeMaxY[ node ] ) );
+		return ( dx * dx ) + ( dy * dy );
+	}
+
+	/**
+	 * Add an item to the heap
+	 */
+	private void push( double key, int item )
+	{
+		if ( heapSize == heapKeys.length )
+		{
+			heapKeys = Arrays.copyOf( heapKeys, heapSize * 2 );
+			heapItems = Arrays.copyOf( heapItems, heapSize * 2 );
+		}
+
+		int position = heapSize++;
+		while ( position > 0 )
+		{
+			int parent = ( position - 1 ) >> 1;
+			if ( heapKeys[ parent ] <= key )
+			{
+				break;
+			}
+
+			heapKeys[ position ] = heapKeys[ parent ];
+			heapItems[ position ] = heapItems[ parent ];
+			position = parent;
+		}
+
+		heapKeys[ position ] = key;
+		heapItems[ position ] = item;
+	}
+
+	/**
+	 * Remove the item with the smallest key from the heap
+	 * @return the item
+	 */
+	private int pop()
+	{
+		int top = heapItems[ 0 ];
+		double key = heapKeys[ --heapSize ];
+		int item = heapItems[ heapSize ];
+
+		int position = 0;
+		while ( true )
+		{
+			int child = ( position << 1 ) + 1;
+			if ( child >= heapSize )
+			{
+				break;
+			}
+
+			if ( ( child + 1 < heapSize ) && ( heapKeys[ child + 1 ] < heapKeys[ child ] ) )
+			{
+				child++;
+			}
+
+			if ( key <= heapKeys[ child ] )
+			{
+				break;
+			}
+
+			heapKeys[ position ] = heapKeys[ child ];
+			heapItems[ position ] = heapItems[ child ];
+			position = child;
+		}
+
+		heapKeys[ position ] = key;
+		heapItems[ position ] = item;
+		return top;
+	}
+
+	/**
+	 * Distance along a Hilbert curve filling a 2^16 by 2^16 grid
+	 * @param x - column, from 0 to HILBERT_MAX
+	 * @param y - row, from 0 to HILBERT_MAX
+	 * @return the distance, from 0 to 2^32 - 1
+	 */
+	private static long hilbertDistance( int x, int y )
+	{
+		long distance = 0;
+		for ( int size = HILBERT_SIZE / 2; size > 0; size >>= 1 )
+		{
+			int rx = ( ( x & size ) != 0 ) ? 1 : 0;
+			int ry = ( ( y & size ) != 0 ) ? 1 : 0;
+			distance += ( long )size * size * ( ( 3 * rx ) ^ ry );
+
+			// Rotate the quadrant so the curve joins up
+			if ( ry == 0 )
+			{
+				if ( rx == 1 )
+				{
+					x = HILBERT_MAX - x;
+					y = HILBERT_MAX - y;
+				}
+
+				int swap = x;
+				x = y;
+				y = swap;
+			}
+		}
+
+		return distance;
+	}
+
+	//
+	// Private data
+	//
+
+	/** Side of the grid the Hilbert curve fills */
+	private static final int HILBERT_SIZE = 1 << 16;
+	private static final int HILBERT_MAX = HILBERT_SIZE - 1;
+
+	private final int count;
+	private final int nodeSize;
+
+	/** The points in Hilbert order, and the index each was given to the constructor */
+	private final double[] pointX;
+	private final double[] pointY;
+	private final int[] pointIndexes;
+
+	/** The node boxes, a level at a time from the leaves to the root. Level n starts at levelStarts[ n ] */
+	private final double[] nodeMinX;
+	private final double[] nodeMinY;
+	private final double[] nodeMaxX;
+	private final double[] nodeMaxY;
+	private final int[] levelStarts;
+
+	/** The grid of an index made by build, or null */
+	private Grid grid = null;
+	private int zone = 0;
+	private final MutableLatLng osgbPosition = new MutableLatLng();
+
+	/** Working storage for the queries */
+	private final int[] stack;
+	private double[] heapKeys = new double[ 64 ];
+	private int[] heapItems = new int[ 64 ];
+	private int heapSize = 0;
+}
@@ -0,0 +1,528 @@
+package tvs.example.serviceprototype;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ILocationSource generating synthetic fixes and satellite status for load testing.
+ * The rate, trajectory, accuracy profile, satellites and lock drop-outs are set by a Config.
+ * Each satellite has a PRN, and an elevation, azimuth and SNR that change as it moves round the sky. They are applied to a
+ * SatelliteTable each epoch, so the client receives the same change events and counts as from the AndroidLocationSource.
+ *
+ * The source can be driven in two ways:
+ * - By calling step, which generates the next epoch on the calling thread. Time is simulated, so this measures the cost of
+ *   handling the updates without any pacing. The simulated time moves on even while updates are stopped, so the source can
+ *   stand in for a GPS that is being turned on and off, and getTruePosition gives where the user really is (see
+ *   DutyCycleSimulation in the bench tree).
+ * - By passing an Executor to the constructor. startUpdates then starts a thread which hands an epoch to the executor at the
+ *   configured rate, e.g. an executor posting to the service Handler. The delay between an epoch being due and being delivered,
+ *   and the number of epochs waiting to be delivered, are recorded so that the latency and throughput of the client can be
+ *   measured.
+ */
+public class SyntheticLocationSource implements ILocationSource
+{
+	//
+	// Public types and interfaces
+	//
+
+	/**
+	 * The path followed by the generated positions
+	 */
+	public enum Trajectory
+	{
+		Stationary,
+		Line,
+		Circle
+	};
+
+	/**
+	 * Generator settings. Times are in milliseconds, distances in metres and angles in degrees.
+	 */
+	public static final class Config
+	{
+		/** Epochs per second */
+		public double rate = 1;
+
+		public Trajectory trajectory = Trajectory.Line;
+
+		/** Starting position, or the centre of a circle */
+		public double latitude = 51.5;
+		public double longitude = -0.12;
+		public double altitude = 50;
+
+		/** Speed in metres per second, heading of a line, and radius of a circle */
+		public double speed = 1.4;
+		public double heading = 45;
+		public double radius = 100;
+
+		/** The accuracy converges exponentially from initialAccuracy to finalAccuracy after each lock, with some random noise */
+		public double initialAccuracy = 50;
+		public double finalAccuracy = 5;
+		public long convergenceTime = 20000;
+		public double accuracyNoise = 1;
+
+		/**
+		 * Satellite counts while locked. The number in view varies randomly by up to satelliteJitter. While the lock is lost half
+		 * of them are in view, none in the fix. The satellites have PRNs from 1 to satellitesInView
+		 */
+		public int satellitesInView = 32;
+		public int satellitesInFix = 12;
+		public int satelliteJitter = 2;
+
+		/** SNR in dB rises from minSnr at the horizon by snrRange overhead, with some random noise, and drops while unlocked */
+		public double minSnr = 15;
+		public double snrRange = 30;
+		public double snrNoise = 1.5;
+		public double lostLockSnrLoss = 20;
+
+		/** Time from the first start of updates to the first fix, and from any later start to a fix */
+		public long timeToFirstFix = 5000;
+		public long timeToReacquire = 2000;
+
+		/** The lock is lost for dropoutDuration at the end of every dropoutInterval, e.g. in a tunnel. 0 for no drop-outs */
+		public long dropoutInterval = 0;
+		public long dropoutDuration = 10000;
+
+		/** Seed for the random noise, so that runs can be repeated */
+		public long seed = 1;
+	}
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * Construct a source that is driven by calling step
+	 * @param config - the generator settings
+	 */
+	public SyntheticLocationSource( Config config )
+	{
+		this( config, null );
+	}
+
+	/**
+	 * Construct a source
+	 * @param config - the generator settings
+	 * @param executor - used to deliver the epochs generated at the configured rate once updates are started, or null if the
+	 *  source is driven by calling step
+	 */
+	public SyntheticLocationSource( Config config, Executor executor )
+	{
+		this.config = config;
+		this.executor = executor;
+		random = new Random( config.seed );
+		epochPeriod = ( long )( 1000 / config.rate );
+
+		// Start each satellite at a random point in its orbit and direction, using separate noise so that the fixes are the
+		// same whatever the satellite settings
+		satelliteRandom = new Random( config.seed + 1 );
+		int satelliteCount = Math.min( config.satellitesInView, SatelliteTable.MAX_PRN );
+		satellitePhase = new double[ satelliteCount ];
+		satelliteAzimuth = new double[ satelliteCount ];
+		for ( int index = 0; index < satelliteCount; index++ )
+		{
+			satellitePhase[ index ] = satelliteRandom.nextDouble() * Math.PI;
+			satelliteAzimuth[ index ] = satelliteRandom.nextDouble() * 360;
+		}
+	}
+
+	/**
+	 * Start generating updates. There is no fix until the time to first fix, or to reacquire, has passed.
+	 * @param updateReceiver - the receiver
+	 */
+	@Override
+	public void startUpdates( IUpdateReceiver updateReceiver )
+	{
+		stopUpdates();
+
+		receiver = updateReceiver;
+
+		// Start afresh, so that all the satellites are reported
+		satelliteTable.clear();
+		satellitesInView = -1;
+		satellitesInFix = -1;
+
+		acquireTime = elapsedTime + ( ( startCount++ == 0 ) ? config.timeToFirstFix : config.timeToReacquire );
+		running = true;
+
+		if ( executor != null )
+		{
+			generatorThread = new GeneratorThread();
+			generatorThread.start();
+		}
+	}
+
+	/**
+	 * Stop generating updates
+	 */
+	@Override
+	public void stopUpdates()
+	{
+		running = false;
+
+		if ( generatorThread != null )
+		{
+			generatorThread.interrupt();
+			generatorThread = null;
+		}
+	}
+
+	@Override
+	public boolean isProviderEnabled()
+	{
+		return true;
+	}
+
+	/**
+	 * Generate and deliver the next epoch on the calling thread. If updates have not been started the simulated time still moves
+	 * on, but nothing is delivered.
+	 * @return false if updates have not been started
+	 */
+	public boolean step()
+	{
+		if ( running == false )
+		{
+			elapsedTime += epochPeriod;
+			return false;
+		}
+
+		generateEpoch();
+		return true;
+	}
+
+	/**
+	 * @return the simulated time of the next epoch, in milliseconds since the source was constructed
+	 */
+	public long getTime()
+	{
+		return elapsedTime;
+	}
+
+	/**
+	 * Get where the trajectory is at a simulated time, without any noise
+	 * @param time - the simulated time in milliseconds since the source was constructed
+	 * @param position - receives the position, speed and bearing
+	 */
+	public void getTruePosition( long time, GpsFix position )
+	{
+		double distance = config.speed * time / 1000.0;
+		double north = 0;
+		double east = 0;
+		double bearing = config.heading;
+
+		switch ( config.trajectory )
+		{
+			case Stationary:
+			{
+				bearing = Double.NaN;
+				break;
+			}
+
+			case Line:
+			{
+				north = distance * Math.cos( Math.toRadians( config.heading ) );
+				east = distance * Math.sin( Math.toRadians( config.heading ) );
+				break;
+			}
+
+			case Circle:
+			{
+				double angle = distance / config.radius;
+				north = config.radius * Math.cos( angle );
+				east = config.radius * Math.sin( angle );
+				bearing = ( Math.toDegrees( angle ) + 90 ) % 360;
+				break;
+			}
+		}
+
+		position.time = startTime + time;
+		position.latitude = config.latitude + Math.toDegrees( north / EARTH_RADIUS );
+		position.longitude = config.longitude + Math.toDegrees( east / ( EARTH_RADIUS * Math.cos( Math.toRadians( config.latitude ) ) ) );
+		position.altitude = config.altitude;
+		position.accuracy = 0;
+		position.speed = ( config.trajectory == Trajectory.Stationary ) ? 0 : ( float )config.speed;
+		position.bearing = ( float )bearing;
+	}
+
+	/**
+	 * Distance between two positions, using a flat earth approximation which is good enough for the distances simulated
+	 * @return the distance in metres
+	 */
+	public static double distanceBetween( GpsFix first, GpsFix second )
+	{
+		double north = Math.toRadians( second.latitude - first.latitude ) * EARTH_RADIUS;
+		double east = Math.toRadians( second.longitude - first.longitude ) * EARTH_RADIUS * Math.cos( Math.toRadians( first.latitude ) );
+		return Math.sqrt( ( north * north ) + ( east * east ) );
+	}
+
+	/**
+	 * @return the number of epochs delivered
+	 */
+	public int getEpochCount()
+	{
+		return epochCount;
+	}
+
+	/**
+	 * @return the number of fixes delivered
+	 */
+	public int getFixCount()
+	{
+		return fixCount;
+	}
+
+	/**
+	 * @return the mean delay in nanoseconds between an epoch being due and being delivered, when using an executor
+	 */
+	public long getMeanLatency()
+	{
+		return ( latencyCount == 0 ) ? 0 : totalLatency / latencyCount;
+	}
+
+	/**
+	 * @return the maximum delay in nanoseconds between an epoch being due and being delivered, when using an executor
+	 */
+	public long getMaxLatency()
+	{
+		return maxLatency;
+	}
+
+	/**
+	 * @return the most epochs waiting to be delivered at once, when using an executor
+	 */
+	public int getMaxBacklog()
+	{
+		return maxBacklog;
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Generate the epoch for the current simulated time and deliver it
+	 */
+	private void generateEpoch()
+	{
+		long time = elapsedTime;
+		elapsedTime += epochPeriod;
+		epochCount++;
+
+		// Work out whether there is a lock, and for how long it has been held. A drop-out ends the lock, which is regained at
+		// the start of the next interval
+		long lockedSince = acquireTime;
+		boolean locked = ( time >= acquireTime );
+		if ( config.dropoutInterval > 0 )
+		{
+			long intervalTime = time % config.dropoutInterval;
+			locked &= ( intervalTime < config.dropoutInterval - config.dropoutDuration );
+			lockedSince = Math.max( lockedSince, time - intervalTime );
+		}
+
+		int inView = config.satellitesInView;
+		if ( config.satelliteJitter > 0 )
+		{
+			inView -= random.nextInt( config.satelliteJitter + 1 );
+		}
+
+		if ( locked == false )
+		{
+			reportSatellites( time, inView / 2, 0, false );
+			return;
+		}
+
+		reportSatellites( time, inView, config.satellitesInFix, true );
+
+		// Position along the trajectory, plus noise scaled by the accuracy
+		double accuracy = config.finalAccuracy + ( ( config.initialAccuracy - config.finalAccuracy ) *
+				Math.exp( -( double )( time - lockedSince ) / config.convergenceTime ) ) + Math.abs( random.nextGaussian() * config.accuracyNoise );
+		double north = random.nextGaussian() * accuracy / 2;
+		double east = random.nextGaussian() * accuracy / 2;
+
+		getTruePosition( time, fix );
+		fix.latitude += Math.toDegrees( north / EARTH_RADIUS );
+		fix.longitude += Math.toDegrees( east / ( EARTH_RADIUS * Math.cos( Math.toRadians( config.latitude ) ) ) );
+		fix.altitude += random.nextGaussian() * accuracy;
+		fix.accuracy = ( float )accuracy;
+
+		fixCount++;
+		receiver.onFixReceived( fix );
+	}
+
+	/**
+	 * Apply the satellites in view to the satellite table, which reports the ones that have changed, then report the counts if
+	 * they have changed
+	 * @param time - the simulated time in milliseconds
+	 * @param inView - the number of satellites in view
+	 * @param inFix - the number of them used in the fix
+	 * @param locked - false to reduce the SNRs as when the signals are blocked
+	 */
+	private void reportSatellites( long time, int inView, int inFix, boolean locked )
+	{
+		inView = Math.min( inView, satellitePhase.length );
+		double orbitAngle = ( 2 * Math.PI * time ) / ORBIT_PERIOD;
+
+		satelliteTable.beginUpdate();
+		for ( int index = 0; index < inView; index++ )
+		{
+			// Each satellite rises and sets as it goes round its orbit
+			double elevation = MAX_ELEVATION * Math.abs( Math.sin( satellitePhase[ index ] + orbitAngle ) );
+			double azimuth = ( satelliteAzimuth[ index ] + Math.toDegrees( orbitAngle ) ) % 360;
+			double snr = config.minSnr + ( config.snrRange * Math.sin( Math.toRadians( elevation ) ) ) +
+					( satelliteRandom.nextGaussian() * config.snrNoise );
+			if ( locked == false )
+			{
+				snr -= config.lostLockSnrLoss;
+			}
+
+			satelliteTable.update( index + 1, ( float )Math.max( 0, snr ), ( float )elevation, ( float )azimuth, index < inFix );
+		}
+		satelliteTable.endUpdate();
+
+		int newSatellitesInView = satelliteTable.getInViewCount();
+		int newSatellitesInFix = satelliteTable.getInFixCount();
+		if ( ( newSatellitesInView != satellitesInView ) || ( newSatellitesInFix != satellitesInFix ) )
+		{
+			satellitesInView = newSatellitesInView;
+			satellitesInFix = newSatellitesInFix;
+
+			receiver.onSatelliteStatusReceived( newSatellitesInView, newSatellitesInFix );
+		}
+	}
+
+	/**
+	 * Thread handing epochs to the executor at the configured rate
+	 */
+	private class GeneratorThread extends Thread
+	{
+		public GeneratorThread()
+		{
+			super( "SyntheticLocationSource" );
+			setDaemon( true );
+		}
+
+		@Override
+		public void run()
+		{
+			long periodNanos = epochPeriod * 1000000L;
+			deliveryStartTime = System.nanoTime();
+			deliveryIndex = 0;
+
+			for ( long tick = 0; isInterrupted() == false; tick++ )
+			{
+				long waitNanos = ( deliveryStartTime + ( tick * periodNanos ) ) - System.nanoTime();
+				if ( waitNanos > 0 )
+				{
+					try
+					{
+						Thread.sleep( waitNanos / 1000000, ( int )( waitNanos % 1000000 ) );
+					}
+					catch ( InterruptedException exception )
+					{
+						break;
+					}
+				}
+
+				int waiting = backlog.incrementAndGet();
+				if ( waiting > maxBacklog )
+				{
+					maxBacklog = waiting;
+				}
+
+				executor.execute( deliveryTask );
+			}
+		}
+	}
+
+	/**
+	 * Delivers the next epoch on the executor's thread, recording how late it is
+	 */
+	private final Runnable deliveryTask = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			backlog.decrementAndGet();
+
+			long latency = System.nanoTime() - ( deliveryStartTime + ( deliveryIndex++ * epochPeriod * 1000000L ) );
+			totalLatency += latency;
+			latencyCount++;
+			if ( latency > maxLatency )
+			{
+				maxLatency = latency;
+			}
+
+			if ( running == true )
+			{
+				generateEpoch();
+			}
+		}
+	};
+
+	//
+	// Private data
+	//
+
+	/** Mean radius of the Earth in metres */
+	private static final double EARTH_RADIUS = 6371000;
+
+	/** Orbital period of a GPS satellite in milliseconds, and the highest elevation reached in degrees */
+	private static final double ORBIT_PERIOD = 43080000;
+	private static final double MAX_ELEVATION = 85;
+
+	private final Config config;
+	private final Executor executor;
+	private final Random random;
+
+	/** Milliseconds between epochs */
+	private final long epochPeriod;
+
+	/** Time of the first epoch */
+	private final long startTime = System.currentTimeMillis();
+
+	/** Where to send the updates */
+	private IUpdateReceiver receiver = null;
+	private volatile boolean running = false;
+
+	/** Simulated time since the source was constructed, and the time at which the next fix can be acquired */
+	private long elapsedTime = 0;
+	private long acquireTime = 0;
+	private int startCount = 0;
+
+	private GeneratorThread generatorThread = null;
+
+	/** Timing of the epochs handed to the executor */
+	private volatile long deliveryStartTime = 0;
+	private long deliveryIndex = 0;
+	private final AtomicInteger backlog = new AtomicInteger();
+	private volatile int maxBacklog = 0;
+	private long totalLatency = 0;
+	private long latencyCount = 0;
+	private long maxLatency = 0;
+
+	/** Reused for every fix */
+	private final GpsFix fix = new GpsFix();
+
+	/** The satellites, indexed by PRN - 1. The phase of each orbit in radians, and the azimuth in degrees at time 0 */
+	private final Random satelliteRandom;
+	private final double[] satellitePhase;
+	private final double[] satelliteAzimuth;
+
+	/** The satellites in view, reporting the changes to the receiver */
+	private final SatelliteTable satelliteTable = new SatelliteTable( new SatelliteTable.IChangeReceiver()
+	{
+		@Override
+		public void onSatelliteChanged( SatelliteTable table, int prn, int changes )
+		{
+			receiver.onSatelliteChanged( table, prn, changes );
+		}
+	} );
+
+	/** The counts last reported, or -1 */
+	private int satellitesInView = -1;
+	private int satellitesInFix = -1;
+
+	private int epochCount = 0;
+	private int fixCount = 0;
+}
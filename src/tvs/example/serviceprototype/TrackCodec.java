@@ -0,0 +1,367 @@
+package tvs.example.serviceprototype;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compact binary encoding of a stream of fixes, used to store and transfer tracks.
+ *
+ * Each value is quantised to a whole number of fixed units: milliseconds, 1e-7 degrees (about 1 cm), decimetres of altitude
+ * and accuracy, cm/s and tenths of a degree of bearing. Successive values are delta encoded, and times are encoded as the change
+ * in the interval between fixes, so a steady rate encodes as zero. Signed deltas are zig-zag encoded (0, -1, 1, -2... become
+ * 0, 1, 2, 3...) and written as varints, 7 bits per byte, least significant first, with the top bit set if more bytes follow.
+ *
+ * The stream written by Encoder starts with the 4 byte MAGIC and a version byte. Each fix is then:
+ * - a flags byte. Bits 0 to 3 are set if the altitude, accuracy, speed and bearing are known, and bits 4 to 7 are set if the
+ *   corresponding value has changed since the last fix in which it was known
+ * - the change in time interval, the latitude delta and the longitude delta
+ * - the delta of each value that is known and has changed
+ * A value that becomes known again is delta encoded against the last known value.
+ *
+ * TrackStore uses the same quantisation, zig-zag and varint encoding, but lays the values out in columns.
+ */
+public class TrackCodec
+{
+	//
+	// Public types and interfaces
+	//
+
+	/** Units the values are quantised to */
+	public static final double DEGREE_SCALE = 1e7;
+	public static final double ALTITUDE_SCALE = 10;
+	public static final double ACCURACY_SCALE = 10;
+	public static final double SPEED_SCALE = 100;
+	public static final double BEARING_SCALE = 10;
+
+	/** Stored in place of values that are not known */
+	public static final long UNKNOWN = Integer.MIN_VALUE;
+
+	/** Longest varint of a 64 bit value */
+	public static final int MAX_VARINT_SIZE = 10;
+
+	/** Longest encoding of one fix */
+	public static final int MAX_FIX_SIZE = 1 + ( 7 * MAX_VARINT_SIZE );
+
+	/** Start of a stream: "TRKC" */
+	public static final int MAGIC = 0x54524B43;
+	public static final int VERSION = 1;
+
+	/**
+	 * Writes a stream of fixes. Fixes without a position are ignored.
+	 * Output is buffered, so flush must be called at the end of the stream.
+	 */
+	public static final class Encoder
+	{
+		/**
+		 * @param output - where to write the stream. The header is written straight away
+		 * @throws IOException
+		 */
+		public Encoder( OutputStream output ) throws IOException
+		{
+			this.output = output;
+
+			buffer[ 0 ] = ( byte )( MAGIC >>> 24 );
+			buffer[ 1 ] = ( byte )( MAGIC >>> 16 );
+			buffer[ 2 ] = ( byte )( MAGIC >>> 8 );
+			buffer[ 3 ] = ( byte )MAGIC;
+			buffer[ 4 ] = ( byte )VERSION;
+			position = 5;
+		}
+
+		/**
+		 * Encode a fix
+		 * @param fix - the fix
+		 * @throws IOException
+		 */
+		public void encode( GpsFix fix ) throws IOException
+		{
+			if ( ( Double.isNaN( fix.latitude ) == true ) || ( Double.isNaN( fix.longitude ) == true ) )
+			{
+				return;
+			}
+
+			if ( position > buffer.length - MAX_FIX_SIZE )
+			{
+				writeBuffer();
+			}
+
+			current[ ALTITUDE ] = quantise( fix.altitude, ALTITUDE_SCALE );
+			current[ ACCURACY ] = quantise( fix.accuracy, ACCURACY_SCALE );
+			current[ SPEED ] = quantise( fix.speed, SPEED_SCALE );
+			current[ BEARING ] = quantise( fix.bearing, BEARING_SCALE );
+
+			int flags = 0;
+			for ( int field = 0; field < OPTIONAL_FIELDS; field++ )
+			{
+				if ( current[ field ] != UNKNOWN )
+				{
+					flags |= 1 << field;
+					if ( current[ field ] != previous[ field ] )
+					{
+						flags |= 0x10 << field;
+					}
+				}
+			}
+
+			int flagsPosition = position++;
+			buffer[ flagsPosition ] = ( byte )flags;
+
+			long interval = fix.time - previousTime;
+			position = writeVarint( buffer, position, zigZag( interval - previousInterval ) );
+			previousTime = fix.time;
+			previousInterval = interval;
+
+			long latitude = quantise( fix.latitude, DEGREE_SCALE );
+			long longitude = quantise( fix.longitude, DEGREE_SCALE );
+			position = writeVarint( buffer, position, zigZag( latitude - previousLatitude ) );
+			position = writeVarint( buffer, position, zigZag( longitude - previousLongitude ) );
+			previousLatitude = latitude;
+			previousLongitude = longitude;
+
+			for ( int field = 0; field < OPTIONAL_FIELDS; field++ )
+			{
+				if ( ( flags & ( 0x10 << field ) ) != 0 )
+				{
+					position = writeVarint( buffer, position, zigZag( current[ field ] - previous[ field ] ) );
+					previous[ field ] = current[ field ];
+				}
+			}
+
+			count++;
+		}
+
+		/**
+		 * Write any buffered data to the output stream and flush it
+		 * @throws IOException
+		 */
+		public void flush() throws IOException
+		{
+			writeBuffer();
+			output.flush();
+		}
+
+		/**
+		 * @return the number of fixes encoded
+		 */
+		public int getCount()
+		{
+			return count;
+		}
+
+		private void writeBuffer() throws IOException
+		{
+			output.write( buffer, 0, position );
+			position = 0;
+		}
+
+		private final OutputStream output;
+		private final byte[] buffer = new byte[ BUFFER_SIZE ];
+		private int position = 0;
+
+		/** The previous values, in their quantised form */
+		private long previousTime = 0;
+		private long previousInterval = 0;
+		private long previousLatitude = 0;
+		private long previousLongitude = 0;
+		private final long[] previous = new long[ OPTIONAL_FIELDS ];
+		private final long[] current = new long[ OPTIONAL_FIELDS ];
+
+		private int count = 0;
+	}
+
+	/**
+	 * Reads a stream written by Encoder
+	 */
+	public static final class Decoder
+	{
+		/**
+		 * @param input - the stream. The header is read straight away
+		 * @throws IOException if the stream does not start with a valid header
+		 */
+		public Decoder( InputStream input ) throws IOException
+		{
+			this.input = input;
+
+			int magic = ( readByte() << 24 ) | ( readByte() << 16 ) | ( readByte() << 8 ) | readByte();
+			if ( ( magic != MAGIC ) || ( readByte() != VERSION ) )
+			{
+				throw new IOException( "Not a track stream" );
+			}
+		}
+
+		/**
+		 * Decode the next fix
+		 * @param fix - receives the fix
+		 * @return false at the end of the stream
+		 * @throws IOException if the stream is truncated or corrupt
+		 */
+		public boolean decode( GpsFix fix ) throws IOException
+		{
+			if ( ( position == limit ) && ( fill() == false ) )
+			{
+				return false;
+			}
+
+			int flags = readByte();
+
+			previousInterval += unZigZag( readVarint() );
+			previousTime += previousInterval;
+			previousLatitude += unZigZag( readVarint() );
+			previousLongitude += unZigZag( readVarint() );
+
+			for ( int field = 0; field < OPTIONAL_FIELDS; field++ )
+			{
+				if ( ( flags & ( 0x10 << field ) ) != 0 )
+				{
+					previous[ field ] += unZigZag( readVarint() );
+				}
+			}
+
+			fix.time = previousTime;
+			fix.latitude = previousLatitude / DEGREE_SCALE;
+			fix.longitude = previousLongitude / DEGREE_SCALE;
+			fix.altitude = ( ( flags & 1 ) != 0 ) ? previous[ ALTITUDE ] / ALTITUDE_SCALE : Double.NaN;
+			fix.accuracy = ( ( flags & 2 ) != 0 ) ? ( float )( previous[ ACCURACY ] / ACCURACY_SCALE ) : Float.NaN;
+			fix.speed = ( ( flags & 4 ) != 0 ) ? ( float )( previous[ SPEED ] / SPEED_SCALE ) : Float.NaN;
+			fix.bearing = ( ( flags & 8 ) != 0 ) ? ( float )( previous[ BEARING ] / BEARING_SCALE ) : Float.NaN;
+
+			count++;
+			return true;
+		}
+
+		/**
+		 * @return the number of fixes decoded
+		 */
+		public int getCount()
+		{
+			return count;
+		}
+
+		private boolean fill() throws IOException
+		{
+			limit = input.read( buffer, 0, buffer.length );
+			position = 0;
+			if ( limit < 0 )
+			{
+				limit = 0;
+				return false;
+			}
+
+			return true;
+		}
+
+		private int readByte() throws IOException
+		{
+			while ( position == limit )
+			{
+				if ( fill() == false )
+				{
+					throw new EOFException( "Track stream truncated" );
+				}
+			}
+
+			return buffer[ position++ ] & 0xFF;
+		}
+
+		private long readVarint() throws IOException
+		{
+			long value = 0;
+			for ( int shift = 0; shift < 64; shift += 7 )
+			{
+				int next = readByte();
+				value |= ( long )( next & 0x7F ) << shift;
+				if ( next < 0x80 )
+				{
+					return value;
+				}
+			}
+
+			throw new IOException( "Track stream corrupt" );
+		}
+
+		private final InputStream input;
+		private final byte[] buffer = new byte[ BUFFER_SIZE ];
+		private int position = 0;
+		private int limit = 0;
+
+		/** The previous values, in their quantised form */
+		private long previousTime = 0;
+		private long previousInterval = 0;
+		private long previousLatitude = 0;
+		private long previousLongitude = 0;
+		private final long[] previous = new long[ OPTIONAL_FIELDS ];
+
+		private int count = 0;
+	}
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * @param value - the value, or NaN if not known
+	 * @param scale - units per whole value
+	 * @return the value in whole units, or UNKNOWN
+	 */
+	public static long quantise( double value, double scale )
+	{
+		return Double.isNaN( value ) ? UNKNOWN : Math.round( value * scale );
+	}
+
+	/**
+	 * @param value - the value in whole units, or UNKNOWN
+	 * @param scale - units per whole value
+	 * @return the value, or NaN if not known
+	 */
+	public static double unQuantise( long value, double scale )
+	{
+		return ( value == UNKNOWN ) ? Double.NaN : value / scale;
+	}
+
+	/**
+	 * Map a signed value to an unsigned one so that small negative values stay small
+	 */
+	public static long zigZag( long value )
+	{
+		return ( value << 1 ) ^ ( value >> 63 );
+	}
+
+	public static long unZigZag( long value )
+	{
+		return ( value >>> 1 ) ^ -( value & 1 );
+	}
+
+	/**
+	 * Write a varint
+	 * @param buffer - where to write it. Must have MAX_VARINT_SIZE bytes available
+	 * @param position - index at which to write it
+	 * @param value - the value, treated as unsigned
+	 * @return the index after the varint
+	 */
+	public static int writeVarint( byte[] buffer, int position, long value )
+	{
+		while ( ( value & ~0x7FL ) != 0 )
+		{
+			buffer[ position++ ] = ( byte )( ( value & 0x7F ) | 0x80 );
+			value >>>= 7;
+		}
+
+		buffer[ position++ ] = ( byte )value;
+		return position;
+	}
+
+	//
+	// Private data
+	//
+
+	/** Indexes of the optional values, in the order of their flags */
+	private static final int ALTITUDE = 0;
+	private static final int ACCURACY = 1;
+	private static final int SPEED = 2;
+	private static final int BEARING = 3;
+	private static final int OPTIONAL_FIELDS = 4;
+
+	private static final int BUFFER_SIZE = 8192;
+}
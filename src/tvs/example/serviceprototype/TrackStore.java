@@ -0,0 +1,829 @@
+package tvs.example.serviceprototype;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only file of logged fixes.
+ *
+ * Fixes are collected in memory and written in blocks (group commit), so the cost of a write is shared by all the fixes in a
+ * block rather than paid for each one. A block is committed when it is full, when its oldest fix is older than the maximum
+ * commit age, or when commit is called. How often the file is synced to the storage device is set by the SyncPolicy.
+ *
+ * The file is a 16 byte header followed by the blocks. Each block is a header followed by the payload. The header holds the
+ * magic, payload length, fix count, and CRC32 of the rest of the block, then a summary of the block: the times of its first and
+ * last fixes and the bounding box of its positions. The payload stores the fixes a column at a time: time, latitude, longitude,
+ * altitude, accuracy, speed and bearing. Each column is quantised to whole units (milliseconds, 1e-7 degrees, decimetres,
+ * decimetres, cm/s and tenths of a degree) and delta encoded against the previous fix (the times against the previous
+ * interval). The deltas are zig-zag encoded and written as varints, so the small changes between successive fixes take one or
+ * two bytes each, and runs of unchanged values are written as a single run length. Unknown values are stored as UNKNOWN.
+ *
+ * The quantisation, zig-zag and varint encoding are those of TrackCodec.
+ *
+ * The block summaries are kept in memory as a sparse index of the file, read from the block headers when the file is opened.
+ * A read for a time range finds the first block it needs by a binary search of the summaries, and only decodes the blocks that
+ * overlap the range, and the bounding box if one is given. This relies on fixes being appended in time order.
+ *
+ * A block whose write was interrupted fails its length or CRC check. It is truncated when the file is next opened, losing
+ * only the fixes in that block.
+ *
+ * Not thread safe.
+ */
+public class TrackStore
+{
+	//
+	// Public types and interfaces
+	//
+
+	/**
+	 * When to sync the file to the storage device
+	 */
+	public enum SyncPolicy
+	{
+		/** Leave it to the operating system, apart from when closing */
+		None,
+
+		/** After every block is committed */
+		EveryCommit,
+
+		/** After a block is committed if the sync interval has passed since the last sync */
+		Periodic
+	};
+
+	/**
+	 * Interface used to pass stored fixes back to clients
+	 */
+	public interface IFixReceiver
+	{
+		/**
+		 * Called for each fix read
+		 * @param fix - the fix. Reused for every fix, so must be copied if kept
+		 */
+		public void onFixReceived( GpsFix fix );
+	}
+
+	/** Default settings */
+	public static final int DEFAULT_BLOCK_CAPACITY = 600;
+	public static final long DEFAULT_COMMIT_AGE = 60000;
+	public static final long DEFAULT_SYNC_INTERVAL = 300000;
+
+	/** Stored in place of values that are not known */
+	public static final long UNKNOWN = TrackCodec.UNKNOWN;
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * Open a track file, creating it if it does not exist. Any incomplete block at the end of the file is removed.
+	 * @param trackFile - the file
+	 * @param syncPolicy - when to sync the file
+	 * @param syncInterval - time between syncs in milliseconds for the Periodic policy
+	 * @param blockCapacity - the most fixes in a block
+	 * @param maxCommitAge - the longest time in milliseconds a fix is held before its block is committed, measured by the fix
+	 *  times
+	 * @throws IOException if the file cannot be opened, or is not a track file
+	 */
+	public TrackStore( File trackFile, SyncPolicy syncPolicy, long syncInterval, int blockCapacity, long maxCommitAge ) throws IOException
+	{
+		this.syncPolicy = syncPolicy;
+		this.syncInterval = syncInterval;
+		this.blockCapacity = blockCapacity;
+		this.maxCommitAge = maxCommitAge;
+
+		pending = new long[ COLUMNS ][ blockCapacity ];
+		residuals = new long[ blockCapacity ];
+		blockBuffer = new byte[ BLOCK_HEADER_SIZE + ( blockCapacity * COLUMNS * TrackCodec.MAX_VARINT_SIZE ) ];
+
+		file = new RandomAccessFile( trackFile, "rw" );
+		channel = file.getChannel();
+
+		try
+		{
+			if ( channel.size() == 0 )
+			{
+				ByteBuffer header = ByteBuffer.allocate( FILE_HEADER_SIZE );
+				header.putInt( MAGIC ).putInt( VERSION );
+				header.rewind();
+				channel.write( header, 0 );
+				endPosition = FILE_HEADER_SIZE;
+			}
+			else
+			{
+				endPosition = scan();
+				if ( endPosition < channel.size() )
+				{
+					log.warn( "Removing {} bytes of incomplete block from {}", channel.size() - endPosition, trackFile );
+					channel.truncate( endPosition );
+				}
+			}
+		}
+		catch ( IOException exception )
+		{
+			file.close();
+			throw exception;
+		}
+	}
+
+	/**
+	 * Open a track file with the default settings: blocks of up to DEFAULT_BLOCK_CAPACITY fixes committed at least every
+	 * DEFAULT_COMMIT_AGE, and synced every DEFAULT_SYNC_INTERVAL
+	 * @param trackFile - the file
+	 * @throws IOException if the file cannot be opened, or is not a track file
+	 */
+	public TrackStore( File trackFile ) throws IOException
+	{
+		this( trackFile, SyncPolicy.Periodic, DEFAULT_SYNC_INTERVAL, DEFAULT_BLOCK_CAPACITY, DEFAULT_COMMIT_AGE );
+	}
+
+	/**
+	 * Add a fix. Fixes without a position are ignored. The block is committed if it is full or old enough.
+	 * @param fix - the fix
+	 * @throws IOException
+	 */
+	public void append( GpsFix fix ) throws IOException
+	{
+		if ( ( Double.isNaN( fix.latitude ) == true ) || ( Double.isNaN( fix.longitude ) == true ) )
+		{
+			return;
+		}
+
+		if ( ( pendingCount > 0 ) && ( fix.time - pending[ TIME ][ 0 ] >= maxCommitAge ) )
+		{
+			commit();
+		}
+
+		pending[ TIME ][ pendingCount ] = fix.time;
+		pending[ LATITUDE ][ pendingCount ] = TrackCodec.quantise( fix.latitude, TrackCodec.DEGREE_SCALE );
+		pending[ LONGITUDE ][ pendingCount ] = TrackCodec.quantise( fix.longitude, TrackCodec.DEGREE_SCALE );
+		pending[ ALTITUDE ][ pendingCount ] = TrackCodec.quantise( fix.altitude, TrackCodec.ALTITUDE_SCALE );
+		pending[ ACCURACY ][ pendingCount ] = TrackCodec.quantise( fix.accuracy, TrackCodec.ACCURACY_SCALE );
+		pending[ SPEED ][ pendingCount ] = TrackCodec.quantise( fix.speed, TrackCodec.SPEED_SCALE );
+		pending[ BEARING ][ pendingCount ] = TrackCodec.quantise( fix.bearing, TrackCodec.BEARING_SCALE );
+		lastTime = fix.time;
+
+		if ( ++pendingCount == blockCapacity )
+		{
+			commit();
+		}
+	}
+
+	/**
+	 * Write the fixes held in memory as a block, and sync the file if the policy requires it
+	 * @throws IOException
+	 */
+	public void commit() throws IOException
+	{
+		if ( pendingCount == 0 )
+		{
+			return;
+		}
+
+		int length = encodeBlock();
+		ByteBuffer block = ByteBuffer.wrap( blockBuffer, 0, length );
+		channel.write( block, endPosition );
+		indexBlock( endPosition, block );
+		endPosition += length;
+
+		fixCount += pendingCount;
+		commitCount++;
+		pendingCount = 0;
+
+		if ( ( syncPolicy == SyncPolicy.EveryCommit ) || ( ( syncPolicy == SyncPolicy.Periodic ) && ( lastTime - lastSyncTime >= syncInterval ) ) )
+		{
+			sync();
+		}
+	}
+
+	/**
+	 * Sync the committed blocks to the storage device
+	 * @throws IOException
+	 */
+	public void sync() throws IOException
+	{
+		channel.force( false );
+		lastSyncTime = lastTime;
+		syncCount++;
+	}
+
+	/**
+	 * Commit and sync any fixes held in memory, and close the file
+	 * @throws IOException
+	 */
+	public void close() throws IOException
+	{
+		try
+		{
+			commit();
+			sync();
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/**
+	 * Read all the committed fixes, oldest first
+	 * @param receiver - receives the fixes
+	 * @return the number of fixes read
+	 * @throws IOException
+	 */
+	public int read( IFixReceiver receiver ) throws IOException
+	{
+		return read( Long.MIN_VALUE, Long.MAX_VALUE, receiver );
+	}
+
+	/**
+	 * Read the committed fixes in a time range, oldest first
+	 * @param startTime - time of the first fix wanted in milliseconds
+	 * @param endTime - time of the last fix wanted in milliseconds
+	 * @param receiver - receives the fixes
+	 * @return the number of fixes read
+	 * @throws IOException
+	 */
+	public int read( long startTime, long endTime, IFixReceiver receiver ) throws IOException
+	{
+		return read( startTime, endTime, -90, -180, 90, 180, receiver );
+	}
+
+	/**
+	 * Read the committed fixes in a time range and within a bounding box, oldest first
+	 * @param startTime - time of the first fix wanted in milliseconds
+	 * @param endTime - time of the last fix wanted in milliseconds
+	 * @param south - the minimum latitude in degrees
+	 * @param west - the minimum longitude in degrees. Boxes crossing 180 degrees must be read as two boxes
+	 * @param north - the maximum latitude in degrees
+	 * @param east - the maximum longitude in degrees
+	 * @param receiver - receives the fixes
+	 * @return the number of fixes read
+	 * @throws IOException
+	 */
+	public int read( long startTime, long endTime, double south, double west, double north, double east, IFixReceiver receiver )
+			throws IOException
+	{
+		long minLatitude = TrackCodec.quantise( south, TrackCodec.DEGREE_SCALE );
+		long maxLatitude = TrackCodec.quantise( north, TrackCodec.DEGREE_SCALE );
+		long minLongitude = TrackCodec.quantise( west, TrackCodec.DEGREE_SCALE );
+		long maxLongitude = TrackCodec.quantise( east, TrackCodec.DEGREE_SCALE );
+
+		int startCount = readCount;
+		for ( int block = findBlock( startTime ); ( block < blockCount ) && ( blockStartTimes[ block ] <= endTime ); block++ )
+		{
+			if ( ( blockMinLatitudes[ block ] > maxLatitude ) || ( blockMaxLatitudes[ block ] < minLatitude ) ||
+					( blockMinLongitudes[ block ] > maxLongitude ) || ( blockMaxLongitudes[ block ] < minLongitude ) )
+			{
+				continue;
+			}
+
+			int count = readBlock( block );
+
+			long[] times = decoded[ TIME ];
+			long[] latitudes = decoded[ LATITUDE ];
+			long[] longitudes = decoded[ LONGITUDE ];
+			for ( int index = 0; index < count; index++ )
+			{
+				if ( ( times[ index ] < startTime ) || ( times[ index ] > endTime ) ||
+						( latitudes[ index ] < minLatitude ) || ( latitudes[ index ] > maxLatitude ) ||
+						( longitudes[ index ] < minLongitude ) || ( longitudes[ index ] > maxLongitude ) )
+				{
+					continue;
+				}
+
+				readFix.time = times[ index ];
+				readFix.latitude = TrackCodec.unQuantise( latitudes[ index ], TrackCodec.DEGREE_SCALE );
+				readFix.longitude = TrackCodec.unQuantise( longitudes[ index ], TrackCodec.DEGREE_SCALE );
+				readFix.altitude = TrackCodec.unQuantise( decoded[ ALTITUDE ][ index ], TrackCodec.ALTITUDE_SCALE );
+				readFix.accuracy = ( float )TrackCodec.unQuantise( decoded[ ACCURACY ][ index ], TrackCodec.ACCURACY_SCALE );
+				readFix.speed = ( float )TrackCodec.unQuantise( decoded[ SPEED ][ index ], TrackCodec.SPEED_SCALE );
+				readFix.bearing = ( float )TrackCodec.unQuantise( decoded[ BEARING ][ index ], TrackCodec.BEARING_SCALE );
+
+				readCount++;
+				receiver.onFixReceived( readFix );
+			}
+		}
+
+		return readCount - startCount;
+	}
+
+	/**
+	 * @return the time of the first committed fix, or UNKNOWN if there are none
+	 */
+	public long getStartTime()
+	{
+		return ( blockCount == 0 ) ? UNKNOWN : blockStartTimes[ 0 ];
+	}
+
+	/**
+	 * @return the time of the last committed fix, or UNKNOWN if there are none
+	 */
+	public long getEndTime()
+	{
+		return ( blockCount == 0 ) ? UNKNOWN : blockEndTimes[ blockCount - 1 ];
+	}
+
+	/**
+	 * @return the number of fixes committed
+	 */
+	public int getFixCount()
+	{
+		return fixCount;
+	}
+
+	/**
+	 * @return the number of fixes held in memory waiting to be committed
+	 */
+	public int getPendingCount()
+	{
+		return pendingCount;
+	}
+
+	/**
+	 * @return the number of blocks in the file
+	 */
+	public int getBlockCount()
+	{
+		return blockCount;
+	}
+
+	/**
+	 * @return the size of the committed part of the file in bytes
+	 */
+	public long getSize()
+	{
+		return endPosition;
+	}
+
+	/**
+	 * @return the number of blocks committed since the file was opened
+	 */
+	public int getCommitCount()
+	{
+		return commitCount;
+	}
+
+	/**
+	 * @return the number of times the file has been synced since it was opened
+	 */
+	public int getSyncCount()
+	{
+		return syncCount;
+	}
+
+	/**
+	 * @return the number of blocks decoded by reads since the file was opened
+	 */
+	public int getBlockReadCount()
+	{
+		return blockReadCount;
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Check the file header and walk the blocks, checking them and building the index
+	 * @return the position after the last valid block
+	 * @throws IOException if the file is not a track file
+	 */
+	private long scan() throws IOException
+	{
+		long size = channel.size();
+		ByteBuffer header = ByteBuffer.allocate( FILE_HEADER_SIZE );
+		if ( ( size < FILE_HEADER_SIZE ) || ( channel.read( header, 0 ) < FILE_HEADER_SIZE ) || ( header.getInt( 0 ) != MAGIC ) )
+		{
+			throw new IOException( "Not a track file" );
+		}
+
+		if ( header.getInt( 4 ) != VERSION )
+		{
+			throw new IOException( "Track file version " + header.getInt( 4 ) + " not supported" );
+		}
+
+		long position = FILE_HEADER_SIZE;
+		blockCount = 0;
+		fixCount = 0;
+
+		while ( position + BLOCK_HEADER_SIZE <= size )
+		{
+			int count = readBlockData( position );
+			if ( count < 0 )
+			{
+				break;
+			}
+
+			indexBlock( position, blockHeader );
+			position += BLOCK_HEADER_SIZE + blockHeader.getInt( 4 );
+			fixCount += count;
+		}
+
+		return position;
+	}
+
+	/**
+	 * Read a block header and payload into blockHeader and the read buffer, and check them
+	 * @param position - position of the block in the file
+	 * @return the number of fixes in the block, or -1 if it is incomplete or corrupt
+	 * @throws IOException
+	 */
+	private int readBlockData( long position ) throws IOException
+	{
+		long size = channel.size();
+
+		blockHeader.clear();
+		while ( blockHeader.hasRemaining() == true )
+		{
+			if ( channel.read( blockHeader, position + blockHeader.position() ) < 0 )
+			{
+				return -1;
+			}
+		}
+
+		int payloadLength = blockHeader.getInt( 4 );
+		int count = blockHeader.getInt( 8 );
+		if ( ( blockHeader.getInt( 0 ) != BLOCK_MAGIC ) || ( payloadLength < 0 ) || ( count <= 0 ) ||
+				( position + BLOCK_HEADER_SIZE + payloadLength > size ) )
+		{
+			return -1;
+		}
+
+		if ( readBuffer.length < payloadLength )
+		{
+			readBuffer = new byte[ payloadLength ];
+		}
+
+		ByteBuffer payload = ByteBuffer.wrap( readBuffer, 0, payloadLength );
+		while ( payload.hasRemaining() == true )
+		{
+			if ( channel.read( payload, position + BLOCK_HEADER_SIZE + payload.position() ) < 0 )
+			{
+				return -1;
+			}
+		}
+
+		crc.reset();
+		crc.update( blockHeader.array(), SUMMARY_OFFSET, BLOCK_HEADER_SIZE - SUMMARY_OFFSET );
+		crc.update( readBuffer, 0, payloadLength );
+		if ( ( int )crc.getValue() != blockHeader.getInt( 12 ) )
+		{
+			return -1;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Read and decode an indexed block
+	 * @param block - index of the block
+	 * @return the number of fixes decoded
+	 * @throws IOException if the block is corrupt
+	 */
+	private int readBlock( int block ) throws IOException
+	{
+		int count = readBlockData( blockPositions[ block ] );
+		if ( count < 0 )
+		{
+			throw new IOException( "Track block corrupt" );
+		}
+
+		decodeBlock( count, blockHeader.getInt( 4 ) );
+		blockReadCount++;
+		return count;
+	}
+
+	/**
+	 * Add a block to the index
+	 * @param position - position of the block in the file
+	 * @param header - buffer starting with the block header
+	 */
+	private void indexBlock( long position, ByteBuffer header )
+	{
+		if ( blockCount == blockPositions.length )
+		{
+			int capacity = Math.max( 16, blockCount * 2 );
+			blockPositions = Arrays.copyOf( blockPositions, capacity );
+			blockStartTimes = Arrays.copyOf( blockStartTimes, capacity );
+			blockEndTimes = Arrays.copyOf( blockEndTimes, capacity );
+			blockMinLatitudes = Arrays.copyOf( blockMinLatitudes, capacity );
+			blockMaxLatitudes = Arrays.copyOf( blockMaxLatitudes, capacity );
+			blockMinLongitudes = Arrays.copyOf( blockMinLongitudes, capacity );
+			blockMaxLongitudes = Arrays.copyOf( blockMaxLongitudes, capacity );
+		}
+
+		blockPositions[ blockCount ] = position;
+		blockStartTimes[ blockCount ] = header.getLong( SUMMARY_OFFSET );
+		blockEndTimes[ blockCount ] = header.getLong( SUMMARY_OFFSET + 8 );
+		blockMinLatitudes[ blockCount ] = header.getInt( SUMMARY_OFFSET + 16 );
+		blockMaxLatitudes[ blockCount ] = header.getInt( SUMMARY_OFFSET + 20 );
+		blockMinLongitudes[ blockCount ] = header.getInt( SUMMARY_OFFSET + 24 );
+		blockMaxLongitudes[ blockCount ] = header.getInt( SUMMARY_OFFSET + 28 );
+		blockCount++;
+	}
+
+	/**
+	 * Binary search of the index
+	 * @param time - time in milliseconds
+	 * @return the index of the first block ending at or after the time, or the block count if there is none
+	 */
+	private int findBlock( long time )
+	{
+		int low = 0;
+		int high = blockCount;
+		while ( low < high )
+		{
+			int middle = ( low + high ) >>> 1;
+			if ( blockEndTimes[ middle ] < time )
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Encode the pending fixes into the block buffer
+	 * @return the length of the block
+	 */
+	private int encodeBlock()
+	{
+		encodePosition = BLOCK_HEADER_SIZE;
+
+		// Times are encoded as the change in interval, so a steady rate is a run of zeros
+		long[] times = pending[ TIME ];
+		residuals[ 0 ] = times[ 0 ];
+		long previousInterval = 0;
+		for ( int index = 1; index < pendingCount; index++ )
+		{
+			long interval = times[ index ] - times[ index - 1 ];
+			residuals[ index ] = interval - previousInterval;
+			previousInterval = interval;
+		}
+		writeColumn( pendingCount );
+
+		for ( int column = LATITUDE; column < COLUMNS; column++ )
+		{
+			long[] values = pending[ column ];
+			long previous = 0;
+			for ( int index = 0; index < pendingCount; index++ )
+			{
+				residuals[ index ] = values[ index ] - previous;
+				previous = values[ index ];
+			}
+			writeColumn( pendingCount );
+		}
+
+		// The summary used by the index
+		long[] latitudes = pending[ LATITUDE ];
+		long[] longitudes = pending[ LONGITUDE ];
+		long minLatitude = latitudes[ 0 ];
+		long maxLatitude = latitudes[ 0 ];
+		long minLongitude = longitudes[ 0 ];
+		long maxLongitude = longitudes[ 0 ];
+		for ( int index = 1; index < pendingCount; index++ )
+		{
+			minLatitude = Math.min( minLatitude, latitudes[ index ] );
+			maxLatitude = Math.max( maxLatitude, latitudes[ index ] );
+			minLongitude = Math.min( minLongitude, longitudes[ index ] );
+			maxLongitude = Math.max( maxLongitude, longitudes[ index ] );
+		}
+
+		int payloadLength = encodePosition - BLOCK_HEADER_SIZE;
+		ByteBuffer header = ByteBuffer.wrap( blockBuffer, 0, BLOCK_HEADER_SIZE );
+		header.putInt( BLOCK_MAGIC ).putInt( payloadLength ).putInt( pendingCount ).putInt( 0 );
+		header.putLong( times[ 0 ] ).putLong( times[ pendingCount - 1 ] );
+		header.putInt( ( int )minLatitude ).putInt( ( int )maxLatitude ).putInt( ( int )minLongitude ).putInt( ( int )maxLongitude );
+
+		crc.reset();
+		crc.update( blockBuffer, SUMMARY_OFFSET, encodePosition - SUMMARY_OFFSET );
+		header.putInt( 12, ( int )crc.getValue() );
+
+		return encodePosition;
+	}
+
+	/**
+	 * Write a column of residuals. Each non-zero residual is written as its zig-zag value shifted left one bit, and each run of
+	 * zeros as the run length shifted left one bit with the bottom bit set, so unchanging values cost almost nothing
+	 * @param count - the number of residuals
+	 */
+	private void writeColumn( int count )
+	{
+		int run = 0;
+		for ( int index = 0; index < count; index++ )
+		{
+			long residual = residuals[ index ];
+			if ( residual == 0 )
+			{
+				run++;
+			}
+			else
+			{
+				if ( run > 0 )
+				{
+					writeVarint( ( ( long )run << 1 ) | 1 );
+					run = 0;
+				}
+
+				writeVarint( TrackCodec.zigZag( residual ) << 1 );
+			}
+		}
+
+		if ( run > 0 )
+		{
+			writeVarint( ( ( long )run << 1 ) | 1 );
+		}
+	}
+
+	/**
+	 * Read a column of residuals written by writeColumn
+	 * @param count - the number of residuals
+	 * @throws IOException if the column is corrupt
+	 */
+	private void readColumn( int count ) throws IOException
+	{
+		int index = 0;
+		while ( index < count )
+		{
+			long token = readVarint();
+			if ( ( token & 1 ) != 0 )
+			{
+				long run = token >>> 1;
+				if ( run > count - index )
+				{
+					throw new IOException( "Track block corrupt" );
+				}
+
+				for ( int end = index + ( int )run; index < end; index++ )
+				{
+					residuals[ index ] = 0;
+				}
+			}
+			else
+			{
+				residuals[ index++ ] = TrackCodec.unZigZag( token >>> 1 );
+			}
+		}
+	}
+
+	/**
+	 * Decode a block held in the read buffer into the decoded columns
+	 */
+	private void decodeBlock( int count, int payloadLength ) throws IOException
+	{
+		if ( decoded[ 0 ].length < count )
+		{
+			for ( int column = 0; column < COLUMNS; column++ )
+			{
+				decoded[ column ] = new long[ count ];
+			}
+		}
+
+		if ( residuals.length < count )
+		{
+			residuals = new long[ count ];
+		}
+
+		decodePosition = 0;
+		decodeLimit = payloadLength;
+
+		readColumn( count );
+		long[] times = decoded[ TIME ];
+		long time = residuals[ 0 ];
+		long interval = 0;
+		times[ 0 ] = time;
+		for ( int index = 1; index < count; index++ )
+		{
+			interval += residuals[ index ];
+			time += interval;
+			times[ index ] = time;
+		}
+
+		for ( int column = LATITUDE; column < COLUMNS; column++ )
+		{
+			readColumn( count );
+			long[] values = decoded[ column ];
+			long value = 0;
+			for ( int index = 0; index < count; index++ )
+			{
+				value += residuals[ index ];
+				values[ index ] = value;
+			}
+		}
+	}
+
+	private void writeVarint( long value )
+	{
+		encodePosition = TrackCodec.writeVarint( blockBuffer, encodePosition, value );
+	}
+
+	private long readVarint() throws IOException
+	{
+		long value = 0;
+		for ( int shift = 0; shift < 64; shift += 7 )
+		{
+			if ( decodePosition >= decodeLimit )
+			{
+				throw new IOException( "Track block truncated" );
+			}
+
+			byte next = readBuffer[ decodePosition++ ];
+			value |= ( long )( next & 0x7F ) << shift;
+			if ( next >= 0 )
+			{
+				return value;
+			}
+		}
+
+		throw new IOException( "Track block corrupt" );
+	}
+
+	//
+	// Private data
+	//
+
+	/** Logger for this class */
+	private static final Logger log = LoggerFactory.getLogger( TrackStore.class );
+
+	/** File header: magic "TRKS", version, and reserved space */
+	private static final int MAGIC = 0x54524B53;
+	private static final int VERSION = 2;
+	private static final int FILE_HEADER_SIZE = 16;
+
+	/**
+	 * Block header: magic "TBLK", payload length, fix count and CRC32 of the rest of the block, then the summary: times of the
+	 * first and last fixes, and the minimum and maximum latitude and longitude in 1e-7 degrees
+	 */
+	private static final int BLOCK_MAGIC = 0x54424C4B;
+	private static final int BLOCK_HEADER_SIZE = 48;
+	private static final int SUMMARY_OFFSET = 16;
+
+	/** The columns, and the units they are stored in */
+	private static final int TIME = 0;
+	private static final int LATITUDE = 1;
+	private static final int LONGITUDE = 2;
+	private static final int ALTITUDE = 3;
+	private static final int ACCURACY = 4;
+	private static final int SPEED = 5;
+	private static final int BEARING = 6;
+	private static final int COLUMNS = 7;
+
+	private final SyncPolicy syncPolicy;
+	private final long syncInterval;
+	private final int blockCapacity;
+	private final long maxCommitAge;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+
+	/** End of the last committed block */
+	private long endPosition = 0;
+
+	/** The index: the position and summary of each block */
+	private long[] blockPositions = new long[ 0 ];
+	private long[] blockStartTimes = new long[ 0 ];
+	private long[] blockEndTimes = new long[ 0 ];
+	private int[] blockMinLatitudes = new int[ 0 ];
+	private int[] blockMaxLatitudes = new int[ 0 ];
+	private int[] blockMinLongitudes = new int[ 0 ];
+	private int[] blockMaxLongitudes = new int[ 0 ];
+
+	/** The quantised fixes waiting to be committed, by column */
+	private final long[][] pending;
+	private int pendingCount = 0;
+
+	/** Time of the last fix appended, and of the last fix when the file was synced */
+	private long lastTime = 0;
+	private long lastSyncTime = 0;
+
+	/** Buffers used for encoding and decoding blocks */
+	private final byte[] blockBuffer;
+	private int encodePosition = 0;
+	private final ByteBuffer blockHeader = ByteBuffer.allocate( BLOCK_HEADER_SIZE );
+	private byte[] readBuffer = new byte[ 0 ];
+	private int decodePosition = 0;
+	private int decodeLimit = 0;
+	private final long[][] decoded = new long[ COLUMNS ][ 0 ];
+	private long[] residuals;
+	private final GpsFix readFix = new GpsFix();
+	private final CRC32 crc = new CRC32();
+
+	private int fixCount = 0;
+	private int blockCount = 0;
+	private int commitCount = 0;
+	private int syncCount = 0;
+	private int readCount = 0;
+	private int blockReadCount = 0;
+}
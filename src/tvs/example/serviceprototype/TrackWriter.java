@@ -0,0 +1,435 @@
+package tvs.example.serviceprototype;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes fixes to a TrackStore on a thread of its own, so that the thread receiving the fixes never waits for the file.
+ *
+ * Fixes are passed to the writer through a bounded queue with one producer and one consumer, which needs no locks: each side
+ * owns one index and only reads the other's when it needs to. The fix values are copied into preallocated arrays, so offering a
+ * fix allocates nothing. If the queue is full the fix is dropped and counted rather than blocking the producer.
+ *
+ * The writer commits the fixes it has taken as a block (group commit) once it holds the batch size, once the oldest has waited
+ * for the batch age, or when flush is called. The age is measured by the clock rather than by the fix times, so fixes are written
+ * even when no more arrive, e.g. while the GPS is turned off. Between batches the writer sleeps, and is only woken by the
+ * producer when the queue fills to the batch size, or when the first fix arrives while the writer is idle.
+ *
+ * offer must only be called from one thread at a time. The other methods may be called from any thread. A fix offered while
+ * another thread closes the writer is either written or dropped and counted, never accepted and then lost.
+ */
+public class TrackWriter
+{
+	//
+	// Public types and interfaces
+	//
+
+	/** Default settings. The batch size and age match the block size and commit age of the TrackStore */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+	public static final int DEFAULT_BATCH_SIZE = TrackStore.DEFAULT_BLOCK_CAPACITY;
+	public static final long DEFAULT_BATCH_AGE = TrackStore.DEFAULT_COMMIT_AGE;
+
+	//
+	// Public methods
+	//
+
+	/**
+	 * Start the writer thread
+	 * @param store - the store to write to. Used only by the writer thread until the writer is closed
+	 * @param queueCapacity - the most fixes waiting for the writer. Rounded up to a power of 2
+	 * @param batchSize - the number of fixes that triggers a commit
+	 * @param batchAge - the longest time in milliseconds a fix waits to be committed, unless the writer is behind
+	 */
+	public TrackWriter( TrackStore store, int queueCapacity, int batchSize, long batchAge )
+	{
+		this.store = store;
+		this.batchSize = batchSize;
+		this.batchAgeNanos = batchAge * 1000000L;
+
+		int capacity = Integer.highestOneBit( Math.max( 2, queueCapacity - 1 ) ) << 1;
+		mask = capacity - 1;
+		wakeSize = Math.min( batchSize, capacity / 2 );
+
+		times = new long[ capacity ];
+		latitudes = new double[ capacity ];
+		longitudes = new double[ capacity ];
+		altitudes = new double[ capacity ];
+		accuracies = new float[ capacity ];
+		speeds = new float[ capacity ];
+		bearings = new float[ capacity ];
+		offerTimes = new long[ capacity ];
+
+		writerThread = new WriterThread();
+		writerThread.start();
+	}
+
+	/**
+	 * Start the writer thread with the default settings
+	 * @param store - the store to write to
+	 */
+	public TrackWriter( TrackStore store )
+	{
+		this( store, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_BATCH_AGE );
+	}
+
+	/**
+	 * Queue a fix to be written. Never blocks.
+	 * @param fix - the fix, which is copied
+	 * @return false if the queue was full or the writer closed, and the fix was dropped
+	 */
+	public boolean offer( GpsFix fix )
+	{
+		long tail = tailIndex.get();
+		if ( ( ( tail & CLOSED ) != 0 ) || ( ( tail - cachedHead > mask ) && ( tail - ( cachedHead = headIndex.get() ) > mask ) ) )
+		{
+			droppedCount++;
+			return false;
+		}
+
+		int slot = ( int )tail & mask;
+		times[ slot ] = fix.time;
+		latitudes[ slot ] = fix.latitude;
+		longitudes[ slot ] = fix.longitude;
+		altitudes[ slot ] = fix.altitude;
+		accuracies[ slot ] = fix.accuracy;
+		speeds[ slot ] = fix.speed;
+		bearings[ slot ] = fix.bearing;
+		offerTimes[ slot ] = System.nanoTime();
+
+		// Publish the fix. This fails only if close has marked the queue closed since tail was read, in which case the writer
+		// may already have taken its last look at the queue. A full barrier, so it is not reordered with the read of writerIdle
+		if ( tailIndex.compareAndSet( tail, tail + 1 ) == false )
+		{
+			droppedCount++;
+			return false;
+		}
+		offeredCount++;
+
+		// The size from the cached index is an overestimate, so only read the writer's index when the size matters
+		int size = ( int )( tail + 1 - cachedHead );
+		if ( ( size >= wakeSize ) || ( size > maxQueueSize ) )
+		{
+			cachedHead = headIndex.get();
+			size = ( int )( tail + 1 - cachedHead );
+			if ( size > maxQueueSize )
+			{
+				maxQueueSize = size;
+			}
+		}
+
+		// Wake the writer if it is idle, or if the queue has filled since it was last woken
+		if ( ( writerIdle == true ) || ( ( size >= wakeSize ) && ( cachedHead != wakeHead ) ) )
+		{
+			wakeHead = cachedHead;
+			LockSupport.unpark( writerThread );
+		}
+
+		return true;
+	}
+
+	/**
+	 * Ask the writer to commit all the fixes offered so far. Does not wait for it to happen.
+	 */
+	public void flush()
+	{
+		flushRequested = true;
+		LockSupport.unpark( writerThread );
+	}
+
+	/**
+	 * Write all the fixes offered, stop the writer thread and close the store. Waits for the writer to finish.
+	 * @throws IOException if the store could not be closed
+	 */
+	public void close() throws IOException
+	{
+		// Mark the queue closed before telling the writer, so the writer's last look at the queue sees every fix offer accepted
+		while ( true )
+		{
+			long tail = tailIndex.get();
+			if ( ( ( tail & CLOSED ) != 0 ) || ( tailIndex.compareAndSet( tail, tail | CLOSED ) == true ) )
+			{
+				break;
+			}
+		}
+		closing = true;
+		LockSupport.unpark( writerThread );
+
+		boolean interrupted = false;
+		while ( writerThread.isAlive() == true )
+		{
+			try
+			{
+				writerThread.join();
+			}
+			catch ( InterruptedException exception )
+			{
+				interrupted = true;
+			}
+		}
+
+		if ( interrupted == true )
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		store.close();
+	}
+
+	/**
+	 * @return the number of fixes queued
+	 */
+	public long getOfferedCount()
+	{
+		return offeredCount;
+	}
+
+	/**
+	 * @return the number of fixes dropped because the queue was full or the writer closed
+	 */
+	public long getDroppedCount()
+	{
+		return droppedCount;
+	}
+
+	/**
+	 * @return the number of fixes waiting for the writer
+	 */
+	public int getQueueSize()
+	{
+		return ( int )( ( tailIndex.get() & ~CLOSED ) - headIndex.get() );
+	}
+
+	/**
+	 * @return the most fixes that have been waiting for the writer
+	 */
+	public int getMaxQueueSize()
+	{
+		return maxQueueSize;
+	}
+
+	/**
+	 * @return the number of fixes committed
+	 */
+	public long getWrittenCount()
+	{
+		return writtenCount;
+	}
+
+	/**
+	 * @return the number of batches committed
+	 */
+	public long getBatchCount()
+	{
+		return batchCount;
+	}
+
+	/**
+	 * @return the mean time in milliseconds from a fix being offered to it being committed
+	 */
+	public double getMeanLatency()
+	{
+		return ( writtenCount == 0 ) ? 0 : totalLatencyNanos / 1e6 / writtenCount;
+	}
+
+	/**
+	 * @return the longest time in milliseconds from a fix being offered to it being committed
+	 */
+	public double getMaxLatency()
+	{
+		return maxLatencyNanos / 1e6;
+	}
+
+	/**
+	 * @return the number of writes that failed
+	 */
+	public int getErrorCount()
+	{
+		return errorCount;
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Takes fixes from the queue and commits them in batches
+	 */
+	private class WriterThread extends Thread
+	{
+		public WriterThread()
+		{
+			super( "TrackWriter" );
+		}
+
+		@Override
+		public void run()
+		{
+			GpsFix fix = new GpsFix();
+			long[] batchOfferTimes = new long[ batchSize ];
+			int batchLength = 0;
+
+			while ( true )
+			{
+				boolean flush = flushRequested;
+				if ( flush == true )
+				{
+					flushRequested = false;
+				}
+
+				// Take what is in the queue, committing each time a batch is full
+				long head = headIndex.get();
+				long tail = tailIndex.get() & ~CLOSED;
+				for ( ; head != tail; head++ )
+				{
+					int slot = ( int )head & mask;
+					fix.time = times[ slot ];
+					fix.latitude = latitudes[ slot ];
+					fix.longitude = longitudes[ slot ];
+					fix.altitude = altitudes[ slot ];
+					fix.accuracy = accuracies[ slot ];
+					fix.speed = speeds[ slot ];
+					fix.bearing = bearings[ slot ];
+					batchOfferTimes[ batchLength++ ] = offerTimes[ slot ];
+
+					// Free the slot
+					headIndex.lazySet( head + 1 );
+
+					Append( fix );
+					if ( batchLength == batchSize )
+					{
+						Commit( batchOfferTimes, batchLength );
+						batchLength = 0;
+					}
+				}
+
+				boolean closed = closing;
+				if ( ( batchLength > 0 ) && ( ( closed == true ) || ( flush == true ) ||
+						( System.nanoTime() - batchOfferTimes[ 0 ] >= batchAgeNanos ) ) )
+				{
+					Commit( batchOfferTimes, batchLength );
+					batchLength = 0;
+				}
+
+				if ( ( closed == true ) && ( headIndex.get() == ( tailIndex.get() & ~CLOSED ) ) )
+				{
+					break;
+				}
+
+				// Sleep until the batch is old enough, or until woken by the producer
+				if ( batchLength > 0 )
+				{
+					LockSupport.parkNanos( batchOfferTimes[ 0 ] + batchAgeNanos - System.nanoTime() );
+				}
+				else
+				{
+					writerIdle = true;
+					if ( ( headIndex.get() == ( tailIndex.get() & ~CLOSED ) ) && ( closing == false ) && ( flushRequested == false ) )
+					{
+						LockSupport.park();
+					}
+					writerIdle = false;
+				}
+			}
+		}
+	}
+
+	private void Append( GpsFix fix )
+	{
+		try
+		{
+			store.append( fix );
+		}
+		catch ( IOException exception )
+		{
+			errorCount++;
+			log.error( "Unable to write track", exception );
+		}
+	}
+
+	private void Commit( long[] batchOfferTimes, int count )
+	{
+		try
+		{
+			store.commit();
+		}
+		catch ( IOException exception )
+		{
+			errorCount++;
+			log.error( "Unable to write track", exception );
+		}
+
+		long now = System.nanoTime();
+		for ( int index = 0; index < count; index++ )
+		{
+			long latency = now - batchOfferTimes[ index ];
+			totalLatencyNanos += latency;
+			if ( latency > maxLatencyNanos )
+			{
+				maxLatencyNanos = latency;
+			}
+		}
+
+		writtenCount += count;
+		batchCount++;
+	}
+
+	//
+	// Private data
+	//
+
+	/** Logger for this class */
+	private static final Logger log = LoggerFactory.getLogger( TrackWriter.class );
+
+	private final TrackStore store;
+	private final int batchSize;
+	private final long batchAgeNanos;
+	private final WriterThread writerThread;
+
+	/** The queue. Slot i holds fix number i & mask */
+	private final int mask;
+	private final long[] times;
+	private final double[] latitudes;
+	private final double[] longitudes;
+	private final double[] altitudes;
+	private final float[] accuracies;
+	private final float[] speeds;
+	private final float[] bearings;
+	private final long[] offerTimes;
+
+	/** Index of the next fix the writer will take, and of the next slot the producer will fill */
+	private final AtomicLong headIndex = new AtomicLong();
+	private final AtomicLong tailIndex = new AtomicLong();
+
+	/** Set in tailIndex by close, so that no more fixes are published */
+	private static final long CLOSED = 1L << 62;
+
+	/** The producer's last view of headIndex, so it only reads the writer's index when the queue looks full */
+	private long cachedHead = 0;
+
+	/** The writer's index when the producer last woke it because the queue was filling */
+	private long wakeHead = -1;
+
+	/** Queue size at which the producer wakes the writer */
+	private final int wakeSize;
+
+	/** Signals to the writer thread */
+	private volatile boolean writerIdle = false;
+	private volatile boolean flushRequested = false;
+	private volatile boolean closing = false;
+
+	/** Producer metrics */
+	private volatile long offeredCount = 0;
+	private volatile long droppedCount = 0;
+	private volatile int maxQueueSize = 0;
+
+	/** Writer metrics */
+	private volatile long writtenCount = 0;
+	private volatile long batchCount = 0;
+	private volatile long totalLatencyNanos = 0;
+	private volatile long maxLatencyNanos = 0;
+	private volatile int errorCount = 0;
+}
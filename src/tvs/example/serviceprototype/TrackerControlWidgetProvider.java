@@ -6,7 +6,9 @@ import org.slf4j.LoggerFactory;
 import tvs.example.serviceprototype.GPSInterfaceService.TrackingState;
 import tvs.example.serviceprototype.TrackingStatus;
 import uk.me.jstott.jcoord.LatLng;
-import uk.me.jstott.jcoord.OSRef;
+import uk.me.jstott.jcoord.MutableLatLng;
+import uk.me.jstott.jcoord.OSGBProjection;
+import uk.me.jstott.jcoord.OSGridFormatter;
 
 import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
@@ -134,13 +136,22 @@ public class TrackerControlWidgetProvider extends AppWidgetProvider
 		 if ( receivedLocation != null )
 		 {
 			 locationString = String.format(  "Lat %f%nLon %f%n",  receivedLocation.getLatitude(), receivedLocation.getLongitude() );
-			 utmString = String.format( "%n%s", new CoordinateConversion().latLon2UTM( receivedLocation.getLatitude(), receivedLocation.getLongitude() ) );
+			 utmString = String.format( "%n%s", utmConversion.latLon2UTM( receivedLocation.getLatitude(), receivedLocation.getLongitude() ) );
 			 altString =  String.format( " alt %.0f", receivedLocation.getAltitude() );
 			 
 			 // Convert to GB OS
-			 LatLng receivedLatLong = new LatLng( receivedLocation.getLatitude(), receivedLocation.getLongitude() );
-			 receivedLatLong.toOSGB36();
-			 refString = toEightFigureString( receivedLatLong.toOSRef() );
+			 LatLng.toOSGB36( receivedLocation.getLatitude(), receivedLocation.getLongitude(), 0, osgbPosition );
+			 OSGBProjection.getInstance().toGrid( osgbPosition.getLatitude(), osgbPosition.getLongitude(), osgbGrid );
+			 
+			 osgbText.setLength( 0 );
+			 try
+			 {
+				 refString = OSGridFormatter.format( osgbGrid[ 0 ], osgbGrid[ 1 ], 8, true, osgbText ).toString();
+			 }
+			 catch ( IllegalArgumentException outsideGrid )
+			 {
+				 // Not in Great Britain
+			 }
 			 
 			 accuracyString = String.format( "%2.0fm", receivedLocation.getAccuracy() );
 		 }
@@ -151,7 +162,13 @@ public class TrackerControlWidgetProvider extends AppWidgetProvider
 
 		 if ( receivedStatus != null )
 		 {
-			 statusString = String.format(  "view %d fix %d%s", receivedStatus.satellitesInView, receivedStatus.satellitesInFix, altString );
+			 String snrString = "";
+			 if ( receivedStatus.meanSnr > 0 )
+			 {
+				 snrString = String.format( " snr %.0f", receivedStatus.meanSnr );
+			 }
+
+			 statusString = String.format(  "view %d fix %d%s%s", receivedStatus.satellitesInView, receivedStatus.satellitesInFix, snrString, altString );
 			 
 			 switch ( receivedStatus.providerStatus )
 			 {
@@ -201,60 +218,6 @@ public class TrackerControlWidgetProvider extends AppWidgetProvider
 		 return remoteView;
 	 }
 
-	  /**
-	   * Return a String representation of this OSGB grid reference using the
-	   * eight-figure notation in the form XY 1234 5678
-	   * 
-	   * @return a String representing this OSGB grid reference in eight-figure notation
-	   * @since 1.0
-	   */
-	  public String toEightFigureString( OSRef gbRef ) 
-	  {
-		  int hundredkmE = ( int )Math.floor( gbRef.getEasting() / 100000 );
-		  int hundredkmN = ( int )Math.floor( gbRef.getNorthing() / 100000 );
-		  
-		  char firstLetter;
-		  if ( hundredkmN < 5 ) 
-		  {
-			  if ( hundredkmE < 5 ) 
-			  {
-				  firstLetter = 'S';
-			  } 
-			  else 
-			  {
-				  firstLetter = 'T';
-			  }
-		  } 
-		  else if ( hundredkmN < 10 ) 
-		  {
-			  if ( hundredkmE < 5 ) 
-			  {
-				  firstLetter = 'N';
-			  } 
-			  else 
-			  {
-				  firstLetter = 'O';
-			  }
-		  } 
-		  else 
-		  {
-			  firstLetter = 'H';
-		  }
-
-		  int index = 65 + ( ( 4 - ( hundredkmN % 5 ) ) * 5 ) + ( hundredkmE % 5 );
-		  if ( index >= 73 )
-		  {
-			  index++;
-		  }
-		  
-		  char secondLetter = ( char ) index;
-
-		  int e = ( int )Math.round( ( gbRef.getEasting() - ( 100000 * hundredkmE ) ) / 10 );
-		  int n =  (int )Math.round( ( gbRef.getNorthing() - ( 100000 * hundredkmN ) ) / 10 );
-
-		  return String.format( "%C%C %04d %04d", firstLetter, secondLetter, e, n );
-	  }
-
 	 /** Logger for this class */
 	 private static final Logger log = LoggerFactory.getLogger( TrackerControlWidgetProvider.class );
 	
@@ -264,5 +227,17 @@ public class TrackerControlWidgetProvider extends AppWidgetProvider
 	 
 	 private static TrackingStatus receivedStatus = null;
 	 
+	 /** Reused to hold the OSGB36 position of each received location */
+	 private static final MutableLatLng osgbPosition = new MutableLatLng();
+	 
+	 /** Reused to hold the OSGB easting and northing of each received location */
+	 private static final double[] osgbGrid = new double[ 2 ];
+	 
+	 /** Reused to format the OSGB grid reference of each received location */
+	 private static final StringBuilder osgbText = new StringBuilder( 12 );
+	 
+	 /** Reused to convert each received location to UTM */
+	 private static final CoordinateConversion utmConversion = new CoordinateConversion();
+	 
 	 private final TrackerServiceManager.UpdateReceiver serviceReceiver = new TrackerServiceManager.UpdateReceiver();
 }
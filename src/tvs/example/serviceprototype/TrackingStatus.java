@@ -13,12 +13,19 @@ public final class TrackingStatus implements Parcelable
 	public int satellitesInView;
 	public int satellitesInFix;
 
-	public TrackingStatus( TrackingState state, ProviderState providerStatus, int satellitesInView, int satellitesInFix )
+	/** Mean SNR in dB of the satellites used in the fix, and their spread around the sky from 0 to 1. See SatelliteHistory */
+	public float meanSnr;
+	public float geometrySpread;
+
+	public TrackingStatus( TrackingState state, ProviderState providerStatus, int satellitesInView, int satellitesInFix, float meanSnr,
+			float geometrySpread )
 	{
 		this.state = state;
 		this.providerStatus = providerStatus;
 		this.satellitesInView = satellitesInView;
 		this.satellitesInFix = satellitesInFix;
+		this.meanSnr = meanSnr;
+		this.geometrySpread = geometrySpread;
 	}
 	
 	@Override
@@ -44,6 +51,8 @@ public final class TrackingStatus implements Parcelable
 		dest.writeInt( providerStatus.ordinal() );
 		dest.writeInt( satellitesInView );
 		dest.writeInt( satellitesInFix );
+		dest.writeFloat( meanSnr );
+		dest.writeFloat( geometrySpread );
 	}
 	
     public void readFromParcel( Parcel in ) 
@@ -52,6 +61,8 @@ public final class TrackingStatus implements Parcelable
     	providerStatus = ProviderState.values()[ in.readInt() ];        
        	satellitesInView = in.readInt();        
        	satellitesInFix = in.readInt();        
+       	meanSnr = in.readFloat();
+       	geometrySpread = in.readFloat();
     }
     
     public static final Parcelable.Creator<TrackingStatus> CREATOR = new Parcelable.Creator<TrackingStatus>() 
@@ -73,6 +84,8 @@ public final class TrackingStatus implements Parcelable
 		intentToLoad.putExtra( EXTRA_PROVIDER_STATUS, providerStatus.ordinal() );
 		intentToLoad.putExtra( EXTRA_SATELLITES, satellitesInView );
 		intentToLoad.putExtra( EXTRA_SATELLITES_IN_FIX, satellitesInFix );
+		intentToLoad.putExtra( EXTRA_MEAN_SNR, meanSnr );
+		intentToLoad.putExtra( EXTRA_GEOMETRY_SPREAD, geometrySpread );
 	}
 	
 	public static TrackingStatus StatusFromIntent( Intent intentToUnload )
@@ -81,7 +94,9 @@ public final class TrackingStatus implements Parcelable
 				TrackingState.values() [ intentToUnload.getIntExtra(EXTRA_STATE, 0) ],
 				ProviderState.values() [ intentToUnload.getIntExtra(EXTRA_PROVIDER_STATUS, 0) ],
 				intentToUnload.getIntExtra( EXTRA_SATELLITES, 0 ),
-				intentToUnload.getIntExtra( EXTRA_SATELLITES_IN_FIX, 0 ) );
+				intentToUnload.getIntExtra( EXTRA_SATELLITES_IN_FIX, 0 ),
+				intentToUnload.getFloatExtra( EXTRA_MEAN_SNR, 0 ),
+				intentToUnload.getFloatExtra( EXTRA_GEOMETRY_SPREAD, 0 ) );
 
 		return status;
 	}
@@ -95,4 +110,6 @@ public final class TrackingStatus implements Parcelable
 	private final static String EXTRA_PROVIDER_STATUS = "tvs.example.serviceprototype.EXTRA_PROVIDER_STATUS";
 	private final static String EXTRA_SATELLITES = "tvs.example.serviceprototype.EXTRA_SATELLITES";
 	private final static String EXTRA_SATELLITES_IN_FIX = "tvs.example.serviceprototype.EXTRA_SATELLITES_IN_FIX";
+	private final static String EXTRA_MEAN_SNR = "tvs.example.serviceprototype.EXTRA_MEAN_SNR";
+	private final static String EXTRA_GEOMETRY_SPREAD = "tvs.example.serviceprototype.EXTRA_GEOMETRY_SPREAD";
 }
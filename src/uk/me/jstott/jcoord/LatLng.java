@@ -1,8 +1,9 @@
 package uk.me.jstott.jcoord;
 
 import uk.me.jstott.jcoord.datum.Datum;
+import uk.me.jstott.jcoord.datum.DatumTransform;
+import uk.me.jstott.jcoord.datum.OSGB36Datum;
 import uk.me.jstott.jcoord.datum.WGS84Datum;
-import uk.me.jstott.jcoord.ellipsoid.Airy1830Ellipsoid;
 
 /**
  * <p>
@@ -16,6 +17,13 @@ import uk.me.jstott.jcoord.ellipsoid.Airy1830Ellipsoid;
  * </p>
  * 
  * <p>
+ * The datum conversion methods that take no arguments modify the LatLng they
+ * are called on, so such instances must not be shared between threads. The
+ * variants that take a {@link MutableLatLng} leave the LatLng unchanged and
+ * write the result into the holder instead.
+ * </p>
+ * 
+ * <p>
  * (c) 2006 Jonathan Stott
  * </p>
  * 
@@ -361,54 +369,25 @@ public class LatLng {
    * @since 1.0
    */
   public OSRef toOSRef() {
-    Airy1830Ellipsoid airy1830 = Airy1830Ellipsoid.getInstance();
-    double OSGB_F0 = 0.9996012717;
-    double N0 = -100000.0;
-    double E0 = 400000.0;
-    double phi0 = Math.toRadians(49.0);
-    double lambda0 = Math.toRadians(-2.0);
-    double a = airy1830.getSemiMajorAxis();
-    double b = airy1830.getSemiMinorAxis();
-    double eSquared = airy1830.getEccentricitySquared();
-    double phi = Math.toRadians(getLat());
-    double lambda = Math.toRadians(getLng());
-    double E = 0.0;
-    double N = 0.0;
-    double n = (a - b) / (a + b);
-    double v = a * OSGB_F0
-        * Math.pow(1.0 - eSquared * Util.sinSquared(phi), -0.5);
-    double rho = a * OSGB_F0 * (1.0 - eSquared)
-        * Math.pow(1.0 - eSquared * Util.sinSquared(phi), -1.5);
-    double etaSquared = (v / rho) - 1.0;
-    double M = (b * OSGB_F0)
-        * (((1 + n + ((5.0 / 4.0) * n * n) + ((5.0 / 4.0) * n * n * n)) * (phi - phi0))
-            - (((3 * n) + (3 * n * n) + ((21.0 / 8.0) * n * n * n))
-                * Math.sin(phi - phi0) * Math.cos(phi + phi0))
-            + ((((15.0 / 8.0) * n * n) + ((15.0 / 8.0) * n * n * n))
-                * Math.sin(2.0 * (phi - phi0)) * Math.cos(2.0 * (phi + phi0))) - (((35.0 / 24.0)
-            * n * n * n)
-            * Math.sin(3.0 * (phi - phi0)) * Math.cos(3.0 * (phi + phi0))));
-    double I = M + N0;
-    double II = (v / 2.0) * Math.sin(phi) * Math.cos(phi);
-    double III = (v / 24.0) * Math.sin(phi) * Math.pow(Math.cos(phi), 3.0)
-        * (5.0 - Util.tanSquared(phi) + (9.0 * etaSquared));
-    double IIIA = (v / 720.0) * Math.sin(phi) * Math.pow(Math.cos(phi), 5.0)
-        * (61.0 - (58.0 * Util.tanSquared(phi)) + Math.pow(Math.tan(phi), 4.0));
-    double IV = v * Math.cos(phi);
-    double V = (v / 6.0) * Math.pow(Math.cos(phi), 3.0)
-        * ((v / rho) - Util.tanSquared(phi));
-    double VI = (v / 120.0)
-        * Math.pow(Math.cos(phi), 5.0)
-        * (5.0 - (18.0 * Util.tanSquared(phi)) + (Math.pow(Math.tan(phi), 4.0))
-            + (14 * etaSquared) - (58 * Util.tanSquared(phi) * etaSquared));
-
-    N = I + (II * Math.pow(lambda - lambda0, 2.0))
-        + (III * Math.pow(lambda - lambda0, 4.0))
-        + (IIIA * Math.pow(lambda - lambda0, 6.0));
-    E = E0 + (IV * (lambda - lambda0)) + (V * Math.pow(lambda - lambda0, 3.0))
-        + (VI * Math.pow(lambda - lambda0, 5.0));
-
-    return new OSRef(E, N);
+    return toOSRef(latitude, longitude);
+  }
+
+
+  /**
+   * Convert a latitude and longitude on the OSGB36 datum into an OSGB grid
+   * reference.
+   * 
+   * @param latitude
+   *          the latitude in degrees.
+   * @param longitude
+   *          the longitude in degrees.
+   * @return the converted OSGB grid reference.
+   * @since 1.2
+   */
+  static OSRef toOSRef(double latitude, double longitude) {
+    double[] en = OSGBProjection.getInstance().toGrid(latitude, longitude,
+        new double[2]);
+    return new OSRef(en[0], en[1]);
   }
 
 
@@ -429,83 +408,12 @@ public class LatLng {
           + ") falls outside the UTM grid.");
     }
 
-    if (this.longitude == 180.0) {
-      this.longitude = -180.0;
-    }
-
-    double UTM_F0 = 0.9996;
-    double a = uk.me.jstott.jcoord.ellipsoid.WGS84Ellipsoid.getInstance().getSemiMajorAxis();
-    double eSquared = uk.me.jstott.jcoord.ellipsoid.WGS84Ellipsoid.getInstance().getEccentricitySquared();
-    double longitude = this.longitude;
-    double latitude = this.latitude;
-
-    double latitudeRad = latitude * (Math.PI / 180.0);
-    double longitudeRad = longitude * (Math.PI / 180.0);
-    int longitudeZone = (int) Math.floor((longitude + 180.0) / 6.0) + 1;
-
-    // Special zone for Norway
-    if (latitude >= 56.0 && latitude < 64.0 && longitude >= 3.0
-        && longitude < 12.0) {
-      longitudeZone = 32;
-    }
-
-    // Special zones for Svalbard
-    if (latitude >= 72.0 && latitude < 84.0) {
-      if (longitude >= 0.0 && longitude < 9.0) {
-        longitudeZone = 31;
-      } else if (longitude >= 9.0 && longitude < 21.0) {
-        longitudeZone = 33;
-      } else if (longitude >= 21.0 && longitude < 33.0) {
-        longitudeZone = 35;
-      } else if (longitude >= 33.0 && longitude < 42.0) {
-        longitudeZone = 37;
-      }
-    }
-
-    double longitudeOrigin = (longitudeZone - 1) * 6 - 180 + 3;
-    double longitudeOriginRad = longitudeOrigin * (Math.PI / 180.0);
-
-    char UTMZone = UTMRef.getUTMLatitudeZoneLetter(latitude);
-
-    double ePrimeSquared = (eSquared) / (1 - eSquared);
-
-    double n = a
-        / Math.sqrt(1 - eSquared * Math.sin(latitudeRad)
-            * Math.sin(latitudeRad));
-    double t = Math.tan(latitudeRad) * Math.tan(latitudeRad);
-    double c = ePrimeSquared * Math.cos(latitudeRad) * Math.cos(latitudeRad);
-    double A = Math.cos(latitudeRad) * (longitudeRad - longitudeOriginRad);
-
-    double M = a
-        * ((1 - eSquared / 4 - 3 * eSquared * eSquared / 64 - 5 * eSquared
-            * eSquared * eSquared / 256)
-            * latitudeRad
-            - (3 * eSquared / 8 + 3 * eSquared * eSquared / 32 + 45 * eSquared
-                * eSquared * eSquared / 1024)
-            * Math.sin(2 * latitudeRad)
-            + (15 * eSquared * eSquared / 256 + 45 * eSquared * eSquared
-                * eSquared / 1024) * Math.sin(4 * latitudeRad) - (35 * eSquared
-            * eSquared * eSquared / 3072)
-            * Math.sin(6 * latitudeRad));
-
-    double UTMEasting = (UTM_F0
-        * n
-        * (A + (1 - t + c) * Math.pow(A, 3.0) / 6 + (5 - 18 * t + t * t + 72
-            * c - 58 * ePrimeSquared)
-            * Math.pow(A, 5.0) / 120) + 500000.0);
-
-    double UTMNorthing = (UTM_F0 * (M + n
-        * Math.tan(latitudeRad)
-        * (A * A / 2 + (5 - t + (9 * c) + (4 * c * c)) * Math.pow(A, 4.0) / 24 + (61
-            - (58 * t) + (t * t) + (600 * c) - (330 * ePrimeSquared))
-            * Math.pow(A, 6.0) / 720)));
-
-    // Adjust for the southern hemisphere
-    if (latitude < 0) {
-      UTMNorthing += 10000000.0;
-    }
+    int longitudeZone = UTMProjection.getLongitudeZone(latitude, longitude);
+    double[] en = UTMProjection.getInstance().toGrid(latitude, longitude,
+        longitudeZone, new double[2]);
 
-    return new UTMRef(longitudeZone, UTMZone, UTMEasting, UTMNorthing);
+    return new UTMRef(longitudeZone,
+        UTMProjection.getLatitudeZoneLetter(latitude), en[0], en[1]);
   }
 
 
@@ -523,164 +431,177 @@ public class LatLng {
 
   /**
    * Convert this LatLng from the OSGB36 datum to the WGS84 datum using an
-   * approximate Helmert transformation.
+   * approximate Helmert transformation. As in earlier versions, the height is
+   * taken to be zero and only the latitude and longitude are changed; the
+   * height and datum are left as they were. Use
+   * {@link #toWGS84(MutableLatLng)} for a result that includes the height and
+   * leaves this LatLng unchanged.
    * 
    * @since 1.0
    */
   public void toWGS84() {
-    double a = Airy1830Ellipsoid.getInstance().getSemiMajorAxis();
-    double eSquared = Airy1830Ellipsoid.getInstance().getEccentricitySquared();
-    double phi = Math.toRadians(latitude);
-    double lambda = Math.toRadians(longitude);
-    double v = a / (Math.sqrt(1 - eSquared * Util.sinSquared(phi)));
-    double H = 0; // height
-    double x = (v + H) * Math.cos(phi) * Math.cos(lambda);
-    double y = (v + H) * Math.cos(phi) * Math.sin(lambda);
-    double z = ((1 - eSquared) * v + H) * Math.sin(phi);
-
-    double tx = 446.448;
-    // ty : Incorrect value in v1.0 (-124.157). Corrected in v1.1.
-    double ty = -125.157;
-    double tz = 542.060;
-    double s = -0.0000204894;
-    double rx = Math.toRadians(0.00004172222);
-    double ry = Math.toRadians(0.00006861111);
-    double rz = Math.toRadians(0.00023391666);
-
-    double xB = tx + (x * (1 + s)) + (-rx * y) + (ry * z);
-    double yB = ty + (rz * x) + (y * (1 + s)) + (-rx * z);
-    double zB = tz + (-ry * x) + (rx * y) + (z * (1 + s));
-
-    a = uk.me.jstott.jcoord.ellipsoid.WGS84Ellipsoid.getInstance().getSemiMajorAxis();
-    eSquared = uk.me.jstott.jcoord.ellipsoid.WGS84Ellipsoid.getInstance()
-        .getEccentricitySquared();
-
-    double lambdaB = Math.toDegrees(Math.atan(yB / xB));
-    double p = Math.sqrt((xB * xB) + (yB * yB));
-    double phiN = Math.atan(zB / (p * (1 - eSquared)));
-    for (int i = 1; i < 10; i++) {
-      v = a / (Math.sqrt(1 - eSquared * Util.sinSquared(phiN)));
-      double phiN1 = Math.atan((zB + (eSquared * v * Math.sin(phiN))) / p);
-      phiN = phiN1;
-    }
+    copyFrom(toWGS84(latitude, longitude, 0, new MutableLatLng()));
+  }
 
-    double phiB = Math.toDegrees(phiN);
 
-    latitude = phiB;
-    longitude = lambdaB;
+  /**
+   * Convert this LatLng from the OSGB36 datum to the WGS84 datum using an
+   * approximate Helmert transformation, leaving this LatLng unchanged.
+   * 
+   * @param result
+   *          receives the converted position.
+   * @return result.
+   * @since 1.2
+   */
+  public MutableLatLng toWGS84(MutableLatLng result) {
+    return toWGS84(latitude, longitude, height, result);
   }
 
 
   /**
+   * Convert a position from the OSGB36 datum to the WGS84 datum using an
+   * approximate Helmert transformation.
    * 
+   * @param latitude
+   *          the latitude in degrees on the OSGB36 datum.
+   * @param longitude
+   *          the longitude in degrees on the OSGB36 datum.
+   * @param height
+   *          the perpendicular height above the Airy 1830 ellipsoid.
+   * @param result
+   *          receives the converted position.
+   * @return result.
+   * @since 1.2
+   */
+  public static MutableLatLng toWGS84(double latitude, double longitude,
+      double height, MutableLatLng result) {
+    return toDatum(latitude, longitude, height, OSGB36Datum.getInstance(),
+        WGS84Datum.getInstance(), result);
+  }
+
+
+  /**
+   * Convert this LatLng from its current datum to the given datum using an
+   * approximate Helmert transformation. As in earlier versions, only the
+   * latitude and longitude are changed; the height and datum are left as they
+   * were. Use {@link #toDatum(Datum, MutableLatLng)} for the converted height
+   * and datum, leaving this LatLng unchanged.
    * 
    * @param d
+   *          the datum to convert to.
    * @since 1.1
    */
   public void toDatum(Datum d) {
+    copyFrom(toDatum(d, new MutableLatLng()));
+  }
 
-    double invert = 1;
-
-    if (!(datum instanceof WGS84Datum) && !(d instanceof WGS84Datum)) {
-      toDatum(new WGS84Datum());
-    } else {
-      if (d instanceof WGS84Datum) {
-        // Don't do anything if datum and d are both WGS84.
-        return;
-      }
-      invert = -1;
-    }
 
-    double a = datum.getReferenceEllipsoid().getSemiMajorAxis();
-    double eSquared = datum.getReferenceEllipsoid().getEccentricitySquared();
-    double phi = Math.toRadians(latitude);
-    double lambda = Math.toRadians(longitude);
-    double v = a / (Math.sqrt(1 - eSquared * Util.sinSquared(phi)));
-    double H = height; // height
-    double x = (v + H) * Math.cos(phi) * Math.cos(lambda);
-    double y = (v + H) * Math.cos(phi) * Math.sin(lambda);
-    double z = ((1 - eSquared) * v + H) * Math.sin(phi);
-
-    double dx = invert * d.getDx();// 446.448;
-    double dy = invert * d.getDy();// -125.157;
-    double dz = invert * d.getDz();// 542.060;
-    double ds = invert * d.getDs() / 1000000.0;// -0.0000204894;
-    double rx = invert * Math.toRadians(d.getRx() / 3600.0);// Math.toRadians(0.00004172222);
-    double ry = invert * Math.toRadians(d.getRy() / 3600.0);// Math.toRadians(0.00006861111);
-    double rz = invert * Math.toRadians(d.getRz() / 3600.0);// Math.toRadians(0.00023391666);
-
-    double sc = 1 + ds;
-    double xB = dx + (x * sc) + ((-rx * y) * sc) + ((ry * z) * sc);
-    double yB = dy + ((rz * x) * sc) + (y * sc) + ((-rx * z) * sc);
-    double zB = dz + ((-ry * x) * sc) + ((rx * y) * sc) + (z * sc);
-
-    a = d.getReferenceEllipsoid().getSemiMajorAxis();
-    eSquared = d.getReferenceEllipsoid().getEccentricitySquared();
-
-    double lambdaB = Math.toDegrees(Math.atan(yB / xB));
-    double p = Math.sqrt((xB * xB) + (yB * yB));
-    double phiN = Math.atan(zB / (p * (1 - eSquared)));
-    for (int i = 1; i < 10; i++) {
-      v = a / (Math.sqrt(1 - eSquared * Util.sinSquared(phiN)));
-      double phiN1 = Math.atan((zB + (eSquared * v * Math.sin(phiN))) / p);
-      phiN = phiN1;
-    }
+  /**
+   * Convert this LatLng from its current datum to the given datum using an
+   * approximate Helmert transformation, leaving this LatLng unchanged.
+   * 
+   * @param d
+   *          the datum to convert to.
+   * @param result
+   *          receives the converted position.
+   * @return result.
+   * @since 1.2
+   */
+  public MutableLatLng toDatum(Datum d, MutableLatLng result) {
+    return toDatum(latitude, longitude, height, datum, d, result);
+  }
 
-    double phiB = Math.toDegrees(phiN);
 
-    latitude = phiB;
-    longitude = lambdaB;
+  /**
+   * Convert a position from one datum to another using an approximate Helmert
+   * transformation. The transformation is looked up from the
+   * {@link DatumTransform} cache; callers converting many positions can hold
+   * on to the DatumTransform themselves.
+   * 
+   * @param latitude
+   *          the latitude in degrees on the source datum.
+   * @param longitude
+   *          the longitude in degrees on the source datum.
+   * @param height
+   *          the perpendicular height above the source reference ellipsoid.
+   * @param from
+   *          the source datum.
+   * @param to
+   *          the target datum.
+   * @param result
+   *          receives the converted position.
+   * @return result.
+   * @since 1.2
+   */
+  public static MutableLatLng toDatum(double latitude, double longitude,
+      double height, Datum from, Datum to, MutableLatLng result) {
+    return DatumTransform.getInstance(from, to).transform(latitude,
+        longitude, height, result);
   }
 
 
   /**
    * Convert this LatLng from the WGS84 datum to the OSGB36 datum using an
-   * approximate Helmert transformation.
+   * approximate Helmert transformation. As in earlier versions, the height is
+   * taken to be zero and only the latitude and longitude are changed; the
+   * height and datum are left as they were. Use
+   * {@link #toOSGB36(MutableLatLng)} for a result that includes the height and
+   * leaves this LatLng unchanged.
    * 
    * @since 1.0
    */
   public void toOSGB36() {
-    uk.me.jstott.jcoord.ellipsoid.WGS84Ellipsoid wgs84 = uk.me.jstott.jcoord.ellipsoid.WGS84Ellipsoid
-        .getInstance();
-    double a = wgs84.getSemiMajorAxis();
-    double eSquared = wgs84.getEccentricitySquared();
-    double phi = Math.toRadians(this.latitude);
-    double lambda = Math.toRadians(this.longitude);
-    double v = a / (Math.sqrt(1 - eSquared * Util.sinSquared(phi)));
-    double H = 0; // height
-    double x = (v + H) * Math.cos(phi) * Math.cos(lambda);
-    double y = (v + H) * Math.cos(phi) * Math.sin(lambda);
-    double z = ((1 - eSquared) * v + H) * Math.sin(phi);
-
-    double tx = -446.448;
-    // ty : Incorrect value in v1.0 (124.157). Corrected in v1.1.
-    double ty = 125.157;
-    double tz = -542.060;
-    double s = 0.0000204894;
-    double rx = Math.toRadians(-0.00004172222);
-    double ry = Math.toRadians(-0.00006861111);
-    double rz = Math.toRadians(-0.00023391666);
-
-    double xB = tx + (x * (1 + s)) + (-rx * y) + (ry * z);
-    double yB = ty + (rz * x) + (y * (1 + s)) + (-rx * z);
-    double zB = tz + (-ry * x) + (rx * y) + (z * (1 + s));
-
-    a = Airy1830Ellipsoid.getInstance().getSemiMajorAxis();
-    eSquared = Airy1830Ellipsoid.getInstance().getEccentricitySquared();
-
-    double lambdaB = Math.toDegrees(Math.atan(yB / xB));
-    double p = Math.sqrt((xB * xB) + (yB * yB));
-    double phiN = Math.atan(zB / (p * (1 - eSquared)));
-    for (int i = 1; i < 10; i++) {
-      v = a / (Math.sqrt(1 - eSquared * Util.sinSquared(phiN)));
-      double phiN1 = Math.atan((zB + (eSquared * v * Math.sin(phiN))) / p);
-      phiN = phiN1;
-    }
+    copyFrom(toOSGB36(latitude, longitude, 0, new MutableLatLng()));
+  }
 
-    double phiB = Math.toDegrees(phiN);
 
-    latitude = phiB;
-    longitude = lambdaB;
+  /**
+   * Convert this LatLng from the WGS84 datum to the OSGB36 datum using an
+   * approximate Helmert transformation, leaving this LatLng unchanged.
+   * 
+   * @param result
+   *          receives the converted position.
+   * @return result.
+   * @since 1.2
+   */
+  public MutableLatLng toOSGB36(MutableLatLng result) {
+    return toOSGB36(latitude, longitude, height, result);
+  }
+
+
+  /**
+   * Convert a position from the WGS84 datum to the OSGB36 datum using an
+   * approximate Helmert transformation.
+   * 
+   * @param latitude
+   *          the latitude in degrees on the WGS84 datum.
+   * @param longitude
+   *          the longitude in degrees on the WGS84 datum.
+   * @param height
+   *          the perpendicular height above the WGS84 ellipsoid.
+   * @param result
+   *          receives the converted position.
+   * @return result.
+   * @since 1.2
+   */
+  public static MutableLatLng toOSGB36(double latitude, double longitude,
+      double height, MutableLatLng result) {
+    return toDatum(latitude, longitude, height, WGS84Datum.getInstance(),
+        OSGB36Datum.getInstance(), result);
+  }
+
+
+  /**
+   * Replace the latitude and longitude of this LatLng with those of a
+   * converted position, as the in-place conversions have always done.
+   * 
+   * @param converted
+   *          the converted position.
+   * @since 1.2
+   */
+  private void copyFrom(MutableLatLng converted) {
+    latitude = converted.getLatitude();
+    longitude = converted.getLongitude();
   }
 
 
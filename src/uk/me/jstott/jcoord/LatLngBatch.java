@@ -0,0 +1,215 @@
+package uk.me.jstott.jcoord;
+
+import uk.me.jstott.jcoord.datum.DatumTransform;
+import uk.me.jstott.jcoord.datum.OSGB36Datum;
+import uk.me.jstott.jcoord.datum.WGS84Datum;
+
+/**
+ * <p>
+ * This class is part of the Jcoord package. Visit the <a
+ * href="http://www.jstott.me.uk/jcoord/">Jcoord</a> website for more
+ * information.
+ * </p>
+ *
+ * <p>
+ * Batch versions of the {@link LatLng} conversions for whole tracks held as
+ * parallel arrays of latitudes and longitudes (structure-of-arrays). Each
+ * method converts every point of the input arrays and writes the results into
+ * caller-supplied output arrays, so no objects are created per point. The
+ * results are the same as calling the equivalent {@link LatLng} method on each
+ * point in turn.
+ * </p>
+ *
+ * <p>
+ * All angles are in degrees. An output array may be the same array as an input
+ * array, in which case the input is overwritten with the converted values.
+ * </p>
+ *
+ * @version 1.2
+ * @since 1.2
+ */
+public final class LatLngBatch {
+
+  /**
+   * Not instantiable.
+   */
+  private LatLngBatch() {
+  }
+
+
+  /**
+   * Convert each latitude/longitude pair into an OSGB grid reference. This is
+   * the batch equivalent of {@link LatLng#toOSRef()} and, like that method,
+   * expects the positions to already be on the OSGB36 datum. See
+   * {@link OSGBProjection}.
+   *
+   * @param latitude
+   *          the latitudes in degrees.
+   * @param longitude
+   *          the longitudes in degrees.
+   * @param easting
+   *          receives the eastings in metres.
+   * @param northing
+   *          receives the northings in metres.
+   * @throws IllegalArgumentException
+   *           if the arrays are not all the same length.
+   * @since 1.2
+   */
+  public static void toOSRef(double[] latitude, double[] longitude,
+      double[] easting, double[] northing) throws IllegalArgumentException {
+
+    int count = checkLengths(latitude, longitude, easting, northing);
+
+    OSGBProjection.getInstance().toGrid(latitude, longitude, easting,
+        northing, count);
+  }
+
+
+  /**
+   * Convert each latitude/longitude pair into a UTM reference. This is the
+   * batch equivalent of {@link LatLng#toUTMRef()}, including the special zones
+   * for Norway and Svalbard. See {@link UTMProjection}.
+   *
+   * @param latitude
+   *          the latitudes in degrees on the WGS84 datum.
+   * @param longitude
+   *          the longitudes in degrees on the WGS84 datum.
+   * @param lngZone
+   *          receives the longitude zone numbers.
+   * @param latZone
+   *          receives the latitude zone characters.
+   * @param easting
+   *          receives the eastings in metres.
+   * @param northing
+   *          receives the northings in metres.
+   * @throws IllegalArgumentException
+   *           if the arrays are not all the same length.
+   * @throws NotDefinedOnUTMGridException
+   *           if any of the latitudes falls outside the area covered by the
+   *           UTM grid. Points before the offending point will already have
+   *           been converted.
+   * @since 1.2
+   */
+  public static void toUTMRef(double[] latitude, double[] longitude,
+      int[] lngZone, char[] latZone, double[] easting, double[] northing)
+      throws IllegalArgumentException, NotDefinedOnUTMGridException {
+
+    int count = checkLengths(latitude, longitude, easting, northing);
+    if (lngZone.length != count || latZone.length != count) {
+      throw new IllegalArgumentException("Zone arrays must have " + count
+          + " elements");
+    }
+
+    UTMProjection.getInstance().toGrid(latitude, longitude, lngZone, latZone,
+        easting, northing, count);
+  }
+
+
+  /**
+   * Convert each latitude/longitude pair from the WGS84 datum to the OSGB36
+   * datum using the same approximate Helmert transformation as
+   * {@link LatLng#toOSGB36()}, precomputed by {@link DatumTransform}.
+   *
+   * @param latitude
+   *          the latitudes in degrees on the WGS84 datum.
+   * @param longitude
+   *          the longitudes in degrees on the WGS84 datum.
+   * @param height
+   *          the heights above the WGS84 ellipsoid, or null to use a height of
+   *          zero for every point.
+   * @param latitudeOut
+   *          receives the latitudes in degrees on the OSGB36 datum.
+   * @param longitudeOut
+   *          receives the longitudes in degrees on the OSGB36 datum.
+   * @throws IllegalArgumentException
+   *           if the arrays are not all the same length.
+   * @since 1.2
+   */
+  public static void toOSGB36(double[] latitude, double[] longitude,
+      double[] height, double[] latitudeOut, double[] longitudeOut)
+      throws IllegalArgumentException {
+    helmert(latitude, longitude, height, latitudeOut, longitudeOut,
+        DatumTransform.getInstance(WGS84Datum.getInstance(),
+            OSGB36Datum.getInstance()));
+  }
+
+
+  /**
+   * Convert each latitude/longitude pair from the OSGB36 datum to the WGS84
+   * datum using the same approximate Helmert transformation as
+   * {@link LatLng#toWGS84()}, precomputed by {@link DatumTransform}.
+   *
+   * @param latitude
+   *          the latitudes in degrees on the OSGB36 datum.
+   * @param longitude
+   *          the longitudes in degrees on the OSGB36 datum.
+   * @param height
+   *          the heights above the Airy 1830 ellipsoid, or null to use a
+   *          height of zero for every point.
+   * @param latitudeOut
+   *          receives the latitudes in degrees on the WGS84 datum.
+   * @param longitudeOut
+   *          receives the longitudes in degrees on the WGS84 datum.
+   * @throws IllegalArgumentException
+   *           if the arrays are not all the same length.
+   * @since 1.2
+   */
+  public static void toWGS84(double[] latitude, double[] longitude,
+      double[] height, double[] latitudeOut, double[] longitudeOut)
+      throws IllegalArgumentException {
+    helmert(latitude, longitude, height, latitudeOut, longitudeOut,
+        DatumTransform.getInstance(OSGB36Datum.getInstance(),
+            WGS84Datum.getInstance()));
+  }
+
+
+  /**
+   * Apply a Helmert transformation to every point.
+   *
+   * @param latitude
+   *          the source latitudes in degrees.
+   * @param longitude
+   *          the source longitudes in degrees.
+   * @param height
+   *          the source heights, or null for zero heights.
+   * @param latitudeOut
+   *          receives the target latitudes in degrees.
+   * @param longitudeOut
+   *          receives the target longitudes in degrees.
+   * @param transform
+   *          the transformation to apply.
+   * @since 1.2
+   */
+  private static void helmert(double[] latitude, double[] longitude,
+      double[] height, double[] latitudeOut, double[] longitudeOut,
+      DatumTransform transform) {
+
+    int count = checkLengths(latitude, longitude, latitudeOut, longitudeOut);
+    if (height != null && height.length != count) {
+      throw new IllegalArgumentException("Height array must have " + count
+          + " elements");
+    }
+
+    transform.transform(latitude, longitude, height, latitudeOut,
+        longitudeOut, null, count);
+  }
+
+
+  /**
+   * Check that the four arrays are the same length.
+   *
+   * @return the common length.
+   * @throws IllegalArgumentException
+   *           if the lengths differ.
+   * @since 1.2
+   */
+  private static int checkLengths(double[] a, double[] b, double[] c,
+      double[] d) throws IllegalArgumentException {
+    int count = a.length;
+    if (b.length != count || c.length != count || d.length != count) {
+      throw new IllegalArgumentException("Arrays must all have " + count
+          + " elements");
+    }
+    return count;
+  }
+}
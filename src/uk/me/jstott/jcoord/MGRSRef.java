@@ -1,8 +1,5 @@
 package uk.me.jstott.jcoord;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import uk.me.jstott.jcoord.datum.WGS84Datum;
 
 /**
@@ -408,7 +405,8 @@ public class MGRSRef extends CoordinateSystem {
 
   /**
    * Create a new MGRS reference object from the given String. Must be correctly
-   * formatted otherwise an IllegalArgumentException will be thrown.
+   * formatted otherwise an IllegalArgumentException will be thrown. To read
+   * many references, use an {@link MGRSScanner} directly.
    * 
    * @param ref
    *          a String to create an MGRS reference from.
@@ -424,29 +422,21 @@ public class MGRSRef extends CoordinateSystem {
     
     super(WGS84Datum.getInstance());
     
-    Pattern p =
-        Pattern
-            .compile("(\\d{1,2})([C-X&&[^IO]])([A-Z&&[^IO]])([A-Z&&[^IO]])(\\d{2,10})");
-    Matcher m = p.matcher(ref);
-
-    if (!m.matches()) {
-      throw new IllegalArgumentException("Invalid MGRS reference (" + ref + ")");
+    MGRSScanner scanner = new MGRSScanner();
+    if (!scanner.scan(ref)) {
+      throw new IllegalArgumentException("Invalid MGRS reference (" + ref
+          + "): " + scanner.getErrorMessage() + " at position "
+          + scanner.getErrorIndex());
     }
 
-    this.utmZoneNumber = Integer.parseInt(m.group(1));
-    this.utmZoneChar = m.group(2).charAt(0);
-    this.eastingID = m.group(3).charAt(0);
-    this.northingID = m.group(4).charAt(0);
-    String en = m.group(5);
-    int enl = en.length();
-    if (enl % 2 != 0) {
-      throw new IllegalArgumentException("Invalid MGRS reference (" + ref + ")");
-    } else {
-      this.precision = (int) Math.pow(10, 5 - (enl / 2));
-      this.easting =
-          Integer.parseInt(en.substring(0, enl / 2)) * this.precision;
-      this.northing = Integer.parseInt(en.substring(enl / 2)) * this.precision;
-    }
+    this.utmZoneNumber = scanner.getUtmZoneNumber();
+    this.utmZoneChar = scanner.getUtmZoneChar();
+    this.eastingID = scanner.getEastingID();
+    this.northingID = scanner.getNorthingID();
+    this.easting = scanner.getEasting();
+    this.northing = scanner.getNorthing();
+    this.precision = scanner.getPrecision();
+    this.isBessel = isBessel;
   }
 
 
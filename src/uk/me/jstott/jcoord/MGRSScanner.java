@@ -0,0 +1,403 @@
+package uk.me.jstott.jcoord;
+
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * This class is part of the Jcoord package. Visit the <a
+ * href="http://www.jstott.me.uk/jcoord/">Jcoord</a> website for more
+ * information.
+ * </p>
+ *
+ * <p>
+ * A hand-written scanner for MGRS references such as "32UMU1078" or
+ * "4QFJ1234567890", for reading long lists of references without creating a
+ * Matcher and substrings for each one. A scanner is reused: each call to
+ * {@link #scan(CharSequence, int, int)} replaces the fields of the previous
+ * reference, which can then be read with the getters or turned into an
+ * {@link MGRSRef}.
+ * </p>
+ *
+ * <p>
+ * The scanner accepts the references matched by {@link #PATTERN}, the pattern
+ * {@link MGRSRef#MGRSRef(String, boolean)} used to compile on every call, that
+ * also have an even number of figures. {@link #matches(CharSequence)} checks
+ * against the pattern itself where a regular expression is wanted.
+ * </p>
+ *
+ * <p>
+ * On failure the scanner does not throw; instead {@link #getErrorIndex()}
+ * gives the position of the first offending character and
+ * {@link #getErrorMessage()} says what was expected there.
+ * </p>
+ *
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ *
+ * @version 1.2
+ * @since 1.2
+ */
+public final class MGRSScanner {
+
+  /**
+   * Regular expression for an MGRS reference: zone number, latitude band,
+   * 100km square letters and an even number of figures.
+   */
+  public static final Pattern PATTERN = Pattern
+      .compile("(\\d{1,2})([C-X&&[^IO]])([A-Z&&[^IO]])([A-Z&&[^IO]])(\\d{2,10})");
+
+  /**
+   * Size of a square for each number of digits per axis.
+   */
+  private static final int[] PRECISION = {100000, MGRSRef.PRECISION_10000M,
+      MGRSRef.PRECISION_1000M, MGRSRef.PRECISION_100M, MGRSRef.PRECISION_10M,
+      MGRSRef.PRECISION_1M};
+
+  /**
+   * Fields of the last reference scanned.
+   */
+  private int utmZoneNumber;
+
+  private char utmZoneChar;
+
+  private char eastingID;
+
+  private char northingID;
+
+  private int easting;
+
+  private int northing;
+
+  private int precision;
+
+  /**
+   * Position of the error in the last reference scanned, or -1.
+   */
+  private int errorIndex = -1;
+
+  /**
+   * Description of the error in the last reference scanned, or null.
+   */
+  private String errorMessage = null;
+
+  /**
+   * The characters being scanned, held in one or the other only for the
+   * duration of a scan.
+   */
+  private CharSequence sequence = null;
+
+  private char[] chars = null;
+
+
+  /**
+   * Check a reference against {@link #PATTERN}.
+   *
+   * @param ref
+   *          the reference.
+   * @return true if the whole of ref is a well-formed MGRS reference.
+   * @since 1.2
+   */
+  public static boolean matches(CharSequence ref) {
+    return PATTERN.matcher(ref).matches();
+  }
+
+
+  /**
+   * Scan a reference.
+   *
+   * @param ref
+   *          the reference.
+   * @return true if ref is a well-formed MGRS reference.
+   * @since 1.2
+   */
+  public boolean scan(CharSequence ref) {
+    return scan(ref, 0, ref.length());
+  }
+
+
+  /**
+   * Scan a reference held in part of a char array.
+   *
+   * @param buffer
+   *          the characters holding the reference.
+   * @param start
+   *          the index of the first character of the reference.
+   * @param end
+   *          the index after the last character of the reference.
+   * @return true if the characters are a well-formed MGRS reference.
+   * @since 1.2
+   */
+  public boolean scan(char[] buffer, int start, int end) {
+    chars = buffer;
+    try {
+      return scan(start, end);
+    } finally {
+      chars = null;
+    }
+  }
+
+
+  /**
+   * Scan a reference held in part of a CharSequence. Error positions are
+   * indices into ref.
+   *
+   * @param ref
+   *          the characters holding the reference.
+   * @param start
+   *          the index of the first character of the reference.
+   * @param end
+   *          the index after the last character of the reference.
+   * @return true if the characters are a well-formed MGRS reference.
+   * @since 1.2
+   */
+  public boolean scan(CharSequence ref, int start, int end) {
+    sequence = ref;
+    try {
+      return scan(start, end);
+    } finally {
+      sequence = null;
+    }
+  }
+
+
+  /**
+   * Scan the reference held in the characters set by the caller.
+   *
+   * @param start
+   *          the index of the first character of the reference.
+   * @param end
+   *          the index after the last character of the reference.
+   * @return true if the characters are a well-formed MGRS reference.
+   * @since 1.2
+   */
+  private boolean scan(int start, int end) {
+    errorIndex = -1;
+    errorMessage = null;
+
+    // Zone number, one or two digits
+    int pos = start;
+    int zone = 0;
+    while (pos < end && pos - start < 2 && isDigit(charAt(pos))) {
+      zone = (zone * 10) + (charAt(pos) - '0');
+      pos++;
+    }
+    if (pos == start) {
+      return fail(pos, "zone number expected");
+    }
+
+    // Latitude band, then the two 100km square letters
+    if (pos >= end || !isBand(charAt(pos))) {
+      return fail(pos, "latitude band letter expected");
+    }
+    char band = charAt(pos++);
+    if (pos >= end || !isSquareLetter(charAt(pos))) {
+      return fail(pos, "easting square letter expected");
+    }
+    char eID = charAt(pos++);
+    if (pos >= end || !isSquareLetter(charAt(pos))) {
+      return fail(pos, "northing square letter expected");
+    }
+    char nID = charAt(pos++);
+
+    // An even number of figures, between 2 and 10
+    int figureStart = pos;
+    long figures = 0;
+    while (pos < end) {
+      char c = charAt(pos);
+      if (!isDigit(c)) {
+        return fail(pos, "digit expected");
+      }
+      if (pos - figureStart == 10) {
+        return fail(pos, "too many figures");
+      }
+      figures = (figures * 10) + (c - '0');
+      pos++;
+    }
+    int count = pos - figureStart;
+    if (count < 2 || (count % 2) != 0) {
+      return fail(pos, "even number of figures expected");
+    }
+
+    int digits = count / 2;
+    int divisor = PRECISION[5 - digits];
+
+    utmZoneNumber = zone;
+    utmZoneChar = band;
+    eastingID = eID;
+    northingID = nID;
+    precision = PRECISION[digits];
+    easting = (int) (figures / divisor) * precision;
+    northing = (int) (figures % divisor) * precision;
+    return true;
+  }
+
+
+  /**
+   * Create an MGRSRef from the last reference scanned.
+   *
+   * @param isBessel
+   *          true if the reference uses the Bessel 1841 ellipsoid.
+   * @return the MGRS reference.
+   * @throws IllegalStateException
+   *           if the last scan failed.
+   * @throws IllegalArgumentException
+   *           if the zone number is outside 1 to 60.
+   * @since 1.2
+   */
+  public MGRSRef toMGRSRef(boolean isBessel) throws IllegalStateException,
+      IllegalArgumentException {
+    if (errorIndex >= 0) {
+      throw new IllegalStateException("Last MGRS reference was invalid: "
+          + errorMessage);
+    }
+    return new MGRSRef(utmZoneNumber, utmZoneChar, eastingID, northingID,
+        easting, northing, precision, isBessel);
+  }
+
+
+  /**
+   * Record an error.
+   *
+   * @param index
+   *          the position of the offending character.
+   * @param message
+   *          what was expected at that position.
+   * @return false.
+   * @since 1.2
+   */
+  private boolean fail(int index, String message) {
+    errorIndex = index;
+    errorMessage = message;
+    return false;
+  }
+
+
+  /**
+   * Get a character of the reference being scanned.
+   *
+   * @param index
+   *          the index of the character.
+   * @return the character.
+   * @since 1.2
+   */
+  private char charAt(int index) {
+    return (chars != null) ? chars[index] : sequence.charAt(index);
+  }
+
+
+  /**
+   * @return true if c is an ASCII digit.
+   * @since 1.2
+   */
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+
+  /**
+   * @return true if c is a UTM latitude band letter, C to X excluding I and O.
+   * @since 1.2
+   */
+  private static boolean isBand(char c) {
+    return c >= 'C' && c <= 'X' && c != 'I' && c != 'O';
+  }
+
+
+  /**
+   * @return true if c is a 100km square letter, A to Z excluding I and O.
+   * @since 1.2
+   */
+  private static boolean isSquareLetter(char c) {
+    return c >= 'A' && c <= 'Z' && c != 'I' && c != 'O';
+  }
+
+
+  /**
+   * Get the position of the first offending character in the last reference
+   * scanned.
+   *
+   * @return the index of the error, or -1 if the last scan succeeded.
+   * @since 1.2
+   */
+  public int getErrorIndex() {
+    return errorIndex;
+  }
+
+
+  /**
+   * Get a description of the error in the last reference scanned.
+   *
+   * @return the error message, or null if the last scan succeeded.
+   * @since 1.2
+   */
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+
+  /**
+   * @return the UTM zone number of the last reference scanned.
+   * @since 1.2
+   */
+  public int getUtmZoneNumber() {
+    return utmZoneNumber;
+  }
+
+
+  /**
+   * @return the UTM latitude band of the last reference scanned.
+   * @since 1.2
+   */
+  public char getUtmZoneChar() {
+    return utmZoneChar;
+  }
+
+
+  /**
+   * @return the easting 100km square letter of the last reference scanned.
+   * @since 1.2
+   */
+  public char getEastingID() {
+    return eastingID;
+  }
+
+
+  /**
+   * @return the northing 100km square letter of the last reference scanned.
+   * @since 1.2
+   */
+  public char getNorthingID() {
+    return northingID;
+  }
+
+
+  /**
+   * @return the easting within the 100km square of the last reference
+   *         scanned, in metres.
+   * @since 1.2
+   */
+  public int getEasting() {
+    return easting;
+  }
+
+
+  /**
+   * @return the northing within the 100km square of the last reference
+   *         scanned, in metres.
+   * @since 1.2
+   */
+  public int getNorthing() {
+    return northing;
+  }
+
+
+  /**
+   * @return the precision of the last reference scanned, one of the
+   *         MGRSRef.PRECISION_ constants.
+   * @since 1.2
+   */
+  public int getPrecision() {
+    return precision;
+  }
+}
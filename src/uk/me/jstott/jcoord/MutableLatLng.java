@@ -0,0 +1,160 @@
+package uk.me.jstott.jcoord;
+
+import uk.me.jstott.jcoord.datum.Datum;
+import uk.me.jstott.jcoord.datum.WGS84Datum;
+
+/**
+ * <p>
+ * This class is part of the Jcoord package. Visit the <a
+ * href="http://www.jstott.me.uk/jcoord/">Jcoord</a> website for more
+ * information.
+ * </p>
+ *
+ * <p>
+ * Reusable holder for the result of a datum conversion. The side-effect-free
+ * conversion methods of {@link LatLng} write into an instance of this class
+ * rather than modifying the LatLng they are called on, so a caller converting
+ * a stream of positions can keep one MutableLatLng and avoid creating any
+ * objects per position. Instances are not thread-safe; each thread should use
+ * its own.
+ * </p>
+ *
+ * @version 1.2
+ * @since 1.2
+ */
+public final class MutableLatLng {
+
+  /**
+   * Latitude in degrees.
+   */
+  private double latitude;
+
+  /**
+   * Longitude in degrees.
+   */
+  private double longitude;
+
+  /**
+   * Height.
+   */
+  private double height;
+
+  /**
+   * Datum of this position.
+   */
+  private Datum datum = WGS84Datum.getInstance();
+
+
+  /**
+   * Create a new holder at latitude and longitude zero on the WGS84 datum.
+   *
+   * @since 1.2
+   */
+  public MutableLatLng() {
+  }
+
+
+  /**
+   * Set all the values held.
+   *
+   * @param latitude
+   *          the latitude in degrees.
+   * @param longitude
+   *          the longitude in degrees.
+   * @param height
+   *          the perpendicular height above the reference ellipsoid.
+   * @param datum
+   *          the datum that the position is based on.
+   * @return this holder.
+   * @since 1.2
+   */
+  public MutableLatLng set(double latitude, double longitude, double height,
+      Datum datum) {
+    this.latitude = latitude;
+    this.longitude = longitude;
+    this.height = height;
+    this.datum = datum;
+    return this;
+  }
+
+
+  /**
+   * Create an immutable LatLng holding the current values.
+   *
+   * @return a new LatLng.
+   * @throws IllegalArgumentException
+   *           if the current latitude or longitude are out of range.
+   * @since 1.2
+   */
+  public LatLng toLatLng() throws IllegalArgumentException {
+    return new LatLng(latitude, longitude, height, datum);
+  }
+
+
+  /**
+   * Convert the current latitude and longitude into an OSGB grid reference.
+   * The position should already be on the OSGB36 datum; see
+   * {@link LatLng#toOSRef()}.
+   *
+   * @return the converted OSGB grid reference.
+   * @since 1.2
+   */
+  public OSRef toOSRef() {
+    return LatLng.toOSRef(latitude, longitude);
+  }
+
+
+  /**
+   * Get a String representation of this MutableLatLng object.
+   *
+   * @return a String representation of this MutableLatLng object.
+   * @since 1.2
+   */
+  public String toString() {
+    return "(" + latitude + ", " + longitude + ")";
+  }
+
+
+  /**
+   * Return the latitude in degrees.
+   *
+   * @return the latitude in degrees.
+   * @since 1.2
+   */
+  public double getLatitude() {
+    return latitude;
+  }
+
+
+  /**
+   * Return the longitude in degrees.
+   *
+   * @return the longitude in degrees.
+   * @since 1.2
+   */
+  public double getLongitude() {
+    return longitude;
+  }
+
+
+  /**
+   * Get the height.
+   *
+   * @return the height.
+   * @since 1.2
+   */
+  public double getHeight() {
+    return height;
+  }
+
+
+  /**
+   * Get the datum.
+   *
+   * @return the datum.
+   * @since 1.2
+   */
+  public Datum getDatum() {
+    return datum;
+  }
+}
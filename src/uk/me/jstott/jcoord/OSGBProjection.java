@@ -0,0 +1,391 @@
+package uk.me.jstott.jcoord;
+
+import uk.me.jstott.jcoord.datum.OSGB36Datum;
+import uk.me.jstott.jcoord.ellipsoid.Airy1830Ellipsoid;
+import uk.me.jstott.jcoord.ellipsoid.Ellipsoid;
+
+/**
+ * <p>
+ * This class is part of the Jcoord package. Visit the <a
+ * href="http://www.jstott.me.uk/jcoord/">Jcoord</a> website for more
+ * information.
+ * </p>
+ *
+ * <p>
+ * The transverse Mercator projection used by the British National Grid, with
+ * every ellipsoid-dependent constant worked out once when the projection is
+ * created. This is the engine behind {@link LatLng#toOSRef()} and
+ * {@link OSRef#toLatLng()}; it can also be used directly to project whole
+ * tracks held in arrays without creating an OSRef or LatLng per point.
+ * </p>
+ *
+ * <p>
+ * The series are the same as those in the Ordnance Survey's "A guide to
+ * coordinate systems in Great Britain". Integer powers are formed by
+ * multiplication and the multiple-angle terms of the meridional arc are built
+ * from the sine and cosine of the latitude and those of the true origin, so
+ * each point costs a handful of trigonometric calls. The inverse projection
+ * stops refining the latitude once the northing is matched to 0.01mm, and
+ * never takes more than {@link #MAX_ITERATIONS} steps.
+ * </p>
+ *
+ * <p>
+ * Positions are on the OSGB36 datum. Instances are immutable and thread-safe.
+ * </p>
+ *
+ * @version 1.2
+ * @since 1.2
+ */
+public final class OSGBProjection {
+
+  /**
+   * Upper limit on the number of steps taken by the inverse projection to
+   * find the latitude from the northing.
+   */
+  public static final int MAX_ITERATIONS = 20;
+
+  /**
+   * Northing error at which the inverse projection stops refining, in metres.
+   */
+  private static final double TOLERANCE = 0.00001;
+
+  /**
+   * Static reference of the British National Grid projection.
+   */
+  private static OSGBProjection ref = null;
+
+  /**
+   * Eccentricity squared.
+   */
+  private final double eSquared;
+
+  /**
+   * Semi major axis multiplied by the central scale factor.
+   */
+  private final double aF0;
+
+  /**
+   * Semi minor axis multiplied by the central scale factor.
+   */
+  private final double bF0;
+
+  /**
+   * Meridional arc coefficients.
+   */
+  private final double m1, m2, m3, m4;
+
+  /**
+   * Latitude and longitude of the true origin in radians.
+   */
+  private final double phi0, lambda0;
+
+  /**
+   * Sine and cosine of the latitude of the true origin.
+   */
+  private final double sinPhi0, cosPhi0;
+
+  /**
+   * Easting and northing of the true origin.
+   */
+  private final double E0, N0;
+
+
+  /**
+   * Create a transverse Mercator projection.
+   *
+   * @param ellipsoid
+   *          the reference ellipsoid.
+   * @param F0
+   *          the scale factor on the central meridian.
+   * @param phi0
+   *          the latitude of the true origin in degrees.
+   * @param lambda0
+   *          the longitude of the true origin in degrees.
+   * @param E0
+   *          the easting of the true origin in metres.
+   * @param N0
+   *          the northing of the true origin in metres.
+   * @since 1.2
+   */
+  private OSGBProjection(Ellipsoid ellipsoid, double F0, double phi0,
+      double lambda0, double E0, double N0) {
+    double a = ellipsoid.getSemiMajorAxis();
+    double b = ellipsoid.getSemiMinorAxis();
+    double n = (a - b) / (a + b);
+    double n2 = n * n;
+    double n3 = n2 * n;
+
+    this.eSquared = ellipsoid.getEccentricitySquared();
+    this.aF0 = a * F0;
+    this.bF0 = b * F0;
+    this.m1 = 1 + n + ((5.0 / 4.0) * n2) + ((5.0 / 4.0) * n3);
+    this.m2 = (3 * n) + (3 * n2) + ((21.0 / 8.0) * n3);
+    this.m3 = ((15.0 / 8.0) * n2) + ((15.0 / 8.0) * n3);
+    this.m4 = (35.0 / 24.0) * n3;
+    this.phi0 = Math.toRadians(phi0);
+    this.lambda0 = Math.toRadians(lambda0);
+    this.sinPhi0 = Math.sin(this.phi0);
+    this.cosPhi0 = Math.cos(this.phi0);
+    this.E0 = E0;
+    this.N0 = N0;
+  }
+
+
+  /**
+   * Get the static instance of the British National Grid projection.
+   *
+   * @return a reference to the static instance of the projection.
+   * @since 1.2
+   */
+  public static OSGBProjection getInstance() {
+    if (ref == null) {
+      ref =
+          new OSGBProjection(Airy1830Ellipsoid.getInstance(), 0.9996012717,
+              49.0, -2.0, 400000.0, -100000.0);
+    }
+    return ref;
+  }
+
+
+  /**
+   * Project a latitude and longitude onto the grid.
+   *
+   * @param latitude
+   *          the latitude in degrees on the OSGB36 datum.
+   * @param longitude
+   *          the longitude in degrees on the OSGB36 datum.
+   * @param result
+   *          an array of at least two elements which receives the easting
+   *          in element 0 and the northing in element 1.
+   * @return result.
+   * @since 1.2
+   */
+  public double[] toGrid(double latitude, double longitude, double[] result) {
+    toGrid(latitude, longitude, result, 0, result, 1);
+    return result;
+  }
+
+
+  /**
+   * Project a latitude and longitude onto the grid, storing the easting and
+   * northing at the given positions.
+   *
+   * @param latitude
+   *          the latitude in degrees on the OSGB36 datum.
+   * @param longitude
+   *          the longitude in degrees on the OSGB36 datum.
+   * @param easting
+   *          receives the easting.
+   * @param eastingIndex
+   *          the index at which to store the easting.
+   * @param northing
+   *          receives the northing.
+   * @param northingIndex
+   *          the index at which to store the northing.
+   * @since 1.2
+   */
+  private void toGrid(double latitude, double longitude, double[] easting,
+      int eastingIndex, double[] northing, int northingIndex) {
+    double phi = Math.toRadians(latitude);
+    double sinPhi = Math.sin(phi);
+    double cosPhi = Math.cos(phi);
+    double tanSquared = (sinPhi * sinPhi) / (cosPhi * cosPhi);
+    double cos3 = cosPhi * cosPhi * cosPhi;
+    double cos5 = cos3 * cosPhi * cosPhi;
+    double w = 1.0 - eSquared * sinPhi * sinPhi;
+    double v = aF0 / Math.sqrt(w);
+    double vOverRho = w / (1.0 - eSquared);
+    double etaSquared = vOverRho - 1.0;
+
+    double I = meridionalArc(phi, sinPhi, cosPhi) + N0;
+    double II = (v / 2.0) * sinPhi * cosPhi;
+    double III = (v / 24.0) * sinPhi * cos3
+        * (5.0 - tanSquared + (9.0 * etaSquared));
+    double IIIA = (v / 720.0) * sinPhi * cos5
+        * (61.0 - (58.0 * tanSquared) + (tanSquared * tanSquared));
+    double IV = v * cosPhi;
+    double V = (v / 6.0) * cos3 * (vOverRho - tanSquared);
+    double VI = (v / 120.0)
+        * cos5
+        * (5.0 - (18.0 * tanSquared) + (tanSquared * tanSquared)
+            + (14 * etaSquared) - (58 * tanSquared * etaSquared));
+
+    double l = Math.toRadians(longitude) - lambda0;
+    double l2 = l * l;
+
+    easting[eastingIndex] = E0 + (l * (IV + (l2 * (V + (l2 * VI)))));
+    northing[northingIndex] = I + (l2 * (II + (l2 * (III + (l2 * IIIA)))));
+  }
+
+
+  /**
+   * Project every latitude and longitude in a pair of arrays onto the grid.
+   *
+   * @param latitude
+   *          the latitudes in degrees on the OSGB36 datum.
+   * @param longitude
+   *          the longitudes in degrees on the OSGB36 datum.
+   * @param easting
+   *          receives the eastings in metres.
+   * @param northing
+   *          receives the northings in metres.
+   * @param count
+   *          the number of points to project.
+   * @since 1.2
+   */
+  public void toGrid(double[] latitude, double[] longitude, double[] easting,
+      double[] northing, int count) {
+    for (int i = 0; i < count; i++) {
+      toGrid(latitude[i], longitude[i], easting, i, northing, i);
+    }
+  }
+
+
+  /**
+   * Convert a grid position back to a latitude and longitude.
+   *
+   * @param easting
+   *          the easting in metres.
+   * @param northing
+   *          the northing in metres.
+   * @param result
+   *          receives the latitude and longitude on the OSGB36 datum.
+   * @return result.
+   * @since 1.2
+   */
+  public MutableLatLng toLatLng(double easting, double northing,
+      MutableLatLng result) {
+    toLatLng(easting, northing, result, null, null, 0);
+    return result;
+  }
+
+
+  /**
+   * Convert every grid position in a pair of arrays back to a latitude and
+   * longitude.
+   *
+   * @param easting
+   *          the eastings in metres.
+   * @param northing
+   *          the northings in metres.
+   * @param latitude
+   *          receives the latitudes in degrees on the OSGB36 datum.
+   * @param longitude
+   *          receives the longitudes in degrees on the OSGB36 datum.
+   * @param count
+   *          the number of points to convert.
+   * @since 1.2
+   */
+  public void toLatLng(double[] easting, double[] northing, double[] latitude,
+      double[] longitude, int count) {
+    for (int i = 0; i < count; i++) {
+      toLatLng(easting[i], northing[i], null, latitude, longitude, i);
+    }
+  }
+
+
+  /**
+   * Convert a grid position back to a latitude and longitude.
+   *
+   * @param E
+   *          the easting in metres.
+   * @param N
+   *          the northing in metres.
+   * @param result
+   *          receives the latitude and longitude on the OSGB36 datum, or null
+   *          to store them in the arrays instead.
+   * @param latitude
+   *          receives the latitude in degrees if result is null.
+   * @param longitude
+   *          receives the longitude in degrees if result is null.
+   * @param index
+   *          the index at which to store the latitude and longitude.
+   * @since 1.2
+   */
+  private void toLatLng(double E, double N, MutableLatLng result,
+      double[] latitude, double[] longitude, int index) {
+    double phiPrime = ((N - N0) / aF0) + phi0;
+    double sinPhi = Math.sin(phiPrime);
+    double cosPhi = Math.cos(phiPrime);
+    double error = N - N0 - meridionalArc(phiPrime, sinPhi, cosPhi);
+    for (int i = 0; i < MAX_ITERATIONS && Math.abs(error) >= TOLERANCE; i++) {
+      phiPrime += error / aF0;
+      sinPhi = Math.sin(phiPrime);
+      cosPhi = Math.cos(phiPrime);
+      error = N - N0 - meridionalArc(phiPrime, sinPhi, cosPhi);
+    }
+
+    double tanPhi = sinPhi / cosPhi;
+    double secPhi = 1.0 / cosPhi;
+    double tan2 = tanPhi * tanPhi;
+    double tan4 = tan2 * tan2;
+    double w = 1.0 - eSquared * sinPhi * sinPhi;
+    double v = aF0 / Math.sqrt(w);
+    double rho = v * (1.0 - eSquared) / w;
+    double etaSquared = (v / rho) - 1.0;
+    double v3 = v * v * v;
+    double v5 = v3 * v * v;
+    double v7 = v5 * v * v;
+
+    double VII = tanPhi / (2 * rho * v);
+    double VIII = (tanPhi / (24.0 * rho * v3))
+        * (5.0 + (3.0 * tan2) + etaSquared - (9.0 * tan2 * etaSquared));
+    double IX = (tanPhi / (720.0 * rho * v5))
+        * (61.0 + (90.0 * tan2) + (45.0 * tan4));
+    double X = secPhi / v;
+    double XI = (secPhi / (6.0 * v3)) * ((v / rho) + (2 * tan2));
+    double XII = (secPhi / (120.0 * v5))
+        * (5.0 + (28.0 * tan2) + (24.0 * tan4));
+    double XIIA = (secPhi / (5040.0 * v7))
+        * (61.0 + (662.0 * tan2) + (1320.0 * tan4) + (720.0 * tan4 * tan2));
+
+    double d = E - E0;
+    double d2 = d * d;
+
+    double lat = Math.toDegrees(phiPrime
+        - (d2 * (VII - (d2 * (VIII - (d2 * IX))))));
+    double lng = Math.toDegrees(lambda0
+        + (d * (X - (d2 * (XI - (d2 * (XII - (d2 * XIIA))))))));
+
+    if (result != null) {
+      result.set(lat, lng, 0, OSGB36Datum.getInstance());
+    } else {
+      latitude[index] = lat;
+      longitude[index] = lng;
+    }
+  }
+
+
+  /**
+   * Calculate the developed meridional arc from the true origin, scaled by
+   * the central scale factor.
+   *
+   * @param phi
+   *          the latitude in radians.
+   * @param sinPhi
+   *          the sine of the latitude.
+   * @param cosPhi
+   *          the cosine of the latitude.
+   * @return the meridional arc in metres.
+   * @since 1.2
+   */
+  private double meridionalArc(double phi, double sinPhi, double cosPhi) {
+    double dPhi = phi - phi0;
+
+    // Sines and cosines of the difference and sum of the latitudes
+    double sinD = (sinPhi * cosPhi0) - (cosPhi * sinPhi0);
+    double cosD = (cosPhi * cosPhi0) + (sinPhi * sinPhi0);
+    double sinS = (sinPhi * cosPhi0) + (cosPhi * sinPhi0);
+    double cosS = (cosPhi * cosPhi0) - (sinPhi * sinPhi0);
+
+    // sin(2x), sin(3x), cos(2x) and cos(3x) from sin(x) and cos(x)
+    double sin2D = 2.0 * sinD * cosD;
+    double sin3D = sinD * (3.0 - 4.0 * sinD * sinD);
+    double cos2S = (cosS * cosS) - (sinS * sinS);
+    double cos3S = cosS * (4.0 * cosS * cosS - 3.0);
+
+    return bF0
+        * ((m1 * dPhi) - (m2 * sinD * cosS) + (m3 * sin2D * cos2S) - (m4
+            * sin3D * cos3S));
+  }
+}
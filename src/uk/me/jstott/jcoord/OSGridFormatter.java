@@ -0,0 +1,375 @@
+package uk.me.jstott.jcoord;
+
+/**
+ * <p>
+ * This class is part of the Jcoord package. Visit the <a
+ * href="http://www.jstott.me.uk/jcoord/">Jcoord</a> website for more
+ * information.
+ * </p>
+ *
+ * <p>
+ * Formats and parses OSGB grid references of 2, 4, 6, 8 or 10 figures (e.g.
+ * "TG51", "TG514131", "TG 5140 1317") without creating intermediate
+ * strings. References are written into a caller-supplied char[] or
+ * StringBuilder, and parsed from any CharSequence, so a buffer can be reused
+ * for every fix.
+ * </p>
+ *
+ * <p>
+ * As is usual for grid references, a formatted reference identifies the square
+ * containing the position, i.e. the easting and northing are truncated rather
+ * than rounded. A parsed reference gives the south-west corner of its square.
+ * </p>
+ *
+ * @version 1.2
+ * @since 1.2
+ */
+public final class OSGridFormatter {
+
+  /**
+   * The 25 grid square letters, in rows from north to south.
+   */
+  private static final char[] LETTERS = "ABCDEFGHJKLMNOPQRSTUVWXYZ"
+      .toCharArray();
+
+  /**
+   * Size of a square for each number of digits per axis.
+   */
+  private static final int[] PRECISION = {100000, 10000, 1000, 100, 10, 1};
+
+
+  /**
+   * Not instantiable.
+   */
+  private OSGridFormatter() {
+  }
+
+
+  /**
+   * Get the number of characters needed to format a reference.
+   *
+   * @param figures
+   *          the number of figures: 2, 4, 6, 8 or 10.
+   * @param spaced
+   *          true if the letters, eastings and northings are separated by
+   *          spaces.
+   * @return the length of the formatted reference.
+   * @throws IllegalArgumentException
+   *           if figures is not one of the allowed values.
+   * @since 1.2
+   */
+  public static int length(int figures, boolean spaced)
+      throws IllegalArgumentException {
+    int digits = digitsPerAxis(figures);
+    return 2 + (2 * digits) + (spaced ? 2 : 0);
+  }
+
+
+  /**
+   * Format a grid position as a grid reference into a char array.
+   *
+   * @param easting
+   *          the easting in metres.
+   * @param northing
+   *          the northing in metres.
+   * @param figures
+   *          the number of figures: 2, 4, 6, 8 or 10.
+   * @param spaced
+   *          true to separate the letters, eastings and northings with spaces.
+   * @param buffer
+   *          receives the reference.
+   * @param offset
+   *          the index in buffer of the first character written.
+   * @return the number of characters written, as given by
+   *         {@link #length(int, boolean)}.
+   * @throws IllegalArgumentException
+   *           if figures is not one of the allowed values or the position is
+   *           outside the National Grid.
+   * @since 1.2
+   */
+  public static int format(double easting, double northing, int figures,
+      boolean spaced, char[] buffer, int offset)
+      throws IllegalArgumentException {
+    int digits = digitsPerAxis(figures);
+    checkBounds(easting, northing);
+
+    int e = (int) easting;
+    int n = (int) northing;
+    int pos = offset;
+    buffer[pos++] = firstLetter(e, n);
+    buffer[pos++] = secondLetter(e, n);
+    if (spaced) {
+      buffer[pos++] = ' ';
+    }
+    pos = writeDigits((e % 100000) / PRECISION[digits], digits, buffer, pos);
+    if (spaced) {
+      buffer[pos++] = ' ';
+    }
+    pos = writeDigits((n % 100000) / PRECISION[digits], digits, buffer, pos);
+
+    return pos - offset;
+  }
+
+
+  /**
+   * Format a grid position as a grid reference, appending it to a
+   * StringBuilder.
+   *
+   * @param easting
+   *          the easting in metres.
+   * @param northing
+   *          the northing in metres.
+   * @param figures
+   *          the number of figures: 2, 4, 6, 8 or 10.
+   * @param spaced
+   *          true to separate the letters, eastings and northings with spaces.
+   * @param builder
+   *          the StringBuilder to append to.
+   * @return builder.
+   * @throws IllegalArgumentException
+   *           if figures is not one of the allowed values or the position is
+   *           outside the National Grid.
+   * @since 1.2
+   */
+  public static StringBuilder format(double easting, double northing,
+      int figures, boolean spaced, StringBuilder builder)
+      throws IllegalArgumentException {
+    int digits = digitsPerAxis(figures);
+    checkBounds(easting, northing);
+
+    int e = (int) easting;
+    int n = (int) northing;
+    builder.append(firstLetter(e, n)).append(secondLetter(e, n));
+    if (spaced) {
+      builder.append(' ');
+    }
+    appendDigits((e % 100000) / PRECISION[digits], digits, builder);
+    if (spaced) {
+      builder.append(' ');
+    }
+    appendDigits((n % 100000) / PRECISION[digits], digits, builder);
+    return builder;
+  }
+
+
+  /**
+   * Parse a grid reference of 2 to 10 figures. Letters may be in either case
+   * and spaces between the letters and figures are ignored.
+   *
+   * @param ref
+   *          the grid reference.
+   * @param result
+   *          an array of at least two elements which receives the easting in
+   *          element 0 and the northing in element 1 of the south-west corner
+   *          of the square.
+   * @return result.
+   * @throws IllegalArgumentException
+   *           if ref is not a valid grid reference.
+   * @since 1.2
+   */
+  public static double[] parse(CharSequence ref, double[] result)
+      throws IllegalArgumentException {
+    return parse(ref, 0, ref.length(), result);
+  }
+
+
+  /**
+   * Parse a grid reference held in part of a CharSequence.
+   *
+   * @param ref
+   *          the characters holding the grid reference.
+   * @param start
+   *          the index of the first character of the reference.
+   * @param end
+   *          the index after the last character of the reference.
+   * @param result
+   *          an array of at least two elements which receives the easting in
+   *          element 0 and the northing in element 1 of the south-west corner
+   *          of the square.
+   * @return result.
+   * @throws IllegalArgumentException
+   *           if the characters are not a valid grid reference.
+   * @since 1.2
+   */
+  public static double[] parse(CharSequence ref, int start, int end,
+      double[] result) throws IllegalArgumentException {
+    if (end - start < 2) {
+      throw new IllegalArgumentException("Grid reference is too short");
+    }
+
+    int first = letterIndex(ref.charAt(start));
+    int second = letterIndex(ref.charAt(start + 1));
+    int hundredkmE = ((first % 5) - 2) * 5 + (second % 5);
+    int hundredkmN = (3 - (first / 5)) * 5 + (4 - (second / 5));
+    if (first < 0 || second < 0 || hundredkmE < 0 || hundredkmE >= 7
+        || hundredkmN < 0 || hundredkmN >= 13) {
+      throw new IllegalArgumentException("Invalid grid letters at position "
+          + start);
+    }
+
+    // Gather the figures, skipping spaces, into a single long
+    long figures = 0;
+    int count = 0;
+    for (int i = start + 2; i < end; i++) {
+      char c = ref.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (++count > 10) {
+          throw new IllegalArgumentException("Too many figures at position "
+              + i);
+        }
+        figures = (figures * 10) + (c - '0');
+      } else if (c != ' ') {
+        throw new IllegalArgumentException("Unexpected character '" + c
+            + "' at position " + i);
+      }
+    }
+    if (count == 0) {
+      throw new IllegalArgumentException("No figures in grid reference");
+    }
+    if ((count % 2) != 0) {
+      throw new IllegalArgumentException("Odd number of figures (" + count
+          + ") in grid reference");
+    }
+
+    int digits = count / 2;
+    long divisor = 1;
+    for (int i = 0; i < digits; i++) {
+      divisor *= 10;
+    }
+
+    result[0] = (hundredkmE * 100000) + (figures / divisor) * PRECISION[digits];
+    result[1] = (hundredkmN * 100000) + (figures % divisor) * PRECISION[digits];
+    return result;
+  }
+
+
+  /**
+   * Check the number of figures and convert it to digits per axis.
+   *
+   * @param figures
+   *          the number of figures.
+   * @return the number of digits in each of the easting and northing.
+   * @throws IllegalArgumentException
+   *           if figures is not 2, 4, 6, 8 or 10.
+   * @since 1.2
+   */
+  private static int digitsPerAxis(int figures)
+      throws IllegalArgumentException {
+    if (figures < 2 || figures > 10 || (figures % 2) != 0) {
+      throw new IllegalArgumentException("Grid references have 2, 4, 6, 8 "
+          + "or 10 figures, not " + figures);
+    }
+    return figures / 2;
+  }
+
+
+  /**
+   * Check that a position is within the National Grid.
+   *
+   * @param easting
+   *          the easting in metres.
+   * @param northing
+   *          the northing in metres.
+   * @throws IllegalArgumentException
+   *           if the position is outside the grid.
+   * @since 1.2
+   */
+  private static void checkBounds(double easting, double northing)
+      throws IllegalArgumentException {
+    if (easting < 0 || easting >= 700000 || northing < 0
+        || northing >= 1300000) {
+      throw new IllegalArgumentException("Position (" + easting + ", "
+          + northing + ") is outside the National Grid");
+    }
+  }
+
+
+  /**
+   * Get the letter of the 500km square containing a position, relative to the
+   * false origin at square S.
+   *
+   * @param e
+   *          the easting in metres.
+   * @param n
+   *          the northing in metres.
+   * @return the first letter of the grid reference.
+   * @since 1.2
+   */
+  private static char firstLetter(int e, int n) {
+    return LETTERS[((3 - (n / 500000)) * 5) + 2 + (e / 500000)];
+  }
+
+
+  /**
+   * Get the letter of the 100km square containing a position, within its
+   * 500km square.
+   *
+   * @param e
+   *          the easting in metres.
+   * @param n
+   *          the northing in metres.
+   * @return the second letter of the grid reference.
+   * @since 1.2
+   */
+  private static char secondLetter(int e, int n) {
+    return LETTERS[((4 - ((n / 100000) % 5)) * 5) + ((e / 100000) % 5)];
+  }
+
+
+  /**
+   * Write a zero-padded number.
+   *
+   * @param value
+   *          the number.
+   * @param digits
+   *          the number of digits to write.
+   * @param buffer
+   *          receives the digits.
+   * @param pos
+   *          the index of the first digit.
+   * @return the index after the last digit.
+   * @since 1.2
+   */
+  private static int writeDigits(int value, int digits, char[] buffer, int pos) {
+    for (int i = pos + digits - 1; i >= pos; i--) {
+      buffer[i] = (char) ('0' + (value % 10));
+      value /= 10;
+    }
+    return pos + digits;
+  }
+
+
+  /**
+   * Append a zero-padded number.
+   *
+   * @param value
+   *          the number.
+   * @param digits
+   *          the number of digits to append.
+   * @param builder
+   *          receives the digits.
+   * @since 1.2
+   */
+  private static void appendDigits(int value, int digits, StringBuilder builder) {
+    for (int i = digits - 1; i >= 0; i--) {
+      builder.append((char) ('0' + ((value / PRECISION[5 - i]) % 10)));
+    }
+  }
+
+
+  /**
+   * Find the position of a grid letter in {@link #LETTERS}.
+   *
+   * @param c
+   *          the letter, in either case.
+   * @return the index of the letter, or -1 if it is not a grid letter.
+   * @since 1.2
+   */
+  private static int letterIndex(char c) {
+    c = Character.toUpperCase(c);
+    if (c < 'A' || c > 'Z' || c == 'I') {
+      return -1;
+    }
+    return (c > 'I') ? c - 'A' - 1 : c - 'A';
+  }
+}
@@ -1,7 +1,6 @@
 package uk.me.jstott.jcoord;
 
 import uk.me.jstott.jcoord.datum.OSGB36Datum;
-import uk.me.jstott.jcoord.ellipsoid.Airy1830Ellipsoid;
 
 /**
  * <p>
@@ -263,8 +262,9 @@ public class OSRef extends CoordinateSystem {
   /**
    * Take a string formatted as a six-figure OS grid reference (e.g. "TG514131")
    * and create a new OSRef object that represents that grid reference. The
-   * first character must be H, N, S, O or T. The second character can be any
-   * uppercase character from A through Z excluding I.
+   * first character must be H, N, S, O, T or J. The second character can be any
+   * uppercase character from A through Z excluding I. References of 2 to 10
+   * figures are also accepted; see {@link OSGridFormatter}.
    * 
    * @param ref
    *          a String representing a six-figure Ordnance Survey grid reference
@@ -277,31 +277,9 @@ public class OSRef extends CoordinateSystem {
 
     super(OSGB36Datum.getInstance());
 
-    // if (ref.matches(""))
-    // TODO 2006-02-05 : check format
-    char char1 = ref.charAt(0);
-    char char2 = ref.charAt(1);
-    // Thanks to Nick Holloway for pointing out the radix bug here
-    int east = Integer.parseInt(ref.substring(2, 5)) * 100;
-    int north = Integer.parseInt(ref.substring(5, 8)) * 100;
-    if (char1 == 'H') {
-      north += 1000000;
-    } else if (char1 == 'N') {
-      north += 500000;
-    } else if (char1 == 'O') {
-      north += 500000;
-      east += 500000;
-    } else if (char1 == 'T') {
-      east += 500000;
-    }
-    int char2ord = char2;
-    if (char2ord > 73)
-      char2ord--; // Adjust for no I
-    double nx = ((char2ord - 65) % 5) * 100000;
-    double ny = (4 - Math.floor((char2ord - 65) / 5)) * 100000;
-
-    setEasting(east + nx);
-    setNorthing(north + ny);
+    double[] en = OSGridFormatter.parse(ref, new double[2]);
+    setEasting(en[0]);
+    setNorthing(en[1]);
 
   }
 
@@ -317,55 +295,11 @@ public class OSRef extends CoordinateSystem {
 
     super(OSGB36Datum.getInstance());
 
-    Airy1830Ellipsoid airy1830 = Airy1830Ellipsoid.getInstance();
-    double OSGB_F0 = 0.9996012717;
-    double N0 = -100000.0;
-    double E0 = 400000.0;
-    double phi0 = Math.toRadians(49.0);
-    double lambda0 = Math.toRadians(-2.0);
-    double a = airy1830.getSemiMajorAxis();
-    double b = airy1830.getSemiMinorAxis();
-    double eSquared = airy1830.getEccentricitySquared();
-    double phi = Math.toRadians(ll.getLatitude());
-    double lambda = Math.toRadians(ll.getLongitude());
-    double E = 0.0;
-    double N = 0.0;
-    double n = (a - b) / (a + b);
-    double v = a * OSGB_F0
-        * Math.pow(1.0 - eSquared * Util.sinSquared(phi), -0.5);
-    double rho = a * OSGB_F0 * (1.0 - eSquared)
-        * Math.pow(1.0 - eSquared * Util.sinSquared(phi), -1.5);
-    double etaSquared = (v / rho) - 1.0;
-    double M = (b * OSGB_F0)
-        * (((1 + n + ((5.0 / 4.0) * n * n) + ((5.0 / 4.0) * n * n * n)) * (phi - phi0))
-            - (((3 * n) + (3 * n * n) + ((21.0 / 8.0) * n * n * n))
-                * Math.sin(phi - phi0) * Math.cos(phi + phi0))
-            + ((((15.0 / 8.0) * n * n) + ((15.0 / 8.0) * n * n * n))
-                * Math.sin(2.0 * (phi - phi0)) * Math.cos(2.0 * (phi + phi0))) - (((35.0 / 24.0)
-            * n * n * n)
-            * Math.sin(3.0 * (phi - phi0)) * Math.cos(3.0 * (phi + phi0))));
-    double I = M + N0;
-    double II = (v / 2.0) * Math.sin(phi) * Math.cos(phi);
-    double III = (v / 24.0) * Math.sin(phi) * Math.pow(Math.cos(phi), 3.0)
-        * (5.0 - Util.tanSquared(phi) + (9.0 * etaSquared));
-    double IIIA = (v / 720.0) * Math.sin(phi) * Math.pow(Math.cos(phi), 5.0)
-        * (61.0 - (58.0 * Util.tanSquared(phi)) + Math.pow(Math.tan(phi), 4.0));
-    double IV = v * Math.cos(phi);
-    double V = (v / 6.0) * Math.pow(Math.cos(phi), 3.0)
-        * ((v / rho) - Util.tanSquared(phi));
-    double VI = (v / 120.0)
-        * Math.pow(Math.cos(phi), 5.0)
-        * (5.0 - (18.0 * Util.tanSquared(phi)) + (Math.pow(Math.tan(phi), 4.0))
-            + (14 * etaSquared) - (58 * Util.tanSquared(phi) * etaSquared));
-
-    N = I + (II * Math.pow(lambda - lambda0, 2.0))
-        + (III * Math.pow(lambda - lambda0, 4.0))
-        + (IIIA * Math.pow(lambda - lambda0, 6.0));
-    E = E0 + (IV * (lambda - lambda0)) + (V * Math.pow(lambda - lambda0, 3.0))
-        + (VI * Math.pow(lambda - lambda0, 5.0));
-
-    setEasting(E);
-    setNorthing(N);
+    double[] en = OSGBProjection.getInstance().toGrid(ll.getLatitude(),
+        ll.getLongitude(), new double[2]);
+
+    setEasting(en[0]);
+    setNorthing(en[1]);
 
   }
 
@@ -443,63 +377,8 @@ public class OSRef extends CoordinateSystem {
    * @since 1.0
    */
   public LatLng toLatLng() {
-    double OSGB_F0 = 0.9996012717;
-    double N0 = -100000.0;
-    double E0 = 400000.0;
-    double phi0 = Math.toRadians(49.0);
-    double lambda0 = Math.toRadians(-2.0);
-    double a = getDatum().getReferenceEllipsoid().getSemiMajorAxis();
-    double b = getDatum().getReferenceEllipsoid().getSemiMinorAxis();
-    double eSquared = getDatum().getReferenceEllipsoid()
-        .getEccentricitySquared();
-    double phi = 0.0;
-    double lambda = 0.0;
-    double E = this.easting;
-    double N = this.northing;
-    double n = (a - b) / (a + b);
-    double M = 0.0;
-    double phiPrime = ((N - N0) / (a * OSGB_F0)) + phi0;
-    do {
-      M = (b * OSGB_F0)
-          * (((1 + n + ((5.0 / 4.0) * n * n) + ((5.0 / 4.0) * n * n * n)) * (phiPrime - phi0))
-              - (((3 * n) + (3 * n * n) + ((21.0 / 8.0) * n * n * n))
-                  * Math.sin(phiPrime - phi0) * Math.cos(phiPrime + phi0))
-              + ((((15.0 / 8.0) * n * n) + ((15.0 / 8.0) * n * n * n))
-                  * Math.sin(2.0 * (phiPrime - phi0)) * Math
-                  .cos(2.0 * (phiPrime + phi0))) - (((35.0 / 24.0) * n * n * n)
-              * Math.sin(3.0 * (phiPrime - phi0)) * Math
-              .cos(3.0 * (phiPrime + phi0))));
-      phiPrime += (N - N0 - M) / (a * OSGB_F0);
-    } while ((N - N0 - M) >= 0.001);
-    double v = a * OSGB_F0
-        * Math.pow(1.0 - eSquared * Util.sinSquared(phiPrime), -0.5);
-    double rho = a * OSGB_F0 * (1.0 - eSquared)
-        * Math.pow(1.0 - eSquared * Util.sinSquared(phiPrime), -1.5);
-    double etaSquared = (v / rho) - 1.0;
-    double VII = Math.tan(phiPrime) / (2 * rho * v);
-    double VIII = (Math.tan(phiPrime) / (24.0 * rho * Math.pow(v, 3.0)))
-        * (5.0 + (3.0 * Util.tanSquared(phiPrime)) + etaSquared - (9.0 * Util
-            .tanSquared(phiPrime) * etaSquared));
-    double IX = (Math.tan(phiPrime) / (720.0 * rho * Math.pow(v, 5.0)))
-        * (61.0 + (90.0 * Util.tanSquared(phiPrime)) + (45.0 * Util
-            .tanSquared(phiPrime) * Util.tanSquared(phiPrime)));
-    double X = Util.sec(phiPrime) / v;
-    double XI = (Util.sec(phiPrime) / (6.0 * v * v * v))
-        * ((v / rho) + (2 * Util.tanSquared(phiPrime)));
-    double XII = (Util.sec(phiPrime) / (120.0 * Math.pow(v, 5.0)))
-        * (5.0 + (28.0 * Util.tanSquared(phiPrime)) + (24.0 * Util
-            .tanSquared(phiPrime) * Util.tanSquared(phiPrime)));
-    double XIIA = (Util.sec(phiPrime) / (5040.0 * Math.pow(v, 7.0)))
-        * (61.0 + (662.0 * Util.tanSquared(phiPrime))
-            + (1320.0 * Util.tanSquared(phiPrime) * Util.tanSquared(phiPrime)) + (720.0
-            * Util.tanSquared(phiPrime) * Util.tanSquared(phiPrime) * Util
-            .tanSquared(phiPrime)));
-    phi = phiPrime - (VII * Math.pow(E - E0, 2.0))
-        + (VIII * Math.pow(E - E0, 4.0)) - (IX * Math.pow(E - E0, 6.0));
-    lambda = lambda0 + (X * (E - E0)) - (XI * Math.pow(E - E0, 3.0))
-        + (XII * Math.pow(E - E0, 5.0)) - (XIIA * Math.pow(E - E0, 7.0));
-
-    return new LatLng(Math.toDegrees(phi), Math.toDegrees(lambda));
+    return OSGBProjection.getInstance().toLatLng(easting, northing,
+        new MutableLatLng()).toLatLng();
   }
 
 
@@ -0,0 +1,546 @@
+package uk.me.jstott.jcoord;
+
+import uk.me.jstott.jcoord.datum.WGS84Datum;
+import uk.me.jstott.jcoord.ellipsoid.Ellipsoid;
+import uk.me.jstott.jcoord.ellipsoid.WGS84Ellipsoid;
+
+/**
+ * <p>
+ * This class is part of the Jcoord package. Visit the <a
+ * href="http://www.jstott.me.uk/jcoord/">Jcoord</a> website for more
+ * information.
+ * </p>
+ *
+ * <p>
+ * The Universal Transverse Mercator projection, evaluated with Kr&uuml;ger's
+ * series in the third flattening n carried to sixth order (as given by C. F.
+ * F. Karney, "Transverse Mercator with an accuracy of a few nanometers",
+ * 2011). The series coefficients depend only on the ellipsoid and the central
+ * meridian of each of the 60 zones is tabulated, so both are worked out once
+ * when the projection is created. This is the engine behind
+ * {@link LatLng#toUTMRef()} and {@link UTMRef#toLatLng()}; it can also be used
+ * directly to project whole tracks held in arrays.
+ * </p>
+ *
+ * <p>
+ * Within a zone the forward and inverse projections agree with each other to
+ * well under a millimetre. Instances are immutable and thread-safe.
+ * </p>
+ *
+ * @version 1.2
+ * @since 1.2
+ */
+public final class UTMProjection {
+
+  /**
+   * Scale factor on the central meridian.
+   */
+  private static final double UTM_F0 = 0.9996;
+
+  /**
+   * Easting of the central meridian.
+   */
+  private static final double FALSE_EASTING = 500000.0;
+
+  /**
+   * Northing of the equator for positions in the southern hemisphere.
+   */
+  private static final double FALSE_NORTHING = 10000000.0;
+
+  /**
+   * Latitude bands, one for each 8 degrees north of 80&deg;S. Band X is
+   * extended to cover 72&deg;N to 84&deg;N.
+   */
+  private static final char[] LATITUDE_BANDS = "CDEFGHJKLMNPQRSTUVWXX"
+      .toCharArray();
+
+  /**
+   * Central meridian of each zone in radians, indexed by zone number.
+   */
+  private static final double[] CENTRAL_MERIDIANS = new double[61];
+
+  static {
+    for (int zone = 1; zone <= 60; zone++) {
+      CENTRAL_MERIDIANS[zone] = Math.toRadians((zone - 1) * 6 - 180 + 3);
+    }
+  }
+
+  /**
+   * Static reference of the projection on the WGS84 ellipsoid.
+   */
+  private static UTMProjection ref = null;
+
+  /**
+   * First eccentricity.
+   */
+  private final double e;
+
+  /**
+   * Eccentricity squared.
+   */
+  private final double eSquared;
+
+  /**
+   * Rectifying radius multiplied by the central scale factor.
+   */
+  private final double k0A;
+
+  /**
+   * Kr&uuml;ger coefficients for the forward projection.
+   */
+  private final double[] alpha = new double[7];
+
+  /**
+   * Kr&uuml;ger coefficients for the inverse projection.
+   */
+  private final double[] beta = new double[7];
+
+
+  /**
+   * Create a UTM projection on the given ellipsoid.
+   *
+   * @param ellipsoid
+   *          the reference ellipsoid.
+   * @since 1.2
+   */
+  public UTMProjection(Ellipsoid ellipsoid) {
+    double a = ellipsoid.getSemiMajorAxis();
+    double f = ellipsoid.getFlattening();
+    double n = f / (2 - f);
+    double n2 = n * n;
+    double n3 = n2 * n;
+    double n4 = n3 * n;
+    double n5 = n4 * n;
+    double n6 = n5 * n;
+
+    eSquared = f * (2 - f);
+    e = Math.sqrt(eSquared);
+    k0A = UTM_F0 * a / (1 + n) * (1 + n2 / 4 + n4 / 64 + n6 / 256);
+
+    alpha[1] = n / 2 - 2 * n2 / 3 + 5 * n3 / 16 + 41 * n4 / 180 - 127 * n5
+        / 288 + 7891 * n6 / 37800;
+    alpha[2] = 13 * n2 / 48 - 3 * n3 / 5 + 557 * n4 / 1440 + 281 * n5 / 630
+        - 1983433 * n6 / 1935360;
+    alpha[3] = 61 * n3 / 240 - 103 * n4 / 140 + 15061 * n5 / 26880 + 167603
+        * n6 / 181440;
+    alpha[4] = 49561 * n4 / 161280 - 179 * n5 / 168 + 6601661 * n6 / 7257600;
+    alpha[5] = 34729 * n5 / 80640 - 3418889 * n6 / 1995840;
+    alpha[6] = 212378941 * n6 / 319334400;
+
+    beta[1] = n / 2 - 2 * n2 / 3 + 37 * n3 / 96 - n4 / 360 - 81 * n5 / 512
+        + 96199 * n6 / 604800;
+    beta[2] = n2 / 48 + n3 / 15 - 437 * n4 / 1440 + 46 * n5 / 105 - 1118711
+        * n6 / 3870720;
+    beta[3] = 17 * n3 / 480 - 37 * n4 / 840 - 209 * n5 / 4480 + 5569 * n6
+        / 90720;
+    beta[4] = 4397 * n4 / 161280 - 11 * n5 / 504 - 830251 * n6 / 7257600;
+    beta[5] = 4583 * n5 / 161280 - 108847 * n6 / 3991680;
+    beta[6] = 20648693 * n6 / 638668800;
+  }
+
+
+  /**
+   * Get the static instance of the projection on the WGS84 ellipsoid.
+   *
+   * @return a reference to the static instance of the projection.
+   * @since 1.2
+   */
+  public static UTMProjection getInstance() {
+    if (ref == null) {
+      ref = new UTMProjection(WGS84Ellipsoid.getInstance());
+    }
+    return ref;
+  }
+
+
+  /**
+   * Work out the UTM longitude zone for a position, including the special
+   * zones for Norway and Svalbard.
+   *
+   * @param latitude
+   *          the latitude in degrees.
+   * @param longitude
+   *          the longitude in degrees.
+   * @return the longitude zone number, from 1 to 60.
+   * @since 1.2
+   */
+  public static int getLongitudeZone(double latitude, double longitude) {
+    if (longitude == 180.0) {
+      longitude = -180.0;
+    }
+
+    int zone = (int) Math.floor((longitude + 180.0) / 6.0) + 1;
+
+    // Special zone for Norway
+    if (latitude >= 56.0 && latitude < 64.0 && longitude >= 3.0
+        && longitude < 12.0) {
+      zone = 32;
+    }
+
+    // Special zones for Svalbard
+    if (latitude >= 72.0 && latitude < 84.0) {
+      if (longitude >= 0.0 && longitude < 9.0) {
+        zone = 31;
+      } else if (longitude >= 9.0 && longitude < 21.0) {
+        zone = 33;
+      } else if (longitude >= 21.0 && longitude < 33.0) {
+        zone = 35;
+      } else if (longitude >= 33.0 && longitude < 42.0) {
+        zone = 37;
+      }
+    }
+
+    return zone;
+  }
+
+
+  /**
+   * Work out the UTM latitude zone letter for a latitude. Gives the same
+   * answer as {@link UTMRef#getUTMLatitudeZoneLetter(double)} by table lookup.
+   *
+   * @param latitude
+   *          the latitude in degrees.
+   * @return the latitude zone letter, or 'Z' if the latitude is outside the
+   *         UTM grid.
+   * @since 1.2
+   */
+  public static char getLatitudeZoneLetter(double latitude) {
+    if (latitude < -80 || latitude > 84) {
+      return 'Z';
+    }
+    int band = (int) Math.floor((latitude + 80) / 8);
+    return LATITUDE_BANDS[Math.min(band, LATITUDE_BANDS.length - 1)];
+  }
+
+
+  /**
+   * Project a latitude and longitude into a given UTM zone.
+   *
+   * @param latitude
+   *          the latitude in degrees.
+   * @param longitude
+   *          the longitude in degrees.
+   * @param zone
+   *          the longitude zone number to project into.
+   * @param result
+   *          an array of at least two elements which receives the easting in
+   *          element 0 and the northing in element 1. The northing includes
+   *          the false northing of 10000000m for southern latitudes.
+   * @return result.
+   * @since 1.2
+   */
+  public double[] toGrid(double latitude, double longitude, int zone,
+      double[] result) {
+    toGrid(latitude, longitude, zone, result, 0, result, 1);
+    return result;
+  }
+
+
+  /**
+   * Project a latitude and longitude into a given UTM zone, storing the
+   * easting and northing at the given positions.
+   *
+   * @param latitude
+   *          the latitude in degrees.
+   * @param longitude
+   *          the longitude in degrees.
+   * @param zone
+   *          the longitude zone number to project into.
+   * @param easting
+   *          receives the easting.
+   * @param eastingIndex
+   *          the index at which to store the easting.
+   * @param northing
+   *          receives the northing, including the southern false northing.
+   * @param northingIndex
+   *          the index at which to store the northing.
+   * @since 1.2
+   */
+  private void toGrid(double latitude, double longitude, int zone,
+      double[] easting, int eastingIndex, double[] northing,
+      int northingIndex) {
+    double phi = Math.toRadians(latitude);
+    double lambda = Math.toRadians(longitude) - CENTRAL_MERIDIANS[zone];
+    if (lambda > Math.PI) {
+      lambda -= 2 * Math.PI;
+    } else if (lambda < -Math.PI) {
+      lambda += 2 * Math.PI;
+    }
+
+    // Conformal latitude, as tan(chi)
+    double tau = Math.tan(phi);
+    double sigma = sinh(e * atanh(e * tau / Math.sqrt(1 + tau * tau)));
+    double tauPrime = tau * Math.sqrt(1 + sigma * sigma) - sigma
+        * Math.sqrt(1 + tau * tau);
+
+    double cosLambda = Math.cos(lambda);
+    double xiPrime = Math.atan2(tauPrime, cosLambda);
+    double etaPrime = asinh(Math.sin(lambda)
+        / Math.sqrt(tauPrime * tauPrime + cosLambda * cosLambda));
+
+    // Kruger series. The sines and cosines of the multiple angles are
+    // built up from those of 2 xi' by the angle addition formulae, and
+    // likewise for the hyperbolic functions, so only one sine, one cosine and
+    // one exponential are evaluated.
+    double sin2 = Math.sin(2 * xiPrime);
+    double cos2 = Math.cos(2 * xiPrime);
+    double exp2 = Math.exp(2 * etaPrime);
+    double sinh2 = (exp2 - 1 / exp2) / 2;
+    double cosh2 = (exp2 + 1 / exp2) / 2;
+
+    double sinJ = sin2;
+    double cosJ = cos2;
+    double sinhJ = sinh2;
+    double coshJ = cosh2;
+    double xi = xiPrime;
+    double eta = etaPrime;
+    for (int j = 1; j <= 6; j++) {
+      xi += alpha[j] * sinJ * coshJ;
+      eta += alpha[j] * cosJ * sinhJ;
+
+      double sinNext = sinJ * cos2 + cosJ * sin2;
+      double sinhNext = sinhJ * cosh2 + coshJ * sinh2;
+      cosJ = cosJ * cos2 - sinJ * sin2;
+      coshJ = coshJ * cosh2 + sinhJ * sinh2;
+      sinJ = sinNext;
+      sinhJ = sinhNext;
+    }
+
+    double n = k0A * xi;
+    if (latitude < 0) {
+      n += FALSE_NORTHING;
+    }
+
+    easting[eastingIndex] = FALSE_EASTING + k0A * eta;
+    northing[northingIndex] = n;
+  }
+
+
+  /**
+   * Project every latitude and longitude in a pair of arrays, choosing the
+   * UTM zone of each point.
+   *
+   * @param latitude
+   *          the latitudes in degrees.
+   * @param longitude
+   *          the longitudes in degrees.
+   * @param lngZone
+   *          receives the longitude zone numbers.
+   * @param latZone
+   *          receives the latitude zone letters.
+   * @param easting
+   *          receives the eastings in metres.
+   * @param northing
+   *          receives the northings in metres.
+   * @param count
+   *          the number of points to project.
+   * @throws NotDefinedOnUTMGridException
+   *           if any of the latitudes falls outside the area covered by the
+   *           UTM grid. Points before the offending point will already have
+   *           been converted.
+   * @since 1.2
+   */
+  public void toGrid(double[] latitude, double[] longitude, int[] lngZone,
+      char[] latZone, double[] easting, double[] northing, int count)
+      throws NotDefinedOnUTMGridException {
+    for (int i = 0; i < count; i++) {
+      double lat = latitude[i];
+      if (lat < -80 || lat > 84) {
+        throw new NotDefinedOnUTMGridException("Latitude (" + lat
+            + ") falls outside the UTM grid.");
+      }
+      int zone = getLongitudeZone(lat, longitude[i]);
+      toGrid(lat, longitude[i], zone, easting, i, northing, i);
+      lngZone[i] = zone;
+      latZone[i] = getLatitudeZoneLetter(lat);
+    }
+  }
+
+
+  /**
+   * Convert a UTM grid position back to a latitude and longitude.
+   *
+   * @param zone
+   *          the longitude zone number.
+   * @param southern
+   *          true if the northing includes the false northing used for the
+   *          southern hemisphere.
+   * @param easting
+   *          the easting in metres.
+   * @param northing
+   *          the northing in metres.
+   * @param result
+   *          receives the latitude and longitude on the WGS84 datum.
+   * @return result.
+   * @since 1.2
+   */
+  public MutableLatLng toLatLng(int zone, boolean southern, double easting,
+      double northing, MutableLatLng result) {
+    toLatLng(zone, southern, easting, northing, result, null, null, 0);
+    return result;
+  }
+
+
+  /**
+   * Convert every UTM grid position in a set of arrays back to a latitude and
+   * longitude.
+   *
+   * @param lngZone
+   *          the longitude zone numbers.
+   * @param latZone
+   *          the latitude zone letters, used to tell which hemisphere each
+   *          point is in.
+   * @param easting
+   *          the eastings in metres.
+   * @param northing
+   *          the northings in metres.
+   * @param latitude
+   *          receives the latitudes in degrees.
+   * @param longitude
+   *          receives the longitudes in degrees.
+   * @param count
+   *          the number of points to convert.
+   * @since 1.2
+   */
+  public void toLatLng(int[] lngZone, char[] latZone, double[] easting,
+      double[] northing, double[] latitude, double[] longitude, int count) {
+    for (int i = 0; i < count; i++) {
+      toLatLng(lngZone[i], latZone[i] < 'N', easting[i], northing[i], null,
+          latitude, longitude, i);
+    }
+  }
+
+
+  /**
+   * Convert a UTM grid position back to a latitude and longitude.
+   *
+   * @param zone
+   *          the longitude zone number.
+   * @param southern
+   *          true if the northing includes the southern false northing.
+   * @param easting
+   *          the easting in metres.
+   * @param northing
+   *          the northing in metres.
+   * @param result
+   *          receives the latitude and longitude on the WGS84 datum, or null
+   *          to store them in the arrays instead.
+   * @param latitude
+   *          receives the latitude in degrees if result is null.
+   * @param longitude
+   *          receives the longitude in degrees if result is null.
+   * @param index
+   *          the index at which to store the latitude and longitude.
+   * @since 1.2
+   */
+  private void toLatLng(int zone, boolean southern, double easting,
+      double northing, MutableLatLng result, double[] latitude,
+      double[] longitude, int index) {
+    double y = southern ? northing - FALSE_NORTHING : northing;
+    double xi = y / k0A;
+    double eta = (easting - FALSE_EASTING) / k0A;
+
+    // Kruger series, evaluated as in the forward projection
+    double sin2 = Math.sin(2 * xi);
+    double cos2 = Math.cos(2 * xi);
+    double exp2 = Math.exp(2 * eta);
+    double sinh2 = (exp2 - 1 / exp2) / 2;
+    double cosh2 = (exp2 + 1 / exp2) / 2;
+
+    double sinJ = sin2;
+    double cosJ = cos2;
+    double sinhJ = sinh2;
+    double coshJ = cosh2;
+    double xiPrime = xi;
+    double etaPrime = eta;
+    for (int j = 1; j <= 6; j++) {
+      xiPrime -= beta[j] * sinJ * coshJ;
+      etaPrime -= beta[j] * cosJ * sinhJ;
+
+      double sinNext = sinJ * cos2 + cosJ * sin2;
+      double sinhNext = sinhJ * cosh2 + coshJ * sinh2;
+      cosJ = cosJ * cos2 - sinJ * sin2;
+      coshJ = coshJ * cosh2 + sinhJ * sinh2;
+      sinJ = sinNext;
+      sinhJ = sinhNext;
+    }
+
+    double sinhEtaPrime = sinh(etaPrime);
+    double sinXiPrime = Math.sin(xiPrime);
+    double cosXiPrime = Math.cos(xiPrime);
+    double tauPrime = sinXiPrime
+        / Math.sqrt(sinhEtaPrime * sinhEtaPrime + cosXiPrime * cosXiPrime);
+
+    // Newton-Raphson for tan(phi) from the conformal latitude
+    double tau = tauPrime;
+    for (int i = 0; i < 10; i++) {
+      double sqrt1Tau2 = Math.sqrt(1 + tau * tau);
+      double sigma = sinh(e * atanh(e * tau / sqrt1Tau2));
+      double tauI = tau * Math.sqrt(1 + sigma * sigma) - sigma * sqrt1Tau2;
+      double delta = (tauPrime - tauI) / Math.sqrt(1 + tauI * tauI)
+          * (1 + (1 - eSquared) * tau * tau) / ((1 - eSquared) * sqrt1Tau2);
+      tau += delta;
+      if (Math.abs(delta) < 1e-12) {
+        break;
+      }
+    }
+
+    double lng = Math.toDegrees(CENTRAL_MERIDIANS[zone]
+        + Math.atan2(sinhEtaPrime, cosXiPrime));
+    if (lng > 180.0) {
+      lng -= 360.0;
+    } else if (lng < -180.0) {
+      lng += 360.0;
+    }
+    double lat = Math.toDegrees(Math.atan(tau));
+
+    if (result != null) {
+      result.set(lat, lng, 0, WGS84Datum.getInstance());
+    } else {
+      latitude[index] = lat;
+      longitude[index] = lng;
+    }
+  }
+
+
+  /**
+   * Hyperbolic sine from a single exponential, which is markedly quicker than
+   * Math.sinh on the small arguments met here.
+   *
+   * @param x
+   *          x
+   * @return sinh(x)
+   * @since 1.2
+   */
+  private static double sinh(double x) {
+    double exp = Math.exp(x);
+    return (exp - 1 / exp) / 2;
+  }
+
+
+  /**
+   * Inverse hyperbolic tangent.
+   *
+   * @param x
+   *          x
+   * @return atanh(x)
+   * @since 1.2
+   */
+  private static double atanh(double x) {
+    return 0.5 * Math.log((1 + x) / (1 - x));
+  }
+
+
+  /**
+   * Inverse hyperbolic sine.
+   *
+   * @param x
+   *          x
+   * @return asinh(x)
+   * @since 1.2
+   */
+  private static double asinh(double x) {
+    double y = Math.log(Math.abs(x) + Math.sqrt(x * x + 1));
+    return (x < 0) ? -y : y;
+  }
+}
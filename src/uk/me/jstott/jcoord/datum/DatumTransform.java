@@ -0,0 +1,444 @@
+package uk.me.jstott.jcoord.datum;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import uk.me.jstott.jcoord.MutableLatLng;
+import uk.me.jstott.jcoord.ellipsoid.Ellipsoid;
+import uk.me.jstott.jcoord.ellipsoid.GeodeticInversion;
+
+/**
+ * <p>
+ * This class is part of the Jcoord package. Visit the <a
+ * href="http://www.jstott.me.uk/jcoord/">Jcoord</a> website for more
+ * information.
+ * </p>
+ *
+ * <p>
+ * A precomputed Helmert transformation from one datum to another. The seven
+ * parameters of each datum describe a conversion to WGS84, so a conversion
+ * between two other datums is made of two Helmert steps: out of the source
+ * datum into WGS84, then out of WGS84 into the target datum. Both steps are
+ * affine, so they are composed here into a single 3x3 matrix and translation
+ * when the transform is built. Converting a position then costs one
+ * geodetic-to-geocentric conversion, one matrix multiply and one
+ * geocentric-to-geodetic inversion. The inversion strategy can be chosen per
+ * call. It defaults to {@link GeodeticInversion#ITERATIVE}, so results match
+ * those of earlier versions; pass {@link GeodeticInversion#BOWRING} for the
+ * faster closed form.
+ * </p>
+ *
+ * <p>
+ * Transforms are immutable and are cached per (source, target) pair, so
+ * {@link #getInstance(Datum, Datum)} can be called freely and the returned
+ * object shared between threads.
+ * </p>
+ *
+ * @version 1.2
+ * @since 1.2
+ */
+public final class DatumTransform {
+
+  /**
+   * Geocentric-to-geodetic strategy used when none is given.
+   */
+  private static final GeodeticInversion DEFAULT_INVERSION =
+      GeodeticInversion.ITERATIVE;
+
+  /**
+   * Transforms already built, keyed by source and then target datum.
+   */
+  private static final Map<Datum, Map<Datum, DatumTransform>> cache =
+      new HashMap<Datum, Map<Datum, DatumTransform>>();
+
+  /**
+   * The source datum.
+   */
+  private final Datum source;
+
+  /**
+   * The target datum.
+   */
+  private final Datum target;
+
+  /**
+   * True if the source and target are both WGS84, so nothing needs doing.
+   */
+  private final boolean identity;
+
+  /**
+   * Semi major axis of the source ellipsoid.
+   */
+  private final double a;
+
+  /**
+   * Eccentricity squared of the source ellipsoid.
+   */
+  private final double eSquared;
+
+  /**
+   * Semi major axis of the target ellipsoid.
+   */
+  private final double aB;
+
+  /**
+   * Eccentricity squared of the target ellipsoid.
+   */
+  private final double eSquaredB;
+
+  /**
+   * Composite rotation and scale matrix, row major.
+   */
+  private final double m00, m01, m02, m10, m11, m12, m20, m21, m22;
+
+  /**
+   * Composite translation.
+   */
+  private final double tx, ty, tz;
+
+
+  /**
+   * Build the transform for the given pair of datums.
+   *
+   * @param source
+   *          the source datum.
+   * @param target
+   *          the target datum.
+   * @since 1.2
+   */
+  private DatumTransform(Datum source, Datum target) {
+    this.source = source;
+    this.target = target;
+
+    Ellipsoid from = source.getReferenceEllipsoid();
+    Ellipsoid to = target.getReferenceEllipsoid();
+    a = from.getSemiMajorAxis();
+    eSquared = from.getEccentricitySquared();
+    aB = to.getSemiMajorAxis();
+    eSquaredB = to.getEccentricitySquared();
+
+    boolean fromWGS84 = source instanceof WGS84Datum;
+    boolean toWGS84 = target instanceof WGS84Datum;
+    identity = fromWGS84 && toWGS84;
+
+    // Start with the identity and apply each step in turn
+    double[] m = new double[] { 1, 0, 0, 0, 1, 0, 0, 0, 1 };
+    double[] t = new double[] { 0, 0, 0 };
+
+    // The datum parameters convert to WGS84, so are applied as they are when
+    // leaving a datum and inverted when entering one.
+    if (!fromWGS84) {
+      compose(m, t, source, 1);
+    }
+    if (!toWGS84) {
+      compose(m, t, target, -1);
+    }
+
+    m00 = m[0];
+    m01 = m[1];
+    m02 = m[2];
+    m10 = m[3];
+    m11 = m[4];
+    m12 = m[5];
+    m20 = m[6];
+    m21 = m[7];
+    m22 = m[8];
+    tx = t[0];
+    ty = t[1];
+    tz = t[2];
+  }
+
+
+  /**
+   * Get the transform from one datum to another, building it the first time a
+   * pair is requested.
+   *
+   * @param source
+   *          the datum to convert from.
+   * @param target
+   *          the datum to convert to.
+   * @return the transform.
+   * @since 1.2
+   */
+  public static synchronized DatumTransform getInstance(Datum source,
+      Datum target) {
+
+    // WGS84Datum can be constructed directly, so map every instance onto one
+    if (source instanceof WGS84Datum) {
+      source = WGS84Datum.getInstance();
+    }
+    if (target instanceof WGS84Datum) {
+      target = WGS84Datum.getInstance();
+    }
+
+    Map<Datum, DatumTransform> targets = cache.get(source);
+    if (targets == null) {
+      targets = new HashMap<Datum, DatumTransform>();
+      cache.put(source, targets);
+    }
+
+    DatumTransform transform = targets.get(target);
+    if (transform == null) {
+      transform = new DatumTransform(source, target);
+      targets.put(target, transform);
+    }
+
+    return transform;
+  }
+
+
+  /**
+   * Convert a position from the source datum to the target datum.
+   *
+   * @param latitude
+   *          the latitude in degrees on the source datum.
+   * @param longitude
+   *          the longitude in degrees on the source datum.
+   * @param height
+   *          the perpendicular height above the source ellipsoid.
+   * @param result
+   *          receives the converted position.
+   * @return result.
+   * @since 1.2
+   */
+  public MutableLatLng transform(double latitude, double longitude,
+      double height, MutableLatLng result) {
+    return transform(latitude, longitude, height, DEFAULT_INVERSION, result);
+  }
+
+
+  /**
+   * Convert a position from the source datum to the target datum, using the
+   * given strategy to find the geodetic latitude.
+   *
+   * @param latitude
+   *          the latitude in degrees on the source datum.
+   * @param longitude
+   *          the longitude in degrees on the source datum.
+   * @param height
+   *          the perpendicular height above the source ellipsoid.
+   * @param inversion
+   *          the geocentric-to-geodetic strategy to use.
+   * @param result
+   *          receives the converted position.
+   * @return result.
+   * @since 1.2
+   */
+  public MutableLatLng transform(double latitude, double longitude,
+      double height, GeodeticInversion inversion, MutableLatLng result) {
+
+    if (identity) {
+      return result.set(latitude, longitude, height, target);
+    }
+
+    double phi = Math.toRadians(latitude);
+    double lambda = Math.toRadians(longitude);
+    double sinPhi = Math.sin(phi);
+    double cosPhi = Math.cos(phi);
+    double v = a / Math.sqrt(1 - eSquared * sinPhi * sinPhi);
+    double x = (v + height) * cosPhi * Math.cos(lambda);
+    double y = (v + height) * cosPhi * Math.sin(lambda);
+    double z = ((1 - eSquared) * v + height) * sinPhi;
+
+    double xB = tx + (m00 * x) + (m01 * y) + (m02 * z);
+    double yB = ty + (m10 * x) + (m11 * y) + (m12 * z);
+    double zB = tz + (m20 * x) + (m21 * y) + (m22 * z);
+
+    double p = Math.sqrt((xB * xB) + (yB * yB));
+    if (p == 0) {
+      // On the polar axis the longitude is undefined and p / cos(phi) is 0/0
+      return result.set((zB < 0) ? -90.0 : 90.0, 0,
+          Math.abs(zB) - aB * Math.sqrt(1 - eSquaredB), target);
+    }
+
+    double phiN = inversion.latitude(p, zB, aB, eSquaredB);
+    double sinPhiN = Math.sin(phiN);
+    v = aB / Math.sqrt(1 - eSquaredB * sinPhiN * sinPhiN);
+
+    return result.set(Math.toDegrees(phiN), Math.toDegrees(Math.atan2(yB, xB)),
+        p / Math.cos(phiN) - v, target);
+  }
+
+
+  /**
+   * Convert every position in a set of arrays from the source datum to the
+   * target datum. An output array may be the same array as the corresponding
+   * input array.
+   *
+   * @param latitude
+   *          the latitudes in degrees on the source datum.
+   * @param longitude
+   *          the longitudes in degrees on the source datum.
+   * @param height
+   *          the heights above the source ellipsoid, or null to use a height
+   *          of zero for every point.
+   * @param latitudeOut
+   *          receives the latitudes in degrees on the target datum.
+   * @param longitudeOut
+   *          receives the longitudes in degrees on the target datum.
+   * @param heightOut
+   *          receives the heights above the target ellipsoid, or null if they
+   *          are not required.
+   * @param count
+   *          the number of positions to convert.
+   * @since 1.2
+   */
+  public void transform(double[] latitude, double[] longitude,
+      double[] height, double[] latitudeOut, double[] longitudeOut,
+      double[] heightOut, int count) {
+    transform(latitude, longitude, height, latitudeOut, longitudeOut,
+        heightOut, count, DEFAULT_INVERSION);
+  }
+
+
+  /**
+   * Convert every position in a set of arrays from the source datum to the
+   * target datum, using the given strategy to find the geodetic latitudes.
+   *
+   * @param latitude
+   *          the latitudes in degrees on the source datum.
+   * @param longitude
+   *          the longitudes in degrees on the source datum.
+   * @param height
+   *          the heights above the source ellipsoid, or null to use a height
+   *          of zero for every point.
+   * @param latitudeOut
+   *          receives the latitudes in degrees on the target datum.
+   * @param longitudeOut
+   *          receives the longitudes in degrees on the target datum.
+   * @param heightOut
+   *          receives the heights above the target ellipsoid, or null if they
+   *          are not required.
+   * @param count
+   *          the number of positions to convert.
+   * @param inversion
+   *          the geocentric-to-geodetic strategy to use.
+   * @since 1.2
+   */
+  public void transform(double[] latitude, double[] longitude,
+      double[] height, double[] latitudeOut, double[] longitudeOut,
+      double[] heightOut, int count, GeodeticInversion inversion) {
+
+    for (int i = 0; i < count; i++) {
+      double H = (height == null) ? 0 : height[i];
+
+      if (identity) {
+        latitudeOut[i] = latitude[i];
+        longitudeOut[i] = longitude[i];
+        if (heightOut != null) {
+          heightOut[i] = H;
+        }
+        continue;
+      }
+
+      double phi = Math.toRadians(latitude[i]);
+      double lambda = Math.toRadians(longitude[i]);
+      double sinPhi = Math.sin(phi);
+      double cosPhi = Math.cos(phi);
+      double v = a / Math.sqrt(1 - eSquared * sinPhi * sinPhi);
+      double x = (v + H) * cosPhi * Math.cos(lambda);
+      double y = (v + H) * cosPhi * Math.sin(lambda);
+      double z = ((1 - eSquared) * v + H) * sinPhi;
+
+      double xB = tx + (m00 * x) + (m01 * y) + (m02 * z);
+      double yB = ty + (m10 * x) + (m11 * y) + (m12 * z);
+      double zB = tz + (m20 * x) + (m21 * y) + (m22 * z);
+
+      double p = Math.sqrt((xB * xB) + (yB * yB));
+      if (p == 0) {
+        // On the polar axis the longitude is undefined and p / cos(phi) is 0/0
+        latitudeOut[i] = (zB < 0) ? -90.0 : 90.0;
+        longitudeOut[i] = 0;
+        if (heightOut != null) {
+          heightOut[i] = Math.abs(zB) - aB * Math.sqrt(1 - eSquaredB);
+        }
+        continue;
+      }
+
+      double phiN = inversion.latitude(p, zB, aB, eSquaredB);
+
+      latitudeOut[i] = Math.toDegrees(phiN);
+      longitudeOut[i] = Math.toDegrees(Math.atan2(yB, xB));
+      if (heightOut != null) {
+        double sinPhiN = Math.sin(phiN);
+        v = aB / Math.sqrt(1 - eSquaredB * sinPhiN * sinPhiN);
+        heightOut[i] = p / Math.cos(phiN) - v;
+      }
+    }
+  }
+
+
+  /**
+   * Get the source datum.
+   *
+   * @return the source datum.
+   * @since 1.2
+   */
+  public Datum getSource() {
+    return source;
+  }
+
+
+  /**
+   * Get the target datum.
+   *
+   * @return the target datum.
+   * @since 1.2
+   */
+  public Datum getTarget() {
+    return target;
+  }
+
+
+  /**
+   * Get a String representation of this transform.
+   *
+   * @return a String representation of this transform.
+   * @since 1.2
+   */
+  public String toString() {
+    return source.getName() + " -> " + target.getName();
+  }
+
+
+  /**
+   * Follow the transform held in m and t with the Helmert step for the given
+   * datum, using the same form of rotation matrix as
+   * {@link uk.me.jstott.jcoord.LatLng#toDatum(Datum)} has always used.
+   *
+   * @param m
+   *          the 3x3 matrix so far, row major. Updated in place.
+   * @param t
+   *          the translation so far. Updated in place.
+   * @param d
+   *          the datum whose parameters to apply.
+   * @param sign
+   *          1 to convert out of the datum into WGS84, -1 to convert out of
+   *          WGS84 into the datum.
+   * @since 1.2
+   */
+  private static void compose(double[] m, double[] t, Datum d, int sign) {
+    double sc = 1 + sign * d.getDs() / 1000000.0;
+    double rx = sign * Math.toRadians(d.getRx() / 3600.0);
+    double ry = sign * Math.toRadians(d.getRy() / 3600.0);
+    double rz = sign * Math.toRadians(d.getRz() / 3600.0);
+    double[] step = new double[] { sc, -rx * sc, ry * sc, rz * sc, sc,
+        -rx * sc, -ry * sc, rx * sc, sc };
+    double[] translation = new double[] { sign * d.getDx(), sign * d.getDy(),
+        sign * d.getDz() };
+
+    double[] product = new double[9];
+    double[] shifted = new double[3];
+    for (int row = 0; row < 3; row++) {
+      for (int col = 0; col < 3; col++) {
+        product[row * 3 + col] = step[row * 3] * m[col]
+            + step[row * 3 + 1] * m[3 + col] + step[row * 3 + 2] * m[6 + col];
+      }
+      shifted[row] = translation[row] + step[row * 3] * t[0]
+          + step[row * 3 + 1] * t[1] + step[row * 3 + 2] * t[2];
+    }
+
+    System.arraycopy(product, 0, m, 0, 9);
+    System.arraycopy(shifted, 0, t, 0, 3);
+  }
+}
@@ -0,0 +1,79 @@
+package tvs.example.serviceprototype;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import uk.me.jstott.jcoord.LatLng;
+import uk.me.jstott.jcoord.MGRSRef;
+
+/**
+ * Tests for CoordinateConversion
+ */
+public class CoordinateConversionTest
+{
+	private final CoordinateConversion conversion = new CoordinateConversion();
+
+	/**
+	 * The 100km square letters agree with jcoord's across every zone, from
+	 * 79S to 71N, apart from the Norway zone that CoordinateConversion does
+	 * not have
+	 */
+	@Test
+	public void mgrsSquareLettersMatchJcoord()
+	{
+		for( int zone = 1; zone <= 60; zone++ )
+		{
+			double centralMeridian = ( zone - 1 ) * 6 - 180 + 3;
+			for( int lat = -79; lat <= 71; lat += 2 )
+			{
+				for( double lng = -2.75; lng < 3; lng += 0.5 )
+				{
+					if( lat >= 56 && lat < 64 && centralMeridian + lng >= 3 && centralMeridian + lng < 12 )
+					{
+						continue;
+					}
+					String mgrs = conversion.latLon2MGRUTM( lat, centralMeridian + lng );
+					String expected = new MGRSRef( new LatLng( lat, centralMeridian + lng ).toUTMRef() ).toString();
+					String point = lat + ", " + ( centralMeridian + lng );
+					assertEquals( point, 15, mgrs.length() );
+					assertEquals( point, expected.substring( 0, 5 ), mgrs.substring( 0, 5 ) );
+				}
+			}
+		}
+	}
+
+	/**
+	 * The String forms are layered on the UTMPosition forms, so must give the
+	 * same answers
+	 */
+	@Test
+	public void stringAndUTMPositionAgree()
+	{
+		CoordinateConversion.UTMPosition utm = new CoordinateConversion.UTMPosition();
+		double[] latlon = new double[ 2 ];
+		Random random = new Random( 1 );
+		for( int i = 0; i < 100000; i++ )
+		{
+			double latitude = -80 + random.nextDouble() * 164;
+			double longitude = -180 + random.nextDouble() * 359.999;
+			String text = conversion.latLon2UTM( latitude, longitude );
+			conversion.latLon2UTM( latitude, longitude, utm );
+			assertEquals( text, utm.toString() );
+
+			// Band N is given from 1 degree south, as it always has been, and
+			// those positions do not survive a round trip either way
+			if( latitude > -1 && latitude < 0 )
+			{
+				continue;
+			}
+			double[] expected = conversion.utm2LatLon( text );
+			conversion.utm2LatLon( utm, latlon );
+			// The String form rounds the easting and northing to the metre
+			assertEquals( text, expected[ 0 ], latlon[ 0 ], 1e-4 );
+			assertEquals( text, expected[ 1 ], latlon[ 1 ], 1e-4 );
+		}
+	}
+}
@@ -0,0 +1,294 @@
+package tvs.example.serviceprototype;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import tvs.example.serviceprototype.NmeaParser.Fix;
+import tvs.example.serviceprototype.NmeaParser.Satellites;
+import tvs.example.serviceprototype.NmeaParser.SentenceType;
+
+/**
+ * Tests for NmeaParser, including sentences that have caused problems
+ */
+public class NmeaParserTest
+{
+	//
+	// Checksums
+	//
+
+	@Test
+	public void validChecksumIsAccepted()
+	{
+		NmeaParser parser = parse( "$GPGGA,123519,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,*47\r\n" );
+
+		assertEquals( 1, fixCount );
+		assertEquals( 1, parser.getDecodedCount() );
+		assertEquals( 0, parser.getInvalidCount() );
+		assertEquals( 48 + ( 7.038 / 60 ), parser.getFix().latitude, 1e-12 );
+	}
+
+	@Test
+	public void lowerCaseChecksumIsAccepted()
+	{
+		NmeaParser parser = parse( "$GPGSA,A,3,04,05,,09,12,,,24,,,,,2.5,1.3,2.1*39\r\n"
+				+ "$GPGLL,4916.45,N,12311.12,W,225444,A,*1d\r\n" );
+
+		assertEquals( 2, parser.getDecodedCount() );
+		assertEquals( 0, parser.getInvalidCount() );
+	}
+
+	@Test
+	public void badChecksumIsRejected()
+	{
+		NmeaParser parser = parse( "$GPGGA,123519,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,*47\r\n"
+				+ "$GPGGA,123520,5000.000,N,00200.000,W,1,08,0.9,10.0,M,46.9,M,,*47\r\n" );
+
+		assertEquals( 1, fixCount );
+		assertEquals( 1, parser.getInvalidCount() );
+		assertEquals( 48 + ( 7.038 / 60 ), parser.getFix().latitude, 1e-12 );
+		assertEquals( 545.4, parser.getFix().altitude, 0 );
+	}
+
+	@Test
+	public void truncatedOrNonHexChecksumIsRejected()
+	{
+		NmeaParser parser = parse( "$GPVTG,054.7,T,034.4,M,005.5,N,010.2,K*4\r\n"
+				+ "$GPVTG,054.7,T,034.4,M,005.5,N,010.2,K*\r\n"
+				+ "$GPVTG,054.7,T,034.4,M,005.5,N,010.2,K*4G\r\n" );
+
+		assertEquals( 0, fixCount );
+		assertEquals( 3, parser.getInvalidCount() );
+		assertTrue( Double.isNaN( parser.getFix().course ) );
+	}
+
+	@Test
+	public void missingChecksumIsAccepted()
+	{
+		NmeaParser parser = parse( "$GPVTG,054.7,T,034.4,M,005.5,N,010.2,K\r\n" );
+
+		assertEquals( 1, fixCount );
+		assertEquals( 0, parser.getInvalidCount() );
+	}
+
+	//
+	// Sentence types
+	//
+
+	@Test
+	public void rmc()
+	{
+		NmeaParser parser = parse( "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A\r\n" );
+
+		Fix fix = parser.getFix();
+		assertEquals( SentenceType.RMC, lastType );
+		assertTrue( fix.valid );
+		assertEquals( ( ( ( 12 * 60 ) + 35 ) * 60 + 19 ) * 1000, fix.utcTime );
+		assertEquals( 230394, fix.utcDate );
+		assertEquals( 11 + ( 31.0 / 60 ), fix.longitude, 1e-12 );
+		assertEquals( 22.4 * 1852 / 3600, fix.speed, 1e-3 );
+		assertEquals( 84.4, fix.course, 0 );
+	}
+
+	@Test
+	public void gsa()
+	{
+		NmeaParser parser = parse( "$GPGSA,A,3,04,05,,09,12,,,24,,,,,2.5,1.3,2.1*39\r\n" );
+
+		Fix fix = parser.getFix();
+		assertEquals( SentenceType.GSA, lastType );
+		assertEquals( 3, fix.fixMode );
+		assertArrayEquals( new int[] { 4, 5, 9, 12, 24 }, Arrays.copyOf( fix.usedPrns, fix.usedPrnCount ) );
+		assertEquals( 2.5, fix.pdop, 0 );
+		assertEquals( 1.3, fix.hdop, 0 );
+		assertEquals( 2.1, fix.vdop, 0 );
+	}
+
+	@Test
+	public void gsvSequence()
+	{
+		NmeaParser parser = parse( "$GPGSV,2,1,06,01,40,083,46,02,17,308,41,12,07,344,39,14,22,228,45*7B\r\n" );
+		assertEquals( 0, satellitesCount );
+
+		parser.parse( "$GPGSV,2,2,06,15,10,100,35,16,,200,*78\r\n" );
+		assertEquals( 1, satellitesCount );
+		assertEquals( 0, fixCount );
+		assertEquals( 6, lastInView );
+		assertArrayEquals( new int[] { 1, 2, 12, 14, 15, 16 }, lastPrns );
+		assertArrayEquals( new int[] { 46, 41, 39, 45, 35, -1 }, lastSnrs );
+		assertArrayEquals( new int[] { 40, 17, 7, 22, 10, -1 }, lastElevations );
+	}
+
+	@Test
+	public void gsvFromAnotherTalkerStartsNewList()
+	{
+		NmeaParser parser = parse( "$GPGSV,2,1,06,01,40,083,46,02,17,308,41,12,07,344,39,14,22,228,45*7B\r\n"
+				+ "$GLGSV,1,1,02,65,30,120,40,66,45,240,38*6C\r\n" );
+
+		assertEquals( 1, satellitesCount );
+		assertEquals( 0, parser.getInvalidCount() );
+		assertEquals( 2, lastInView );
+		assertArrayEquals( new int[] { 65, 66 }, lastPrns );
+	}
+
+	@Test
+	public void vtg()
+	{
+		NmeaParser parser = parse( "$GPVTG,054.7,T,034.4,M,005.5,N,010.2,K*48\r\n" );
+
+		Fix fix = parser.getFix();
+		assertEquals( SentenceType.VTG, lastType );
+		assertEquals( 54.7, fix.course, 0 );
+		assertEquals( 10.2 / 3.6, fix.speed, 1e-12 );
+	}
+
+	@Test
+	public void gll()
+	{
+		NmeaParser parser = parse( "$GPGLL,4916.45,N,12311.12,W,225444,A,*1D\r\n" );
+
+		Fix fix = parser.getFix();
+		assertEquals( SentenceType.GLL, lastType );
+		assertTrue( fix.valid );
+		assertEquals( 49 + ( 16.45 / 60 ), fix.latitude, 1e-12 );
+		assertEquals( -( 123 + ( 11.12 / 60 ) ), fix.longitude, 1e-12 );
+		assertEquals( ( ( ( 22 * 60 ) + 54 ) * 60 + 44 ) * 1000, fix.utcTime );
+	}
+
+	@Test
+	public void gllWithVoidStatus()
+	{
+		NmeaParser parser = parse( "$GPGLL,4916.45,S,12311.12,E,225444,V,\r\n" );
+
+		assertFalse( parser.getFix().valid );
+		assertEquals( -( 49 + ( 16.45 / 60 ) ), parser.getFix().latitude, 1e-12 );
+	}
+
+	@Test
+	public void otherSentencesAreIgnored()
+	{
+		NmeaParser parser = parse( "$PGRME,15.0,M,45.0,M,25.0,M*1C\r\n"
+				+ "$GPZDA,201530.00,04,07,2002,00,00*60\r\n" );
+
+		assertEquals( 0, fixCount );
+		assertEquals( 2, parser.getIgnoredCount() );
+		assertEquals( 0, parser.getInvalidCount() );
+	}
+
+	//
+	// Malformed sentences
+	//
+
+	/**
+	 * More fraction digits than the powers of ten table holds used to throw ArrayIndexOutOfBoundsException
+	 */
+	@Test
+	public void longFractionIsTruncated()
+	{
+		NmeaParser parser = parse( "$GPGGA,123519,4800.00000000000000000000,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,\r\n"
+				+ "$GPGGA,123520,4807.0380000000000000000001,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,\r\n" );
+
+		assertEquals( 2, fixCount );
+		assertEquals( 0, parser.getInvalidCount() );
+		assertEquals( 48 + ( 7.038 / 60 ), parser.getFix().latitude, 1e-12 );
+		assertEquals( 11 + ( 31.0 / 60 ), parser.getFix().longitude, 1e-12 );
+	}
+
+	/**
+	 * A field that cannot be decoded must not leave the earlier fields of the sentence in the fix
+	 */
+	@Test
+	public void malformedFixSentenceLeavesFixUnchanged()
+	{
+		NmeaParser parser = parse( "$GPGGA,123519,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,\r\n"
+				+ "$GPGGA,123520,5000.000,N,00200.000,W,1,x8,0.9,10.0,M,46.9,M,,\r\n"
+				+ "$GPRMC,123521,A,5100.000,N,00300.000,W,022.x,084.4,230394,003.1,W\r\n" );
+
+		Fix fix = parser.getFix();
+		assertEquals( 1, fixCount );
+		assertEquals( 2, parser.getInvalidCount() );
+		assertEquals( ( ( ( 12 * 60 ) + 35 ) * 60 + 19 ) * 1000, fix.utcTime );
+		assertEquals( 48 + ( 7.038 / 60 ), fix.latitude, 1e-12 );
+		assertEquals( 545.4, fix.altitude, 0 );
+		assertEquals( 8, fix.satellitesUsed );
+	}
+
+	/**
+	 * A malformed GSV message must not add its satellites to the sequence
+	 */
+	@Test
+	public void malformedGsvLeavesSatellitesUnchanged()
+	{
+		NmeaParser parser = parse( "$GPGSV,2,1,06,01,40,083,46,02,17,308,41,12,07,344,39,14,22,228,45\r\n"
+				+ "$GPGSV,2,2,06,15,10,100,3x,16,20,200,30\r\n"
+				+ "$GPGSV,2,2,06,17,10,100,35,18,20,200,30\r\n" );
+
+		assertEquals( 1, satellitesCount );
+		assertEquals( 1, parser.getInvalidCount() );
+		assertEquals( 6, lastPrns.length );
+		assertEquals( 18, lastPrns[ 5 ] );
+	}
+
+	@Test
+	public void shortSentenceIsMalformed()
+	{
+		NmeaParser parser = parse( "$GPGSA,A,3,04,05\r\n$GPVTG,054.7,T\r\n$GPGLL,4916.45,N\r\n" );
+
+		assertEquals( 0, fixCount );
+		assertEquals( 3, parser.getInvalidCount() );
+	}
+
+	//
+	// Private methods
+	//
+
+	/**
+	 * Parse sentences with a new parser, counting what it reports
+	 * @return the parser
+	 */
+	private NmeaParser parse( String sentences )
+	{
+		NmeaParser parser = new NmeaParser( receiver );
+		parser.parse( sentences );
+
+		return parser;
+	}
+
+	//
+	// Private data
+	//
+
+	private final NmeaParser.INmeaReceiver receiver = new NmeaParser.INmeaReceiver()
+	{
+		@Override
+		public void onFixReceived( SentenceType type, Fix fix )
+		{
+			fixCount++;
+			lastType = type;
+		}
+
+		@Override
+		public void onSatellitesReceived( Satellites satellites )
+		{
+			satellitesCount++;
+			lastInView = satellites.inView;
+			lastPrns = Arrays.copyOf( satellites.prn, satellites.count );
+			lastElevations = Arrays.copyOf( satellites.elevation, satellites.count );
+			lastSnrs = Arrays.copyOf( satellites.snr, satellites.count );
+		}
+	};
+
+	private int fixCount = 0;
+	private SentenceType lastType = null;
+
+	private int satellitesCount = 0;
+	private int lastInView = 0;
+	private int[] lastPrns = null;
+	private int[] lastElevations = null;
+	private int[] lastSnrs = null;
+}
@@ -0,0 +1,80 @@
+package tvs.example.serviceprototype;
+
+import java.util.Random;
+
+/**
+ * A repeatable synthetic track for the tests and benchmarks of the track
+ * classes: a random walk at 1 Hz, at walking to driving speeds, with the GPS
+ * off for a few minutes now and then
+ */
+final class RandomWalk
+{
+	static final double METRES_PER_DEGREE = 111320;
+
+	private final Random random;
+
+	private double heading = 0;
+
+	private int index = 0;
+
+	/**
+	 * @param seed - seed of the random walk, so that the same seed gives the
+	 *            same track
+	 */
+	RandomWalk( long seed )
+	{
+		random = new Random( seed );
+	}
+
+	/**
+	 * Start a track
+	 * @param fix - set to the first fix of the track
+	 */
+	void start( GpsFix fix )
+	{
+		fix.clear();
+		fix.time = 1300000000000L;
+		fix.latitude = 51.5;
+		fix.longitude = -0.1;
+		fix.accuracy = 5;
+	}
+
+	/**
+	 * Move on to the next fix
+	 * @param fix - the last fix of the track, moved on to the next one
+	 */
+	void next( GpsFix fix )
+	{
+		if( random.nextInt( 3600 ) == 0 )
+		{
+			fix.time += 60000 + random.nextInt( 240000 );
+		}
+		fix.time += 1000;
+
+		heading += random.nextGaussian() * 0.1;
+		fix.speed = ( float )( 10 + ( 5 * Math.sin( index++ / 600.0 ) ) );
+		fix.bearing = ( float )Math.toDegrees( heading );
+		fix.latitude += fix.speed * Math.cos( heading ) / METRES_PER_DEGREE;
+		fix.longitude += fix.speed * Math.sin( heading ) / ( METRES_PER_DEGREE * Math.cos( Math.toRadians( fix.latitude ) ) );
+	}
+
+	/**
+	 * @param seed - seed of the random walk
+	 * @param fixTotal - the number of fixes
+	 * @return the track
+	 */
+	static GpsFix[] createTrack( long seed, int fixTotal )
+	{
+		RandomWalk walk = new RandomWalk( seed );
+		GpsFix[] track = new GpsFix[ fixTotal ];
+		GpsFix fix = new GpsFix();
+		walk.start( fix );
+		for( int i = 0; i < fixTotal; i++ )
+		{
+			walk.next( fix );
+			track[ i ] = new GpsFix();
+			track[ i ].set( fix );
+		}
+		return track;
+	}
+}
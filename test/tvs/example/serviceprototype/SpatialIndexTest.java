@@ -0,0 +1,178 @@
+package tvs.example.serviceprototype;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for SpatialIndex. Every query is checked against looking at every
+ * point
+ */
+public class SpatialIndexTest
+{
+	private static final int POINT_TOTAL = 100000;
+
+	/**
+	 * Tracks of an hour at 1 Hz, each starting somewhere in England and
+	 * wandering at 1 to 15 m/s. Used by the benchmark as well
+	 *
+	 * @param pointTotal - the number of points
+	 * @return the latitudes in element 0 and the longitudes in element 1
+	 */
+	static double[][] createTracks( int pointTotal )
+	{
+		Random random = new Random( 1 );
+		double[] latitudes = new double[ pointTotal ];
+		double[] longitudes = new double[ pointTotal ];
+		double latitude = 0;
+		double longitude = 0;
+		double heading = 0;
+		double speed = 0;
+		for( int i = 0; i < pointTotal; i++ )
+		{
+			if( i % 3600 == 0 )
+			{
+				latitude = 51 + ( random.nextDouble() * 3 );
+				longitude = -3 + ( random.nextDouble() * 3 );
+				speed = 1 + ( random.nextDouble() * 14 );
+			}
+
+			heading += random.nextGaussian() * 0.1;
+			latitude += speed * Math.cos( heading ) / RandomWalk.METRES_PER_DEGREE;
+			longitude += speed * Math.sin( heading ) / ( RandomWalk.METRES_PER_DEGREE * Math.cos( Math.toRadians( latitude ) ) );
+			latitudes[ i ] = latitude;
+			longitudes[ i ] = longitude;
+		}
+		return new double[][] { latitudes, longitudes };
+	}
+
+	/**
+	 * One kilometre boxes around points find the same points as looking at
+	 * every point
+	 */
+	@Test
+	public void searchMatchesLinearSearch()
+	{
+		double[][] tracks = createTracks( POINT_TOTAL );
+		SpatialIndex index = SpatialIndex.build( tracks[ 0 ], tracks[ 1 ], SpatialIndex.Grid.OSGB );
+		double[][] grid = project( index, tracks );
+		double[] x = grid[ 0 ];
+		double[] y = grid[ 1 ];
+
+		int[] results = new int[ POINT_TOTAL ];
+		Random random = new Random( 2 );
+		for( int query = 0; query < 50; query++ )
+		{
+			int centre = random.nextInt( POINT_TOTAL );
+			int found = index.search( x[ centre ] - 500, y[ centre ] - 500, x[ centre ] + 500, y[ centre ] + 500, results );
+			int[] indexed = Arrays.copyOf( results, found );
+			Arrays.sort( indexed );
+
+			int[] linear = new int[ POINT_TOTAL ];
+			int linearFound = 0;
+			for( int point = 0; point < POINT_TOTAL; point++ )
+			{
+				if( Math.abs( x[ point ] - x[ centre ] ) <= 500 && Math.abs( y[ point ] - y[ centre ] ) <= 500 )
+				{
+					linear[ linearFound++ ] = point;
+				}
+			}
+
+			assertTrue( found > 0 );
+			assertArrayEquals( "query " + query, Arrays.copyOf( linear, linearFound ), indexed );
+		}
+	}
+
+	/**
+	 * The ten nearest points to positions near the tracks are as near as the
+	 * ten nearest found by looking at every point, nearest first
+	 */
+	@Test
+	public void nearestMatchesLinearSearch()
+	{
+		double[][] tracks = createTracks( POINT_TOTAL );
+		SpatialIndex index = SpatialIndex.build( tracks[ 0 ], tracks[ 1 ], SpatialIndex.Grid.UTM );
+		double[][] grid = project( index, tracks );
+		double[] x = grid[ 0 ];
+		double[] y = grid[ 1 ];
+
+		int wanted = 10;
+		int[] results = new int[ wanted ];
+		double[] distances = new double[ wanted ];
+		double[] nearestSquared = new double[ wanted ];
+		Random random = new Random( 2 );
+		for( int query = 0; query < 50; query++ )
+		{
+			int centre = random.nextInt( POINT_TOTAL );
+			double px = x[ centre ] + 200;
+			double py = y[ centre ] + 200;
+
+			// Keep the nearest squared distances found so far in order
+			Arrays.fill( nearestSquared, Double.POSITIVE_INFINITY );
+			for( int point = 0; point < POINT_TOTAL; point++ )
+			{
+				double dx = x[ point ] - px;
+				double dy = y[ point ] - py;
+				double squared = ( dx * dx ) + ( dy * dy );
+				if( squared < nearestSquared[ wanted - 1 ] )
+				{
+					int position = wanted - 1;
+					while( position > 0 && nearestSquared[ position - 1 ] > squared )
+					{
+						nearestSquared[ position ] = nearestSquared[ position - 1 ];
+						position--;
+					}
+					nearestSquared[ position ] = squared;
+				}
+			}
+
+			assertEquals( wanted, index.nearest( px, py, wanted, results, distances ) );
+			for( int i = 0; i < wanted; i++ )
+			{
+				assertEquals( "query " + query + " point " + i, Math.sqrt( nearestSquared[ i ] ), distances[ i ], 1e-6 );
+				assertEquals( distances[ i ], Math.hypot( x[ results[ i ] ] - px, y[ results[ i ] ] - py ), 1e-6 );
+			}
+		}
+	}
+
+	/**
+	 * An index holding fewer points than wanted returns them all
+	 */
+	@Test
+	public void smallIndexes()
+	{
+		SpatialIndex empty = new SpatialIndex( new double[ 0 ], new double[ 0 ], 0, SpatialIndex.DEFAULT_NODE_SIZE );
+		assertEquals( 0, empty.search( -1, -1, 1, 1, new int[ 1 ] ) );
+		assertEquals( 0, empty.nearest( 0, 0, 1, new int[ 1 ], null ) );
+
+		SpatialIndex three = new SpatialIndex( new double[] { 0, 10, 20 }, new double[] { 0, 0, 0 }, 3,
+				SpatialIndex.DEFAULT_NODE_SIZE );
+		int[] results = new int[ 5 ];
+		assertEquals( 3, three.nearest( 12, 0, 5, results, null ) );
+		assertArrayEquals( new int[] { 1, 2, 0 }, Arrays.copyOf( results, 3 ) );
+		assertEquals( 1, three.getLevelCount() );
+	}
+
+	/**
+	 * Project the points onto the grid of an index, as the index did
+	 */
+	private static double[][] project( SpatialIndex index, double[][] tracks )
+	{
+		int count = tracks[ 0 ].length;
+		double[] x = new double[ count ];
+		double[] y = new double[ count ];
+		double[] position = new double[ 2 ];
+		for( int i = 0; i < count; i++ )
+		{
+			index.project( tracks[ 0 ][ i ], tracks[ 1 ][ i ], position );
+			x[ i ] = position[ 0 ];
+			y[ i ] = position[ 1 ];
+		}
+		return new double[][] { x, y };
+	}
+}
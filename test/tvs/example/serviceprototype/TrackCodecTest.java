@@ -0,0 +1,98 @@
+package tvs.example.serviceprototype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+/**
+ * Tests for TrackCodec
+ */
+public class TrackCodecTest
+{
+	/**
+	 * Every fix of a track comes back to within the quantisation, and the
+	 * encoding is much smaller than the fixes held as doubles
+	 */
+	@Test
+	public void roundTripIsWithinTheQuantisation() throws IOException
+	{
+		GpsFix[] track = RandomWalk.createTrack( 1, 10000 );
+		track[ 100 ].altitude = 12.34;
+		track[ 101 ].altitude = 12.34;
+		track[ 200 ].speed = Float.NaN;
+
+		GpsFix[] decoded = roundTrip( track );
+		assertEquals( track.length, decoded.length );
+		for( int i = 0; i < track.length; i++ )
+		{
+			assertEquals( "time " + i, track[ i ].time, decoded[ i ].time );
+			assertEquals( "latitude " + i, track[ i ].latitude, decoded[ i ].latitude, 0.51 / TrackCodec.DEGREE_SCALE );
+			assertEquals( "longitude " + i, track[ i ].longitude, decoded[ i ].longitude, 0.51 / TrackCodec.DEGREE_SCALE );
+			assertEquals( "altitude " + i, track[ i ].altitude, decoded[ i ].altitude, 0.51 / TrackCodec.ALTITUDE_SCALE );
+			assertEquals( "accuracy " + i, track[ i ].accuracy, decoded[ i ].accuracy, 0.51 / TrackCodec.ACCURACY_SCALE );
+			assertEquals( "speed " + i, track[ i ].speed, decoded[ i ].speed, 0.51 / TrackCodec.SPEED_SCALE );
+			assertEquals( "bearing " + i, track[ i ].bearing, decoded[ i ].bearing, 0.51 / TrackCodec.BEARING_SCALE );
+		}
+	}
+
+	/**
+	 * A steady 1 Hz track encodes to a fraction of the 56 bytes of a time and
+	 * six doubles
+	 */
+	@Test
+	public void steadyTrackIsCompact() throws IOException
+	{
+		GpsFix[] track = RandomWalk.createTrack( 1, 10000 );
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		TrackCodec.Encoder encoder = new TrackCodec.Encoder( output );
+		for( int i = 0; i < track.length; i++ )
+		{
+			encoder.encode( track[ i ] );
+		}
+		encoder.flush();
+		assertTrue( "bytes per fix " + ( double )output.size() / track.length, output.size() < track.length * 14 );
+	}
+
+	/**
+	 * Fixes without a position are not written
+	 */
+	@Test
+	public void fixesWithoutAPositionAreIgnored() throws IOException
+	{
+		GpsFix[] track = RandomWalk.createTrack( 1, 3 );
+		track[ 1 ].latitude = Double.NaN;
+		GpsFix[] decoded = roundTrip( track );
+		assertEquals( 2, decoded.length );
+		assertEquals( track[ 2 ].time, decoded[ 1 ].time );
+		assertFalse( Double.isNaN( decoded[ 1 ].latitude ) );
+	}
+
+	private static GpsFix[] roundTrip( GpsFix[] track ) throws IOException
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		TrackCodec.Encoder encoder = new TrackCodec.Encoder( output );
+		for( int i = 0; i < track.length; i++ )
+		{
+			encoder.encode( track[ i ] );
+		}
+		encoder.flush();
+
+		TrackCodec.Decoder decoder = new TrackCodec.Decoder( new ByteArrayInputStream( output.toByteArray() ) );
+		ArrayList<GpsFix> decoded = new ArrayList<GpsFix>();
+		GpsFix fix = new GpsFix();
+		while( decoder.decode( fix ) == true )
+		{
+			GpsFix copy = new GpsFix();
+			copy.set( fix );
+			decoded.add( copy );
+		}
+		return decoded.toArray( new GpsFix[ decoded.size() ] );
+	}
+}
@@ -0,0 +1,155 @@
+package tvs.example.serviceprototype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for TrackStore
+ */
+public class TrackStoreTest
+{
+	private static final int FIX_TOTAL = 20000;
+
+	private File trackFile;
+
+	private TrackStore store;
+
+	@Before
+	public void writeTrack() throws IOException
+	{
+		trackFile = File.createTempFile( "track", ".dat" );
+		TrackStore writer = new TrackStore( trackFile, TrackStore.SyncPolicy.None, 0, TrackStore.DEFAULT_BLOCK_CAPACITY,
+				TrackStore.DEFAULT_COMMIT_AGE );
+		GpsFix[] track = RandomWalk.createTrack( 1, FIX_TOTAL );
+		for( int i = 0; i < track.length; i++ )
+		{
+			writer.append( track[ i ] );
+		}
+		writer.close();
+		store = new TrackStore( trackFile );
+	}
+
+	@After
+	public void deleteTrack() throws IOException
+	{
+		store.close();
+		trackFile.delete();
+	}
+
+	/**
+	 * The track is read back whole
+	 */
+	@Test
+	public void trackIsReadBack() throws IOException
+	{
+		assertEquals( FIX_TOTAL, store.getFixCount() );
+		assertEquals( FIX_TOTAL, store.read( new Collector( Long.MIN_VALUE, Long.MAX_VALUE ) ) );
+	}
+
+	/**
+	 * A ten minute range read with the index gives the same fixes as reading
+	 * the whole track and filtering it, but only decodes the minute long
+	 * blocks that overlap the range
+	 */
+	@Test
+	public void timeRangeMatchesScan() throws IOException
+	{
+		long rangeStart = store.getStartTime() + ( store.getEndTime() - store.getStartTime() ) / 3;
+		long rangeEnd = rangeStart + 600000;
+
+		Collector scanned = new Collector( rangeStart, rangeEnd );
+		store.read( scanned );
+
+		Collector ranged = new Collector( Long.MIN_VALUE, Long.MAX_VALUE );
+		int startBlocks = store.getBlockReadCount();
+		store.read( rangeStart, rangeEnd, ranged );
+
+		assertTrue( scanned.times.size() > 500 );
+		assertEquals( scanned.times, ranged.times );
+		assertTrue( store.getBlockReadCount() - startBlocks <= 12 );
+	}
+
+	/**
+	 * A one kilometre box around a point on the track gives the fixes of the
+	 * whole track that are inside it, and skips most blocks
+	 */
+	@Test
+	public void boxMatchesScan() throws IOException
+	{
+		final GpsFix centre = new GpsFix();
+		store.read( store.getStartTime() + ( store.getEndTime() - store.getStartTime() ) / 2, Long.MAX_VALUE,
+				new TrackStore.IFixReceiver()
+				{
+					@Override
+					public void onFixReceived( GpsFix fix )
+					{
+						if( Double.isNaN( centre.latitude ) == true )
+						{
+							centre.set( fix );
+						}
+					}
+				}
+		);
+
+		final double halfSize = 500 / RandomWalk.METRES_PER_DEGREE;
+		final ArrayList<Long> scanned = new ArrayList<Long>();
+		store.read(
+				new TrackStore.IFixReceiver()
+				{
+					@Override
+					public void onFixReceived( GpsFix fix )
+					{
+						if( Math.abs( fix.latitude - centre.latitude ) <= halfSize
+								&& Math.abs( fix.longitude - centre.longitude ) <= halfSize )
+						{
+							scanned.add( fix.time );
+						}
+					}
+				}
+		);
+
+		Collector boxed = new Collector( Long.MIN_VALUE, Long.MAX_VALUE );
+		int startBlocks = store.getBlockReadCount();
+		store.read( Long.MIN_VALUE, Long.MAX_VALUE, centre.latitude - halfSize, centre.longitude - halfSize,
+				centre.latitude + halfSize, centre.longitude + halfSize, boxed );
+
+		assertTrue( scanned.size() > 0 );
+		assertEquals( scanned, boxed.times );
+		assertTrue( store.getBlockReadCount() - startBlocks < store.getBlockCount() / 2 );
+	}
+
+	/**
+	 * Collects the times of the fixes in a time range
+	 */
+	private static final class Collector implements TrackStore.IFixReceiver
+	{
+		final ArrayList<Long> times = new ArrayList<Long>();
+
+		private final long startTime;
+
+		private final long endTime;
+
+		Collector( long startTime, long endTime )
+		{
+			this.startTime = startTime;
+			this.endTime = endTime;
+		}
+
+		@Override
+		public void onFixReceived( GpsFix fix )
+		{
+			if( fix.time >= startTime && fix.time <= endTime )
+			{
+				times.add( fix.time );
+			}
+		}
+	}
+}
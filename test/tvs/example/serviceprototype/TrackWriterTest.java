@@ -0,0 +1,123 @@
+package tvs.example.serviceprototype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Tests for TrackWriter
+ */
+public class TrackWriterTest
+{
+	/**
+	 * Every fix offered is in the file after close, and every other fix is
+	 * counted as dropped
+	 */
+	@Test
+	public void offeredFixesAreWritten() throws IOException
+	{
+		GpsFix[] track = RandomWalk.createTrack( 1, 20000 );
+		File file = File.createTempFile( "track", ".dat" );
+		try
+		{
+			TrackWriter writer = new TrackWriter( new TrackStore( file ), 256, 60, 1000 );
+			for( int i = 0; i < track.length; i++ )
+			{
+				writer.offer( track[ i ] );
+			}
+			writer.close();
+
+			assertEquals( track.length, writer.getOfferedCount() + writer.getDroppedCount() );
+			assertEquals( writer.getOfferedCount(), writer.getWrittenCount() );
+			assertEquals( 0, writer.getErrorCount() );
+			assertEquals( writer.getOfferedCount(), countFixes( file ) );
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	/**
+	 * A fix offered after close is dropped
+	 */
+	@Test
+	public void offerAfterCloseIsDropped() throws IOException
+	{
+		GpsFix[] track = RandomWalk.createTrack( 1, 2 );
+		File file = File.createTempFile( "track", ".dat" );
+		try
+		{
+			TrackWriter writer = new TrackWriter( new TrackStore( file ) );
+			writer.offer( track[ 0 ] );
+			writer.close();
+			assertFalse( writer.offer( track[ 1 ] ) );
+			assertEquals( 1, writer.getOfferedCount() );
+			assertEquals( 1, writer.getDroppedCount() );
+			assertEquals( 0, writer.getQueueSize() );
+			assertEquals( 1, countFixes( file ) );
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	/**
+	 * A close on another thread while fixes are being offered never loses a
+	 * fix that offer accepted
+	 */
+	@Test
+	public void closeWhileOfferingLosesNothing() throws Exception
+	{
+		final GpsFix[] track = RandomWalk.createTrack( 1, 200000 );
+		for( int run = 0; run < 20; run++ )
+		{
+			File file = File.createTempFile( "track", ".dat" );
+			try
+			{
+				final TrackWriter writer = new TrackWriter( new TrackStore( file ) );
+				Thread producer = new Thread()
+				{
+					@Override
+					public void run()
+					{
+						for( int i = 0; i < track.length; i++ )
+						{
+							writer.offer( track[ i ] );
+						}
+					}
+				};
+				producer.start();
+				Thread.sleep( run % 5 );
+				writer.close();
+				producer.join();
+
+				assertEquals( track.length, writer.getOfferedCount() + writer.getDroppedCount() );
+				assertEquals( "run " + run, writer.getOfferedCount(), writer.getWrittenCount() );
+				assertEquals( "run " + run, writer.getOfferedCount(), countFixes( file ) );
+			}
+			finally
+			{
+				file.delete();
+			}
+		}
+	}
+
+	private static int countFixes( File file ) throws IOException
+	{
+		TrackStore store = new TrackStore( file );
+		try
+		{
+			return store.getFixCount();
+		}
+		finally
+		{
+			store.close();
+		}
+	}
+}
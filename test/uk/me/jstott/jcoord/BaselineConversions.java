@@ -0,0 +1,461 @@
+package uk.me.jstott.jcoord;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import uk.me.jstott.jcoord.ellipsoid.Airy1830Ellipsoid;
+import uk.me.jstott.jcoord.ellipsoid.WGS84Ellipsoid;
+
+/**
+ * <p>
+ * This class is part of the Jcoord package. Visit the <a
+ * href="http://www.jstott.me.uk/jcoord/">Jcoord</a> website for more
+ * information.
+ * </p>
+ *
+ * <p>
+ * The per-point conversions as they were in Jcoord 1.1, before the
+ * projections and datum transforms were precomputed. The tests check the
+ * current code against them and the benchmarks use them as the baseline. Each
+ * method creates its result object, as the 1.1 methods did.
+ * </p>
+ *
+ * @version 1.2
+ * @since 1.2
+ */
+public final class BaselineConversions {
+
+  /**
+   * Not instantiable.
+   */
+  private BaselineConversions() {
+  }
+
+
+  /**
+   * LatLng.toOSRef() from Jcoord 1.1.
+   *
+   * @param latitude
+   *          the latitude in degrees on the OSGB36 datum.
+   * @param longitude
+   *          the longitude in degrees on the OSGB36 datum.
+   * @return the grid reference.
+   * @since 1.2
+   */
+  public static OSRef toOSRef(double latitude, double longitude) {
+    Airy1830Ellipsoid airy1830 = Airy1830Ellipsoid.getInstance();
+    double OSGB_F0 = 0.9996012717;
+    double N0 = -100000.0;
+    double E0 = 400000.0;
+    double phi0 = Math.toRadians(49.0);
+    double lambda0 = Math.toRadians(-2.0);
+    double a = airy1830.getSemiMajorAxis();
+    double b = airy1830.getSemiMinorAxis();
+    double eSquared = airy1830.getEccentricitySquared();
+    double phi = Math.toRadians(latitude);
+    double lambda = Math.toRadians(longitude);
+    double n = (a - b) / (a + b);
+    double v = a * OSGB_F0
+        * Math.pow(1.0 - eSquared * Util.sinSquared(phi), -0.5);
+    double rho = a * OSGB_F0 * (1.0 - eSquared)
+        * Math.pow(1.0 - eSquared * Util.sinSquared(phi), -1.5);
+    double etaSquared = (v / rho) - 1.0;
+    double M = (b * OSGB_F0)
+        * (((1 + n + ((5.0 / 4.0) * n * n) + ((5.0 / 4.0) * n * n * n)) * (phi - phi0))
+            - (((3 * n) + (3 * n * n) + ((21.0 / 8.0) * n * n * n))
+                * Math.sin(phi - phi0) * Math.cos(phi + phi0))
+            + ((((15.0 / 8.0) * n * n) + ((15.0 / 8.0) * n * n * n))
+                * Math.sin(2.0 * (phi - phi0)) * Math.cos(2.0 * (phi + phi0))) - (((35.0 / 24.0)
+            * n * n * n)
+            * Math.sin(3.0 * (phi - phi0)) * Math.cos(3.0 * (phi + phi0))));
+    double I = M + N0;
+    double II = (v / 2.0) * Math.sin(phi) * Math.cos(phi);
+    double III = (v / 24.0) * Math.sin(phi) * Math.pow(Math.cos(phi), 3.0)
+        * (5.0 - Util.tanSquared(phi) + (9.0 * etaSquared));
+    double IIIA = (v / 720.0) * Math.sin(phi) * Math.pow(Math.cos(phi), 5.0)
+        * (61.0 - (58.0 * Util.tanSquared(phi)) + Math.pow(Math.tan(phi), 4.0));
+    double IV = v * Math.cos(phi);
+    double V = (v / 6.0) * Math.pow(Math.cos(phi), 3.0)
+        * ((v / rho) - Util.tanSquared(phi));
+    double VI = (v / 120.0)
+        * Math.pow(Math.cos(phi), 5.0)
+        * (5.0 - (18.0 * Util.tanSquared(phi)) + (Math.pow(Math.tan(phi), 4.0))
+            + (14 * etaSquared) - (58 * Util.tanSquared(phi) * etaSquared));
+
+    double N = I + (II * Math.pow(lambda - lambda0, 2.0))
+        + (III * Math.pow(lambda - lambda0, 4.0))
+        + (IIIA * Math.pow(lambda - lambda0, 6.0));
+    double E = E0 + (IV * (lambda - lambda0))
+        + (V * Math.pow(lambda - lambda0, 3.0))
+        + (VI * Math.pow(lambda - lambda0, 5.0));
+
+    return new OSRef(E, N);
+  }
+
+
+  /**
+   * OSRef.toLatLng() from Jcoord 1.1.
+   *
+   * @param E
+   *          the easting in metres.
+   * @param N
+   *          the northing in metres.
+   * @return the latitude and longitude on the OSGB36 datum.
+   * @since 1.2
+   */
+  public static LatLng toLatLng(double E, double N) {
+    Airy1830Ellipsoid airy1830 = Airy1830Ellipsoid.getInstance();
+    double OSGB_F0 = 0.9996012717;
+    double N0 = -100000.0;
+    double E0 = 400000.0;
+    double phi0 = Math.toRadians(49.0);
+    double lambda0 = Math.toRadians(-2.0);
+    double a = airy1830.getSemiMajorAxis();
+    double b = airy1830.getSemiMinorAxis();
+    double eSquared = airy1830.getEccentricitySquared();
+    double n = (a - b) / (a + b);
+    double M = 0.0;
+    double phiPrime = ((N - N0) / (a * OSGB_F0)) + phi0;
+    do {
+      M = (b * OSGB_F0)
+          * (((1 + n + ((5.0 / 4.0) * n * n) + ((5.0 / 4.0) * n * n * n)) * (phiPrime - phi0))
+              - (((3 * n) + (3 * n * n) + ((21.0 / 8.0) * n * n * n))
+                  * Math.sin(phiPrime - phi0) * Math.cos(phiPrime + phi0))
+              + ((((15.0 / 8.0) * n * n) + ((15.0 / 8.0) * n * n * n))
+                  * Math.sin(2.0 * (phiPrime - phi0)) * Math
+                  .cos(2.0 * (phiPrime + phi0))) - (((35.0 / 24.0) * n * n * n)
+              * Math.sin(3.0 * (phiPrime - phi0)) * Math
+              .cos(3.0 * (phiPrime + phi0))));
+      phiPrime += (N - N0 - M) / (a * OSGB_F0);
+    } while ((N - N0 - M) >= 0.001);
+    double v = a * OSGB_F0
+        * Math.pow(1.0 - eSquared * Util.sinSquared(phiPrime), -0.5);
+    double rho = a * OSGB_F0 * (1.0 - eSquared)
+        * Math.pow(1.0 - eSquared * Util.sinSquared(phiPrime), -1.5);
+    double etaSquared = (v / rho) - 1.0;
+    double VII = Math.tan(phiPrime) / (2 * rho * v);
+    double VIII = (Math.tan(phiPrime) / (24.0 * rho * Math.pow(v, 3.0)))
+        * (5.0 + (3.0 * Util.tanSquared(phiPrime)) + etaSquared - (9.0 * Util
+            .tanSquared(phiPrime) * etaSquared));
+    double IX = (Math.tan(phiPrime) / (720.0 * rho * Math.pow(v, 5.0)))
+        * (61.0 + (90.0 * Util.tanSquared(phiPrime)) + (45.0 * Util
+            .tanSquared(phiPrime) * Util.tanSquared(phiPrime)));
+    double X = Util.sec(phiPrime) / v;
+    double XI = (Util.sec(phiPrime) / (6.0 * v * v * v))
+        * ((v / rho) + (2 * Util.tanSquared(phiPrime)));
+    double XII = (Util.sec(phiPrime) / (120.0 * Math.pow(v, 5.0)))
+        * (5.0 + (28.0 * Util.tanSquared(phiPrime)) + (24.0 * Util
+            .tanSquared(phiPrime) * Util.tanSquared(phiPrime)));
+    double XIIA = (Util.sec(phiPrime) / (5040.0 * Math.pow(v, 7.0)))
+        * (61.0 + (662.0 * Util.tanSquared(phiPrime))
+            + (1320.0 * Util.tanSquared(phiPrime) * Util.tanSquared(phiPrime)) + (720.0
+            * Util.tanSquared(phiPrime) * Util.tanSquared(phiPrime) * Util
+            .tanSquared(phiPrime)));
+    double phi = phiPrime - (VII * Math.pow(E - E0, 2.0))
+        + (VIII * Math.pow(E - E0, 4.0)) - (IX * Math.pow(E - E0, 6.0));
+    double lambda = lambda0 + (X * (E - E0)) - (XI * Math.pow(E - E0, 3.0))
+        + (XII * Math.pow(E - E0, 5.0)) - (XIIA * Math.pow(E - E0, 7.0));
+
+    return new LatLng(Math.toDegrees(phi), Math.toDegrees(lambda));
+  }
+
+
+  /**
+   * LatLng.toUTMRef() from Jcoord 1.1.
+   *
+   * @param latitude
+   *          the latitude in degrees on the WGS84 datum.
+   * @param longitude
+   *          the longitude in degrees on the WGS84 datum.
+   * @return the UTM reference.
+   * @since 1.2
+   */
+  public static UTMRef toUTMRef(double latitude, double longitude) {
+    if (latitude < -80 || latitude > 84) {
+      throw new NotDefinedOnUTMGridException("Latitude (" + latitude
+          + ") falls outside the UTM grid.");
+    }
+
+    if (longitude == 180.0) {
+      longitude = -180.0;
+    }
+
+    double UTM_F0 = 0.9996;
+    double a = WGS84Ellipsoid.getInstance().getSemiMajorAxis();
+    double eSquared = WGS84Ellipsoid.getInstance().getEccentricitySquared();
+
+    double latitudeRad = latitude * (Math.PI / 180.0);
+    double longitudeRad = longitude * (Math.PI / 180.0);
+    int longitudeZone = (int) Math.floor((longitude + 180.0) / 6.0) + 1;
+
+    // Special zone for Norway
+    if (latitude >= 56.0 && latitude < 64.0 && longitude >= 3.0
+        && longitude < 12.0) {
+      longitudeZone = 32;
+    }
+
+    // Special zones for Svalbard
+    if (latitude >= 72.0 && latitude < 84.0) {
+      if (longitude >= 0.0 && longitude < 9.0) {
+        longitudeZone = 31;
+      } else if (longitude >= 9.0 && longitude < 21.0) {
+        longitudeZone = 33;
+      } else if (longitude >= 21.0 && longitude < 33.0) {
+        longitudeZone = 35;
+      } else if (longitude >= 33.0 && longitude < 42.0) {
+        longitudeZone = 37;
+      }
+    }
+
+    double longitudeOrigin = (longitudeZone - 1) * 6 - 180 + 3;
+    double longitudeOriginRad = longitudeOrigin * (Math.PI / 180.0);
+
+    char UTMZone = UTMRef.getUTMLatitudeZoneLetter(latitude);
+
+    double ePrimeSquared = (eSquared) / (1 - eSquared);
+
+    double n = a
+        / Math.sqrt(1 - eSquared * Math.sin(latitudeRad)
+            * Math.sin(latitudeRad));
+    double t = Math.tan(latitudeRad) * Math.tan(latitudeRad);
+    double c = ePrimeSquared * Math.cos(latitudeRad) * Math.cos(latitudeRad);
+    double A = Math.cos(latitudeRad) * (longitudeRad - longitudeOriginRad);
+
+    double M = a
+        * ((1 - eSquared / 4 - 3 * eSquared * eSquared / 64 - 5 * eSquared
+            * eSquared * eSquared / 256)
+            * latitudeRad
+            - (3 * eSquared / 8 + 3 * eSquared * eSquared / 32 + 45 * eSquared
+                * eSquared * eSquared / 1024)
+            * Math.sin(2 * latitudeRad)
+            + (15 * eSquared * eSquared / 256 + 45 * eSquared * eSquared
+                * eSquared / 1024) * Math.sin(4 * latitudeRad) - (35 * eSquared
+            * eSquared * eSquared / 3072)
+            * Math.sin(6 * latitudeRad));
+
+    double UTMEasting = (UTM_F0
+        * n
+        * (A + (1 - t + c) * Math.pow(A, 3.0) / 6 + (5 - 18 * t + t * t + 72
+            * c - 58 * ePrimeSquared)
+            * Math.pow(A, 5.0) / 120) + 500000.0);
+
+    double UTMNorthing = (UTM_F0 * (M + n
+        * Math.tan(latitudeRad)
+        * (A * A / 2 + (5 - t + (9 * c) + (4 * c * c)) * Math.pow(A, 4.0) / 24 + (61
+            - (58 * t) + (t * t) + (600 * c) - (330 * ePrimeSquared))
+            * Math.pow(A, 6.0) / 720)));
+
+    // Adjust for the southern hemisphere
+    if (latitude < 0) {
+      UTMNorthing += 10000000.0;
+    }
+
+    return new UTMRef(longitudeZone, UTMZone, UTMEasting, UTMNorthing);
+  }
+
+
+  /**
+   * UTMRef.toLatLng() from Jcoord 1.1.
+   *
+   * @param ref
+   *          the UTM reference.
+   * @return the latitude and longitude on the WGS84 datum.
+   * @since 1.2
+   */
+  public static LatLng toLatLng(UTMRef ref) {
+    double UTM_F0 = 0.9996;
+    double a = WGS84Ellipsoid.getInstance().getSemiMajorAxis();
+    double eSquared = WGS84Ellipsoid.getInstance().getEccentricitySquared();
+    double ePrimeSquared = eSquared / (1.0 - eSquared);
+    double e1 = (1 - Math.sqrt(1 - eSquared)) / (1 + Math.sqrt(1 - eSquared));
+    double x = ref.getEasting() - 500000.0;
+    double y = ref.getNorthing();
+    int zoneNumber = ref.getLngZone();
+    char zoneLetter = ref.getLatZone();
+
+    double longitudeOrigin = (zoneNumber - 1.0) * 6.0 - 180.0 + 3.0;
+
+    // Correct y for southern hemisphere
+    if ((zoneLetter - 'N') < 0) {
+      y -= 10000000.0;
+    }
+
+    double m = y / UTM_F0;
+    double mu = m
+        / (a * (1.0 - eSquared / 4.0 - 3.0 * eSquared * eSquared / 64.0 - 5.0 * Math
+            .pow(eSquared, 3.0) / 256.0));
+
+    double phi1Rad = mu + (3.0 * e1 / 2.0 - 27.0 * Math.pow(e1, 3.0) / 32.0)
+        * Math.sin(2.0 * mu)
+        + (21.0 * e1 * e1 / 16.0 - 55.0 * Math.pow(e1, 4.0) / 32.0)
+        * Math.sin(4.0 * mu) + (151.0 * Math.pow(e1, 3.0) / 96.0)
+        * Math.sin(6.0 * mu);
+
+    double n = a
+        / Math.sqrt(1.0 - eSquared * Math.sin(phi1Rad) * Math.sin(phi1Rad));
+    double t = Math.tan(phi1Rad) * Math.tan(phi1Rad);
+    double c = ePrimeSquared * Math.cos(phi1Rad) * Math.cos(phi1Rad);
+    double r = a * (1.0 - eSquared)
+        / Math.pow(1.0 - eSquared * Math.sin(phi1Rad) * Math.sin(phi1Rad), 1.5);
+    double d = x / (n * UTM_F0);
+
+    double latitude = (phi1Rad - (n * Math.tan(phi1Rad) / r)
+        * (d
+            * d
+            / 2.0
+            - (5.0 + (3.0 * t) + (10.0 * c) - (4.0 * c * c) - (9.0 * ePrimeSquared))
+            * Math.pow(d, 4.0) / 24.0 + (61.0 + (90.0 * t) + (298.0 * c)
+            + (45.0 * t * t) - (252.0 * ePrimeSquared) - (3.0 * c * c))
+            * Math.pow(d, 6.0) / 720.0))
+        * (180.0 / Math.PI);
+
+    double longitude = longitudeOrigin
+        + ((d - (1.0 + 2.0 * t + c) * Math.pow(d, 3.0) / 6.0 + (5.0 - (2.0 * c)
+            + (28.0 * t) - (3.0 * c * c) + (8.0 * ePrimeSquared) + (24.0 * t * t))
+            * Math.pow(d, 5.0) / 120.0) / Math.cos(phi1Rad))
+        * (180.0 / Math.PI);
+
+    return new LatLng(latitude, longitude);
+  }
+
+
+  /**
+   * MGRSRef(String) from Jcoord 1.1, which compiled its pattern and took
+   * substrings of every reference.
+   *
+   * @param ref
+   *          the MGRS reference.
+   * @return the MGRS reference.
+   * @throws IllegalArgumentException
+   *           if ref is not correctly formatted.
+   * @since 1.2
+   */
+  public static MGRSRef toMGRSRef(String ref) throws IllegalArgumentException {
+    Pattern p =
+        Pattern
+            .compile("(\\d{1,2})([C-X&&[^IO]])([A-Z&&[^IO]])([A-Z&&[^IO]])(\\d{2,10})");
+    Matcher m = p.matcher(ref);
+
+    if (!m.matches()) {
+      throw new IllegalArgumentException("Invalid MGRS reference (" + ref + ")");
+    }
+
+    int utmZoneNumber = Integer.parseInt(m.group(1));
+    char utmZoneChar = m.group(2).charAt(0);
+    char eastingID = m.group(3).charAt(0);
+    char northingID = m.group(4).charAt(0);
+    String en = m.group(5);
+    int enl = en.length();
+    if (enl % 2 != 0) {
+      throw new IllegalArgumentException("Invalid MGRS reference (" + ref + ")");
+    }
+    int precision = (int) Math.pow(10, 5 - (enl / 2));
+    int easting = Integer.parseInt(en.substring(0, enl / 2)) * precision;
+    int northing = Integer.parseInt(en.substring(enl / 2)) * precision;
+
+    return new MGRSRef(utmZoneNumber, utmZoneChar, eastingID, northingID,
+        easting, northing, precision);
+  }
+
+
+  /**
+   * LatLng.toOSGB36() from Jcoord 1.1, which took the height to be zero.
+   *
+   * @param latitude
+   *          the latitude in degrees on the WGS84 datum.
+   * @param longitude
+   *          the longitude in degrees on the WGS84 datum.
+   * @return the position on the OSGB36 datum.
+   * @since 1.2
+   */
+  public static LatLng toOSGB36(double latitude, double longitude) {
+    WGS84Ellipsoid wgs84 = WGS84Ellipsoid.getInstance();
+    double a = wgs84.getSemiMajorAxis();
+    double eSquared = wgs84.getEccentricitySquared();
+    double phi = Math.toRadians(latitude);
+    double lambda = Math.toRadians(longitude);
+    double v = a / (Math.sqrt(1 - eSquared * Util.sinSquared(phi)));
+    double H = 0; // height
+    double x = (v + H) * Math.cos(phi) * Math.cos(lambda);
+    double y = (v + H) * Math.cos(phi) * Math.sin(lambda);
+    double z = ((1 - eSquared) * v + H) * Math.sin(phi);
+
+    double tx = -446.448;
+    double ty = 125.157;
+    double tz = -542.060;
+    double s = 0.0000204894;
+    double rx = Math.toRadians(-0.00004172222);
+    double ry = Math.toRadians(-0.00006861111);
+    double rz = Math.toRadians(-0.00023391666);
+
+    double xB = tx + (x * (1 + s)) + (-rx * y) + (ry * z);
+    double yB = ty + (rz * x) + (y * (1 + s)) + (-rx * z);
+    double zB = tz + (-ry * x) + (rx * y) + (z * (1 + s));
+
+    a = Airy1830Ellipsoid.getInstance().getSemiMajorAxis();
+    eSquared = Airy1830Ellipsoid.getInstance().getEccentricitySquared();
+
+    return toLatLng(xB, yB, zB, a, eSquared);
+  }
+
+
+  /**
+   * LatLng.toWGS84() from Jcoord 1.1, which took the height to be zero.
+   *
+   * @param latitude
+   *          the latitude in degrees on the OSGB36 datum.
+   * @param longitude
+   *          the longitude in degrees on the OSGB36 datum.
+   * @return the position on the WGS84 datum.
+   * @since 1.2
+   */
+  public static LatLng toWGS84(double latitude, double longitude) {
+    double a = Airy1830Ellipsoid.getInstance().getSemiMajorAxis();
+    double eSquared = Airy1830Ellipsoid.getInstance().getEccentricitySquared();
+    double phi = Math.toRadians(latitude);
+    double lambda = Math.toRadians(longitude);
+    double v = a / (Math.sqrt(1 - eSquared * Util.sinSquared(phi)));
+    double H = 0; // height
+    double x = (v + H) * Math.cos(phi) * Math.cos(lambda);
+    double y = (v + H) * Math.cos(phi) * Math.sin(lambda);
+    double z = ((1 - eSquared) * v + H) * Math.sin(phi);
+
+    double tx = 446.448;
+    double ty = -125.157;
+    double tz = 542.060;
+    double s = -0.0000204894;
+    double rx = Math.toRadians(0.00004172222);
+    double ry = Math.toRadians(0.00006861111);
+    double rz = Math.toRadians(0.00023391666);
+
+    double xB = tx + (x * (1 + s)) + (-rx * y) + (ry * z);
+    double yB = ty + (rz * x) + (y * (1 + s)) + (-rx * z);
+    double zB = tz + (-ry * x) + (rx * y) + (z * (1 + s));
+
+    a = WGS84Ellipsoid.getInstance().getSemiMajorAxis();
+    eSquared = WGS84Ellipsoid.getInstance().getEccentricitySquared();
+
+    return toLatLng(xB, yB, zB, a, eSquared);
+  }
+
+
+  /**
+   * The geocentric to geodetic step shared by the 1.1 datum conversions, with
+   * its fixed nine iterations.
+   *
+   * @since 1.2
+   */
+  private static LatLng toLatLng(double xB, double yB, double zB, double a,
+      double eSquared) {
+    double lambdaB = Math.toDegrees(Math.atan(yB / xB));
+    double p = Math.sqrt((xB * xB) + (yB * yB));
+    double phiN = Math.atan(zB / (p * (1 - eSquared)));
+    for (int i = 1; i < 10; i++) {
+      double v = a / (Math.sqrt(1 - eSquared * Util.sinSquared(phiN)));
+      double phiN1 = Math.atan((zB + (eSquared * v * Math.sin(phiN))) / p);
+      phiN = phiN1;
+    }
+
+    return new LatLng(Math.toDegrees(phiN), lambdaB);
+  }
+}
@@ -0,0 +1,100 @@
+package uk.me.jstott.jcoord;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the batch conversions against the Jcoord 1.1 per-point code in
+ * {@link BaselineConversions}.
+ */
+public class LatLngBatchTest {
+
+  private static final int COUNT = 10000;
+
+  private double[] latitude;
+
+  private double[] longitude;
+
+  private double[] first;
+
+  private double[] second;
+
+
+  @Before
+  public void createPoints() {
+    latitude = new double[COUNT];
+    longitude = new double[COUNT];
+    Random random = new Random(1);
+    for (int i = 0; i < COUNT; i++) {
+      latitude[i] = 50 + random.nextDouble() * 8;
+      longitude[i] = -6 + random.nextDouble() * 8;
+    }
+    first = new double[COUNT];
+    second = new double[COUNT];
+  }
+
+
+  @Test
+  public void toOSRefMatchesBaseline() {
+    LatLngBatch.toOSRef(latitude, longitude, first, second);
+    for (int i = 0; i < COUNT; i++) {
+      OSRef ref = BaselineConversions.toOSRef(latitude[i], longitude[i]);
+      assertEquals(ref.getEasting(), first[i], 1e-6);
+      assertEquals(ref.getNorthing(), second[i], 1e-6);
+    }
+  }
+
+
+  @Test
+  public void toUTMRefMatchesBaseline() {
+    int[] lngZone = new int[COUNT];
+    char[] latZone = new char[COUNT];
+    LatLngBatch.toUTMRef(latitude, longitude, lngZone, latZone, first, second);
+    for (int i = 0; i < COUNT; i++) {
+      UTMRef ref = BaselineConversions.toUTMRef(latitude[i], longitude[i]);
+      assertEquals(ref.getLngZone(), lngZone[i]);
+      assertEquals(ref.getLatZone(), latZone[i]);
+
+      // The 1.1 series is only good to a millimetre or so near zone edges
+      assertEquals(ref.getEasting(), first[i], 0.002);
+      assertEquals(ref.getNorthing(), second[i], 0.002);
+    }
+  }
+
+
+  /**
+   * The 1.1 toOSGB36() and toWGS84() did not scale the rotations by 1 + s as
+   * toDatum() and the composed transforms do, which moves the result by up to
+   * 0.2mm.
+   */
+  @Test
+  public void toOSGB36MatchesBaseline() {
+    LatLngBatch.toOSGB36(latitude, longitude, null, first, second);
+    for (int i = 0; i < COUNT; i++) {
+      LatLng ll = BaselineConversions.toOSGB36(latitude[i], longitude[i]);
+      assertEquals(ll.getLatitude(), first[i], 1e-8);
+      assertEquals(ll.getLongitude(), second[i], 1e-8);
+    }
+  }
+
+
+  @Test
+  public void toWGS84MatchesBaseline() {
+    LatLngBatch.toWGS84(latitude, longitude, null, first, second);
+    for (int i = 0; i < COUNT; i++) {
+      LatLng ll = BaselineConversions.toWGS84(latitude[i], longitude[i]);
+      assertEquals(ll.getLatitude(), first[i], 1e-8);
+      assertEquals(ll.getLongitude(), second[i], 1e-8);
+    }
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void differentLengthsAreRejected() {
+    LatLngBatch.toOSRef(latitude, longitude, first, new double[COUNT - 1]);
+  }
+}
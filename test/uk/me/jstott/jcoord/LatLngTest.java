@@ -0,0 +1,72 @@
+package uk.me.jstott.jcoord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import uk.me.jstott.jcoord.datum.OSGB36Datum;
+import uk.me.jstott.jcoord.datum.WGS84Datum;
+
+/**
+ * Checks that the in-place datum conversions behave as they did in Jcoord
+ * 1.1, and that the MutableLatLng forms leave the LatLng alone.
+ */
+public class LatLngTest {
+
+  /**
+   * See LatLngBatchTest for why the results differ from 1.1 by up to 0.2mm.
+   */
+  private static final double TOLERANCE = 1e-8;
+
+
+  @Test
+  public void toOSGB36InPlaceIgnoresHeight() {
+    LatLng ll = new LatLng(52.657977, 1.716038, 250, WGS84Datum.getInstance());
+    ll.toOSGB36();
+
+    LatLng expected = BaselineConversions.toOSGB36(52.657977, 1.716038);
+    assertEquals(expected.getLatitude(), ll.getLatitude(), TOLERANCE);
+    assertEquals(expected.getLongitude(), ll.getLongitude(), TOLERANCE);
+    assertEquals(250, ll.getHeight(), 0);
+    assertSame(WGS84Datum.getInstance(), ll.getDatum());
+  }
+
+
+  @Test
+  public void toWGS84InPlaceIgnoresHeight() {
+    LatLng ll = new LatLng(52.657568, 1.717908, 250, OSGB36Datum.getInstance());
+    ll.toWGS84();
+
+    LatLng expected = BaselineConversions.toWGS84(52.657568, 1.717908);
+    assertEquals(expected.getLatitude(), ll.getLatitude(), TOLERANCE);
+    assertEquals(expected.getLongitude(), ll.getLongitude(), TOLERANCE);
+    assertEquals(250, ll.getHeight(), 0);
+    assertSame(OSGB36Datum.getInstance(), ll.getDatum());
+  }
+
+
+  @Test
+  public void toDatumInPlaceKeepsHeightAndDatum() {
+    LatLng ll = new LatLng(52.657977, 1.716038, 250, WGS84Datum.getInstance());
+    MutableLatLng expected = ll.toDatum(OSGB36Datum.getInstance(),
+        new MutableLatLng());
+    ll.toDatum(OSGB36Datum.getInstance());
+
+    assertEquals(expected.getLatitude(), ll.getLatitude(), 0);
+    assertEquals(expected.getLongitude(), ll.getLongitude(), 0);
+    assertEquals(250, ll.getHeight(), 0);
+    assertSame(WGS84Datum.getInstance(), ll.getDatum());
+  }
+
+
+  @Test
+  public void mutableFormLeavesLatLngUnchanged() {
+    LatLng ll = new LatLng(52.657977, 1.716038, 250, WGS84Datum.getInstance());
+    MutableLatLng result = ll.toOSGB36(new MutableLatLng());
+
+    assertEquals(52.657977, ll.getLatitude(), 0);
+    assertEquals(1.716038, ll.getLongitude(), 0);
+    assertSame(OSGB36Datum.getInstance(), result.getDatum());
+  }
+}
@@ -0,0 +1,87 @@
+package uk.me.jstott.jcoord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the scanner against the Jcoord 1.1 regular expression parsing of
+ * MGRSRef(String).
+ */
+public class MGRSScannerTest {
+
+  @Test
+  public void matchesBaseline() {
+    MGRSScanner scanner = new MGRSScanner();
+    for (String ref : createReferences(10000)) {
+      MGRSRef expected = BaselineConversions.toMGRSRef(ref);
+      assertTrue(ref, scanner.scan(ref));
+      assertEquals(ref, expected.getUtmZoneNumber(),
+          scanner.getUtmZoneNumber());
+      assertEquals(ref, expected.getUtmZoneChar(), scanner.getUtmZoneChar());
+      assertEquals(ref, expected.getEastingID(), scanner.getEastingID());
+      assertEquals(ref, expected.getNorthingID(), scanner.getNorthingID());
+      assertEquals(ref, expected.getEasting(), scanner.getEasting());
+      assertEquals(ref, expected.getNorthing(), scanner.getNorthing());
+      assertEquals(ref, expected.getPrecision(), scanner.getPrecision());
+      assertEquals(ref, expected.toString(), scanner.toMGRSRef(false)
+          .toString());
+    }
+  }
+
+
+  @Test
+  public void scanCharArray() {
+    char[] buffer = "at 32UMU1078.".toCharArray();
+    MGRSScanner scanner = new MGRSScanner();
+    assertTrue(scanner.scan(buffer, 3, 12));
+    assertEquals(32, scanner.getUtmZoneNumber());
+    assertEquals(10000, scanner.getEasting());
+    assertEquals(78000, scanner.getNorthing());
+    assertEquals(MGRSRef.PRECISION_1000M, scanner.getPrecision());
+  }
+
+
+  @Test
+  public void errorPositions() {
+    String[] refs = { "UMU1078", "32IMU1078", "32UOU1078", "32UM1078",
+        "32UMU107", "32UMU10X8", "32UMU123456789012", "32UMU" };
+    int[] index = { 0, 2, 3, 4, 8, 7, 15, 5 };
+    MGRSScanner scanner = new MGRSScanner();
+    for (int i = 0; i < refs.length; i++) {
+      assertFalse(refs[i], scanner.scan(refs[i]));
+      assertEquals(refs[i], index[i], scanner.getErrorIndex());
+    }
+  }
+
+
+  @Test(expected = IllegalStateException.class)
+  public void toMGRSRefAfterFailure() {
+    MGRSScanner scanner = new MGRSScanner();
+    scanner.scan("32UMU107");
+    scanner.toMGRSRef(false);
+  }
+
+
+  /**
+   * Create MGRS references of every precision from random positions on the
+   * UTM grid.
+   */
+  static String[] createReferences(int count) {
+    int[] precisions = { MGRSRef.PRECISION_10000M, MGRSRef.PRECISION_1000M,
+        MGRSRef.PRECISION_100M, MGRSRef.PRECISION_10M, MGRSRef.PRECISION_1M };
+    String[] refs = new String[count];
+    Random random = new Random(1);
+    for (int i = 0; i < count; i++) {
+      LatLng ll = new LatLng(-80 + random.nextDouble() * 164,
+          -180 + random.nextDouble() * 360);
+      refs[i] = new MGRSRef(ll.toUTMRef()).toString(precisions[i
+          % precisions.length]);
+    }
+    return refs;
+  }
+}
@@ -0,0 +1,78 @@
+package uk.me.jstott.jcoord;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the precomputed British National Grid projection against the Jcoord
+ * 1.1 OSRef and LatLng code over random points covering Great Britain.
+ */
+public class OSGBProjectionTest {
+
+  private static final int COUNT = 100000;
+
+  private final OSGBProjection projection = OSGBProjection.getInstance();
+
+
+  @Test
+  public void toGridMatchesBaseline() {
+    double[] latitude = new double[COUNT];
+    double[] longitude = new double[COUNT];
+    createPoints(latitude, longitude);
+    double[] easting = new double[COUNT];
+    double[] northing = new double[COUNT];
+    projection.toGrid(latitude, longitude, easting, northing, COUNT);
+
+    for (int i = 0; i < COUNT; i++) {
+      OSRef expected = BaselineConversions.toOSRef(latitude[i], longitude[i]);
+      assertEquals(expected.getEasting(), easting[i], 1e-6);
+      assertEquals(expected.getNorthing(), northing[i], 1e-6);
+    }
+  }
+
+
+  @Test
+  public void toLatLngMatchesBaseline() {
+    double[] latitude = new double[COUNT];
+    double[] longitude = new double[COUNT];
+    createPoints(latitude, longitude);
+    double[] easting = new double[COUNT];
+    double[] northing = new double[COUNT];
+    projection.toGrid(latitude, longitude, easting, northing, COUNT);
+    projection.toLatLng(easting, northing, latitude, longitude, COUNT);
+
+    for (int i = 0; i < COUNT; i++) {
+      LatLng expected = BaselineConversions.toLatLng(easting[i], northing[i]);
+      assertEquals(expected.getLatitude(), latitude[i], 1e-9);
+      assertEquals(expected.getLongitude(), longitude[i], 1e-9);
+    }
+  }
+
+
+  @Test
+  public void singlePointMatchesArrays() {
+    double[] grid = projection.toGrid(52.657570301933, 1.7179215806451,
+        new double[2]);
+    OSRef ref = new LatLng(52.657570301933, 1.7179215806451).toOSRef();
+    assertEquals(ref.getEasting(), grid[0], 0);
+    assertEquals(ref.getNorthing(), grid[1], 0);
+
+    MutableLatLng ll = projection.toLatLng(grid[0], grid[1],
+        new MutableLatLng());
+    // The series are only good to a fraction of a millimetre on the ground
+    assertEquals(52.657570301933, ll.getLatitude(), 1e-8);
+    assertEquals(1.7179215806451, ll.getLongitude(), 1e-8);
+  }
+
+
+  private static void createPoints(double[] latitude, double[] longitude) {
+    Random random = new Random(1);
+    for (int i = 0; i < latitude.length; i++) {
+      latitude[i] = 50 + random.nextDouble() * 8;
+      longitude[i] = -6 + random.nextDouble() * 8;
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package uk.me.jstott.jcoord;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks grid reference formatting and parsing against OSRef.
+ */
+public class OSGridFormatterTest {
+
+  @Test
+  public void formatMatchesOSRef() {
+    OSRef ref = new OSRef(651409.903, 313177.270);
+    assertEquals(ref.toSixFigureString(),
+        OSGridFormatter.format(651409.903, 313177.270, 6, false,
+            new StringBuilder()).toString());
+    assertEquals("TG 5140 1317", OSGridFormatter.format(651409.903,
+        313177.270, 8, true, new StringBuilder()).toString());
+
+    char[] buffer = new char[OSGridFormatter.length(10, false)];
+    int length = OSGridFormatter.format(651409.903, 313177.270, 10, false,
+        buffer, 0);
+    assertEquals("TG5140913177", new String(buffer, 0, length));
+  }
+
+
+  @Test
+  public void parseEveryPrecision() {
+    String[] refs = { "TG51", "TG 51 13", "tg514131", "TG51401317",
+        "TG 51409 13177" };
+    double[] precision = { 10000, 1000, 100, 10, 1 };
+    for (int i = 0; i < refs.length; i++) {
+      double[] en = OSGridFormatter.parse(refs[i], new double[2]);
+      assertEquals(refs[i], Math.floor(651409 / precision[i]) * precision[i],
+          en[0], 0);
+      assertEquals(refs[i], Math.floor(313177 / precision[i]) * precision[i],
+          en[1], 0);
+    }
+  }
+
+
+  @Test
+  public void parsePartOfSequence() {
+    double[] en = OSGridFormatter.parse("at TG514131.", 3, 11, new double[2]);
+    assertEquals(651400, en[0], 0);
+    assertEquals(313100, en[1], 0);
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseRejectsNoFigures() {
+    OSGridFormatter.parse("TG", new double[2]);
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseRejectsOnlySpaces() {
+    OSGridFormatter.parse("TG  ", new double[2]);
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseRejectsOddFigures() {
+    OSGridFormatter.parse("TG514", new double[2]);
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseRejectsTooManyFigures() {
+    OSGridFormatter.parse("TG514091317700", new double[2]);
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseRejectsBadLetters() {
+    OSGridFormatter.parse("ZZ5141", new double[2]);
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseRejectsOtherCharacters() {
+    OSGridFormatter.parse("TG51-13", new double[2]);
+  }
+}
@@ -0,0 +1,112 @@
+package uk.me.jstott.jcoord;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks the UTM projection against the Jcoord 1.1 LatLng.toUTMRef() across
+ * all 60 zones, from 79.5&deg;S to 83.5&deg;N over the full width of each
+ * zone, and over dense grids covering the Norway and Svalbard exceptions.
+ * The 1.1 code used a shorter series, so the two agree to about a millimetre
+ * rather than exactly.
+ */
+public class UTMProjectionTest {
+
+  /**
+   * Largest allowed difference from the 1.1 grid reference, in metres.
+   */
+  private static final double GRID_TOLERANCE = 0.001;
+
+  /**
+   * Largest allowed round trip error, in degrees.
+   */
+  private static final double ROUND_TRIP_TOLERANCE = 1e-12;
+
+  private final UTMProjection projection = UTMProjection.getInstance();
+
+
+  @Test
+  public void everyZoneMatchesBaseline() {
+    for (int zone = 1; zone <= 60; zone++) {
+      double centralMeridian = (zone - 1) * 6 - 180 + 3;
+      for (int lat = 0; lat < 327; lat++) {
+        for (int lng = 0; lng < 12; lng++) {
+          check(-79.5 + lat * 0.5, centralMeridian - 3 + lng * 0.5);
+        }
+      }
+    }
+  }
+
+
+  @Test
+  public void norwayMatchesBaseline() {
+    for (int lat = 0; lat < 80; lat++) {
+      for (int lng = 0; lng < 90; lng++) {
+        check(56 + lat * 0.1, 3 + lng * 0.1);
+      }
+    }
+  }
+
+
+  @Test
+  public void svalbardMatchesBaseline() {
+    for (int lat = 0; lat < 120; lat++) {
+      for (int lng = 0; lng < 420; lng++) {
+        check(72 + lat * 0.1, lng * 0.1);
+      }
+    }
+  }
+
+
+  @Test
+  public void arraysMatchSinglePoints() {
+    double[] latitude = { -33.9, 0.5, 51.5, 60.0, 78.2 };
+    double[] longitude = { 18.4, -179.9, -0.1, 5.3, 15.6 };
+    int count = latitude.length;
+    int[] lngZone = new int[count];
+    char[] latZone = new char[count];
+    double[] easting = new double[count];
+    double[] northing = new double[count];
+    projection.toGrid(latitude, longitude, lngZone, latZone, easting,
+        northing, count);
+
+    for (int i = 0; i < count; i++) {
+      UTMRef ref = new LatLng(latitude[i], longitude[i]).toUTMRef();
+      assertEquals(ref.getLngZone(), lngZone[i]);
+      assertEquals(ref.getLatZone(), latZone[i]);
+      assertEquals(ref.getEasting(), easting[i], 0);
+      assertEquals(ref.getNorthing(), northing[i], 0);
+    }
+  }
+
+
+  @Test(expected = NotDefinedOnUTMGridException.class)
+  public void outsideGrid() {
+    projection.toGrid(new double[] { 84.5 }, new double[] { 0 }, new int[1],
+        new char[1], new double[1], new double[1], 1);
+  }
+
+
+  private void check(double latitude, double longitude) {
+    String point = latitude + ", " + longitude;
+    UTMRef expected = BaselineConversions.toUTMRef(latitude, longitude);
+    int zone = UTMProjection.getLongitudeZone(latitude, longitude);
+    assertEquals(point, expected.getLngZone(), zone);
+    assertEquals(point, expected.getLatZone(),
+        UTMProjection.getLatitudeZoneLetter(latitude));
+
+    double[] grid = projection.toGrid(latitude, longitude, zone,
+        new double[2]);
+    assertEquals(point, expected.getEasting(), grid[0], GRID_TOLERANCE);
+    assertEquals(point, expected.getNorthing(), grid[1], GRID_TOLERANCE);
+
+    MutableLatLng ll = projection.toLatLng(zone, latitude < 0, grid[0],
+        grid[1], new MutableLatLng());
+    assertEquals(point, latitude, ll.getLatitude(), ROUND_TRIP_TOLERANCE);
+    // -180 comes back as 180
+    assertEquals(point, 0,
+        Math.IEEEremainder(ll.getLongitude() - longitude, 360),
+        ROUND_TRIP_TOLERANCE);
+  }
+}
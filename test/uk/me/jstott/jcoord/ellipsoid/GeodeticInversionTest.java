@@ -0,0 +1,73 @@
+package uk.me.jstott.jcoord.ellipsoid;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks each inversion strategy against the latitude a geocentric position
+ * was generated from, for heights between -1000m and 10000m on the WGS84 and
+ * Airy 1830 ellipsoids.
+ */
+public class GeodeticInversionTest {
+
+  private static final int COUNT = 100000;
+
+
+  @Test
+  public void iterativeIsAccurate() {
+    checkAccuracy(GeodeticInversion.ITERATIVE, 1e-12);
+  }
+
+
+  @Test
+  public void convergentIsAccurate() {
+    checkAccuracy(GeodeticInversion.CONVERGENT, 1e-12);
+  }
+
+
+  @Test
+  public void bowringIsAccurate() {
+    checkAccuracy(GeodeticInversion.BOWRING, 2e-13);
+  }
+
+
+  @Test
+  public void polarAxis() {
+    GeodeticInversion[] inversions = { GeodeticInversion.ITERATIVE,
+        GeodeticInversion.CONVERGENT, GeodeticInversion.BOWRING };
+    Ellipsoid ellipsoid = WGS84Ellipsoid.getInstance();
+    double a = ellipsoid.getSemiMajorAxis();
+    double eSquared = ellipsoid.getEccentricitySquared();
+    for (GeodeticInversion inversion : inversions) {
+      assertEquals(inversion.toString(), Math.PI / 2,
+          inversion.latitude(0, 6356752, a, eSquared), 0);
+      assertEquals(inversion.toString(), -Math.PI / 2,
+          inversion.latitude(0, -6356752, a, eSquared), 0);
+    }
+  }
+
+
+  private static void checkAccuracy(GeodeticInversion inversion,
+      double tolerance) {
+    Ellipsoid[] ellipsoids = { WGS84Ellipsoid.getInstance(),
+        Airy1830Ellipsoid.getInstance() };
+    for (Ellipsoid ellipsoid : ellipsoids) {
+      double a = ellipsoid.getSemiMajorAxis();
+      double eSquared = ellipsoid.getEccentricitySquared();
+      Random random = new Random(1);
+      for (int i = 0; i < COUNT; i++) {
+        double latitude = (random.nextDouble() - 0.5) * Math.PI;
+        double height = -1000 + random.nextDouble() * 11000;
+        double sinPhi = Math.sin(latitude);
+        double v = a / Math.sqrt(1 - eSquared * sinPhi * sinPhi);
+        double p = (v + height) * Math.cos(latitude);
+        double z = ((1 - eSquared) * v + height) * sinPhi;
+        assertEquals(inversion.toString(), latitude,
+            inversion.latitude(p, z, a, eSquared), tolerance);
+      }
+    }
+  }
+}